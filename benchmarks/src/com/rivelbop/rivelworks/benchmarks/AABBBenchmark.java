@@ -0,0 +1,56 @@
+package com.rivelbop.rivelworks.benchmarks;
+
+import com.badlogic.gdx.math.MathUtils;
+import com.rivelbop.rivelworks.math.AABB;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link AABB#collides(AABB, boolean)} and {@link AABB#resolveCollision(AABB, boolean)} against a scattered set
+ * of bounds, roughly half of which overlap the tested bound.
+ *
+ * @author David Jerzak (RivelBop)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class AABBBenchmark {
+    @Param({"1024"})
+    public int count;
+
+    @Param({"false", "true"})
+    public boolean precise;
+
+    private AABB[] others;
+    private AABB bound;
+    private final AABB resolved = new AABB();
+
+    @Setup
+    public void setup() {
+        MathUtils.random.setSeed(42);
+        others = new AABB[count];
+        for (int i = 0; i < count; i++) {
+            others[i] = new AABB(MathUtils.random(-32f, 32f), MathUtils.random(-32f, 32f),
+                    MathUtils.random(1f, 32f), MathUtils.random(1f, 32f));
+        }
+        bound = new AABB(-8f, -8f, 16f, 16f);
+    }
+
+    @Benchmark
+    public void collides(Blackhole blackhole) {
+        for (AABB other : others) {
+            blackhole.consume(bound.collides(other, precise));
+        }
+    }
+
+    @Benchmark
+    public AABB resolveCollision() {
+        for (AABB other : others) {
+            resolved.set(bound);
+            resolved.resolveCollision(other, precise);
+        }
+        return resolved;
+    }
+}
@@ -0,0 +1,79 @@
+package com.rivelbop.rivelworks.benchmarks;
+
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.rivelbop.rivelworks.util.Utils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures write/read round trips through the serializers registered by {@link Utils#registerGdxSerializers(Kryo)}.
+ *
+ * @author David Jerzak (RivelBop)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class KryoBenchmark {
+    @Param({"256"})
+    public int size;
+
+    private Kryo kryo;
+    private Output output;
+    private final Input input = new Input();
+
+    private Array<Color> colors;
+    private IntArray ints;
+    private FloatArray floats;
+
+    @Setup
+    public void setup() {
+        kryo = new Kryo();
+        kryo.setRegistrationRequired(false);
+        Utils.registerGdxSerializers(kryo);
+        output = new Output(1024, -1);
+
+        colors = new Array<>(size);
+        ints = new IntArray(size);
+        floats = new FloatArray(size);
+        for (int i = 0; i < size; i++) {
+            colors.add(new Color(i / (float) size, 0.5f, 1f - i / (float) size, 1f));
+            ints.add(i * 31);
+            floats.add(i * 0.25f);
+        }
+    }
+
+    @Benchmark
+    public Object colorArray() {
+        return roundTrip(colors);
+    }
+
+    @Benchmark
+    public Object intArray() {
+        return roundTrip(ints);
+    }
+
+    @Benchmark
+    public Object floatArray() {
+        return roundTrip(floats);
+    }
+
+    /**
+     * Writes the object and reads it back.
+     *
+     * @param object The object to serialize.
+     * @return The deserialized copy.
+     */
+    private Object roundTrip(Object object) {
+        output.reset();
+        kryo.writeClassAndObject(output, object);
+        input.setBuffer(output.getBuffer(), 0, output.position());
+        return kryo.readClassAndObject(input);
+    }
+}
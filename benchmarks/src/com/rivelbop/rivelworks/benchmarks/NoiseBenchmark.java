@@ -0,0 +1,74 @@
+package com.rivelbop.rivelworks.benchmarks;
+
+import com.rivelbop.rivelworks.math.NoiseGenerator;
+import com.rivelbop.rivelworks.math.NoiseGenerator.FractalType;
+import com.rivelbop.rivelworks.math.NoiseGenerator.NoiseType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link NoiseGenerator#GetNoise} for every {@link NoiseType} and {@link FractalType}, along with the grid-fill
+ * path that samples the same region.
+ *
+ * @author David Jerzak (RivelBop)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class NoiseBenchmark {
+    /**
+     * The number of samples along each edge of the sampled region.
+     */
+    private static final int SIZE = 64;
+
+    @Param
+    public NoiseType noiseType;
+
+    @Param
+    public FractalType fractalType;
+
+    private NoiseGenerator generator;
+    private final float[] grid = new float[SIZE * SIZE];
+    private final float[] grid3D = new float[SIZE * SIZE * 4];
+
+    @Setup
+    public void setup() {
+        generator = new NoiseGenerator(1337);
+        generator.SetNoiseType(noiseType);
+        generator.SetFractalType(fractalType);
+    }
+
+    @Benchmark
+    public void getNoise2D(Blackhole blackhole) {
+        for (int y = 0; y < SIZE; y++) {
+            for (int x = 0; x < SIZE; x++) {
+                blackhole.consume(generator.GetNoise(x, y));
+            }
+        }
+    }
+
+    @Benchmark
+    public void getNoise3D(Blackhole blackhole) {
+        for (int z = 0; z < 4; z++) {
+            for (int y = 0; y < SIZE; y++) {
+                for (int x = 0; x < SIZE; x++) {
+                    blackhole.consume(generator.GetNoise(x, y, z));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public float[] getNoiseGrid2D() {
+        generator.GetNoiseGrid(grid, 0, 0, 0, 1, 1, SIZE, SIZE);
+        return grid;
+    }
+
+    @Benchmark
+    public float[] getNoiseGrid3D() {
+        generator.GetNoiseGrid(grid3D, 0, 0, 0, 0, 1, 1, 1, SIZE, SIZE, 4);
+        return grid3D;
+    }
+}
@@ -0,0 +1,98 @@
+package com.rivelbop.rivelworks.benchmarks;
+
+import com.badlogic.gdx.graphics.PerspectiveCamera;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.utils.GdxNativesLoader;
+import com.rivelbop.rivelworks.g3d.physics.OcclusionBuffer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link OcclusionBuffer} software rasterizer: clearing, drawing occluders and querying occludees. The
+ * projection comes from a {@link PerspectiveCamera} updated on the CPU, so no GL context is needed.
+ *
+ * @author David Jerzak (RivelBop)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class OcclusionBufferBenchmark {
+    @Param({"128", "256"})
+    public int resolution;
+
+    /**
+     * 0 rasterizes immediately, otherwise the tile size of the binned parallel rasterizer.
+     */
+    @Param({"0", "32"})
+    public int tileSize;
+
+    @Param({"64"})
+    public int occluders;
+
+    @Param({"512"})
+    public int occludees;
+
+    private OcclusionBuffer buffer;
+    private Vector3[] occluderCenters, occluderHalfExts, occludeeCenters, occludeeHalfExts;
+
+    @Setup
+    public void setup() {
+        GdxNativesLoader.load();
+
+        PerspectiveCamera camera = new PerspectiveCamera(67, resolution, resolution);
+        camera.position.set(0, 10, 60);
+        camera.lookAt(0, 0, 0);
+        camera.near = 0.5f;
+        camera.far = 500f;
+        camera.update();
+
+        buffer = new OcclusionBuffer(resolution, resolution, tileSize, null);
+        buffer.setProjectionMatrix(camera.combined);
+
+        MathUtils.random.setSeed(42);
+        occluderCenters = new Vector3[occluders];
+        occluderHalfExts = new Vector3[occluders];
+        for (int i = 0; i < occluders; i++) {
+            occluderCenters[i] = new Vector3(MathUtils.random(-40f, 40f), MathUtils.random(0f, 10f), MathUtils.random(-20f, 20f));
+            occluderHalfExts[i] = new Vector3(MathUtils.random(2f, 8f), MathUtils.random(2f, 10f), MathUtils.random(0.5f, 2f));
+        }
+        occludeeCenters = new Vector3[occludees];
+        occludeeHalfExts = new Vector3[occludees];
+        for (int i = 0; i < occludees; i++) {
+            occludeeCenters[i] = new Vector3(MathUtils.random(-60f, 60f), MathUtils.random(0f, 10f), MathUtils.random(-80f, -20f));
+            occludeeHalfExts[i] = new Vector3(MathUtils.random(0.5f, 3f), MathUtils.random(0.5f, 3f), MathUtils.random(0.5f, 3f));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        buffer.dispose();
+    }
+
+    @Benchmark
+    public OcclusionBuffer clear() {
+        buffer.clear();
+        return buffer;
+    }
+
+    @Benchmark
+    public OcclusionBuffer drawOccluders() {
+        buffer.clear();
+        for (int i = 0; i < occluders; i++) {
+            buffer.drawAABB(occluderCenters[i], occluderHalfExts[i]);
+        }
+        buffer.flush();
+        return buffer;
+    }
+
+    @Benchmark
+    public void drawAndQuery(Blackhole blackhole) {
+        drawOccluders();
+        for (int i = 0; i < occludees; i++) {
+            blackhole.consume(buffer.queryAABB(occludeeCenters[i], occludeeHalfExts[i]));
+        }
+    }
+}
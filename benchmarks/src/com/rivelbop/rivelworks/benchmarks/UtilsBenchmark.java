@@ -0,0 +1,56 @@
+package com.rivelbop.rivelworks.benchmarks;
+
+import com.rivelbop.rivelworks.util.Utils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the index-array helpers of {@link Utils} used when editing static mesh geometry, on the plain arrays so no
+ * GL mesh is needed.
+ *
+ * @author David Jerzak (RivelBop)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UtilsBenchmark {
+    @Param({"3000", "30000"})
+    public int indexCount;
+
+    private short[] indices;
+    private short[] indicesToRemove;
+    private short[] subset;
+
+    @Setup
+    public void setup() {
+        indices = new short[indexCount];
+        for (int i = 0; i < indexCount; i++) {
+            indices[i] = (short) (i % Short.MAX_VALUE);
+        }
+
+        indicesToRemove = new short[16];
+        for (int i = 0; i < indicesToRemove.length; i++) {
+            indicesToRemove[i] = (short) (i * 97);
+        }
+
+        // Worst case, the subset sits at the end of the array
+        subset = new short[6];
+        System.arraycopy(indices, indexCount - subset.length, subset, 0, subset.length);
+    }
+
+    @Benchmark
+    public short[] removeIndices() {
+        return Utils.removeIndices(indices, indicesToRemove);
+    }
+
+    @Benchmark
+    public int findSubsetIndex() {
+        return Utils.findSubsetIndex(indices, subset);
+    }
+
+    @Benchmark
+    public short[] removeSubsetIndices() {
+        return Utils.removeSubsetIndices(indices, subset);
+    }
+}
@@ -0,0 +1,458 @@
+package com.rivelbop.rivelworks.math;
+
+import com.rivelbop.rivelworks.math.NoiseGenerator.CellularDistanceFunction;
+import com.rivelbop.rivelworks.math.NoiseGenerator.CellularReturnType;
+import com.rivelbop.rivelworks.math.NoiseGenerator.NoiseType;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import static com.rivelbop.rivelworks.math.NoiseGenerator.*;
+
+/**
+ * A {@link NoiseBackend} built on the incubating Java Vector API, computing a full hardware vector of samples (8 lanes
+ * with AVX2, 16 with AVX-512) per iteration.
+ * <p>
+ * Supports OpenSimplex2, Cellular, Perlin and Value for 2D and Perlin and Value for 3D, every other noise type is left to
+ * the scalar kernels. Each lane performs exactly the operations of the matching scalar kernel in the same order and
+ * branches are replaced by blends, so the output is bit-identical to {@link NoiseGenerator#GetNoise(float, float)}.
+ * <p>
+ * This class is only compiled into the Java 17+ part of the multi-release jar and is loaded reflectively by
+ * {@link NoiseGenerator}, which requires the JVM to be started with {@code --add-modules jdk.incubator.vector}.
+ *
+ * @author David Jerzak (RivelBop)
+ */
+final class VectorNoiseBackend implements NoiseBackend {
+    private static final VectorSpecies<Float> FLOAT = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INT = VectorSpecies.of(int.class, FLOAT.vectorShape());
+    private static final int LANES = FLOAT.length();
+
+    private static final float SQRT3 = 1.7320508075688772935274463415059f;
+    private static final float G2 = (3 - SQRT3) / 6;
+    private static final float SIMPLEX_C0 = 2 * (1 - 2 * G2) * (1 / G2 - 2);
+    private static final float SIMPLEX_C1 = (-2 * (1 - 2 * G2) * (1 - 2 * G2));
+
+    /**
+     * Stores the gather indices of the current row (one array per thread, rows are filled in parallel).
+     */
+    private static final ThreadLocal<int[]> INDICES = ThreadLocal.withInitial(() -> new int[LANES]);
+
+    /**
+     * Creates the backend, failing if the preferred vector shape is too narrow to beat the scalar kernels.
+     */
+    VectorNoiseBackend() {
+        if (LANES < 4) {
+            throw new UnsupportedOperationException("Preferred vector species only has " + LANES + " float lanes!");
+        }
+    }
+
+    @Override
+    public int genNoiseRow(NoiseType noiseType, CellularDistanceFunction distanceFunction, CellularReturnType returnType,
+                           float jitterModifier, int seed, float[] xs, float[] ys, float[] out, int offset, int n) {
+        int bound = FLOAT.loopBound(n);
+        int[] indices = INDICES.get();
+
+        switch (noiseType) {
+            case OpenSimplex2:
+                simplex(seed, xs, ys, out, offset, bound, indices);
+                return bound;
+            case Cellular:
+                cellular(seed, xs, ys, out, offset, bound, distanceFunction, returnType, 0.43701595f * jitterModifier, indices);
+                return bound;
+            case Perlin:
+                perlin(seed, xs, ys, out, offset, bound, indices);
+                return bound;
+            case Value:
+                value(seed, xs, ys, out, offset, bound);
+                return bound;
+            default:
+                return 0;
+        }
+    }
+
+    @Override
+    public int genNoiseRow(NoiseType noiseType, CellularDistanceFunction distanceFunction, CellularReturnType returnType,
+                           float jitterModifier, int seed, float[] xs, float[] ys, float[] zs, float[] out, int offset, int n) {
+        int bound = FLOAT.loopBound(n);
+        int[] indices = INDICES.get();
+
+        switch (noiseType) {
+            case Perlin:
+                perlin(seed, xs, ys, zs, out, offset, bound, indices);
+                return bound;
+            case Value:
+                value(seed, xs, ys, zs, out, offset, bound);
+                return bound;
+            default:
+                return 0;
+        }
+    }
+
+    // OpenSimplex2 (2D simplex)
+
+    private static void simplex(int seed, float[] xs, float[] ys, float[] out, int offset, int bound, int[] indices) {
+        for (int s = 0; s < bound; s += LANES) {
+            FloatVector x = FloatVector.fromArray(FLOAT, xs, s);
+            FloatVector y = FloatVector.fromArray(FLOAT, ys, s);
+
+            IntVector i = fastFloor(x);
+            IntVector j = fastFloor(y);
+            FloatVector xi = x.sub(toFloat(i));
+            FloatVector yi = y.sub(toFloat(j));
+
+            FloatVector t = xi.add(yi).mul(G2);
+            FloatVector x0 = xi.sub(t);
+            FloatVector y0 = yi.sub(t);
+
+            i = i.mul(PrimeX);
+            j = j.mul(PrimeY);
+
+            FloatVector a = FloatVector.broadcast(FLOAT, 0.5f).sub(x0.mul(x0)).sub(y0.mul(y0));
+            FloatVector n0 = a.mul(a).mul(a.mul(a)).mul(gradCoord(seed, i, j, x0, y0, indices))
+                    .blend(0f, a.compare(VectorOperators.LE, 0));
+
+            FloatVector c = t.mul(SIMPLEX_C0).add(a.add(SIMPLEX_C1));
+            FloatVector n2 = c.mul(c).mul(c.mul(c))
+                    .mul(gradCoord(seed, i.add(PrimeX), j.add(PrimeY), x0.add(2 * G2 - 1), y0.add(2 * G2 - 1), indices))
+                    .blend(0f, c.compare(VectorOperators.LE, 0));
+
+            // Both sides of the (y0 > x0) branch share their shape, only the offsets differ
+            VectorMask<Float> upper = y0.compare(VectorOperators.GT, x0);
+            VectorMask<Integer> upperInt = upper.cast(INT);
+            FloatVector x1 = x0.add(FloatVector.broadcast(FLOAT, G2 - 1).blend(G2, upper));
+            FloatVector y1 = y0.add(FloatVector.broadcast(FLOAT, G2).blend(G2 - 1, upper));
+            FloatVector b = FloatVector.broadcast(FLOAT, 0.5f).sub(x1.mul(x1)).sub(y1.mul(y1));
+            IntVector i1 = i.add(PrimeX).blend(i, upperInt);
+            IntVector j1 = j.blend(j.add(PrimeY), upperInt);
+            FloatVector n1 = b.mul(b).mul(b.mul(b)).mul(gradCoord(seed, i1, j1, x1, y1, indices))
+                    .blend(0f, b.compare(VectorOperators.LE, 0));
+
+            n0.add(n1).add(n2).mul(99.83685446303647f).intoArray(out, offset + s);
+        }
+    }
+
+    // Cellular
+
+    private static void cellular(int seed, float[] xs, float[] ys, float[] out, int offset, int bound,
+                                 CellularDistanceFunction distanceFunction, CellularReturnType returnType, float jitter,
+                                 int[] indices) {
+        for (int s = 0; s < bound; s += LANES) {
+            FloatVector x = FloatVector.fromArray(FLOAT, xs, s);
+            FloatVector y = FloatVector.fromArray(FLOAT, ys, s);
+
+            IntVector xr = fastRound(x);
+            IntVector yr = fastRound(y);
+
+            FloatVector distance0 = FloatVector.broadcast(FLOAT, Float.MAX_VALUE);
+            FloatVector distance1 = FloatVector.broadcast(FLOAT, Float.MAX_VALUE);
+            IntVector closestHash = IntVector.zero(INT);
+
+            IntVector xPrimed = xr.sub(1).mul(PrimeX);
+            IntVector yPrimedBase = yr.sub(1).mul(PrimeY);
+
+            for (int xo = -1; xo <= 1; xo++) {
+                FloatVector xd = toFloat(xr.add(xo)).sub(x);
+                IntVector yPrimed = yPrimedBase;
+
+                for (int yo = -1; yo <= 1; yo++) {
+                    FloatVector yd = toFloat(yr.add(yo)).sub(y);
+
+                    IntVector hash = hash(seed, xPrimed, yPrimed);
+                    hash.lanewise(VectorOperators.AND, 255 << 1).intoArray(indices, 0);
+
+                    FloatVector vecX = xd.add(FloatVector.fromArray(FLOAT, RandVecs2D, 0, indices, 0).mul(jitter));
+                    FloatVector vecY = yd.add(FloatVector.fromArray(FLOAT, RandVecs2D, 1, indices, 0).mul(jitter));
+
+                    FloatVector newDistance;
+                    switch (distanceFunction) {
+                        case Manhattan:
+                            newDistance = vecX.abs().add(vecY.abs());
+                            break;
+                        case Hybrid:
+                            newDistance = vecX.abs().add(vecY.abs()).add(vecX.mul(vecX).add(vecY.mul(vecY)));
+                            break;
+                        default:
+                            newDistance = vecX.mul(vecX).add(vecY.mul(vecY));
+                            break;
+                    }
+
+                    distance1 = distance1.min(newDistance).max(distance0);
+                    VectorMask<Float> closer = newDistance.compare(VectorOperators.LT, distance0);
+                    distance0 = distance0.blend(newDistance, closer);
+                    closestHash = closestHash.blend(hash, closer.cast(INT));
+
+                    yPrimed = yPrimed.add(PrimeY);
+                }
+                xPrimed = xPrimed.add(PrimeX);
+            }
+
+            if (distanceFunction == CellularDistanceFunction.Euclidean && returnType != CellularReturnType.CellValue) {
+                distance0 = distance0.sqrt();
+
+                if (returnType != CellularReturnType.Distance) {
+                    distance1 = distance1.sqrt();
+                }
+            }
+
+            FloatVector result;
+            switch (returnType) {
+                case CellValue:
+                    result = toFloat(closestHash).mul(1 / 2147483648.0f);
+                    break;
+                case Distance:
+                    result = distance0.sub(1);
+                    break;
+                case Distance2:
+                    result = distance1.sub(1);
+                    break;
+                case Distance2Add:
+                    result = distance1.add(distance0).mul(0.5f).sub(1);
+                    break;
+                case Distance2Sub:
+                    result = distance1.sub(distance0).sub(1);
+                    break;
+                case Distance2Mul:
+                    result = distance1.mul(distance0).mul(0.5f).sub(1);
+                    break;
+                case Distance2Div:
+                    result = distance0.div(distance1).sub(1);
+                    break;
+                default:
+                    result = FloatVector.zero(FLOAT);
+                    break;
+            }
+            result.intoArray(out, offset + s);
+        }
+    }
+
+    // Perlin
+
+    private static void perlin(int seed, float[] xs, float[] ys, float[] out, int offset, int bound, int[] indices) {
+        for (int s = 0; s < bound; s += LANES) {
+            FloatVector x = FloatVector.fromArray(FLOAT, xs, s);
+            FloatVector y = FloatVector.fromArray(FLOAT, ys, s);
+
+            IntVector x0 = fastFloor(x);
+            IntVector y0 = fastFloor(y);
+
+            FloatVector xd0 = x.sub(toFloat(x0));
+            FloatVector yd0 = y.sub(toFloat(y0));
+            FloatVector xd1 = xd0.sub(1);
+            FloatVector yd1 = yd0.sub(1);
+
+            FloatVector sx = interpQuintic(xd0);
+            FloatVector sy = interpQuintic(yd0);
+
+            x0 = x0.mul(PrimeX);
+            y0 = y0.mul(PrimeY);
+            IntVector x1 = x0.add(PrimeX);
+            IntVector y1 = y0.add(PrimeY);
+
+            FloatVector xf0 = lerp(gradCoord(seed, x0, y0, xd0, yd0, indices), gradCoord(seed, x1, y0, xd1, yd0, indices), sx);
+            FloatVector xf1 = lerp(gradCoord(seed, x0, y1, xd0, yd1, indices), gradCoord(seed, x1, y1, xd1, yd1, indices), sx);
+
+            lerp(xf0, xf1, sy).mul(1.4247691104677813f).intoArray(out, offset + s);
+        }
+    }
+
+    private static void perlin(int seed, float[] xs, float[] ys, float[] zs, float[] out, int offset, int bound,
+                               int[] indices) {
+        for (int s = 0; s < bound; s += LANES) {
+            FloatVector x = FloatVector.fromArray(FLOAT, xs, s);
+            FloatVector y = FloatVector.fromArray(FLOAT, ys, s);
+            FloatVector z = FloatVector.fromArray(FLOAT, zs, s);
+
+            IntVector x0 = fastFloor(x);
+            IntVector y0 = fastFloor(y);
+            IntVector z0 = fastFloor(z);
+
+            FloatVector xd0 = x.sub(toFloat(x0));
+            FloatVector yd0 = y.sub(toFloat(y0));
+            FloatVector zd0 = z.sub(toFloat(z0));
+            FloatVector xd1 = xd0.sub(1);
+            FloatVector yd1 = yd0.sub(1);
+            FloatVector zd1 = zd0.sub(1);
+
+            FloatVector sx = interpQuintic(xd0);
+            FloatVector sy = interpQuintic(yd0);
+            FloatVector sz = interpQuintic(zd0);
+
+            x0 = x0.mul(PrimeX);
+            y0 = y0.mul(PrimeY);
+            z0 = z0.mul(PrimeZ);
+            IntVector x1 = x0.add(PrimeX);
+            IntVector y1 = y0.add(PrimeY);
+            IntVector z1 = z0.add(PrimeZ);
+
+            FloatVector xf00 = lerp(gradCoord(seed, x0, y0, z0, xd0, yd0, zd0, indices), gradCoord(seed, x1, y0, z0, xd1, yd0, zd0, indices), sx);
+            FloatVector xf10 = lerp(gradCoord(seed, x0, y1, z0, xd0, yd1, zd0, indices), gradCoord(seed, x1, y1, z0, xd1, yd1, zd0, indices), sx);
+            FloatVector xf01 = lerp(gradCoord(seed, x0, y0, z1, xd0, yd0, zd1, indices), gradCoord(seed, x1, y0, z1, xd1, yd0, zd1, indices), sx);
+            FloatVector xf11 = lerp(gradCoord(seed, x0, y1, z1, xd0, yd1, zd1, indices), gradCoord(seed, x1, y1, z1, xd1, yd1, zd1, indices), sx);
+
+            FloatVector yf0 = lerp(xf00, xf10, sy);
+            FloatVector yf1 = lerp(xf01, xf11, sy);
+
+            lerp(yf0, yf1, sz).mul(0.964921414852142333984375f).intoArray(out, offset + s);
+        }
+    }
+
+    // Value
+
+    private static void value(int seed, float[] xs, float[] ys, float[] out, int offset, int bound) {
+        for (int s = 0; s < bound; s += LANES) {
+            FloatVector x = FloatVector.fromArray(FLOAT, xs, s);
+            FloatVector y = FloatVector.fromArray(FLOAT, ys, s);
+
+            IntVector x0 = fastFloor(x);
+            IntVector y0 = fastFloor(y);
+
+            FloatVector sx = interpHermite(x.sub(toFloat(x0)));
+            FloatVector sy = interpHermite(y.sub(toFloat(y0)));
+
+            x0 = x0.mul(PrimeX);
+            y0 = y0.mul(PrimeY);
+            IntVector x1 = x0.add(PrimeX);
+            IntVector y1 = y0.add(PrimeY);
+
+            FloatVector xf0 = lerp(valCoord(seed, x0, y0), valCoord(seed, x1, y0), sx);
+            FloatVector xf1 = lerp(valCoord(seed, x0, y1), valCoord(seed, x1, y1), sx);
+
+            lerp(xf0, xf1, sy).intoArray(out, offset + s);
+        }
+    }
+
+    private static void value(int seed, float[] xs, float[] ys, float[] zs, float[] out, int offset, int bound) {
+        for (int s = 0; s < bound; s += LANES) {
+            FloatVector x = FloatVector.fromArray(FLOAT, xs, s);
+            FloatVector y = FloatVector.fromArray(FLOAT, ys, s);
+            FloatVector z = FloatVector.fromArray(FLOAT, zs, s);
+
+            IntVector x0 = fastFloor(x);
+            IntVector y0 = fastFloor(y);
+            IntVector z0 = fastFloor(z);
+
+            FloatVector sx = interpHermite(x.sub(toFloat(x0)));
+            FloatVector sy = interpHermite(y.sub(toFloat(y0)));
+            FloatVector sz = interpHermite(z.sub(toFloat(z0)));
+
+            x0 = x0.mul(PrimeX);
+            y0 = y0.mul(PrimeY);
+            z0 = z0.mul(PrimeZ);
+            IntVector x1 = x0.add(PrimeX);
+            IntVector y1 = y0.add(PrimeY);
+            IntVector z1 = z0.add(PrimeZ);
+
+            FloatVector xf00 = lerp(valCoord(seed, x0, y0, z0), valCoord(seed, x1, y0, z0), sx);
+            FloatVector xf10 = lerp(valCoord(seed, x0, y1, z0), valCoord(seed, x1, y1, z0), sx);
+            FloatVector xf01 = lerp(valCoord(seed, x0, y0, z1), valCoord(seed, x1, y0, z1), sx);
+            FloatVector xf11 = lerp(valCoord(seed, x0, y1, z1), valCoord(seed, x1, y1, z1), sx);
+
+            FloatVector yf0 = lerp(xf00, xf10, sy);
+            FloatVector yf1 = lerp(xf01, xf11, sy);
+
+            lerp(yf0, yf1, sz).intoArray(out, offset + s);
+        }
+    }
+
+    // Lane-wise equivalents of the scalar helpers
+
+    private static FloatVector toFloat(IntVector v) {
+        return (FloatVector) v.convert(VectorOperators.I2F, 0);
+    }
+
+    /**
+     * Lane-wise {@code (int) f} built from integer operations on the IEEE-754 bits, the F2I conversion is not
+     * intrinsified on every JDK and allocates a boxed vector per call where it is not. Matches the Java cast exactly,
+     * including saturation of out-of-range values and NaN converting to 0.
+     */
+    private static IntVector truncate(FloatVector f) {
+        IntVector bits = f.reinterpretAsInts();
+        IntVector exponent = bits.lanewise(VectorOperators.LSHR, 23).lanewise(VectorOperators.AND, 0xFF).sub(127);
+        IntVector mantissa = bits.lanewise(VectorOperators.AND, 0x7FFFFF).lanewise(VectorOperators.OR, 0x800000);
+
+        // Shift counts outside of [0, 31] are masked by the shift, those lanes are replaced by the blends below
+        IntVector magnitude = mantissa.lanewise(VectorOperators.LSHR, exponent.neg().add(23))
+                .blend(mantissa.lanewise(VectorOperators.LSHL, exponent.sub(23)), exponent.compare(VectorOperators.GE, 23))
+                .blend(0, exponent.compare(VectorOperators.LT, 0));
+
+        IntVector sign = bits.lanewise(VectorOperators.ASHR, 31);
+        IntVector truncated = magnitude.lanewise(VectorOperators.XOR, sign).sub(sign);
+
+        IntVector saturated = sign.lanewise(VectorOperators.XOR, Integer.MAX_VALUE);
+        IntVector abs = bits.lanewise(VectorOperators.AND, Integer.MAX_VALUE);
+        return truncated.blend(saturated, exponent.compare(VectorOperators.GE, 31))
+                .blend(0, abs.compare(VectorOperators.GT, 0x7F800000));
+    }
+
+    private static IntVector fastFloor(FloatVector f) {
+        return truncate(f).sub(1, f.compare(VectorOperators.GE, 0).not().cast(INT));
+    }
+
+    private static IntVector fastRound(FloatVector f) {
+        IntVector up = truncate(f.add(0.5f));
+        IntVector down = truncate(f.sub(0.5f));
+        return down.blend(up, f.compare(VectorOperators.GE, 0).cast(INT));
+    }
+
+    private static FloatVector lerp(FloatVector a, FloatVector b, FloatVector t) {
+        return a.add(t.mul(b.sub(a)));
+    }
+
+    private static FloatVector interpHermite(FloatVector t) {
+        return t.mul(t).mul(FloatVector.broadcast(FLOAT, 3).sub(t.mul(2)));
+    }
+
+    private static FloatVector interpQuintic(FloatVector t) {
+        return t.mul(t).mul(t).mul(t.mul(t.mul(6).sub(15)).add(10));
+    }
+
+    private static IntVector hash(int seed, IntVector xPrimed, IntVector yPrimed) {
+        return xPrimed.lanewise(VectorOperators.XOR, seed).lanewise(VectorOperators.XOR, yPrimed).mul(0x27d4eb2d);
+    }
+
+    private static IntVector hash(int seed, IntVector xPrimed, IntVector yPrimed, IntVector zPrimed) {
+        return xPrimed.lanewise(VectorOperators.XOR, seed).lanewise(VectorOperators.XOR, yPrimed)
+                .lanewise(VectorOperators.XOR, zPrimed).mul(0x27d4eb2d);
+    }
+
+    private static FloatVector valCoord(int seed, IntVector xPrimed, IntVector yPrimed) {
+        IntVector hash = hash(seed, xPrimed, yPrimed);
+        hash = hash.mul(hash);
+        hash = hash.lanewise(VectorOperators.XOR, hash.lanewise(VectorOperators.LSHL, 19));
+        return toFloat(hash).mul(1 / 2147483648.0f);
+    }
+
+    private static FloatVector valCoord(int seed, IntVector xPrimed, IntVector yPrimed, IntVector zPrimed) {
+        IntVector hash = hash(seed, xPrimed, yPrimed, zPrimed);
+        hash = hash.mul(hash);
+        hash = hash.lanewise(VectorOperators.XOR, hash.lanewise(VectorOperators.LSHL, 19));
+        return toFloat(hash).mul(1 / 2147483648.0f);
+    }
+
+    private static FloatVector gradCoord(int seed, IntVector xPrimed, IntVector yPrimed, FloatVector xd, FloatVector yd,
+                                         int[] indices) {
+        IntVector hash = hash(seed, xPrimed, yPrimed);
+        hash = hash.lanewise(VectorOperators.XOR, hash.lanewise(VectorOperators.ASHR, 15));
+        hash.lanewise(VectorOperators.AND, 127 << 1).intoArray(indices, 0);
+
+        FloatVector xg = FloatVector.fromArray(FLOAT, Gradients2D, 0, indices, 0);
+        FloatVector yg = FloatVector.fromArray(FLOAT, Gradients2D, 1, indices, 0);
+
+        return xd.mul(xg).add(yd.mul(yg));
+    }
+
+    private static FloatVector gradCoord(int seed, IntVector xPrimed, IntVector yPrimed, IntVector zPrimed,
+                                         FloatVector xd, FloatVector yd, FloatVector zd, int[] indices) {
+        IntVector hash = hash(seed, xPrimed, yPrimed, zPrimed);
+        hash = hash.lanewise(VectorOperators.XOR, hash.lanewise(VectorOperators.ASHR, 15));
+        hash.lanewise(VectorOperators.AND, 63 << 2).intoArray(indices, 0);
+
+        FloatVector xg = FloatVector.fromArray(FLOAT, Gradients3D, 0, indices, 0);
+        FloatVector yg = FloatVector.fromArray(FLOAT, Gradients3D, 1, indices, 0);
+        FloatVector zg = FloatVector.fromArray(FLOAT, Gradients3D, 2, indices, 0);
+
+        return xd.mul(xg).add(yd.mul(yg)).add(zd.mul(zg));
+    }
+}
@@ -0,0 +1,871 @@
+package com.rivelbop.rivelworks.g2d.map;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.FileTextureData;
+import com.badlogic.gdx.maps.MapGroupLayer;
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.MapLayers;
+import com.badlogic.gdx.maps.MapObject;
+import com.badlogic.gdx.maps.MapObjects;
+import com.badlogic.gdx.maps.MapProperties;
+import com.badlogic.gdx.maps.objects.CircleMapObject;
+import com.badlogic.gdx.maps.objects.EllipseMapObject;
+import com.badlogic.gdx.maps.objects.PolygonMapObject;
+import com.badlogic.gdx.maps.objects.PolylineMapObject;
+import com.badlogic.gdx.maps.objects.RectangleMapObject;
+import com.badlogic.gdx.maps.objects.TextureMapObject;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TiledMapImageLayer;
+import com.badlogic.gdx.maps.tiled.TiledMapTile;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer.Cell;
+import com.badlogic.gdx.maps.tiled.TiledMapTileSet;
+import com.badlogic.gdx.maps.tiled.objects.TiledMapTileMapObject;
+import com.badlogic.gdx.maps.tiled.tiles.AnimatedTiledMapTile;
+import com.badlogic.gdx.maps.tiled.tiles.StaticTiledMapTile;
+import com.badlogic.gdx.math.Circle;
+import com.badlogic.gdx.math.Ellipse;
+import com.badlogic.gdx.math.Polygon;
+import com.badlogic.gdx.math.Polyline;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntMap;
+import com.badlogic.gdx.utils.ObjectIntMap;
+import com.esotericsoftware.minlog.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Iterator;
+
+/**
+ * Reads and writes tiled maps in a compact binary format, compiled from 'tmx' files (which stay the authoring format) so
+ * levels load without parsing XML. Tile layers are stored as run-length encoded tile ids, packed into shorts when they fit, and
+ * the shapes of each object layer as one flat float array. The file is memory-mapped when possible and read with bulk copies.
+ * <p>
+ * The format keeps what {@link com.badlogic.gdx.maps.tiled.TmxMapLoader} produces: properties, tilesets (with animated tiles
+ * and tile collision objects), tile, object, group and image layers. Images are referenced relative to the binary file, and
+ * loaded as {@link Texture}s owned by the map.
+ *
+ * @author David Jerzak (RivelBop)
+ */
+public final class BinaryMap {
+    private static final String LOG_TAG = BinaryMap.class.getSimpleName();
+
+    /**
+     * The file extension of binary maps.
+     */
+    public static final String EXTENSION = ".rwm";
+
+    /**
+     * Identifies binary map files ("RWMP") and their layout version.
+     */
+    private static final int MAGIC = 0x52574D50, VERSION = 1;
+
+    private static final byte TILE_LAYER = 0, OBJECT_LAYER = 1, GROUP_LAYER = 2, IMAGE_LAYER = 3;
+    private static final byte STATIC_TILE = 0, ANIMATED_TILE = 1;
+    private static final byte OBJECT = 0, RECTANGLE = 1, ELLIPSE = 2, CIRCLE = 3, POLYGON = 4, POLYLINE = 5, TEXTURE = 6,
+            TILE_OBJECT = 7;
+    private static final byte STRING = 0, BOOLEAN = 1, INTEGER = 2, LONG = 3, FLOAT = 4, DOUBLE = 5, COLOR = 6, PROPERTIES = 7;
+
+    /**
+     * Bits of a stored cell, the tile id takes the remaining low bits.
+     */
+    private static final int FLIP_HORIZONTALLY = 0x80000000, FLIP_VERTICALLY = 0x40000000, ROTATION_SHIFT = 28,
+            ID_MASK = 0x0FFFFFFF;
+
+    /**
+     * Bits of a tile layer's run flags, set if the run values or lengths don't fit unsigned shorts.
+     */
+    private static final int WIDE_VALUES = 1, WIDE_LENGTHS = 2;
+
+    private BinaryMap() {
+    }
+
+    /**
+     * Compiles a tiled map into the binary format.
+     *
+     * @param map        The map to write, its images must be loaded from files.
+     * @param file       The binary file to write.
+     * @param sourceHash A hash of the source the map was loaded from, see {@link #readSourceHash(FileHandle)}.
+     */
+    public static void write(TiledMap map, FileHandle file, long sourceHash) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            Writer writer = new Writer(out, map, file);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(sourceHash);
+
+            // Images come first, the reader loads them before any region refers to them
+            writer.collectImages(map);
+            out.writeInt(writer.images.size);
+            for (String image : writer.images) {
+                writer.writeString(image);
+            }
+
+            writer.writeProperties(map.getProperties());
+            Array<TiledMapTileSet> tileSets = new Array<>();
+            for (TiledMapTileSet tileSet : map.getTileSets()) {
+                tileSets.add(tileSet);
+            }
+            out.writeInt(tileSets.size);
+            for (TiledMapTileSet tileSet : tileSets) {
+                writer.writeTileSet(tileSet);
+            }
+            writer.writeLayers(map.getLayers());
+        } catch (IOException e) {
+            throw new GdxRuntimeException("Unable to write binary map: " + file.path(), e);
+        }
+        file.writeBytes(bytes.toByteArray(), false);
+        Log.info(LOG_TAG, "WRITTEN: " + file.path());
+    }
+
+    /**
+     * Loads a tiled map from the binary format. Must be called on the render thread, as it creates the map's textures.
+     *
+     * @param file The binary file to read.
+     * @return The loaded map.
+     */
+    public static TiledMap read(FileHandle file) {
+        ByteBuffer buffer = open(file);
+        if (buffer.remaining() < 16 || buffer.getInt() != MAGIC) {
+            throw new GdxRuntimeException("Not a binary map: " + file.path());
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new GdxRuntimeException("Unsupported binary map version " + version + ": " + file.path());
+        }
+        buffer.getLong();
+
+        TiledMap map = new TiledMap();
+        Reader reader = new Reader(buffer);
+        Array<Texture> textures = reader.images;
+        try {
+            int images = buffer.getInt();
+            for (int i = 0; i < images; i++) {
+                textures.add(new Texture(file.parent().child(reader.readString())));
+            }
+
+            reader.readProperties(map.getProperties());
+            int tileSets = buffer.getInt();
+            for (int i = 0; i < tileSets; i++) {
+                map.getTileSets().addTileSet(reader.readTileSet());
+            }
+            reader.readLayers(map.getLayers());
+        } catch (RuntimeException e) {
+            for (Texture texture : textures) {
+                texture.dispose();
+            }
+            throw new GdxRuntimeException("Unable to read binary map: " + file.path(), e);
+        }
+        map.setOwnedResources(textures);
+        Log.info(LOG_TAG, "LOADED: " + file.path());
+        return map;
+    }
+
+    /**
+     * Reads the hash of the source a binary map was compiled from, to check whether it has to be compiled again.
+     *
+     * @param file The binary file.
+     * @return The hash given to {@link #write(TiledMap, FileHandle, long)}, 0 if the file doesn't exist or isn't a binary map of
+     * the current version.
+     */
+    public static long readSourceHash(FileHandle file) {
+        if (!file.exists()) {
+            return 0L;
+        }
+        ByteBuffer buffer = open(file);
+        if (buffer.remaining() < 16 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return 0L;
+        }
+        return buffer.getLong();
+    }
+
+    /**
+     * Memory-maps the file (in the big-endian order it was written in), falling back to reading it whole where files can't be
+     * mapped (e.g. inside jars or APKs).
+     *
+     * @param file The file to open.
+     * @return The buffer holding the file.
+     */
+    private static ByteBuffer open(FileHandle file) {
+        try {
+            return file.map().order(ByteOrder.BIG_ENDIAN);
+        } catch (GdxRuntimeException e) {
+            return ByteBuffer.wrap(file.readBytes());
+        }
+    }
+
+    /**
+     * Writes the parts of a map, collecting its images.
+     */
+    private static final class Writer {
+        private final DataOutputStream OUT;
+        private final TiledMap MAP;
+        private final Path DIRECTORY;
+
+        /**
+         * The image paths (relative to the binary file) in file order, and their indices by texture.
+         */
+        private final Array<String> images = new Array<>();
+        private final ObjectIntMap<Texture> imageIndices = new ObjectIntMap<>();
+
+        private final FloatArray floats = new FloatArray();
+
+        private Writer(DataOutputStream out, TiledMap map, FileHandle file) {
+            this.OUT = out;
+            this.MAP = map;
+            this.DIRECTORY = file.file().getAbsoluteFile().toPath().getParent();
+        }
+
+        private void collectImages(TiledMap map) {
+            for (TiledMapTileSet tileSet : map.getTileSets()) {
+                for (TiledMapTile tile : tileSet) {
+                    collectImages(tile);
+                }
+            }
+            collectImages(map.getLayers());
+        }
+
+        private void collectImages(TiledMapTile tile) {
+            if (tile instanceof AnimatedTiledMapTile) {
+                for (StaticTiledMapTile frame : ((AnimatedTiledMapTile) tile).getFrameTiles()) {
+                    collectImage(frame.getTextureRegion());
+                }
+            } else {
+                collectImage(tile.getTextureRegion());
+            }
+            collectImages(tile.getObjects());
+        }
+
+        private void collectImages(MapLayers layers) {
+            for (MapLayer layer : layers) {
+                if (layer instanceof MapGroupLayer) {
+                    collectImages(((MapGroupLayer) layer).getLayers());
+                } else if (layer instanceof TiledMapImageLayer) {
+                    collectImage(((TiledMapImageLayer) layer).getTextureRegion());
+                }
+                collectImages(layer.getObjects());
+            }
+        }
+
+        private void collectImages(MapObjects objects) {
+            for (MapObject object : objects) {
+                if (object instanceof TextureMapObject && !(object instanceof TiledMapTileMapObject)) {
+                    collectImage(((TextureMapObject) object).getTextureRegion());
+                }
+            }
+        }
+
+        private void collectImage(TextureRegion region) {
+            Texture texture = region.getTexture();
+            if (imageIndices.containsKey(texture)) {
+                return;
+            }
+            if (!(texture.getTextureData() instanceof FileTextureData)) {
+                throw new GdxRuntimeException("Map images must be loaded from files!");
+            }
+            FileHandle image = ((FileTextureData) texture.getTextureData()).getFileHandle();
+            Path path = DIRECTORY.relativize(image.file().getAbsoluteFile().toPath());
+            imageIndices.put(texture, images.size);
+            images.add(path.toString().replace('\\', '/'));
+        }
+
+        private void writeString(String string) throws IOException {
+            if (string == null) {
+                OUT.writeInt(-1);
+                return;
+            }
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            OUT.writeInt(bytes.length);
+            OUT.write(bytes);
+        }
+
+        private void writeProperties(MapProperties properties) throws IOException {
+            int count = 0;
+            for (Iterator<String> keys = properties.getKeys(); keys.hasNext(); keys.next()) {
+                count++;
+            }
+            OUT.writeInt(count);
+            for (Iterator<String> keys = properties.getKeys(); keys.hasNext(); ) {
+                String key = keys.next();
+                Object value = properties.get(key);
+                writeString(key);
+                if (value instanceof Boolean) {
+                    OUT.writeByte(BOOLEAN);
+                    OUT.writeBoolean((Boolean) value);
+                } else if (value instanceof Integer) {
+                    OUT.writeByte(INTEGER);
+                    OUT.writeInt((Integer) value);
+                } else if (value instanceof Long) {
+                    OUT.writeByte(LONG);
+                    OUT.writeLong((Long) value);
+                } else if (value instanceof Float) {
+                    OUT.writeByte(FLOAT);
+                    OUT.writeFloat((Float) value);
+                } else if (value instanceof Double) {
+                    OUT.writeByte(DOUBLE);
+                    OUT.writeDouble((Double) value);
+                } else if (value instanceof Color) {
+                    OUT.writeByte(COLOR);
+                    OUT.writeInt(Color.rgba8888((Color) value));
+                } else if (value instanceof MapProperties) {
+                    OUT.writeByte(PROPERTIES);
+                    writeProperties((MapProperties) value);
+                } else {
+                    OUT.writeByte(STRING);
+                    writeString(value == null ? null : value.toString());
+                }
+            }
+        }
+
+        private void writeRegion(TextureRegion region, float offsetX, float offsetY) throws IOException {
+            OUT.writeInt(imageIndices.get(region.getTexture(), -1));
+            OUT.writeInt(region.getRegionX());
+            OUT.writeInt(region.getRegionY());
+            OUT.writeInt(region.getRegionWidth());
+            OUT.writeInt(region.getRegionHeight());
+            OUT.writeFloat(offsetX);
+            OUT.writeFloat(offsetY);
+        }
+
+        private void writeTileSet(TiledMapTileSet tileSet) throws IOException {
+            writeString(tileSet.getName());
+            writeProperties(tileSet.getProperties());
+            OUT.writeInt(tileSet.size());
+            for (TiledMapTile tile : tileSet) {
+                OUT.writeInt(tile.getId());
+                writeProperties(tile.getProperties());
+                writeObjects(tile.getObjects());
+                if (tile instanceof AnimatedTiledMapTile) {
+                    AnimatedTiledMapTile animated = (AnimatedTiledMapTile) tile;
+                    StaticTiledMapTile[] frames = animated.getFrameTiles();
+                    int[] intervals = animated.getAnimationIntervals();
+                    OUT.writeByte(ANIMATED_TILE);
+                    OUT.writeInt(frames.length);
+                    for (int i = 0; i < frames.length; i++) {
+                        OUT.writeInt(intervals[i]);
+                        writeRegion(frames[i].getTextureRegion(), frames[i].getOffsetX(), frames[i].getOffsetY());
+                    }
+                } else {
+                    OUT.writeByte(STATIC_TILE);
+                    writeRegion(tile.getTextureRegion(), tile.getOffsetX(), tile.getOffsetY());
+                }
+            }
+        }
+
+        private void writeLayers(MapLayers layers) throws IOException {
+            OUT.writeInt(layers.size());
+            for (MapLayer layer : layers) {
+                byte type = layer instanceof TiledMapTileLayer ? TILE_LAYER : layer instanceof MapGroupLayer ? GROUP_LAYER :
+                        layer instanceof TiledMapImageLayer ? IMAGE_LAYER : OBJECT_LAYER;
+                OUT.writeByte(type);
+                writeString(layer.getName());
+                OUT.writeBoolean(layer.isVisible());
+                OUT.writeFloat(layer.getOpacity());
+                OUT.writeFloat(layer.getOffsetX());
+                OUT.writeFloat(layer.getOffsetY());
+                OUT.writeFloat(layer.getParallaxX());
+                OUT.writeFloat(layer.getParallaxY());
+                OUT.writeInt(Color.rgba8888(layer.getTintColor()));
+                writeProperties(layer.getProperties());
+                writeObjects(layer.getObjects());
+
+                if (type == TILE_LAYER) {
+                    writeTileLayer((TiledMapTileLayer) layer);
+                } else if (type == GROUP_LAYER) {
+                    writeLayers(((MapGroupLayer) layer).getLayers());
+                } else if (type == IMAGE_LAYER) {
+                    TiledMapImageLayer image = (TiledMapImageLayer) layer;
+                    writeRegion(image.getTextureRegion(), image.getX(), image.getY());
+                    OUT.writeBoolean(image.isRepeatX());
+                    OUT.writeBoolean(image.isRepeatY());
+                }
+            }
+        }
+
+        private void writeTileLayer(TiledMapTileLayer layer) throws IOException {
+            int width = layer.getWidth(), height = layer.getHeight();
+            OUT.writeInt(width);
+            OUT.writeInt(height);
+            OUT.writeInt(layer.getTileWidth());
+            OUT.writeInt(layer.getTileHeight());
+
+            // Run-length encode the cells row by row
+            IntArray lengths = new IntArray(), values = new IntArray();
+            int flags = 0;
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    int value = encode(layer.getCell(x, y));
+                    if (values.size > 0 && values.peek() == value) {
+                        lengths.incr(lengths.size - 1, 1);
+                    } else {
+                        lengths.add(1);
+                        values.add(value);
+                    }
+                }
+            }
+            for (int i = 0; i < values.size; i++) {
+                flags |= (values.get(i) & 0xFFFF0000) != 0 ? WIDE_VALUES : 0;
+                flags |= (lengths.get(i) & 0xFFFF0000) != 0 ? WIDE_LENGTHS : 0;
+            }
+
+            OUT.writeByte(flags);
+            OUT.writeInt(values.size);
+            writePacked(lengths, (flags & WIDE_LENGTHS) != 0);
+            writePacked(values, (flags & WIDE_VALUES) != 0);
+        }
+
+        private int encode(Cell cell) {
+            if (cell == null || cell.getTile() == null) {
+                return 0;
+            }
+            int id = cell.getTile().getId();
+            if ((id & ID_MASK) != id || MAP.getTileSets().getTile(id) != cell.getTile()) {
+                throw new GdxRuntimeException("Cell tile " + id + " is not in the map's tilesets!");
+            }
+            return id | (cell.getFlipHorizontally() ? FLIP_HORIZONTALLY : 0) |
+                    (cell.getFlipVertically() ? FLIP_VERTICALLY : 0) | (cell.getRotation() & 3) << ROTATION_SHIFT;
+        }
+
+        private void writePacked(IntArray array, boolean wide) throws IOException {
+            for (int i = 0; i < array.size; i++) {
+                if (wide) {
+                    OUT.writeInt(array.get(i));
+                } else {
+                    OUT.writeShort(array.get(i));
+                }
+            }
+        }
+
+        private void writeObjects(MapObjects objects) throws IOException {
+            // Headers first, then all shapes as one float array
+            floats.clear();
+            OUT.writeInt(objects.getCount());
+            for (MapObject object : objects) {
+                writeString(object.getName());
+                OUT.writeBoolean(object.isVisible());
+                OUT.writeFloat(object.getOpacity());
+                OUT.writeInt(Color.rgba8888(object.getColor()));
+                writeProperties(object.getProperties());
+
+                if (object instanceof RectangleMapObject) {
+                    Rectangle r = ((RectangleMapObject) object).getRectangle();
+                    OUT.writeByte(RECTANGLE);
+                    floats.addAll(r.x, r.y, r.width, r.height);
+                } else if (object instanceof EllipseMapObject) {
+                    Ellipse e = ((EllipseMapObject) object).getEllipse();
+                    OUT.writeByte(ELLIPSE);
+                    floats.addAll(e.x, e.y, e.width, e.height);
+                } else if (object instanceof CircleMapObject) {
+                    Circle c = ((CircleMapObject) object).getCircle();
+                    OUT.writeByte(CIRCLE);
+                    floats.addAll(c.x, c.y, c.radius);
+                } else if (object instanceof PolygonMapObject) {
+                    Polygon p = ((PolygonMapObject) object).getPolygon();
+                    OUT.writeByte(POLYGON);
+                    OUT.writeInt(p.getVertices().length);
+                    floats.addAll(p.getX(), p.getY(), p.getOriginX(), p.getOriginY(), p.getRotation(), p.getScaleX(),
+                            p.getScaleY());
+                    floats.addAll(p.getVertices());
+                } else if (object instanceof PolylineMapObject) {
+                    Polyline p = ((PolylineMapObject) object).getPolyline();
+                    OUT.writeByte(POLYLINE);
+                    OUT.writeInt(p.getVertices().length);
+                    floats.addAll(p.getX(), p.getY(), p.getOriginX(), p.getOriginY(), p.getRotation(), p.getScaleX(),
+                            p.getScaleY());
+                    floats.addAll(p.getVertices());
+                } else if (object instanceof TextureMapObject) {
+                    TextureMapObject t = (TextureMapObject) object;
+                    if (t instanceof TiledMapTileMapObject) {
+                        TiledMapTileMapObject tile = (TiledMapTileMapObject) t;
+                        OUT.writeByte(TILE_OBJECT);
+                        OUT.writeInt(tile.getTile().getId());
+                        OUT.writeBoolean(tile.isFlipHorizontally());
+                        OUT.writeBoolean(tile.isFlipVertically());
+                    } else {
+                        OUT.writeByte(TEXTURE);
+                        writeRegion(t.getTextureRegion(), 0f, 0f);
+                    }
+                    floats.addAll(t.getX(), t.getY(), t.getOriginX(), t.getOriginY(), t.getRotation(), t.getScaleX(),
+                            t.getScaleY());
+                } else {
+                    if (object.getClass() != MapObject.class) {
+                        Log.warn(LOG_TAG, "Storing unsupported " + object.getClass().getSimpleName() + " as plain object!");
+                    }
+                    OUT.writeByte(OBJECT);
+                }
+            }
+
+            OUT.writeInt(floats.size);
+            for (int i = 0; i < floats.size; i++) {
+                OUT.writeFloat(floats.get(i));
+            }
+        }
+    }
+
+    /**
+     * Reads the parts of a map from its buffer.
+     */
+    private static final class Reader {
+        private final ByteBuffer BUFFER;
+
+        /**
+         * The loaded images by index, and the tiles of the read tilesets by id.
+         */
+        private final Array<Texture> images = new Array<>();
+        private final IntMap<TiledMapTile> tiles = new IntMap<>();
+
+        /**
+         * Reused for the packed runs of tile layers and the shapes of object lists.
+         */
+        private int[] lengths = new int[0], values = new int[0];
+        private float[] floats = new float[0];
+
+        private Reader(ByteBuffer buffer) {
+            this.BUFFER = buffer;
+        }
+
+        private String readString() {
+            int length = BUFFER.getInt();
+            if (length < 0) {
+                return null;
+            }
+            String string;
+            if (BUFFER.hasArray()) {
+                string = new String(BUFFER.array(), BUFFER.arrayOffset() + BUFFER.position(), length, StandardCharsets.UTF_8);
+            } else {
+                byte[] bytes = new byte[length];
+                BUFFER.duplicate().get(bytes);
+                string = new String(bytes, StandardCharsets.UTF_8);
+            }
+            BUFFER.position(BUFFER.position() + length);
+            return string;
+        }
+
+        private boolean readBoolean() {
+            return BUFFER.get() != 0;
+        }
+
+        private void readProperties(MapProperties properties) {
+            int count = BUFFER.getInt();
+            for (int i = 0; i < count; i++) {
+                String key = readString();
+                byte type = BUFFER.get();
+                switch (type) {
+                    case BOOLEAN:
+                        properties.put(key, readBoolean());
+                        break;
+                    case INTEGER:
+                        properties.put(key, BUFFER.getInt());
+                        break;
+                    case LONG:
+                        properties.put(key, BUFFER.getLong());
+                        break;
+                    case FLOAT:
+                        properties.put(key, BUFFER.getFloat());
+                        break;
+                    case DOUBLE:
+                        properties.put(key, BUFFER.getDouble());
+                        break;
+                    case COLOR:
+                        properties.put(key, new Color(BUFFER.getInt()));
+                        break;
+                    case PROPERTIES:
+                        MapProperties nested = new MapProperties();
+                        readProperties(nested);
+                        properties.put(key, nested);
+                        break;
+                    case STRING:
+                        properties.put(key, readString());
+                        break;
+                    default:
+                        throw new GdxRuntimeException("Unknown property type " + type + "!");
+                }
+            }
+        }
+
+        private StaticTiledMapTile readTile() {
+            TextureRegion region = readRegion();
+            StaticTiledMapTile tile = new StaticTiledMapTile(region);
+            tile.setOffsetX(BUFFER.getFloat());
+            tile.setOffsetY(BUFFER.getFloat());
+            return tile;
+        }
+
+        private TextureRegion readRegion() {
+            Texture texture = images.get(BUFFER.getInt());
+            return new TextureRegion(texture, BUFFER.getInt(), BUFFER.getInt(), BUFFER.getInt(), BUFFER.getInt());
+        }
+
+        private TiledMapTileSet readTileSet() {
+            TiledMapTileSet tileSet = new TiledMapTileSet();
+            tileSet.setName(readString());
+            readProperties(tileSet.getProperties());
+
+            int count = BUFFER.getInt();
+            for (int i = 0; i < count; i++) {
+                int id = BUFFER.getInt();
+                MapProperties properties = new MapProperties();
+                readProperties(properties);
+                MapObjects objects = new MapObjects();
+                readObjects(objects);
+
+                TiledMapTile tile;
+                if (BUFFER.get() == ANIMATED_TILE) {
+                    int frameCount = BUFFER.getInt();
+                    IntArray intervals = new IntArray(frameCount);
+                    Array<StaticTiledMapTile> frames = new Array<>(frameCount);
+                    for (int f = 0; f < frameCount; f++) {
+                        intervals.add(BUFFER.getInt());
+                        frames.add(readTile());
+                    }
+                    tile = new AnimatedTiledMapTile(intervals, frames);
+                } else {
+                    tile = readTile();
+                }
+                tile.setId(id);
+                tile.getProperties().putAll(properties);
+                for (MapObject object : objects) {
+                    tile.getObjects().add(object);
+                }
+                tileSet.putTile(id, tile);
+                tiles.put(id, tile);
+            }
+            return tileSet;
+        }
+
+        private void readLayers(MapLayers layers) {
+            int count = BUFFER.getInt();
+            for (int i = 0; i < count; i++) {
+                byte type = BUFFER.get();
+                String name = readString();
+                boolean visible = readBoolean();
+                float opacity = BUFFER.getFloat(), offsetX = BUFFER.getFloat(), offsetY = BUFFER.getFloat();
+                float parallaxX = BUFFER.getFloat(), parallaxY = BUFFER.getFloat();
+                Color tint = new Color(BUFFER.getInt());
+                MapProperties properties = new MapProperties();
+                readProperties(properties);
+                MapObjects objects = new MapObjects();
+                readObjects(objects);
+
+                MapLayer layer;
+                if (type == TILE_LAYER) {
+                    layer = readTileLayer();
+                } else if (type == GROUP_LAYER) {
+                    MapGroupLayer group = new MapGroupLayer();
+                    readLayers(group.getLayers());
+                    for (MapLayer child : group.getLayers()) {
+                        child.setParent(group);
+                    }
+                    layer = group;
+                } else if (type == IMAGE_LAYER) {
+                    TextureRegion region = readRegion();
+                    float x = BUFFER.getFloat(), y = BUFFER.getFloat();
+                    layer = new TiledMapImageLayer(region, x, y, readBoolean(), readBoolean());
+                } else {
+                    layer = new MapLayer();
+                }
+
+                layer.setName(name);
+                layer.setVisible(visible);
+                layer.setOpacity(opacity);
+                layer.setOffsetX(offsetX);
+                layer.setOffsetY(offsetY);
+                layer.setParallaxX(parallaxX);
+                layer.setParallaxY(parallaxY);
+                layer.setTintColor(tint);
+                layer.getProperties().putAll(properties);
+                for (MapObject object : objects) {
+                    layer.getObjects().add(object);
+                }
+                layers.add(layer);
+            }
+        }
+
+        private TiledMapTileLayer readTileLayer() {
+            int width = BUFFER.getInt(), height = BUFFER.getInt();
+            TiledMapTileLayer layer = new TiledMapTileLayer(width, height, BUFFER.getInt(), BUFFER.getInt());
+
+            int flags = BUFFER.get();
+            int runs = BUFFER.getInt();
+            if (values.length < runs) {
+                lengths = new int[runs];
+                values = new int[runs];
+            }
+            readPacked(lengths, runs, (flags & WIDE_LENGTHS) != 0);
+            readPacked(values, runs, (flags & WIDE_VALUES) != 0);
+
+            int x = 0, y = 0;
+            for (int r = 0; r < runs; r++) {
+                int value = values[r];
+                TiledMapTile tile = value == 0 ? null : tiles.get(value & ID_MASK);
+                for (int n = lengths[r]; n > 0; n--) {
+                    if (tile != null) {
+                        Cell cell = new Cell();
+                        cell.setTile(tile);
+                        cell.setFlipHorizontally((value & FLIP_HORIZONTALLY) != 0);
+                        cell.setFlipVertically((value & FLIP_VERTICALLY) != 0);
+                        cell.setRotation(value >>> ROTATION_SHIFT & 3);
+                        layer.setCell(x, y, cell);
+                    }
+                    if (++x == width) {
+                        x = 0;
+                        y++;
+                    }
+                }
+            }
+            return layer;
+        }
+
+        private void readPacked(int[] out, int count, boolean wide) {
+            if (wide) {
+                BUFFER.asIntBuffer().get(out, 0, count);
+                BUFFER.position(BUFFER.position() + count * 4);
+                return;
+            }
+            short[] packed = new short[count];
+            BUFFER.asShortBuffer().get(packed);
+            BUFFER.position(BUFFER.position() + count * 2);
+            for (int i = 0; i < count; i++) {
+                out[i] = packed[i] & 0xFFFF;
+            }
+        }
+
+        private void readObjects(MapObjects objects) {
+            int count = BUFFER.getInt();
+            if (count == 0) {
+                BUFFER.getInt();
+                return;
+            }
+
+            // Headers first, then all shapes as one float array
+            MapObject[] read = new MapObject[count];
+            byte[] types = new byte[count];
+            for (int i = 0; i < count; i++) {
+                String name = readString();
+                boolean visible = readBoolean();
+                float opacity = BUFFER.getFloat();
+                Color color = new Color(BUFFER.getInt());
+                MapProperties properties = new MapProperties();
+                readProperties(properties);
+
+                byte type = types[i] = BUFFER.get();
+                MapObject object;
+                switch (type) {
+                    case RECTANGLE:
+                        object = new RectangleMapObject();
+                        break;
+                    case ELLIPSE:
+                        object = new EllipseMapObject();
+                        break;
+                    case CIRCLE:
+                        object = new CircleMapObject();
+                        break;
+                    case POLYGON:
+                        object = new PolygonMapObject(new float[BUFFER.getInt()]);
+                        break;
+                    case POLYLINE:
+                        object = new PolylineMapObject(new float[BUFFER.getInt()]);
+                        break;
+                    case TILE_OBJECT:
+                        TiledMapTile tile = tiles.get(BUFFER.getInt());
+                        object = new TiledMapTileMapObject(tile, readBoolean(), readBoolean());
+                        break;
+                    case TEXTURE:
+                        TextureRegion region = readRegion();
+                        BUFFER.getFloat();
+                        BUFFER.getFloat();
+                        object = new TextureMapObject(region);
+                        break;
+                    case OBJECT:
+                        object = new MapObject();
+                        break;
+                    default:
+                        throw new GdxRuntimeException("Unknown object type " + type + "!");
+                }
+                object.setName(name);
+                object.setVisible(visible);
+                object.setOpacity(opacity);
+                object.setColor(color);
+                object.getProperties().putAll(properties);
+                read[i] = object;
+            }
+
+            int floatCount = BUFFER.getInt();
+            if (floats.length < floatCount) {
+                floats = new float[floatCount];
+            }
+            BUFFER.asFloatBuffer().get(floats, 0, floatCount);
+            BUFFER.position(BUFFER.position() + floatCount * 4);
+
+            float[] f = floats;
+            int o = 0;
+            for (int i = 0; i < count; i++) {
+                MapObject object = read[i];
+                switch (types[i]) {
+                    case RECTANGLE:
+                        ((RectangleMapObject) object).getRectangle().set(f[o], f[o + 1], f[o + 2], f[o + 3]);
+                        o += 4;
+                        break;
+                    case ELLIPSE:
+                        ((EllipseMapObject) object).getEllipse().set(f[o], f[o + 1], f[o + 2], f[o + 3]);
+                        o += 4;
+                        break;
+                    case CIRCLE:
+                        ((CircleMapObject) object).getCircle().set(f[o], f[o + 1], f[o + 2]);
+                        o += 3;
+                        break;
+                    case POLYGON:
+                        Polygon polygon = ((PolygonMapObject) object).getPolygon();
+                        float[] vertices = polygon.getVertices();
+                        System.arraycopy(f, o + 7, vertices, 0, vertices.length);
+                        polygon.setVertices(vertices);
+                        polygon.setPosition(f[o], f[o + 1]);
+                        polygon.setOrigin(f[o + 2], f[o + 3]);
+                        polygon.setRotation(f[o + 4]);
+                        polygon.setScale(f[o + 5], f[o + 6]);
+                        o += 7 + vertices.length;
+                        break;
+                    case POLYLINE:
+                        Polyline polyline = ((PolylineMapObject) object).getPolyline();
+                        vertices = polyline.getVertices();
+                        System.arraycopy(f, o + 7, vertices, 0, vertices.length);
+                        polyline.setVertices(vertices);
+                        polyline.setPosition(f[o], f[o + 1]);
+                        polyline.setOrigin(f[o + 2], f[o + 3]);
+                        polyline.setRotation(f[o + 4]);
+                        polyline.setScale(f[o + 5], f[o + 6]);
+                        o += 7 + vertices.length;
+                        break;
+                    case TEXTURE:
+                    case TILE_OBJECT:
+                        TextureMapObject t = (TextureMapObject) object;
+                        t.setX(f[o]);
+                        t.setY(f[o + 1]);
+                        t.setOriginX(f[o + 2]);
+                        t.setOriginY(f[o + 3]);
+                        t.setRotation(f[o + 4]);
+                        t.setScaleX(f[o + 5]);
+                        t.setScaleY(f[o + 6]);
+                        o += 7;
+                        break;
+                    default:
+                        break;
+                }
+                objects.add(object);
+            }
+        }
+    }
+}
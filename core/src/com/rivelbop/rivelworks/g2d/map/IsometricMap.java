@@ -1,6 +1,7 @@
 package com.rivelbop.rivelworks.g2d.map;
 
 import com.badlogic.gdx.maps.tiled.renderers.IsometricTiledMapRenderer;
+import com.rivelbop.rivelworks.io.Assets;
 
 /**
  * Handles loading and rendering isometric maps.
@@ -17,4 +18,15 @@ public class IsometricMap extends TileMap {
         super(fileName);
         renderer = new IsometricTiledMapRenderer(map);
     }
+
+    /**
+     * Create an isometric renderer off of a map loaded by the provided assets, see {@link TileMap#TileMap(Assets, String)}.
+     *
+     * @param assets   The assets that loaded the 'tmx' file.
+     * @param fileName The name of the loaded 'tmx' file.
+     */
+    public IsometricMap(Assets assets, String fileName) {
+        super(assets, fileName);
+        renderer = new IsometricTiledMapRenderer(map);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,336 @@
+package com.rivelbop.rivelworks.g2d.map;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.physics.box2d.Body;
+import com.badlogic.gdx.physics.box2d.BodyDef;
+import com.badlogic.gdx.physics.box2d.ChainShape;
+import com.badlogic.gdx.physics.box2d.PolygonShape;
+import com.badlogic.gdx.physics.box2d.Shape;
+import com.badlogic.gdx.physics.box2d.World;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.IntArray;
+import com.esotericsoftware.minlog.Log;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Builds static Box2D collision from map geometry: merging grids of solid cells into few boxes, and adding boxes and polygons
+ * as fixtures of a shared static body. Input geometry is never modified, and every temporary shape is disposed.
+ *
+ * @author David Jerzak (RivelBop)
+ */
+public final class MapCollision {
+    private static final String LOG_TAG = MapCollision.class.getSimpleName();
+
+    /**
+     * Identifies collision cache files ("RWCL") and their layout version.
+     */
+    private static final int CACHE_MAGIC = 0x5257434C, CACHE_VERSION = 1;
+
+    /**
+     * The maximum number of vertices of a Box2D polygon shape, larger polygons become chain loops.
+     */
+    private static final int MAX_POLYGON_VERTICES = 8;
+
+    /**
+     * Directions of the outline edges, counter-clockwise so a left turn is the next direction.
+     */
+    private static final int EAST = 0, NORTH = 1, WEST = 2, SOUTH = 3;
+
+    private static final Vector2 CENTER = new Vector2();
+
+    private MapCollision() {
+    }
+
+    /**
+     * Merges the solid cells of a grid into as few rectangles as possible (greedy meshing): each rectangle is grown from its
+     * bottom-left cell along the row first, then upwards as long as the whole span is solid.
+     *
+     * @param solid  Whether each cell is solid, row-major (cell (x, y) at y * width + x).
+     * @param width  The number of cells along the x-axis.
+     * @param height The number of cells along the y-axis.
+     * @param out    The array to add the rectangles to, as x, y, width and height in cells.
+     * @return The out array.
+     */
+    public static IntArray greedyMesh(boolean[] solid, int width, int height, IntArray out) {
+        boolean[] used = new boolean[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int i = y * width + x;
+                if (!solid[i] || used[i]) {
+                    continue;
+                }
+
+                int spanWidth = 1;
+                while (x + spanWidth < width && solid[i + spanWidth] && !used[i + spanWidth]) {
+                    spanWidth++;
+                }
+                int spanHeight = 1;
+                grow:
+                while (y + spanHeight < height) {
+                    int row = (y + spanHeight) * width + x;
+                    for (int s = 0; s < spanWidth; s++) {
+                        if (!solid[row + s] || used[row + s]) {
+                            break grow;
+                        }
+                    }
+                    spanHeight++;
+                }
+
+                for (int sy = 0; sy < spanHeight; sy++) {
+                    int row = (y + sy) * width + x;
+                    for (int s = 0; s < spanWidth; s++) {
+                        used[row + s] = true;
+                    }
+                }
+                out.add(x, y, spanWidth, spanHeight);
+                x += spanWidth - 1;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Traces the outlines of the solid regions of a grid into closed loops along the cell edges, keeping only the corners.
+     * Outlines run counter-clockwise around solid cells and clockwise around holes. Where two solid cells touch diagonally, the
+     * outline turns towards the solid cell, so they are only connected through their shared edges (a loop may touch itself at
+     * such a corner, which chain shapes allow).
+     *
+     * @param solid  Whether each cell is solid, row-major (cell (x, y) at y * width + x).
+     * @param width  The number of cells along the x-axis.
+     * @param height The number of cells along the y-axis.
+     * @param out    The array to add the loops to, each as its number of corners followed by their x and y (in cell corners).
+     * @return The out array.
+     */
+    public static IntArray traceContours(boolean[] solid, int width, int height, IntArray out) {
+        // Outgoing boundary edges of each grid corner (with the solid cell on their left), as direction bits
+        int stride = width + 1;
+        byte[] edges = new byte[stride * (height + 1)];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                if (!solid[y * width + x]) {
+                    continue;
+                }
+                if (y == 0 || !solid[(y - 1) * width + x]) {
+                    edges[y * stride + x] |= 1 << EAST;
+                }
+                if (x == width - 1 || !solid[y * width + x + 1]) {
+                    edges[y * stride + x + 1] |= 1 << NORTH;
+                }
+                if (y == height - 1 || !solid[(y + 1) * width + x]) {
+                    edges[(y + 1) * stride + x + 1] |= 1 << WEST;
+                }
+                if (x == 0 || !solid[y * width + x - 1]) {
+                    edges[(y + 1) * stride + x] |= 1 << SOUTH;
+                }
+            }
+        }
+
+        // Each loop starts at its lowest, leftmost corner (the first with edges left), which is always a turn
+        for (int start = 0; start < edges.length; start++) {
+            while (edges[start] != 0) {
+                int countIndex = out.size;
+                out.add(0);
+                int corners = 0;
+
+                int vertex = start, direction = Integer.numberOfTrailingZeros(edges[start]);
+                int previous = -1;
+                do {
+                    edges[vertex] &= ~(1 << direction);
+                    if (direction != previous) {
+                        out.add(vertex % stride, vertex / stride);
+                        corners++;
+                        previous = direction;
+                    }
+                    vertex += direction == EAST ? 1 : direction == NORTH ? stride : direction == WEST ? -1 : -stride;
+
+                    // Left turn first, then straight, then right
+                    int left = (direction + 1) & 3, right = (direction + 3) & 3;
+                    direction = (edges[vertex] & 1 << left) != 0 ? left : (edges[vertex] & 1 << direction) != 0 ? direction :
+                            (edges[vertex] & 1 << right) != 0 ? right : -1;
+                } while (vertex != start && direction >= 0);
+
+                out.set(countIndex, corners);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Creates an empty static body at the origin, to add map fixtures to.
+     *
+     * @param world The world to create the body in.
+     * @return The static body.
+     */
+    public static Body createStaticBody(World world) {
+        BodyDef bodyDef = new BodyDef();
+        bodyDef.type = BodyDef.BodyType.StaticBody;
+        return world.createBody(bodyDef);
+    }
+
+    /**
+     * Adds a box fixture to a body at the origin.
+     *
+     * @param body   The body to add the fixture to.
+     * @param x      The x-position of the box (based on left, in pixels).
+     * @param y      The y-position of the box (based on bottom, in pixels).
+     * @param width  The width of the box (in pixels).
+     * @param height The height of the box (in pixels).
+     * @param PPM    Pixel to meter conversion.
+     */
+    public static void addBox(Body body, float x, float y, float width, float height, float PPM) {
+        PolygonShape shape = new PolygonShape();
+        shape.setAsBox(width / 2f / PPM, height / 2f / PPM, CENTER.set((x + width / 2f) / PPM, (y + height / 2f) / PPM), 0f);
+        body.createFixture(shape, 0f);
+        shape.dispose();
+    }
+
+    /**
+     * Adds a polygon fixture to a body at the origin, see {@link #createPolygonShape(float[], float)}.
+     *
+     * @param body     The body to add the fixture to.
+     * @param vertices The world vertices of the polygon (in pixels), not modified.
+     * @param PPM      Pixel to meter conversion.
+     */
+    public static void addPolygon(Body body, float[] vertices, float PPM) {
+        Shape shape = createPolygonShape(vertices, PPM);
+        if (shape != null) {
+            body.createFixture(shape, 0f);
+            shape.dispose();
+        }
+    }
+
+    /**
+     * Creates the shape of a polygon. Convex polygons of up to 8 vertices become polygon shapes, others (which Box2D would
+     * replace by their convex hull) become chain loops along their outline.
+     *
+     * @param vertices The vertices of the polygon (in pixels), not modified.
+     * @param PPM      Pixel to meter conversion.
+     * @return The shape, to be disposed by the caller, null if the polygon has less than 3 vertices.
+     */
+    public static Shape createPolygonShape(float[] vertices, float PPM) {
+        if (vertices.length < 6) {
+            return null;
+        }
+        float[] scaled = new float[vertices.length];
+        for (int i = 0; i < vertices.length; i++) {
+            scaled[i] = vertices[i] / PPM;
+        }
+
+        if (scaled.length / 2 <= MAX_POLYGON_VERTICES && isConvex(scaled)) {
+            PolygonShape shape = new PolygonShape();
+            shape.set(scaled);
+            return shape;
+        }
+        ChainShape shape = new ChainShape();
+        shape.createLoop(scaled);
+        return shape;
+    }
+
+    /**
+     * Adds a chain fixture to a body at the origin.
+     *
+     * @param body     The body to add the fixture to.
+     * @param vertices The world vertices of the chain (in meters).
+     * @param loop     Whether the last vertex connects back to the first.
+     */
+    public static void addChain(Body body, float[] vertices, boolean loop) {
+        ChainShape shape = new ChainShape();
+        if (loop) {
+            shape.createLoop(vertices);
+        } else {
+            shape.createChain(vertices);
+        }
+        body.createFixture(shape, 0f);
+        shape.dispose();
+    }
+
+    /**
+     * @param vertices The vertices of a polygon.
+     * @return Whether the polygon is convex (all turns in the same direction).
+     */
+    private static boolean isConvex(float[] vertices) {
+        int n = vertices.length / 2, sign = 0;
+        for (int i = 0; i < n; i++) {
+            int a = i * 2, b = (i + 1) % n * 2, c = (i + 2) % n * 2;
+            float cross = (vertices[b] - vertices[a]) * (vertices[c + 1] - vertices[b + 1]) -
+                    (vertices[b + 1] - vertices[a + 1]) * (vertices[c] - vertices[b]);
+            if (cross != 0f) {
+                int turn = cross > 0f ? 1 : -1;
+                if (sign != 0 && turn != sign) {
+                    return false;
+                }
+                sign = turn;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hashes the contents of a map file together with what was generated from it (64-bit FNV-1a).
+     *
+     * @param data The bytes of the map file.
+     * @param key  Identifies the generated geometry, e.g. the layer and generation mode.
+     * @return The hash.
+     */
+    public static long hash(byte[] data, String key) {
+        long hash = 0xCBF29CE484222325L;
+        for (byte b : data) {
+            hash = (hash ^ (b & 0xFF)) * 0x100000001B3L;
+        }
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash = (hash ^ (b & 0xFF)) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Reads geometry from a collision cache file, if it was written for the same hash.
+     *
+     * @param file The cache file.
+     * @param hash The hash of the map and geometry, see {@link #hash(byte[], String)}.
+     * @return The cached geometry, null if the file doesn't exist or is outdated.
+     */
+    public static IntArray readCache(FileHandle file, long hash) {
+        if (!file.exists()) {
+            return null;
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(file.readBytes());
+            if (buffer.remaining() < 20 || buffer.getInt() != CACHE_MAGIC || buffer.getInt() != CACHE_VERSION ||
+                    buffer.getLong() != hash) {
+                return null;
+            }
+            int size = buffer.getInt();
+            if (size < 0 || size > buffer.remaining() / 4) {
+                return null;
+            }
+            IntArray geometry = new IntArray(size);
+            buffer.asIntBuffer().get(geometry.setSize(size), 0, size);
+            return geometry;
+        } catch (GdxRuntimeException e) {
+            Log.warn(LOG_TAG, "Unable to read collision cache: " + file.path(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Writes geometry to a collision cache file, logging a warning if the file can't be written.
+     *
+     * @param file     The cache file.
+     * @param hash     The hash of the map and geometry, see {@link #hash(byte[], String)}.
+     * @param geometry The geometry to cache.
+     */
+    public static void writeCache(FileHandle file, long hash, IntArray geometry) {
+        ByteBuffer buffer = ByteBuffer.allocate(20 + geometry.size * 4);
+        buffer.putInt(CACHE_MAGIC).putInt(CACHE_VERSION).putLong(hash).putInt(geometry.size);
+        buffer.asIntBuffer().put(geometry.items, 0, geometry.size);
+        try {
+            file.writeBytes(buffer.array(), false);
+        } catch (GdxRuntimeException e) {
+            Log.warn(LOG_TAG, "Unable to write collision cache: " + file.path(), e);
+        }
+    }
+}
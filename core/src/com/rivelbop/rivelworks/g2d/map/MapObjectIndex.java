@@ -0,0 +1,614 @@
+package com.rivelbop.rivelworks.g2d.map;
+
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.MapObject;
+import com.badlogic.gdx.maps.MapObjects;
+import com.badlogic.gdx.maps.objects.CircleMapObject;
+import com.badlogic.gdx.maps.objects.EllipseMapObject;
+import com.badlogic.gdx.maps.objects.PolygonMapObject;
+import com.badlogic.gdx.maps.objects.PolylineMapObject;
+import com.badlogic.gdx.maps.objects.RectangleMapObject;
+import com.badlogic.gdx.math.Circle;
+import com.badlogic.gdx.math.Ellipse;
+import com.badlogic.gdx.math.Intersector;
+import com.badlogic.gdx.math.Polygon;
+import com.badlogic.gdx.math.Polyline;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
+
+import java.util.Arrays;
+
+/**
+ * A uniform grid over the shapes of an object layer ({@link Rectangle}, {@link Ellipse}, {@link Circle}, {@link Polygon} and
+ * {@link Polyline} objects), answering region, point and ray queries against the exact shapes without allocating. Other
+ * objects are not indexed.
+ * <p>
+ * The grid is built lazily by the first query and only rebuilt after {@link #invalidate()}, or when the number of objects in
+ * the layer changes. Moving or reshaping an object requires an {@link #invalidate()}.
+ *
+ * @author David Jerzak (RivelBop)
+ */
+public class MapObjectIndex {
+    private static final byte RECTANGLE = 0, ELLIPSE = 1, CIRCLE = 2, POLYGON = 3, POLYLINE = 4;
+
+    /**
+     * The layer whose objects are indexed.
+     */
+    public final MapLayer LAYER;
+
+    /**
+     * The width and height of a cell, chosen from the objects' sizes if not positive.
+     */
+    private final float CELL_SIZE;
+
+    /**
+     * The indexed objects, their shapes and shape types, and their bounds by index.
+     */
+    private MapObject[] objects = new MapObject[0];
+    private Object[] shapes = new Object[0];
+    private byte[] types = new byte[0];
+    private float[] minX = new float[0], minY = new float[0], maxX = new float[0], maxY = new float[0];
+    private int size;
+
+    /**
+     * Object indices by cell, those of cell i in cellItems[cellStarts[i]] to cellItems[cellStarts[i + 1]].
+     */
+    private int[] cellStarts = new int[1], cellItems = new int[0];
+    private float originX, originY, cellSize = 1f;
+    private int columns, rows;
+
+    /**
+     * Query stamp of each object, so an object in several cells is tested once per query.
+     */
+    private int[] stamps = new int[0];
+    private int stamp;
+
+    private boolean dirty = true;
+    private int indexedCount = -1;
+    private float hitFraction = 1f;
+
+    /**
+     * @param layer    The layer whose objects are indexed.
+     * @param cellSize The width and height of a cell, about twice the size of the common objects works best.
+     */
+    public MapObjectIndex(MapLayer layer, float cellSize) {
+        this.LAYER = layer;
+        this.CELL_SIZE = cellSize;
+    }
+
+    /**
+     * Creates an index whose cell size is chosen from the sizes of the layer's objects.
+     *
+     * @param layer The layer whose objects are indexed.
+     */
+    public MapObjectIndex(MapLayer layer) {
+        this(layer, 0f);
+    }
+
+    /**
+     * Marks the index as outdated, so it is rebuilt by the next query. Call after changing the layer's objects.
+     */
+    public void invalidate() {
+        dirty = true;
+    }
+
+    /**
+     * Rebuilds the grid if the layer changed.
+     */
+    private void validate() {
+        MapObjects layerObjects = LAYER.getObjects();
+        if (!dirty && indexedCount == layerObjects.getCount()) {
+            return;
+        }
+        dirty = false;
+        indexedCount = layerObjects.getCount();
+
+        if (objects.length < indexedCount) {
+            objects = new MapObject[indexedCount];
+            shapes = new Object[indexedCount];
+            types = new byte[indexedCount];
+            minX = new float[indexedCount];
+            minY = new float[indexedCount];
+            maxX = new float[indexedCount];
+            maxY = new float[indexedCount];
+            stamps = new int[indexedCount];
+        }
+
+        size = 0;
+        float boundsMinX = Float.POSITIVE_INFINITY, boundsMinY = Float.POSITIVE_INFINITY;
+        float boundsMaxX = Float.NEGATIVE_INFINITY, boundsMaxY = Float.NEGATIVE_INFINITY;
+        float totalSize = 0f;
+        for (int i = 0; i < indexedCount; i++) {
+            if (!add(layerObjects.get(i))) {
+                continue;
+            }
+            int o = size - 1;
+            boundsMinX = Math.min(boundsMinX, minX[o]);
+            boundsMinY = Math.min(boundsMinY, minY[o]);
+            boundsMaxX = Math.max(boundsMaxX, maxX[o]);
+            boundsMaxY = Math.max(boundsMaxY, maxY[o]);
+            totalSize += Math.max(maxX[o] - minX[o], maxY[o] - minY[o]);
+        }
+        Arrays.fill(objects, size, objects.length, null);
+        Arrays.fill(shapes, size, shapes.length, null);
+
+        if (size == 0) {
+            columns = rows = 0;
+            cellStarts = new int[1];
+            return;
+        }
+
+        float width = boundsMaxX - boundsMinX, height = boundsMaxY - boundsMinY;
+        cellSize = CELL_SIZE > 0f ? CELL_SIZE : Math.max(totalSize / size * 2f, 1f);
+        // Bounds the grid to a few cells per object, however far apart the objects are
+        long maxCells = 4L * size + 64L;
+        while ((long) (width / cellSize + 1) * (long) (height / cellSize + 1) > maxCells) {
+            cellSize *= 2f;
+        }
+        originX = boundsMinX;
+        originY = boundsMinY;
+        columns = (int) (width / cellSize) + 1;
+        rows = (int) (height / cellSize) + 1;
+
+        // Counts the objects per cell, turns the counts into start offsets, then fills the cells
+        int[] starts = new int[columns * rows + 1];
+        for (int o = 0; o < size; o++) {
+            for (int y = cellY(minY[o]), endY = cellY(maxY[o]); y <= endY; y++) {
+                for (int x = cellX(minX[o]), endX = cellX(maxX[o]); x <= endX; x++) {
+                    starts[y * columns + x + 1]++;
+                }
+            }
+        }
+        for (int i = 1; i < starts.length; i++) {
+            starts[i] += starts[i - 1];
+        }
+        int[] items = new int[starts[starts.length - 1]];
+        int[] fill = Arrays.copyOf(starts, starts.length - 1);
+        for (int o = 0; o < size; o++) {
+            for (int y = cellY(minY[o]), endY = cellY(maxY[o]); y <= endY; y++) {
+                for (int x = cellX(minX[o]), endX = cellX(maxX[o]); x <= endX; x++) {
+                    items[fill[y * columns + x]++] = o;
+                }
+            }
+        }
+        cellStarts = starts;
+        cellItems = items;
+    }
+
+    /**
+     * Adds an object with its shape and bounds, if it has an indexable shape.
+     *
+     * @param object The map object.
+     * @return Whether the object was added.
+     */
+    private boolean add(MapObject object) {
+        int o = size;
+        if (object instanceof RectangleMapObject) {
+            Rectangle r = ((RectangleMapObject) object).getRectangle();
+            setBounds(o, r.x, r.y, r.x + r.width, r.y + r.height);
+            shapes[o] = r;
+            types[o] = RECTANGLE;
+        } else if (object instanceof EllipseMapObject) {
+            Ellipse e = ((EllipseMapObject) object).getEllipse();
+            // Map ellipses are positioned by their bottom-left corner, not their center
+            setBounds(o, e.x, e.y, e.x + e.width, e.y + e.height);
+            shapes[o] = e;
+            types[o] = ELLIPSE;
+        } else if (object instanceof CircleMapObject) {
+            Circle c = ((CircleMapObject) object).getCircle();
+            setBounds(o, c.x - c.radius, c.y - c.radius, c.x + c.radius, c.y + c.radius);
+            shapes[o] = c;
+            types[o] = CIRCLE;
+        } else if (object instanceof PolygonMapObject) {
+            Polygon p = ((PolygonMapObject) object).getPolygon();
+            setBounds(o, p.getTransformedVertices());
+            shapes[o] = p;
+            types[o] = POLYGON;
+        } else if (object instanceof PolylineMapObject) {
+            Polyline p = ((PolylineMapObject) object).getPolyline();
+            setBounds(o, p.getTransformedVertices());
+            shapes[o] = p;
+            types[o] = POLYLINE;
+        } else {
+            return false;
+        }
+        objects[o] = object;
+        stamps[o] = 0;
+        size++;
+        return true;
+    }
+
+    private void setBounds(int o, float[] vertices) {
+        float left = Float.POSITIVE_INFINITY, bottom = Float.POSITIVE_INFINITY;
+        float right = Float.NEGATIVE_INFINITY, top = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < vertices.length; i += 2) {
+            left = Math.min(left, vertices[i]);
+            right = Math.max(right, vertices[i]);
+            bottom = Math.min(bottom, vertices[i + 1]);
+            top = Math.max(top, vertices[i + 1]);
+        }
+        if (vertices.length == 0) {
+            left = right = bottom = top = 0f;
+        }
+        setBounds(o, left, bottom, right, top);
+    }
+
+    private void setBounds(int o, float left, float bottom, float right, float top) {
+        minX[o] = left;
+        minY[o] = bottom;
+        maxX[o] = right;
+        maxY[o] = top;
+    }
+
+    private int cellX(float x) {
+        return Math.max(0, Math.min(columns - 1, (int) Math.floor((x - originX) / cellSize)));
+    }
+
+    private int cellY(float y) {
+        return Math.max(0, Math.min(rows - 1, (int) Math.floor((y - originY) / cellSize)));
+    }
+
+    /**
+     * Starts a query, so each object is tested once.
+     */
+    private void nextStamp() {
+        if (++stamp == Integer.MAX_VALUE) {
+            Arrays.fill(stamps, 0);
+            stamp = 1;
+        }
+    }
+
+    /**
+     * Finds all objects whose shape overlaps a region.
+     *
+     * @param region The region to query.
+     * @param out    The array to add the objects to.
+     * @return The out array.
+     */
+    public Array<MapObject> query(Rectangle region, Array<MapObject> out) {
+        return query(region.x, region.y, region.width, region.height, out);
+    }
+
+    /**
+     * Finds all objects whose shape overlaps a region.
+     *
+     * @param x      The x-position of the region (based on left).
+     * @param y      The y-position of the region (based on bottom).
+     * @param width  The width of the region.
+     * @param height The height of the region.
+     * @param out    The array to add the objects to.
+     * @return The out array.
+     */
+    public Array<MapObject> query(float x, float y, float width, float height, Array<MapObject> out) {
+        validate();
+        float right = x + width, top = y + height;
+        if (size == 0 || right < originX || top < originY ||
+                x > originX + columns * cellSize || y > originY + rows * cellSize) {
+            return out;
+        }
+
+        nextStamp();
+        for (int cy = cellY(y), endY = cellY(top); cy <= endY; cy++) {
+            for (int cx = cellX(x), endX = cellX(right); cx <= endX; cx++) {
+                int cell = cy * columns + cx;
+                for (int i = cellStarts[cell], end = cellStarts[cell + 1]; i < end; i++) {
+                    int o = cellItems[i];
+                    if (stamps[o] == stamp) {
+                        continue;
+                    }
+                    stamps[o] = stamp;
+                    if (maxX[o] >= x && minX[o] <= right && maxY[o] >= y && minY[o] <= top && overlaps(o, x, y, right, top)) {
+                        out.add(objects[o]);
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Finds all objects whose shape contains a point, polylines never contain a point.
+     *
+     * @param x   The x-position of the point.
+     * @param y   The y-position of the point.
+     * @param out The array to add the objects to.
+     * @return The out array.
+     */
+    public Array<MapObject> query(float x, float y, Array<MapObject> out) {
+        validate();
+        if (size == 0 || x < originX || y < originY || x > originX + columns * cellSize || y > originY + rows * cellSize) {
+            return out;
+        }
+
+        int cell = cellY(y) * columns + cellX(x);
+        for (int i = cellStarts[cell], end = cellStarts[cell + 1]; i < end; i++) {
+            int o = cellItems[i];
+            if (x >= minX[o] && x <= maxX[o] && y >= minY[o] && y <= maxY[o] && contains(o, x, y)) {
+                out.add(objects[o]);
+            }
+        }
+        return out;
+    }
+
+    /**
+     * Finds the first object whose shape is hit by a ray (a segment) from the start to the end, walking the grid cells along
+     * the ray until a hit is found. A ray starting inside a rectangle, ellipse, circle or polygon hits it at its start.
+     *
+     * @param startX The x-position of the start of the ray.
+     * @param startY The y-position of the start of the ray.
+     * @param endX   The x-position of the end of the ray.
+     * @param endY   The y-position of the end of the ray.
+     * @param hit    Set to the position of the hit, the end of the ray if nothing was hit.
+     * @return The first object hit, null if nothing was hit.
+     */
+    public MapObject raycast(float startX, float startY, float endX, float endY, Vector2 hit) {
+        validate();
+        hitFraction = 1f;
+        hit.set(endX, endY);
+        if (size == 0) {
+            return null;
+        }
+
+        // Clips the ray to the grid
+        float gridRight = originX + columns * cellSize, gridTop = originY + rows * cellSize;
+        float dx = endX - startX, dy = endY - startY;
+        float enter = clip(startX, startY, dx, dy, originX, originY, gridRight, gridTop);
+        if (enter < 0f) {
+            return null;
+        }
+
+        float x = startX + dx * enter, y = startY + dy * enter;
+        int cx = cellX(x), cy = cellY(y);
+        int stepX = dx > 0 ? 1 : dx < 0 ? -1 : 0, stepY = dy > 0 ? 1 : dy < 0 ? -1 : 0;
+        // Fractions along the ray at which it crosses into the next column and row, and the fractions per cell
+        float nextX = stepX == 0 ? Float.POSITIVE_INFINITY : (originX + (cx + (stepX > 0 ? 1 : 0)) * cellSize - startX) / dx;
+        float nextY = stepY == 0 ? Float.POSITIVE_INFINITY : (originY + (cy + (stepY > 0 ? 1 : 0)) * cellSize - startY) / dy;
+        float deltaX = stepX == 0 ? Float.POSITIVE_INFINITY : cellSize / Math.abs(dx);
+        float deltaY = stepY == 0 ? Float.POSITIVE_INFINITY : cellSize / Math.abs(dy);
+
+        nextStamp();
+        int best = -1;
+        float bestFraction = 1f;
+        while (true) {
+            int cell = cy * columns + cx;
+            for (int i = cellStarts[cell], end = cellStarts[cell + 1]; i < end; i++) {
+                int o = cellItems[i];
+                if (stamps[o] == stamp) {
+                    continue;
+                }
+                stamps[o] = stamp;
+                if (clip(startX, startY, dx, dy, minX[o], minY[o], maxX[o], maxY[o]) < 0f) {
+                    continue;
+                }
+                float fraction = intersect(o, startX, startY, dx, dy);
+                if (fraction >= 0f && fraction <= bestFraction) {
+                    best = o;
+                    bestFraction = fraction;
+                }
+            }
+
+            // Hits before the end of this cell can't be beaten by objects in later cells
+            float cellExit = Math.min(nextX, nextY);
+            if (best >= 0 && bestFraction <= cellExit || cellExit > 1f) {
+                break;
+            }
+            if (nextX < nextY) {
+                cx += stepX;
+                nextX += deltaX;
+            } else {
+                cy += stepY;
+                nextY += deltaY;
+            }
+            if (cx < 0 || cx >= columns || cy < 0 || cy >= rows) {
+                break;
+            }
+        }
+
+        if (best < 0) {
+            return null;
+        }
+        hitFraction = bestFraction;
+        hit.set(startX + dx * bestFraction, startY + dy * bestFraction);
+        return objects[best];
+    }
+
+    /**
+     * @return The fraction of the last {@link #raycast(float, float, float, float, Vector2)} at which it hit, 1 if nothing was
+     * hit.
+     */
+    public float getHitFraction() {
+        return hitFraction;
+    }
+
+    /**
+     * @param o     The object index.
+     * @param left  The left of the region.
+     * @param bottom The bottom of the region.
+     * @param right The right of the region.
+     * @param top   The top of the region.
+     * @return Whether the object's shape overlaps the region, which overlaps its bounds.
+     */
+    private boolean overlaps(int o, float left, float bottom, float right, float top) {
+        switch (types[o]) {
+            case ELLIPSE: {
+                Ellipse e = (Ellipse) shapes[o];
+                return overlapsEllipse(e.x + e.width / 2f, e.y + e.height / 2f, e.width / 2f, e.height / 2f,
+                        left, bottom, right, top);
+            }
+            case CIRCLE: {
+                Circle c = (Circle) shapes[o];
+                return overlapsEllipse(c.x, c.y, c.radius, c.radius, left, bottom, right, top);
+            }
+            case POLYGON:
+            case POLYLINE: {
+                boolean closed = types[o] == POLYGON;
+                float[] vertices = closed ? ((Polygon) shapes[o]).getTransformedVertices() :
+                        ((Polyline) shapes[o]).getTransformedVertices();
+                // A region inside the polygon doesn't touch its edges
+                if (closed && Intersector.isPointInPolygon(vertices, 0, vertices.length, left, bottom)) {
+                    return true;
+                }
+                for (int i = 0, n = vertices.length; i < n; i += 2) {
+                    if (!closed && i + 2 >= n) {
+                        break;
+                    }
+                    float x1 = vertices[i], y1 = vertices[i + 1];
+                    float x2 = vertices[(i + 2) % n], y2 = vertices[(i + 3) % n];
+                    if (clip(x1, y1, x2 - x1, y2 - y1, left, bottom, right, top) >= 0f) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+            default:
+                return true;
+        }
+    }
+
+    private static boolean overlapsEllipse(float centerX, float centerY, float radiusX, float radiusY,
+                                           float left, float bottom, float right, float top) {
+        // The region point closest to the center, in the space where the ellipse is a unit circle
+        float dx = (Math.max(left, Math.min(centerX, right)) - centerX) / radiusX;
+        float dy = (Math.max(bottom, Math.min(centerY, top)) - centerY) / radiusY;
+        return dx * dx + dy * dy <= 1f;
+    }
+
+    /**
+     * @param o The object index.
+     * @param x The x-position of the point.
+     * @param y The y-position of the point.
+     * @return Whether the object's shape contains the point, which is within its bounds.
+     */
+    private boolean contains(int o, float x, float y) {
+        switch (types[o]) {
+            case ELLIPSE: {
+                // Ellipse.contains() takes the position as the center
+                Ellipse e = (Ellipse) shapes[o];
+                return e.contains(x - e.width / 2f, y - e.height / 2f);
+            }
+            case CIRCLE:
+                return ((Circle) shapes[o]).contains(x, y);
+            case POLYGON:
+                return ((Polygon) shapes[o]).contains(x, y);
+            case POLYLINE:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * @param o      The object index.
+     * @param startX The x-position of the start of the ray.
+     * @param startY The y-position of the start of the ray.
+     * @param dx     The x-distance of the ray.
+     * @param dy     The y-distance of the ray.
+     * @return The fraction along the ray at which it first hits the object's shape, negative if it doesn't.
+     */
+    private float intersect(int o, float startX, float startY, float dx, float dy) {
+        switch (types[o]) {
+            case ELLIPSE: {
+                Ellipse e = (Ellipse) shapes[o];
+                return intersectEllipse(e.x + e.width / 2f, e.y + e.height / 2f, e.width / 2f, e.height / 2f,
+                        startX, startY, dx, dy);
+            }
+            case CIRCLE: {
+                Circle c = (Circle) shapes[o];
+                return intersectEllipse(c.x, c.y, c.radius, c.radius, startX, startY, dx, dy);
+            }
+            case POLYGON:
+            case POLYLINE: {
+                boolean closed = types[o] == POLYGON;
+                float[] vertices = closed ? ((Polygon) shapes[o]).getTransformedVertices() :
+                        ((Polyline) shapes[o]).getTransformedVertices();
+                if (closed && Intersector.isPointInPolygon(vertices, 0, vertices.length, startX, startY)) {
+                    return 0f;
+                }
+                float first = -1f;
+                for (int i = 0, n = vertices.length; i < n; i += 2) {
+                    if (!closed && i + 2 >= n) {
+                        break;
+                    }
+                    float x1 = vertices[i], y1 = vertices[i + 1];
+                    float ex = vertices[(i + 2) % n] - x1, ey = vertices[(i + 3) % n] - y1;
+                    float denominator = dx * ey - dy * ex;
+                    if (denominator == 0f) {
+                        continue;
+                    }
+                    float t = ((x1 - startX) * ey - (y1 - startY) * ex) / denominator;
+                    float u = ((x1 - startX) * dy - (y1 - startY) * dx) / denominator;
+                    if (t >= 0f && t <= 1f && u >= 0f && u <= 1f && (first < 0f || t < first)) {
+                        first = t;
+                    }
+                }
+                return first;
+            }
+            default:
+                return clip(startX, startY, dx, dy, minX[o], minY[o], maxX[o], maxY[o]);
+        }
+    }
+
+    private static float intersectEllipse(float centerX, float centerY, float radiusX, float radiusY,
+                                          float startX, float startY, float dx, float dy) {
+        // Solves |start + t * d| = 1 in the space where the ellipse is a unit circle
+        float px = (startX - centerX) / radiusX, py = (startY - centerY) / radiusY;
+        float qx = dx / radiusX, qy = dy / radiusY;
+        float c = px * px + py * py - 1f;
+        if (c <= 0f) {
+            return 0f;
+        }
+        float a = qx * qx + qy * qy, b = px * qx + py * qy;
+        float discriminant = b * b - a * c;
+        if (a == 0f || b >= 0f || discriminant < 0f) {
+            return -1f;
+        }
+        float t = (-b - (float) Math.sqrt(discriminant)) / a;
+        return t <= 1f ? t : -1f;
+    }
+
+    /**
+     * Clips a segment to a box (slab test).
+     *
+     * @return The fraction along the segment at which it enters the box (0 if it starts inside), negative if it misses.
+     */
+    private static float clip(float startX, float startY, float dx, float dy,
+                              float left, float bottom, float right, float top) {
+        float enter = 0f, exit = 1f;
+        if (dx == 0f) {
+            if (startX < left || startX > right) {
+                return -1f;
+            }
+        } else {
+            float t1 = (left - startX) / dx, t2 = (right - startX) / dx;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+        if (dy == 0f) {
+            if (startY < bottom || startY > top) {
+                return -1f;
+            }
+        } else {
+            float t1 = (bottom - startY) / dy, t2 = (top - startY) / dy;
+            enter = Math.max(enter, Math.min(t1, t2));
+            exit = Math.min(exit, Math.max(t1, t2));
+        }
+        return enter <= exit ? enter : -1f;
+    }
+
+    /**
+     * @return The number of indexed objects, rebuilding the index if the layer changed.
+     */
+    public int size() {
+        validate();
+        return size;
+    }
+
+    /**
+     * @return The width and height of a cell, rebuilding the index if the layer changed.
+     */
+    public float getCellSize() {
+        validate();
+        return cellSize;
+    }
+}
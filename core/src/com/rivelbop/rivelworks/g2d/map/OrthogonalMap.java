@@ -1,6 +1,7 @@
 package com.rivelbop.rivelworks.g2d.map;
 
 import com.badlogic.gdx.maps.tiled.renderers.OrthogonalTiledMapRenderer;
+import com.rivelbop.rivelworks.io.Assets;
 
 /**
  * Handles loading and rendering orthogonal maps.
@@ -17,4 +18,15 @@ public class OrthogonalMap extends TileMap {
         super(fileName);
         renderer = new OrthogonalTiledMapRenderer(map);
     }
+
+    /**
+     * Create an orthogonal renderer off of a map loaded by the provided assets, see {@link TileMap#TileMap(Assets, String)}.
+     *
+     * @param assets   The assets that loaded the 'tmx' file.
+     * @param fileName The name of the loaded 'tmx' file.
+     */
+    public OrthogonalMap(Assets assets, String fileName) {
+        super(assets, fileName);
+        renderer = new OrthogonalTiledMapRenderer(map);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,992 @@
+package com.rivelbop.rivelworks.g2d.map;
+
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.graphics.Color;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.OrthographicCamera;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.g2d.Batch;
+import com.badlogic.gdx.graphics.g2d.SpriteCache;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.ShaderProgram;
+import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.MapLayers;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TiledMapTile;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.maps.tiled.renderers.BatchTiledMapRenderer;
+import com.badlogic.gdx.maps.tiled.tiles.AnimatedTiledMapTile;
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.IntMap;
+import com.esotericsoftware.minlog.Log;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders the tile layers of a map in fixed-size square chunks of tiles. Each chunk's tiles are baked once into static vertex
+ * arrays on worker threads, which the batch then draws without touching the tiles again. Only the chunks around the camera are
+ * kept baked, so the memory used for rendering stays the same regardless of the map's size.
+ * <p>
+ * Every frame, missing chunks within {@link #getPrefetchRadius()} chunks of the view are queued for baking (nearest first) and
+ * chunks further than {@link #getRetainRadius()} chunks are released. A visible chunk that is not baked yet is baked on the
+ * render thread. Tiles must be changed on the render thread followed by {@link #invalidate(int, int)}, which rebakes the chunk
+ * while its previous vertices are still drawn.
+ * <p>
+ * If cached, a baked chunk is uploaded once to a {@link SpriteCache} (one per chunk, sharing a shader) and its vertex arrays
+ * are released, so drawing a chunk costs a single draw call per layer and texture without any vertices being sent to the GPU.
+ * <p>
+ * Animated tiles are drawn each frame on top of their chunk's static tiles of the same layer. Other layers than top-level tile
+ * layers (image, object and group layers) are drawn by the map's regular renderer. Layer tint, opacity and offsets are baked,
+ * so {@link #invalidateAll()} must be called after changing them; parallax is applied while drawing.
+ *
+ * @author David Jerzak (RivelBop)
+ */
+public class TileChunks implements Disposable {
+    private static final String LOG_TAG = TileChunks.class.getSimpleName();
+
+    /**
+     * The number of floats of a tile's quad (4 vertices of position, packed color and texture coordinates).
+     */
+    private static final int QUAD_SIZE = 20;
+
+    /**
+     * The maximum number of quads of an indexed {@link SpriteCache}, chunks with more tiles are drawn by the batch.
+     */
+    private static final int MAX_CACHE_QUADS = 8191;
+
+    /**
+     * The number of tiles along each edge of a chunk.
+     */
+    public final int CHUNK_SIZE;
+
+    private final TiledMap MAP;
+    private final BatchTiledMapRenderer RENDERER;
+    private final boolean ISOMETRIC;
+
+    /**
+     * Whether baked chunks are uploaded to sprite caches.
+     */
+    private final boolean CACHED;
+
+    /**
+     * The top-level tile layers, and the tile layer slot of each top-level map layer (-1 for other layers).
+     */
+    private final TiledMapTileLayer[] LAYERS;
+    private final int[] SLOTS;
+
+    /**
+     * The number of chunks along each axis of the map.
+     */
+    private final int CHUNKS_X, CHUNKS_Y;
+
+    /**
+     * The chunks around the camera by {@link #key(int, int)}, only accessed by the render thread.
+     */
+    private final IntMap<Chunk> CHUNKS = new IntMap<>();
+
+    /**
+     * The worker threads baking the chunks.
+     */
+    private final ExecutorService EXECUTOR;
+
+    private final float[] ANIMATED_QUAD = new float[QUAD_SIZE];
+    private final int[] SINGLE_LAYER = new int[1];
+    private final Matrix4 TRANSFORM = new Matrix4(), PARALLAX_TRANSFORM = new Matrix4();
+    private final Rectangle LAYER_VIEW = new Rectangle();
+
+    /**
+     * The baked chunks of the layer being drawn that are in view, in drawing order.
+     */
+    private final Array<ChunkMesh> VISIBLE = new Array<>(false, 64);
+
+    /**
+     * The shader shared by the sprite caches, created with the first cache.
+     */
+    private CacheShader cacheShader;
+
+    /**
+     * Chunk range of the last {@link #chunkRange(TiledMapTileLayer, Rectangle)} call.
+     */
+    private int minChunkX, minChunkY, maxChunkX, maxChunkY;
+
+    private int prefetchRadius = 1, retainRadius = 2;
+
+    /**
+     * Splits the top-level tile layers of a map into chunks.
+     *
+     * @param map       The map to render.
+     * @param renderer  The map's renderer, whose batch and view are used.
+     * @param isometric Whether the map has an isometric (rather than orthogonal) orientation.
+     * @param chunkSize The number of tiles along each edge of a chunk.
+     * @param threads   The number of worker threads used for baking.
+     * @param cached    Whether baked chunks are uploaded to sprite caches rather than drawn by the batch.
+     */
+    public TileChunks(TiledMap map, BatchTiledMapRenderer renderer, boolean isometric, int chunkSize, int threads,
+                      boolean cached) {
+        if (chunkSize <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("Chunk size and thread count must be positive!");
+        }
+
+        this.CHUNK_SIZE = chunkSize;
+        this.MAP = map;
+        this.RENDERER = renderer;
+        this.ISOMETRIC = isometric;
+        this.CACHED = cached;
+
+        MapLayers layers = map.getLayers();
+        Array<TiledMapTileLayer> tileLayers = layers.getByType(TiledMapTileLayer.class);
+        this.SLOTS = new int[layers.getCount()];
+        int slot = 0, width = 0, height = 0;
+        for (int i = 0; i < SLOTS.length; i++) {
+            MapLayer layer = layers.get(i);
+            if (layer instanceof TiledMapTileLayer) {
+                TiledMapTileLayer tileLayer = (TiledMapTileLayer) layer;
+                width = Math.max(width, tileLayer.getWidth());
+                height = Math.max(height, tileLayer.getHeight());
+                SLOTS[i] = slot++;
+            } else {
+                SLOTS[i] = -1;
+            }
+        }
+        this.LAYERS = tileLayers.toArray(TiledMapTileLayer.class);
+        this.CHUNKS_X = (width + chunkSize - 1) / chunkSize;
+        this.CHUNKS_Y = (height + chunkSize - 1) / chunkSize;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.EXECUTOR = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, LOG_TAG + "-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Splits the top-level tile layers of a map into chunks drawn by the batch.
+     *
+     * @param map       The map to render.
+     * @param renderer  The map's renderer, whose batch and view are used.
+     * @param isometric Whether the map has an isometric (rather than orthogonal) orientation.
+     * @param chunkSize The number of tiles along each edge of a chunk.
+     * @param threads   The number of worker threads used for baking.
+     */
+    public TileChunks(TiledMap map, BatchTiledMapRenderer renderer, boolean isometric, int chunkSize, int threads) {
+        this(map, renderer, isometric, chunkSize, threads, false);
+    }
+
+    /**
+     * Renders all layers of the map to the provided camera.
+     *
+     * @param camera The camera to render the map to.
+     */
+    public void render(OrthographicCamera camera) {
+        RENDERER.setView(camera);
+        update(RENDERER.getViewBounds());
+        AnimatedTiledMapTile.updateAnimationBaseTime();
+
+        Batch batch = RENDERER.getBatch();
+        boolean drawing = false;
+        for (int i = 0; i < SLOTS.length; i++) {
+            drawing = renderLayer(batch, i, drawing);
+        }
+        if (drawing) {
+            batch.end();
+        }
+    }
+
+    /**
+     * Renders the provided layers of the map to the provided camera.
+     *
+     * @param camera The camera to render the map to.
+     * @param layers The indices of the map layers to render.
+     */
+    public void render(OrthographicCamera camera, int... layers) {
+        RENDERER.setView(camera);
+        update(RENDERER.getViewBounds());
+        AnimatedTiledMapTile.updateAnimationBaseTime();
+
+        Batch batch = RENDERER.getBatch();
+        boolean drawing = false;
+        for (int layer : layers) {
+            drawing = renderLayer(batch, layer, drawing);
+        }
+        if (drawing) {
+            batch.end();
+        }
+    }
+
+    /**
+     * Queues the missing chunks around the view for baking, nearest first, and releases the chunks far from it.
+     *
+     * @param view The view bounds (in world units).
+     */
+    public void update(Rectangle view) {
+        if (LAYERS.length == 0) {
+            return;
+        }
+
+        chunkRange(LAYERS[0], view);
+        int minX = minChunkX, minY = minChunkY, maxX = maxChunkX, maxY = maxChunkY;
+
+        // Radii beyond the map's size are clamped, so covering the whole map can't overflow
+        int mapRadius = Math.max(CHUNKS_X, CHUNKS_Y);
+        int retain = Math.min(retainRadius, mapRadius), prefetch = Math.min(prefetchRadius, mapRadius);
+
+        IntMap.Values<Chunk> chunks = CHUNKS.values();
+        while (chunks.hasNext()) {
+            Chunk chunk = chunks.next();
+            if (chunk.X < minX - retain || chunk.X > maxX + retain || chunk.Y < minY - retain || chunk.Y > maxY + retain) {
+                chunk.release();
+                chunks.remove();
+            } else {
+                poll(chunk);
+            }
+        }
+
+        // Rings around the view, so the nearest chunks are baked first
+        for (int ring = 0; ring <= prefetch; ring++) {
+            int ringMinX = minX - ring, ringMinY = minY - ring, ringMaxX = maxX + ring, ringMaxY = maxY + ring;
+            for (int y = Math.max(ringMinY, 0); y <= Math.min(ringMaxY, CHUNKS_Y - 1); y++) {
+                boolean edgeRow = y == ringMinY || y == ringMaxY;
+                for (int x = Math.max(ringMinX, 0); x <= Math.min(ringMaxX, CHUNKS_X - 1); x++) {
+                    if ((edgeRow || x == ringMinX || x == ringMaxX) && !CHUNKS.containsKey(key(x, y))) {
+                        request(x, y);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Draws a map layer, its baked chunks for tile layers or the regular renderer for others.
+     *
+     * @param batch   The batch of the renderer.
+     * @param index   The index of the map layer.
+     * @param drawing Whether the batch has been begun.
+     * @return Whether the batch has been begun after drawing the layer.
+     */
+    private boolean renderLayer(Batch batch, int index, boolean drawing) {
+        int slot = SLOTS[index];
+        if (slot < 0) {
+            if (drawing) {
+                batch.end();
+            }
+            SINGLE_LAYER[0] = index;
+            RENDERER.render(SINGLE_LAYER);
+            return false;
+        }
+
+        TiledMapTileLayer layer = LAYERS[slot];
+        if (!layer.isVisible()) {
+            return drawing;
+        }
+
+        // Parallax moves the layer relative to the view, so the chunks are drawn shifted rather than rebaked
+        Rectangle view = RENDERER.getViewBounds();
+        float shiftX = -view.x * (layer.getParallaxX() - 1f), shiftY = -view.y * (layer.getParallaxY() - 1f);
+        boolean shifted = shiftX != 0f || shiftY != 0f;
+        if (shifted) {
+            TRANSFORM.set(batch.getTransformMatrix());
+            batch.setTransformMatrix(PARALLAX_TRANSFORM.set(TRANSFORM).translate(shiftX, shiftY, 0f));
+        }
+        Rectangle layerView = LAYER_VIEW.set(view.x - shiftX, view.y - shiftY, view.width, view.height);
+        chunkRange(layer, layerView);
+        int minX = minChunkX, minY = minChunkY, maxX = maxChunkX, maxY = maxChunkY;
+
+        // One chunk of margin for tiles larger than the grid, drawn in the renderer's order (top to bottom, left to right)
+        VISIBLE.clear();
+        for (int y = Math.min(maxY + 1, CHUNKS_Y - 1); y >= Math.max(minY - 1, 0); y--) {
+            for (int x = Math.max(minX - 1, 0); x <= Math.min(maxX + 1, CHUNKS_X - 1); x++) {
+                Chunk chunk = CHUNKS.get(key(x, y));
+                if (chunk != null) {
+                    poll(chunk);
+                }
+                if ((chunk == null || chunk.mesh == null) && x >= minX && x <= maxX && y >= minY && y <= maxY) {
+                    chunk = bakeNow(x, y);
+                }
+                if (chunk != null && chunk.mesh != null && chunk.mesh.overlaps(slot, layerView)) {
+                    VISIBLE.add(chunk.mesh);
+                }
+            }
+        }
+
+        if (CACHED) {
+            if (drawing) {
+                batch.end();
+                drawing = false;
+            }
+            drawCaches(batch, slot);
+        }
+        for (int i = 0; i < VISIBLE.size; i++) {
+            ChunkMesh mesh = VISIBLE.get(i);
+            boolean hasStatic = mesh.cache == null && mesh.LAYER_STARTS.get(slot) < mesh.LAYER_STARTS.get(slot + 1);
+            if (!hasStatic && mesh.ANIMATED.size == 0) {
+                continue;
+            }
+            if (!drawing) {
+                batch.begin();
+                drawing = true;
+            }
+            drawChunk(batch, mesh, slot);
+        }
+
+        if (shifted) {
+            batch.setTransformMatrix(TRANSFORM);
+        }
+        return drawing;
+    }
+
+    /**
+     * Draws the cached static tiles of the visible chunks' layer, uploading newly baked chunks first.
+     *
+     * @param batch The batch of the renderer, whose matrices and blending are used.
+     * @param slot  The tile layer slot.
+     */
+    private void drawCaches(Batch batch, int slot) {
+        Gdx.gl.glEnable(GL20.GL_BLEND);
+        Gdx.gl.glBlendFuncSeparate(batch.getBlendSrcFunc(), batch.getBlendDstFunc(),
+                batch.getBlendSrcFuncAlpha(), batch.getBlendDstFuncAlpha());
+        for (int i = 0; i < VISIBLE.size; i++) {
+            ChunkMesh mesh = VISIBLE.get(i);
+            upload(mesh);
+            if (mesh.cache == null || mesh.CACHE_IDS[slot] < 0) {
+                continue;
+            }
+
+            SpriteCache cache = mesh.cache;
+            cache.setProjectionMatrix(batch.getProjectionMatrix());
+            cache.setTransformMatrix(batch.getTransformMatrix());
+            cache.begin();
+            cache.draw(mesh.CACHE_IDS[slot]);
+            cache.end();
+        }
+        Gdx.gl.glDisable(GL20.GL_BLEND);
+    }
+
+    /**
+     * Uploads the static tiles of a baked chunk to a sprite cache, one cache entry per layer, and releases its vertex arrays.
+     * Chunks with too many tiles keep their vertex arrays and are drawn by the batch.
+     *
+     * @param mesh The baked chunk.
+     */
+    private void upload(ChunkMesh mesh) {
+        if (mesh.uploaded) {
+            return;
+        }
+        mesh.uploaded = true;
+
+        int quads = mesh.quads;
+        if (quads == 0 || quads > MAX_CACHE_QUADS) {
+            return;
+        }
+        if (cacheShader == null) {
+            cacheShader = new CacheShader();
+        }
+
+        SpriteCache cache = new SpriteCache(quads, cacheShader, true);
+        for (int slot = 0; slot < LAYERS.length; slot++) {
+            int start = mesh.LAYER_STARTS.get(slot), end = mesh.LAYER_STARTS.get(slot + 1);
+            if (start == end) {
+                mesh.CACHE_IDS[slot] = -1;
+                continue;
+            }
+            cache.beginCache();
+            for (int s = start; s < end; s++) {
+                cache.add(mesh.TEXTURES.get(s), mesh.vertices, mesh.OFFSETS.get(s), mesh.COUNTS.get(s));
+            }
+            mesh.CACHE_IDS[slot] = cache.endCache();
+        }
+        mesh.cache = cache;
+        mesh.vertices = null;
+    }
+
+    /**
+     * Draws the uncached static tiles and the animated tiles of a chunk's layer.
+     *
+     * @param batch The batch of the renderer.
+     * @param mesh  The baked chunk.
+     * @param slot  The tile layer slot.
+     */
+    private void drawChunk(Batch batch, ChunkMesh mesh, int slot) {
+        if (mesh.cache == null) {
+            for (int s = mesh.LAYER_STARTS.get(slot), end = mesh.LAYER_STARTS.get(slot + 1); s < end; s++) {
+                batch.draw(mesh.TEXTURES.get(s), mesh.vertices, mesh.OFFSETS.get(s), mesh.COUNTS.get(s));
+            }
+        }
+
+        IntArray animated = mesh.ANIMATED;
+        if (animated.size == 0) {
+            return;
+        }
+        TiledMapTileLayer layer = LAYERS[slot];
+        float color = layerColor(layer);
+        for (int i = 0; i < animated.size; i += 3) {
+            if (animated.get(i) != slot) {
+                continue;
+            }
+            TiledMapTileLayer.Cell cell = layer.getCell(animated.get(i + 1), animated.get(i + 2));
+            if (cell == null || cell.getTile() == null) {
+                continue;
+            }
+            TextureRegion region = cell.getTile().getTextureRegion();
+            quad(layer, color, cell, region, animated.get(i + 1), animated.get(i + 2), ANIMATED_QUAD, 0);
+            batch.draw(region.getTexture(), ANIMATED_QUAD, 0, QUAD_SIZE);
+        }
+    }
+
+    /**
+     * Finds the chunks whose tile cells overlap a region, into {@link #minChunkX} to {@link #maxChunkY}. The range is empty
+     * (a max below its min) if the region is outside the map.
+     *
+     * @param layer  The layer whose tile grid is used.
+     * @param region The region (in world units, relative to the layer).
+     */
+    private void chunkRange(TiledMapTileLayer layer, Rectangle region) {
+        float unitScale = RENDERER.getUnitScale();
+        float tileWidth = layer.getTileWidth() * unitScale, tileHeight = layer.getTileHeight() * unitScale;
+        float x = region.x - layer.getRenderOffsetX() * unitScale, y = region.y + layer.getRenderOffsetY() * unitScale;
+
+        float minCol, minRow, maxCol, maxRow;
+        if (ISOMETRIC) {
+            // Inverse of the isometric projection, x = (col + row) * halfWidth and y = (row - col) * halfHeight
+            float halfWidth = tileWidth * 0.5f, halfHeight = tileHeight * 0.5f;
+            float left = x / halfWidth, right = (x + region.width) / halfWidth;
+            float bottom = y / halfHeight, top = (y + region.height) / halfHeight;
+            minCol = (left - top) * 0.5f;
+            maxCol = (right - bottom) * 0.5f;
+            minRow = (left + bottom) * 0.5f;
+            maxRow = (right + top) * 0.5f;
+        } else {
+            minCol = x / tileWidth;
+            maxCol = (x + region.width) / tileWidth;
+            minRow = y / tileHeight;
+            maxRow = (y + region.height) / tileHeight;
+        }
+
+        minChunkX = Math.max(Math.floorDiv((int) Math.floor(minCol), CHUNK_SIZE), 0);
+        minChunkY = Math.max(Math.floorDiv((int) Math.floor(minRow), CHUNK_SIZE), 0);
+        maxChunkX = Math.min(Math.floorDiv((int) Math.floor(maxCol), CHUNK_SIZE), CHUNKS_X - 1);
+        maxChunkY = Math.min(Math.floorDiv((int) Math.floor(maxRow), CHUNK_SIZE), CHUNKS_Y - 1);
+    }
+
+    /**
+     * Queues a chunk for baking on a worker thread.
+     *
+     * @param x The x-coordinate of the chunk.
+     * @param y The y-coordinate of the chunk.
+     * @return The chunk.
+     */
+    private Chunk request(int x, int y) {
+        Chunk chunk = CHUNKS.get(key(x, y));
+        if (chunk == null) {
+            chunk = new Chunk(x, y);
+            CHUNKS.put(key(x, y), chunk);
+        } else if (chunk.pending != null) {
+            chunk.pending.cancel(false);
+        }
+
+        CompletableFuture<ChunkMesh> future = new CompletableFuture<>();
+        chunk.pending = future;
+        try {
+            EXECUTOR.execute(() -> {
+                // Skips chunks released or baked on the render thread in the meantime
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    future.complete(bake(x, y));
+                } catch (Throwable t) {
+                    Log.error(LOG_TAG, "Unable to bake chunk (" + x + ", " + y + ")!", t);
+                    future.completeExceptionally(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.error(LOG_TAG, "Tile chunks have been disposed, baking chunk on the render thread!");
+            future.complete(bake(x, y));
+        }
+        return chunk;
+    }
+
+    /**
+     * Bakes a chunk on the render thread, replacing any bake in progress.
+     *
+     * @param x The x-coordinate of the chunk.
+     * @param y The y-coordinate of the chunk.
+     * @return The chunk.
+     */
+    private Chunk bakeNow(int x, int y) {
+        Chunk chunk = CHUNKS.get(key(x, y));
+        if (chunk == null) {
+            chunk = new Chunk(x, y);
+            CHUNKS.put(key(x, y), chunk);
+        } else if (chunk.pending != null) {
+            chunk.pending.cancel(false);
+            chunk.pending = null;
+        }
+        chunk.setMesh(bake(x, y));
+        return chunk;
+    }
+
+    /**
+     * Takes the result of a chunk's finished bake.
+     *
+     * @param chunk The chunk.
+     */
+    private static void poll(Chunk chunk) {
+        CompletableFuture<ChunkMesh> pending = chunk.pending;
+        if (pending == null || !pending.isDone()) {
+            return;
+        }
+        if (!pending.isCompletedExceptionally()) {
+            chunk.setMesh(pending.getNow(null));
+        }
+        chunk.pending = null;
+    }
+
+    /**
+     * Bakes the static tiles of every tile layer in a chunk, safe to call from any thread while the tiles aren't changed.
+     *
+     * @param chunkX The x-coordinate of the chunk.
+     * @param chunkY The y-coordinate of the chunk.
+     * @return The baked chunk.
+     */
+    private ChunkMesh bake(int chunkX, int chunkY) {
+        ChunkMesh mesh = new ChunkMesh(LAYERS.length);
+        FloatArray vertices = new FloatArray(false, CHUNK_SIZE * CHUNK_SIZE * QUAD_SIZE);
+        float[] quad = new float[QUAD_SIZE];
+
+        for (int slot = 0; slot < LAYERS.length; slot++) {
+            TiledMapTileLayer layer = LAYERS[slot];
+            float color = layerColor(layer);
+            float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY;
+            float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY;
+            mesh.LAYER_STARTS.add(mesh.TEXTURES.size);
+
+            int minCol = chunkX * CHUNK_SIZE, maxCol = Math.min(minCol + CHUNK_SIZE, layer.getWidth()) - 1;
+            int minRow = chunkY * CHUNK_SIZE, maxRow = Math.min(minRow + CHUNK_SIZE, layer.getHeight()) - 1;
+            Texture texture = null;
+            for (int row = maxRow; row >= minRow; row--) {
+                for (int col = minCol; col <= maxCol; col++) {
+                    TiledMapTileLayer.Cell cell = layer.getCell(col, row);
+                    TiledMapTile tile = cell == null ? null : cell.getTile();
+                    if (tile == null) {
+                        continue;
+                    }
+
+                    TextureRegion region = tile.getTextureRegion();
+                    float[] out = quad;
+                    int offset = 0;
+                    if (tile instanceof AnimatedTiledMapTile) {
+                        mesh.ANIMATED.add(slot, col, row);
+                    } else {
+                        // Consecutive tiles of the same texture share one draw call
+                        if (region.getTexture() != texture) {
+                            texture = region.getTexture();
+                            mesh.TEXTURES.add(texture);
+                            mesh.OFFSETS.add(vertices.size);
+                            mesh.COUNTS.add(0);
+                        }
+                        offset = vertices.size;
+                        out = vertices.setSize(offset + QUAD_SIZE);
+                        mesh.COUNTS.incr(mesh.COUNTS.size - 1, QUAD_SIZE);
+                        mesh.quads++;
+                    }
+                    quad(layer, color, cell, region, col, row, out, offset);
+
+                    // Corners 1 and 3 are opposite, whatever the flip or rotation
+                    minX = Math.min(minX, out[offset]);
+                    minY = Math.min(minY, out[offset + 1]);
+                    maxX = Math.max(maxX, out[offset + 10]);
+                    maxY = Math.max(maxY, out[offset + 11]);
+                }
+            }
+
+            int b = slot * 4;
+            mesh.BOUNDS[b] = minX;
+            mesh.BOUNDS[b + 1] = minY;
+            mesh.BOUNDS[b + 2] = maxX;
+            mesh.BOUNDS[b + 3] = maxY;
+        }
+        mesh.LAYER_STARTS.add(mesh.TEXTURES.size);
+        mesh.vertices = vertices.items;
+        return mesh;
+    }
+
+    /**
+     * Writes the quad of a tile, the same as the libGDX tile map renderers would draw it (without parallax).
+     *
+     * @param layer  The tile layer.
+     * @param color  The packed color of the layer.
+     * @param cell   The cell of the tile.
+     * @param region The texture region of the tile.
+     * @param col    The column of the cell.
+     * @param row    The row of the cell.
+     * @param out    The array to write the quad to.
+     * @param offset The index of the quad's first float.
+     */
+    private void quad(TiledMapTileLayer layer, float color, TiledMapTileLayer.Cell cell, TextureRegion region,
+                      int col, int row, float[] out, int offset) {
+        float unitScale = RENDERER.getUnitScale();
+        float tileWidth = layer.getTileWidth() * unitScale, tileHeight = layer.getTileHeight() * unitScale;
+        TiledMapTile tile = cell.getTile();
+
+        float x, y;
+        if (ISOMETRIC) {
+            x = (col + row) * tileWidth * 0.5f;
+            y = (row - col) * tileHeight * 0.5f;
+        } else {
+            x = col * tileWidth;
+            y = row * tileHeight;
+        }
+        float x1 = x + tile.getOffsetX() * unitScale + layer.getRenderOffsetX() * unitScale;
+        float y1 = y + tile.getOffsetY() * unitScale - layer.getRenderOffsetY() * unitScale;
+        float x2 = x1 + region.getRegionWidth() * unitScale;
+        float y2 = y1 + region.getRegionHeight() * unitScale;
+
+        float u1 = region.getU(), v1 = region.getV2(), u2 = region.getU2(), v2 = region.getV();
+        // Texture coordinates of the corners, counter-clockwise from the bottom-left
+        float cu1 = u1, cv1 = v1, cu2 = u1, cv2 = v2, cu3 = u2, cv3 = v2, cu4 = u2, cv4 = v1, temp;
+        if (cell.getFlipHorizontally()) {
+            temp = cu1;
+            cu1 = cu3;
+            cu3 = temp;
+            temp = cu2;
+            cu2 = cu4;
+            cu4 = temp;
+        }
+        if (cell.getFlipVertically()) {
+            temp = cv1;
+            cv1 = cv3;
+            cv3 = temp;
+            temp = cv2;
+            cv2 = cv4;
+            cv4 = temp;
+        }
+        switch (cell.getRotation()) {
+            case TiledMapTileLayer.Cell.ROTATE_90:
+                temp = cv1;
+                cv1 = cv2;
+                cv2 = cv3;
+                cv3 = cv4;
+                cv4 = temp;
+                temp = cu1;
+                cu1 = cu2;
+                cu2 = cu3;
+                cu3 = cu4;
+                cu4 = temp;
+                break;
+            case TiledMapTileLayer.Cell.ROTATE_180:
+                temp = cu1;
+                cu1 = cu3;
+                cu3 = temp;
+                temp = cu2;
+                cu2 = cu4;
+                cu4 = temp;
+                temp = cv1;
+                cv1 = cv3;
+                cv3 = temp;
+                temp = cv2;
+                cv2 = cv4;
+                cv4 = temp;
+                break;
+            case TiledMapTileLayer.Cell.ROTATE_270:
+                temp = cv1;
+                cv1 = cv4;
+                cv4 = cv3;
+                cv3 = cv2;
+                cv2 = temp;
+                temp = cu1;
+                cu1 = cu4;
+                cu4 = cu3;
+                cu3 = cu2;
+                cu2 = temp;
+                break;
+        }
+
+        int i = offset;
+        out[i++] = x1;
+        out[i++] = y1;
+        out[i++] = color;
+        out[i++] = cu1;
+        out[i++] = cv1;
+        out[i++] = x1;
+        out[i++] = y2;
+        out[i++] = color;
+        out[i++] = cu2;
+        out[i++] = cv2;
+        out[i++] = x2;
+        out[i++] = y2;
+        out[i++] = color;
+        out[i++] = cu3;
+        out[i++] = cv3;
+        out[i++] = x2;
+        out[i++] = y1;
+        out[i++] = color;
+        out[i++] = cu4;
+        out[i] = cv4;
+    }
+
+    /**
+     * @param layer The tile layer.
+     * @return The packed color of the layer's tint and opacity.
+     */
+    private static float layerColor(TiledMapTileLayer layer) {
+        Color tint = layer.getCombinedTintColor();
+        return Color.toFloatBits(tint.r, tint.g, tint.b, tint.a * layer.getOpacity());
+    }
+
+    private int key(int x, int y) {
+        return y * CHUNKS_X + x;
+    }
+
+    /**
+     * Rebakes the chunk containing a tile, call after changing the tile.
+     *
+     * @param col The column of the tile.
+     * @param row The row of the tile.
+     */
+    public void invalidate(int col, int row) {
+        int x = Math.floorDiv(col, CHUNK_SIZE), y = Math.floorDiv(row, CHUNK_SIZE);
+        if (x >= 0 && x < CHUNKS_X && y >= 0 && y < CHUNKS_Y && CHUNKS.containsKey(key(x, y))) {
+            request(x, y);
+        }
+    }
+
+    /**
+     * Rebakes all chunks, call after changing the tint, opacity or offsets of a layer.
+     */
+    public void invalidateAll() {
+        for (IntMap.Entry<Chunk> entry : CHUNKS.entries()) {
+            request(entry.value.X, entry.value.Y);
+        }
+    }
+
+    /**
+     * @param prefetchRadius The number of chunks around the view baked ahead of time.
+     */
+    public void setPrefetchRadius(int prefetchRadius) {
+        this.prefetchRadius = Math.max(0, prefetchRadius);
+        this.retainRadius = Math.max(retainRadius, this.prefetchRadius);
+    }
+
+    /**
+     * @return The number of chunks around the view baked ahead of time.
+     */
+    public int getPrefetchRadius() {
+        return prefetchRadius;
+    }
+
+    /**
+     * @param retainRadius The number of chunks around the view kept baked, at least the prefetch radius.
+     */
+    public void setRetainRadius(int retainRadius) {
+        this.retainRadius = Math.max(retainRadius, prefetchRadius);
+    }
+
+    /**
+     * @return The number of chunks around the view kept baked.
+     */
+    public int getRetainRadius() {
+        return retainRadius;
+    }
+
+    /**
+     * @return The number of chunks currently baked.
+     */
+    public int getBakedChunks() {
+        int count = 0;
+        for (Chunk chunk : CHUNKS.values()) {
+            if (chunk.mesh != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return The number of chunks waiting to be baked.
+     */
+    public int getPendingChunks() {
+        int count = 0;
+        for (Chunk chunk : CHUNKS.values()) {
+            if (chunk.pending != null && !chunk.pending.isDone()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return The map whose layers are rendered.
+     */
+    public TiledMap getMap() {
+        return MAP;
+    }
+
+    /**
+     * Stops the worker threads and releases all chunks.
+     */
+    @Override
+    public void dispose() {
+        EXECUTOR.shutdownNow();
+        for (Chunk chunk : CHUNKS.values()) {
+            chunk.release();
+        }
+        CHUNKS.clear();
+        if (cacheShader != null) {
+            cacheShader.release();
+            cacheShader = null;
+        }
+    }
+
+    /**
+     * A chunk around the camera, with its baked tiles and the bake in progress.
+     */
+    private static final class Chunk {
+        private final int X, Y;
+        private ChunkMesh mesh;
+        private CompletableFuture<ChunkMesh> pending;
+
+        private Chunk(int x, int y) {
+            this.X = x;
+            this.Y = y;
+        }
+
+        /**
+         * Replaces the baked tiles, releasing the previous ones.
+         *
+         * @param mesh The newly baked tiles.
+         */
+        private void setMesh(ChunkMesh mesh) {
+            if (this.mesh != null && this.mesh != mesh) {
+                this.mesh.dispose();
+            }
+            this.mesh = mesh;
+        }
+
+        /**
+         * Cancels the bake in progress and releases the baked tiles.
+         */
+        private void release() {
+            if (pending != null) {
+                pending.cancel(false);
+                pending = null;
+            }
+            setMesh(null);
+        }
+    }
+
+    /**
+     * The baked static tiles of a chunk. Each layer has a range of segments (tiles sharing a texture) in drawing order, and the
+     * bounds of its tiles.
+     */
+    private static final class ChunkMesh {
+        private final Array<Texture> TEXTURES = new Array<>();
+        private final IntArray OFFSETS = new IntArray(), COUNTS = new IntArray();
+        private final IntArray LAYER_STARTS;
+
+        /**
+         * Min x, min y, max x and max y of each layer's tiles.
+         */
+        private final float[] BOUNDS;
+
+        /**
+         * Slot, column and row of each animated tile.
+         */
+        private final IntArray ANIMATED = new IntArray();
+
+        private float[] vertices;
+        private int quads;
+
+        /**
+         * The sprite cache of the static tiles and the cache id of each layer (-1 if empty), once uploaded.
+         */
+        private final int[] CACHE_IDS;
+        private SpriteCache cache;
+        private boolean uploaded;
+
+        private ChunkMesh(int layers) {
+            this.LAYER_STARTS = new IntArray(layers + 1);
+            this.BOUNDS = new float[layers * 4];
+            this.CACHE_IDS = new int[layers];
+        }
+
+        /**
+         * @param slot The tile layer slot.
+         * @param view The view bounds, relative to the layer.
+         * @return Whether any tile of the layer is in view.
+         */
+        private boolean overlaps(int slot, Rectangle view) {
+            int b = slot * 4;
+            return BOUNDS[b] <= view.x + view.width && BOUNDS[b + 2] >= view.x &&
+                    BOUNDS[b + 1] <= view.y + view.height && BOUNDS[b + 3] >= view.y;
+        }
+
+        private void dispose() {
+            if (cache != null) {
+                cache.dispose();
+                cache = null;
+            }
+        }
+    }
+
+    /**
+     * The default shader of {@link SpriteCache} (which sets its "u_projectionViewMatrix"), shared by the chunks' caches. A sprite
+     * cache disposes its shader, so disposing is ignored until the shader is {@link #release() released}.
+     */
+    private static final class CacheShader extends ShaderProgram {
+        private static final String VERTEX_SHADER = "attribute vec4 " + ShaderProgram.POSITION_ATTRIBUTE + ";\n" +
+                "attribute vec4 " + ShaderProgram.COLOR_ATTRIBUTE + ";\n" +
+                "attribute vec2 " + ShaderProgram.TEXCOORD_ATTRIBUTE + "0;\n" +
+                "uniform mat4 u_projectionViewMatrix;\n" +
+                "varying vec4 v_color;\n" +
+                "varying vec2 v_texCoords;\n" +
+                "\n" +
+                "void main()\n" +
+                "{\n" +
+                "   v_color = " + ShaderProgram.COLOR_ATTRIBUTE + ";\n" +
+                "   v_color.a = v_color.a * (255.0/254.0);\n" +
+                "   v_texCoords = " + ShaderProgram.TEXCOORD_ATTRIBUTE + "0;\n" +
+                "   gl_Position =  u_projectionViewMatrix * " + ShaderProgram.POSITION_ATTRIBUTE + ";\n" +
+                "}\n";
+        private static final String FRAGMENT_SHADER = "#ifdef GL_ES\n" +
+                "precision mediump float;\n" +
+                "#endif\n" +
+                "varying vec4 v_color;\n" +
+                "varying vec2 v_texCoords;\n" +
+                "uniform sampler2D u_texture;\n" +
+                "void main()\n" +
+                "{\n" +
+                "  gl_FragColor = v_color * texture2D(u_texture, v_texCoords);\n" +
+                "}";
+
+        private CacheShader() {
+            super(VERTEX_SHADER, FRAGMENT_SHADER);
+            if (!isCompiled()) {
+                throw new IllegalArgumentException("Error compiling shader: " + getLog());
+            }
+        }
+
+        /**
+         * Ignored, the shader outlives the caches using it.
+         */
+        @Override
+        public void dispose() {
+        }
+
+        /**
+         * Disposes the shader once no cache uses it anymore.
+         */
+        private void release() {
+            super.dispose();
+        }
+    }
+}
@@ -1,23 +1,37 @@
 package com.rivelbop.rivelworks.g2d.map;
 
+import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.files.FileHandle;
 import com.badlogic.gdx.graphics.OrthographicCamera;
 import com.badlogic.gdx.maps.MapLayer;
+import com.badlogic.gdx.maps.MapProperties;
 import com.badlogic.gdx.maps.objects.EllipseMapObject;
 import com.badlogic.gdx.maps.objects.PolygonMapObject;
 import com.badlogic.gdx.maps.objects.RectangleMapObject;
 import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer;
+import com.badlogic.gdx.maps.tiled.TiledMapTileLayer.Cell;
 import com.badlogic.gdx.maps.tiled.TmxMapLoader;
 import com.badlogic.gdx.maps.tiled.renderers.BatchTiledMapRenderer;
+import com.badlogic.gdx.maps.tiled.renderers.IsometricTiledMapRenderer;
 import com.badlogic.gdx.math.Ellipse;
+import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Polygon;
 import com.badlogic.gdx.math.Rectangle;
 import com.badlogic.gdx.math.Shape2D;
+import com.badlogic.gdx.physics.box2d.Body;
 import com.badlogic.gdx.physics.box2d.PolygonShape;
+import com.badlogic.gdx.physics.box2d.Shape;
 import com.badlogic.gdx.physics.box2d.World;
 import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.IntArray;
+import com.badlogic.gdx.utils.ObjectMap;
 import com.esotericsoftware.minlog.Log;
 import com.rivelbop.rivelworks.g2d.physics.body.StaticBody2D;
+import com.rivelbop.rivelworks.io.Assets;
+
+import java.util.Arrays;
 
 /**
  * Used as a skeleton for all tile maps.
@@ -27,32 +41,84 @@ import com.rivelbop.rivelworks.g2d.physics.body.StaticBody2D;
 public class TileMap implements Disposable {
     private static final String LOG_TAG = TileMap.class.getSimpleName();
 
+    /**
+     * How far (in pixels) a rectangle may be off the tile grid to still be merged with the tiles it covers.
+     */
+    private static final float GRID_EPSILON = 0.01f;
+
+    /**
+     * The tile property marking tiles as solid, see {@link #solidTilesToStaticBody(int, World, float, boolean)}.
+     */
+    public static final String SOLID_PROPERTY = "solid";
+
     /**
      * Stores the data of the tile map.
      */
     protected TiledMap map;
 
+    /**
+     * The name of the 'tmx' file the tile map was loaded from.
+     */
+    protected String fileName;
+
+    /**
+     * The assets that own the map, null if the tile map loaded it itself.
+     */
+    protected Assets assets;
+
     /**
      * Used to render the tile map.
      */
     protected BatchTiledMapRenderer renderer;
 
     /**
-     * Creates a tile map from the provided file name.
+     * Used to render the tile layers in baked chunks around the camera, null if not chunked.
+     */
+    protected TileChunks chunks;
+
+    /**
+     * The spatial indices of the object layers, created by their first {@link #getObjectIndex(int)}.
+     */
+    private final ObjectMap<MapLayer, MapObjectIndex> OBJECT_INDICES = new ObjectMap<>();
+
+    /**
+     * Creates a tile map from the provided file name, either a 'tmx' file or a {@link BinaryMap} compiled from one.
      *
-     * @param fileName The name of the 'tmx' file to load.
+     * @param fileName The name of the 'tmx' or binary ({@link BinaryMap#EXTENSION}) file to load.
      */
     protected TileMap(String fileName) {
-        this.map = new TmxMapLoader().load(fileName);
+        this.map = fileName.endsWith(BinaryMap.EXTENSION) ? BinaryMap.read(Gdx.files.internal(fileName)) :
+                new TmxMapLoader().load(fileName);
+        this.fileName = fileName;
         Log.info(LOG_TAG, "LOADED: " + fileName);
     }
 
+    /**
+     * Creates a tile map from a file loaded by the provided assets, see {@link Assets#load(String, Class)} with
+     * {@link TiledMap}. The map is parsed off the render thread while the assets update, and its tileset textures are shared
+     * with all other maps of the assets that use the same images.
+     * <p>
+     * The assets own the map, disposing the tile map unloads it once. Load the file once for each tile map created from it.
+     *
+     * @param assets   The assets that loaded the 'tmx' file.
+     * @param fileName The name of the loaded 'tmx' file.
+     */
+    protected TileMap(Assets assets, String fileName) {
+        this.map = assets.get(fileName, TiledMap.class);
+        this.assets = assets;
+        this.fileName = fileName;
+    }
+
     /**
      * Renders the tile map to the provided camera.
      *
      * @param camera The camera to render the tile map to.
      */
     public void render(OrthographicCamera camera) {
+        if (chunks != null) {
+            chunks.render(camera);
+            return;
+        }
         renderer.setView(camera);
         renderer.render();
     }
@@ -64,10 +130,130 @@ public class TileMap implements Disposable {
      * @param layers The layers from the tile mape to render.
      */
     public void render(OrthographicCamera camera, int... layers) {
+        if (chunks != null) {
+            chunks.render(camera, layers);
+            return;
+        }
         renderer.setView(camera);
         renderer.render(layers);
     }
 
+    /**
+     * Sets whether the tile layers are rendered in baked chunks of 32x32 tiles, see {@link #setChunked(int)}.
+     *
+     * @param chunked Whether the tile layers are rendered in chunks.
+     */
+    public void setChunked(boolean chunked) {
+        if (!chunked) {
+            if (chunks != null) {
+                chunks.dispose();
+                chunks = null;
+            }
+        } else if (chunks == null) {
+            setChunked(32);
+        }
+    }
+
+    /**
+     * Renders the tile layers in baked chunks of the provided size, only baking the chunks around the camera on worker threads
+     * (see {@link TileChunks}). Intended for very large maps, whose rendering then costs the same regardless of their size.
+     *
+     * @param chunkSize The number of tiles along each edge of a chunk.
+     */
+    public void setChunked(int chunkSize) {
+        setChunked(chunkSize, false);
+    }
+
+    /**
+     * Renders the tile layers in baked chunks of the provided size, see {@link #setChunked(int)}.
+     *
+     * @param chunkSize The number of tiles along each edge of a chunk.
+     * @param cached    Whether baked chunks are uploaded to GPU-resident sprite caches rather than drawn by the batch.
+     */
+    public void setChunked(int chunkSize, boolean cached) {
+        setChunked(false);
+        chunks = new TileChunks(map, renderer, renderer instanceof IsometricTiledMapRenderer, chunkSize,
+                Math.max(Runtime.getRuntime().availableProcessors() - 1, 1), cached);
+    }
+
+    /**
+     * Sets whether the static tiles of the whole map are baked once into sprite caches of 32x32 tile chunks, only drawing the
+     * chunks in view. A chunk is only rebaked when one of its tiles is changed through {@link #setCell(int, int, int, Cell)}.
+     * Intended for maps that fit in GPU memory, where it removes the per-frame cost of generating the tile quads.
+     *
+     * @param cached Whether the whole map is rendered from sprite caches.
+     */
+    public void setCached(boolean cached) {
+        if (!cached) {
+            setChunked(false);
+            return;
+        }
+        setChunked(32, true);
+        chunks.setPrefetchRadius(Integer.MAX_VALUE);
+        chunks.setRetainRadius(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Sets a tile of a tile layer, rebaking its chunk if chunked.
+     *
+     * @param layer The index of the tile layer.
+     * @param col   The column of the tile.
+     * @param row   The row of the tile.
+     * @param cell  The new cell of the tile, null to clear it.
+     */
+    public void setCell(int layer, int col, int row, Cell cell) {
+        ((TiledMapTileLayer) map.getLayers().get(layer)).setCell(col, row, cell);
+        if (chunks != null) {
+            chunks.invalidate(col, row);
+        }
+    }
+
+    /**
+     * @return Whether the tile layers are rendered in baked chunks.
+     */
+    public boolean isChunked() {
+        return chunks != null;
+    }
+
+    /**
+     * Returns the chunks the tile layers are rendered in, for changing tiles and tuning the streaming radii.
+     *
+     * @return The tile chunks, null if not chunked.
+     */
+    public TileChunks getChunks() {
+        return chunks;
+    }
+
+    /**
+     * Returns the spatial index of the indexed object layer, for region, point and ray queries against its shapes. The index is
+     * created once and rebuilt when the layer changes, see {@link MapObjectIndex}.
+     *
+     * @param index The layer ID to index the objects of.
+     * @return The object index of the layer.
+     */
+    public MapObjectIndex getObjectIndex(int index) {
+        return getObjectIndex(map.getLayers().get(index));
+    }
+
+    /**
+     * Returns the spatial index of the named object layer, see {@link #getObjectIndex(int)}.
+     *
+     * @param name The layer name to index the objects of.
+     * @return The object index of the layer.
+     */
+    public MapObjectIndex getObjectIndex(String name) {
+        return getObjectIndex(map.getLayers().get(name));
+    }
+
+    private MapObjectIndex getObjectIndex(MapLayer mapLayer) {
+        MapObjectIndex index = OBJECT_INDICES.get(mapLayer);
+        if (index == null) {
+            index = new MapObjectIndex(mapLayer);
+            OBJECT_INDICES.put(mapLayer, index);
+        }
+        return index;
+    }
+
     /**
      * Returns a list of bounding shapes found with the same type and tiled map layer index.
      *
@@ -178,30 +364,231 @@ public class TileMap implements Disposable {
         Array<Rectangle> rectangles = getBoundingShapes(Rectangle.class, mapLayer);
         Array<Polygon> polygons = getBoundingShapes(Polygon.class, mapLayer);
 
-        if (rectangles != null) {
-            for (Rectangle r : rectangles) {
-                StaticBody2D staticBody = new StaticBody2D(world, new PolygonShape() {{
-                    setAsBox(r.width / 2f / PPM, r.height / 2f / PPM);
-                }});
-                staticBody.getBody().setTransform((r.x + r.width / 2f) / PPM, (r.y + r.height / 2f) / PPM, 0f);
+        for (Rectangle r : rectangles) {
+            PolygonShape shape = new PolygonShape();
+            shape.setAsBox(r.width / 2f / PPM, r.height / 2f / PPM);
+            StaticBody2D staticBody = new StaticBody2D(world, shape);
+            staticBody.getBody().setTransform((r.x + r.width / 2f) / PPM, (r.y + r.height / 2f) / PPM, 0f);
+        }
+
+        for (Polygon p : polygons) {
+            // Scaled into a copy, the map's polygon keeps its pixel vertices
+            Shape shape = MapCollision.createPolygonShape(p.getVertices(), PPM);
+            if (shape != null) {
+                StaticBody2D staticBody = new StaticBody2D(world, shape);
+                staticBody.getBody().setTransform(p.getX() / PPM, p.getY() / PPM, 0f);
+            }
+        }
+    }
+
+    /**
+     * Adds all applicable {@link Shape2D} objects from the indexed layer as fixtures of a single static body, merging the
+     * rectangles on the tile grid, see {@link #boundingShapesToStaticBody(MapLayer, World, float)}.
+     *
+     * @param index The layer ID to get the shapes from.
+     * @param world The physics world to add the body to.
+     * @param PPM   Pixel to meter conversion.
+     * @return The static body at the origin holding the shapes.
+     */
+    public Body boundingShapesToStaticBody(int index, World world, float PPM) {
+        return boundingShapesToStaticBody(map.getLayers().get(index), world, PPM);
+    }
+
+    /**
+     * Adds all applicable {@link Shape2D} objects from the named layer as fixtures of a single static body, merging the
+     * rectangles on the tile grid, see {@link #boundingShapesToStaticBody(MapLayer, World, float)}.
+     *
+     * @param name  The layer name to get the shapes from.
+     * @param world The physics world to add the body to.
+     * @param PPM   Pixel to meter conversion.
+     * @return The static body at the origin holding the shapes.
+     */
+    public Body boundingShapesToStaticBody(String name, World world, float PPM) {
+        return boundingShapesToStaticBody(map.getLayers().get(name), world, PPM);
+    }
+
+    /**
+     * Adds the {@link Rectangle} and {@link Polygon} objects of the layer as fixtures of a single static body. Rectangles
+     * aligned to the tile grid are rasterized and greedy-merged into as few boxes as possible (see
+     * {@link MapCollision#greedyMesh(boolean[], int, int, IntArray)}), so a layer of hand-drawn tile rectangles becomes a
+     * handful of fixtures instead of a body per rectangle.
+     *
+     * @param mapLayer The layer to get the shapes from.
+     * @param world    The physics world to add the body to.
+     * @param PPM      Pixel to meter conversion.
+     * @return The static body at the origin holding the shapes.
+     */
+    private Body boundingShapesToStaticBody(MapLayer mapLayer, World world, float PPM) {
+        Body body = MapCollision.createStaticBody(world);
+        MapProperties properties = map.getProperties();
+        int columns = properties.get("width", 0, Integer.class), rows = properties.get("height", 0, Integer.class);
+        int tileWidth = properties.get("tilewidth", 0, Integer.class), tileHeight = properties.get("tileheight", 0, Integer.class);
+
+        boolean[] solid = new boolean[columns * rows];
+        boolean anySolid = false;
+        for (Rectangle r : getBoundingShapes(Rectangle.class, mapLayer)) {
+            // Rectangles covering whole tiles are rasterized, others are added as they are
+            int x = tileWidth > 0 ? Math.round(r.x / tileWidth) : -1, y = tileHeight > 0 ? Math.round(r.y / tileHeight) : -1;
+            int width = tileWidth > 0 ? Math.round(r.width / tileWidth) : 0, height = tileHeight > 0 ? Math.round(r.height / tileHeight) : 0;
+            if (width <= 0 || height <= 0 || x < 0 || y < 0 || x + width > columns || y + height > rows ||
+                    !MathUtils.isEqual(x * tileWidth, r.x, GRID_EPSILON) || !MathUtils.isEqual(y * tileHeight, r.y, GRID_EPSILON) ||
+                    !MathUtils.isEqual(width * tileWidth, r.width, GRID_EPSILON) ||
+                    !MathUtils.isEqual(height * tileHeight, r.height, GRID_EPSILON)) {
+                MapCollision.addBox(body, r.x, r.y, r.width, r.height, PPM);
+                continue;
+            }
+            for (int row = y; row < y + height; row++) {
+                Arrays.fill(solid, row * columns + x, row * columns + x + width, true);
+            }
+            anySolid = true;
+        }
+
+        if (anySolid) {
+            IntArray boxes = MapCollision.greedyMesh(solid, columns, rows, new IntArray());
+            for (int i = 0; i < boxes.size; i += 4) {
+                MapCollision.addBox(body, boxes.get(i) * tileWidth, boxes.get(i + 1) * tileHeight,
+                        boxes.get(i + 2) * tileWidth, boxes.get(i + 3) * tileHeight, PPM);
             }
         }
 
-        if (polygons != null) {
-            for (Polygon p : polygons) {
-                float[] vertices = p.getVertices();
-                for (int i = 0; i < vertices.length; i++) {
-                    vertices[i] /= PPM;
+        for (Polygon p : getBoundingShapes(Polygon.class, mapLayer)) {
+            MapCollision.addPolygon(body, p.getTransformedVertices(), PPM);
+        }
+        return body;
+    }
+
+    /**
+     * Generates the collision of the indexed tile layer from its solid tiles, see
+     * {@link #solidTilesToStaticBody(TiledMapTileLayer, World, float, boolean)}.
+     *
+     * @param index  The layer ID of the tile layer.
+     * @param world  The physics world to add the body to.
+     * @param PPM    Pixel to meter conversion.
+     * @param chains Whether to outline the solid tiles with chain loops rather than fill them with boxes.
+     * @return The static body at the origin holding the collision.
+     */
+    public Body solidTilesToStaticBody(int index, World world, float PPM, boolean chains) {
+        return solidTilesToStaticBody((TiledMapTileLayer) map.getLayers().get(index), world, PPM, chains);
+    }
+
+    /**
+     * Generates the collision of the named tile layer from its solid tiles, see
+     * {@link #solidTilesToStaticBody(TiledMapTileLayer, World, float, boolean)}.
+     *
+     * @param name   The layer name of the tile layer.
+     * @param world  The physics world to add the body to.
+     * @param PPM    Pixel to meter conversion.
+     * @param chains Whether to outline the solid tiles with chain loops rather than fill them with boxes.
+     * @return The static body at the origin holding the collision.
+     */
+    public Body solidTilesToStaticBody(String name, World world, float PPM, boolean chains) {
+        return solidTilesToStaticBody((TiledMapTileLayer) map.getLayers().get(name), world, PPM, chains);
+    }
+
+    /**
+     * Generates the collision of a tile layer from the tiles whose tileset marks them with the {@link #SOLID_PROPERTY}, as
+     * fixtures of a single static body. The solid tiles are either greedy-merged into boxes, or their outlines are traced into
+     * chain loops (smooth for sliding characters, and fewer fixtures). On isometric maps the boxes become diamonds.
+     * <p>
+     * The geometry is cached in a binary file next to the map ('tmx' name, layer name and '.collision', in local storage or
+     * shipped internally), keyed by a hash of the map file, so later loads skip the generation. Tilesets in external files
+     * are not part of the hash, delete the cache after changing them.
+     *
+     * @param layer  The tile layer.
+     * @param world  The physics world to add the body to.
+     * @param PPM    Pixel to meter conversion.
+     * @param chains Whether to outline the solid tiles with chain loops rather than fill them with boxes.
+     * @return The static body at the origin holding the collision.
+     */
+    private Body solidTilesToStaticBody(TiledMapTileLayer layer, World world, float PPM, boolean chains) {
+        int columns = layer.getWidth(), rows = layer.getHeight();
+        String cacheName = fileName + "." + layer.getName() + ".collision";
+        long hash = MapCollision.hash(Gdx.files.internal(fileName).readBytes(), layer.getName() + "/" + SOLID_PROPERTY +
+                "/" + (chains ? "chains" : "boxes") + "/" + columns + "x" + rows);
+
+        FileHandle cache = Gdx.files.local(cacheName);
+        IntArray geometry = MapCollision.readCache(cache, hash);
+        if (geometry == null && Gdx.files.internal(cacheName).exists()) {
+            geometry = MapCollision.readCache(Gdx.files.internal(cacheName), hash);
+        }
+        if (geometry == null) {
+            boolean[] solid = new boolean[columns * rows];
+            for (int y = 0; y < rows; y++) {
+                for (int x = 0; x < columns; x++) {
+                    solid[y * columns + x] = isSolid(layer.getCell(x, y));
                 }
+            }
+            geometry = chains ? MapCollision.traceContours(solid, columns, rows, new IntArray()) :
+                    MapCollision.greedyMesh(solid, columns, rows, new IntArray());
+            MapCollision.writeCache(cache, hash, geometry);
+            Log.info(LOG_TAG, "GENERATED COLLISION: " + cacheName);
+        }
 
-                StaticBody2D staticBody = new StaticBody2D(world, new PolygonShape() {{
-                    set(vertices);
-                }});
-                staticBody.getBody().setTransform(p.getX() / PPM, p.getY() / PPM, 0f);
+        Body body = MapCollision.createStaticBody(world);
+        float tileWidth = layer.getTileWidth(), tileHeight = layer.getTileHeight();
+        boolean isometric = renderer instanceof IsometricTiledMapRenderer;
+        if (chains) {
+            for (int i = 0; i < geometry.size; ) {
+                int corners = geometry.get(i++);
+                float[] vertices = new float[corners * 2];
+                for (int c = 0; c < vertices.length; c += 2, i += 2) {
+                    gridToWorld(geometry.get(i), geometry.get(i + 1), tileWidth, tileHeight, isometric, vertices, c);
+                    vertices[c] /= PPM;
+                    vertices[c + 1] /= PPM;
+                }
+                MapCollision.addChain(body, vertices, true);
             }
+        } else {
+            float[] diamond = new float[8];
+            for (int i = 0; i < geometry.size; i += 4) {
+                int x = geometry.get(i), y = geometry.get(i + 1), width = geometry.get(i + 2), height = geometry.get(i + 3);
+                if (!isometric) {
+                    MapCollision.addBox(body, x * tileWidth, y * tileHeight, width * tileWidth, height * tileHeight, PPM);
+                    continue;
+                }
+                gridToWorld(x, y, tileWidth, tileHeight, true, diamond, 0);
+                gridToWorld(x + width, y, tileWidth, tileHeight, true, diamond, 2);
+                gridToWorld(x + width, y + height, tileWidth, tileHeight, true, diamond, 4);
+                gridToWorld(x, y + height, tileWidth, tileHeight, true, diamond, 6);
+                MapCollision.addPolygon(body, diamond, PPM);
+            }
+        }
+        return body;
+    }
+
+    /**
+     * Projects a tile grid corner to its world position (in pixels).
+     *
+     * @param x          The x-coordinate of the corner (in tiles).
+     * @param y          The y-coordinate of the corner (in tiles).
+     * @param tileWidth  The width of a tile.
+     * @param tileHeight The height of a tile.
+     * @param isometric  Whether the grid is isometric, where corner (0, 0) is the left corner of the first tile.
+     * @param out        The array to write the position to.
+     * @param offset     The index of the position's x-coordinate.
+     */
+    private static void gridToWorld(int x, int y, float tileWidth, float tileHeight, boolean isometric, float[] out, int offset) {
+        if (isometric) {
+            out[offset] = (x + y) * tileWidth / 2f;
+            out[offset + 1] = (y - x + 1) * tileHeight / 2f;
+        } else {
+            out[offset] = x * tileWidth;
+            out[offset + 1] = y * tileHeight;
         }
     }
 
+    /**
+     * @param cell The cell of a tile layer.
+     * @return Whether the cell's tile has the {@link #SOLID_PROPERTY} set to true.
+     */
+    private static boolean isSolid(TiledMapTileLayer.Cell cell) {
+        if (cell == null || cell.getTile() == null) {
+            return false;
+        }
+        Object solid = cell.getTile().getProperties().get(SOLID_PROPERTY);
+        return solid instanceof Boolean ? (Boolean) solid : solid != null && Boolean.parseBoolean(solid.toString());
+    }
+
     /**
      * Returns the stored default LibGDX tiled map for more control.
      *
@@ -221,12 +608,17 @@ public class TileMap implements Disposable {
     }
 
     /**
-     * Removes {@link #map} and {@link #renderer} in the object from memory.
+     * Removes {@link #map}, {@link #renderer} and {@link #chunks} in the object from memory.
      * Should be called if the map is no longer in use.
      */
     @Override
     public void dispose() {
-        map.dispose();
+        setChunked(false);
+        if (assets != null) {
+            assets.unload(fileName);
+        } else {
+            map.dispose();
+        }
         renderer.dispose();
     }
 }
\ No newline at end of file
@@ -0,0 +1,343 @@
+package com.rivelbop.rivelworks.g3d.physics;
+
+import com.badlogic.gdx.physics.bullet.collision.*;
+import com.badlogic.gdx.utils.Array;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Caches which collision objects of a world are touching, read from the dispatcher's persistent manifolds after each simulation
+ * step. Queries are O(1) and do not touch Bullet, and {@link Listener}s are told when pairs start touching, keep touching and stop
+ * touching.
+ * <p>
+ * If the world is simulated on another thread, the simulating thread {@link #publish() publishes} a copy of the pairs after its
+ * steps and the querying thread {@link #consume() takes} the latest one, so queries never read the pairs being rebuilt.
+ *
+ * @author David Jerzak (RivelBop)
+ */
+public class ContactCache {
+    /**
+     * Receives contact events from {@link #update()}.
+     */
+    public interface Listener {
+        /**
+         * Called when two objects touch for the first step.
+         *
+         * @param a The first object.
+         * @param b The second object.
+         */
+        default void onContactEnter(btCollisionObject a, btCollisionObject b) {
+        }
+
+        /**
+         * Called for every further step two objects keep touching.
+         *
+         * @param a The first object.
+         * @param b The second object.
+         */
+        default void onContactStay(btCollisionObject a, btCollisionObject b) {
+        }
+
+        /**
+         * Called for the first step two objects no longer touch. Either object may have been removed from the world since.
+         *
+         * @param a The first object.
+         * @param b The second object.
+         */
+        default void onContactExit(btCollisionObject a, btCollisionObject b) {
+        }
+    }
+
+    /**
+     * The dispatcher to read the persistent manifolds from.
+     */
+    private final btDispatcher DISPATCHER;
+
+    /**
+     * Listeners notified by {@link #update()}.
+     */
+    private final Array<Listener> LISTENERS;
+
+    /**
+     * Touching pairs of the current and the previous step, swapped by {@link #update()}.
+     */
+    private PairTable current, previous;
+
+    /**
+     * The pairs read by queries: the current ones, or the latest consumed copy while {@link #setPublished(boolean) published}.
+     * The copies are exchanged like the world's transform snapshots, the third one is held by {@link #READY}.
+     */
+    private PairTable queried;
+    private final AtomicReference<PairTable> READY;
+    private PairTable written;
+    private boolean published;
+
+    // Shared narrow phase for objects that are not in a world
+    private static btDefaultCollisionConfiguration queryConfig;
+    private static btCollisionDispatcher queryDispatcher;
+
+    /**
+     * Creates a contact cache reading from the provided dispatcher.
+     *
+     * @param dispatcher The dispatcher of the world.
+     */
+    public ContactCache(btDispatcher dispatcher) {
+        this.DISPATCHER = dispatcher;
+        this.LISTENERS = new Array<>();
+        this.current = new PairTable();
+        this.previous = new PairTable();
+        this.queried = current;
+        this.READY = new AtomicReference<>(new PairTable());
+        this.written = new PairTable();
+    }
+
+    /**
+     * Rebuilds the touching pairs from the dispatcher and notifies the listeners. Must be called after each simulation step.
+     */
+    public void update() {
+        PairTable table = previous;
+        previous = current;
+        current = table;
+        current.clear();
+
+        for (int i = 0, n = DISPATCHER.getNumManifolds(); i < n; i++) {
+            btPersistentManifold manifold = DISPATCHER.getManifoldByIndexInternal(i);
+            if (manifold.getNumContacts() > 0) {
+                current.add(manifold.getBody0(), manifold.getBody1());
+            }
+        }
+        if (!published) {
+            queried = current;
+        }
+
+        if (LISTENERS.size == 0) {
+            return;
+        }
+        for (int i = 0; i < current.capacity; i++) {
+            btCollisionObject a = current.objectsA[i];
+            if (a == null) {
+                continue;
+            }
+            btCollisionObject b = current.objectsB[i];
+            boolean stay = previous.contains(current.keysA[i], current.keysB[i]);
+            for (int l = 0; l < LISTENERS.size; l++) {
+                if (stay) {
+                    LISTENERS.get(l).onContactStay(a, b);
+                } else {
+                    LISTENERS.get(l).onContactEnter(a, b);
+                }
+            }
+        }
+        for (int i = 0; i < previous.capacity; i++) {
+            btCollisionObject a = previous.objectsA[i];
+            if (a == null || current.contains(previous.keysA[i], previous.keysB[i])) {
+                continue;
+            }
+            for (int l = 0; l < LISTENERS.size; l++) {
+                LISTENERS.get(l).onContactExit(a, previous.objectsB[i]);
+            }
+        }
+    }
+
+    /**
+     * Sets whether queries read published copies of the pairs, for worlds simulated on another thread. Must be called while
+     * the world is not being simulated.
+     *
+     * @param published Whether queries read the pairs {@link #consume() consumed} from {@link #publish()}.
+     */
+    public void setPublished(boolean published) {
+        this.published = published;
+        if (published) {
+            queried = new PairTable();
+            queried.set(current);
+        } else {
+            queried = current;
+        }
+    }
+
+    /**
+     * Publishes a copy of the current pairs for the querying thread, called by the simulating thread after its steps.
+     */
+    public void publish() {
+        written.set(current);
+        written.fresh = true;
+        written = READY.getAndSet(written);
+    }
+
+    /**
+     * Takes the latest published pairs for the queries if pairs were published since the last call, called by the querying
+     * thread.
+     */
+    public void consume() {
+        if (!READY.get().fresh) {
+            return;
+        }
+        PairTable latest = READY.getAndSet(queried);
+        latest.fresh = false;
+        queried = latest;
+    }
+
+    /**
+     * @param a The first object.
+     * @param b The second object.
+     * @return True if the objects were touching after the last step (the last consumed one, if published).
+     */
+    public boolean isTouching(btCollisionObject a, btCollisionObject b) {
+        PairTable pairs = queried;
+        long pointerA = a.getCPointer(), pointerB = b.getCPointer();
+        return pointerA < pointerB ? pairs.contains(pointerA, pointerB) : pairs.contains(pointerB, pointerA);
+    }
+
+    /**
+     * @return The number of pairs touching after the last step (the last consumed one, if published).
+     */
+    public int size() {
+        return queried.size;
+    }
+
+    /**
+     * @param listener The listener to notify of contact events.
+     */
+    public void addListener(Listener listener) {
+        LISTENERS.add(listener);
+    }
+
+    /**
+     * @param listener The listener to no longer notify.
+     */
+    public void removeListener(Listener listener) {
+        LISTENERS.removeValue(listener, true);
+    }
+
+    /**
+     * Runs a one-off narrow phase between two objects, for objects that are not in a world with a {@link ContactCache}. Shares a
+     * single dispatcher between all callers.
+     *
+     * @param a The first object.
+     * @param b The second object.
+     * @return True if the number of contacts between the objects is greater than 0.
+     */
+    public static synchronized boolean testContact(btCollisionObject a, btCollisionObject b) {
+        if (queryDispatcher == null) {
+            queryConfig = new btDefaultCollisionConfiguration();
+            queryDispatcher = new btCollisionDispatcher(queryConfig);
+        }
+
+        CollisionObjectWrapper col1 = new CollisionObjectWrapper(a);
+        CollisionObjectWrapper col2 = new CollisionObjectWrapper(b);
+
+        btCollisionAlgorithm algorithm = queryDispatcher.findAlgorithm(col1.wrapper, col2.wrapper, null, 0);
+
+        btDispatcherInfo dispatcherInfo = new btDispatcherInfo();
+        btManifoldResult result = new btManifoldResult(col1.wrapper, col2.wrapper);
+
+        algorithm.processCollision(col1.wrapper, col2.wrapper, dispatcherInfo, result);
+
+        boolean r = result.getPersistentManifold().getNumContacts() > 0;
+
+        queryDispatcher.freeCollisionAlgorithm(algorithm.getCPointer());
+        col1.dispose();
+        col2.dispose();
+        algorithm.dispose();
+        dispatcherInfo.dispose();
+        result.dispose();
+        return r;
+    }
+
+    /**
+     * Open addressing hash set of object pairs, keyed by their native pointers (lower pointer first).
+     */
+    private static final class PairTable {
+        private int capacity = 64, mask = capacity - 1, size;
+        private long[] keysA = new long[capacity], keysB = new long[capacity];
+        private btCollisionObject[] objectsA = new btCollisionObject[capacity], objectsB = new btCollisionObject[capacity];
+        private boolean fresh;
+
+        void add(btCollisionObject a, btCollisionObject b) {
+            long pointerA = a.getCPointer(), pointerB = b.getCPointer();
+            if (pointerA > pointerB) {
+                long pointer = pointerA;
+                pointerA = pointerB;
+                pointerB = pointer;
+                btCollisionObject object = a;
+                a = b;
+                b = object;
+            }
+            if ((size + 1) * 2 > capacity) {
+                resize(capacity << 1);
+            }
+
+            int i = slot(pointerA, pointerB);
+            while (objectsA[i] != null) {
+                if (keysA[i] == pointerA && keysB[i] == pointerB) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            keysA[i] = pointerA;
+            keysB[i] = pointerB;
+            objectsA[i] = a;
+            objectsB[i] = b;
+            size++;
+        }
+
+        boolean contains(long pointerA, long pointerB) {
+            for (int i = slot(pointerA, pointerB); objectsA[i] != null; i = (i + 1) & mask) {
+                if (keysA[i] == pointerA && keysB[i] == pointerB) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void set(PairTable other) {
+            if (capacity != other.capacity) {
+                capacity = other.capacity;
+                mask = other.mask;
+                keysA = new long[capacity];
+                keysB = new long[capacity];
+                objectsA = new btCollisionObject[capacity];
+                objectsB = new btCollisionObject[capacity];
+            }
+            System.arraycopy(other.keysA, 0, keysA, 0, capacity);
+            System.arraycopy(other.keysB, 0, keysB, 0, capacity);
+            System.arraycopy(other.objectsA, 0, objectsA, 0, capacity);
+            System.arraycopy(other.objectsB, 0, objectsB, 0, capacity);
+            size = other.size;
+        }
+
+        void clear() {
+            if (size == 0) {
+                return;
+            }
+            Arrays.fill(objectsA, null);
+            Arrays.fill(objectsB, null);
+            size = 0;
+        }
+
+        private int slot(long pointerA, long pointerB) {
+            long hash = (pointerA * 31 + pointerB) * 0x9E3779B97F4A7C15L;
+            return (int) (hash >>> 32) & mask;
+        }
+
+        private void resize(int newCapacity) {
+            long[] oldKeysA = keysA, oldKeysB = keysB;
+            btCollisionObject[] oldObjectsA = objectsA, oldObjectsB = objectsB;
+            int oldCapacity = capacity;
+
+            capacity = newCapacity;
+            mask = capacity - 1;
+            keysA = new long[capacity];
+            keysB = new long[capacity];
+            objectsA = new btCollisionObject[capacity];
+            objectsB = new btCollisionObject[capacity];
+            size = 0;
+            for (int i = 0; i < oldCapacity; i++) {
+                if (oldObjectsA[i] != null) {
+                    add(oldObjectsA[i], oldObjectsB[i]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,413 @@
+package com.rivelbop.rivelworks.g3d.physics;
+
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Mesh;
+import com.badlogic.gdx.graphics.VertexAttributes;
+import com.badlogic.gdx.graphics.g3d.Model;
+import com.badlogic.gdx.graphics.g3d.model.MeshPart;
+import com.badlogic.gdx.graphics.g3d.model.Node;
+import com.badlogic.gdx.graphics.g3d.model.NodePart;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.math.collision.BoundingBox;
+import com.badlogic.gdx.physics.bullet.collision.btConvexHullShape;
+import com.badlogic.gdx.physics.bullet.collision.btConvexPolyhedron;
+import com.badlogic.gdx.physics.bullet.linearmath.btVector3;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.FloatArray;
+
+/**
+ * A few conservative boxes inside a collision shape, in the shape's local space. Drawing them to an {@link OcclusionBuffer}
+ * never occludes anything the actual shape would not, which lets shapes other than boxes act as occluders for
+ * {@link OcclusionCuller}.
+ *
+ * @author David Jerzak (RivelBop)
+ */
+public final class OccluderProxy {
+    /**
+     * The inner boxes in the shape's local space, largest first.
+     */
+    public final Array<BoundingBox> BOXES;
+
+    /**
+     * Bounds of all {@link #BOXES}.
+     */
+    public final BoundingBox BOUNDS;
+
+    // Maximum number of boxes kept, and columns per axis searched for boxes under the top surface
+    private static final int MAX_BOXES = 8;
+    private static final int COLUMNS = 4;
+
+    // Share of a box's volume inside an already kept box above which it is dropped
+    private static final float REDUNDANT_OVERLAP = 0.9f;
+
+    // Smallest extent kept, relative to the largest dimension of the bounds
+    private static final float MIN_EXTENT = 0.02f;
+
+    // Refinement steps of the box search
+    private static final int SCALE_STEPS = 12;
+    private static final int AXIS_STEPS = 8;
+
+    /**
+     * Creates a new occluder proxy from the provided box.
+     *
+     * @param center      Center of the box in the shape's local space.
+     * @param halfExtents Half extents of the box.
+     */
+    public OccluderProxy(Vector3 center, Vector3 halfExtents) {
+        this(Array.with(new BoundingBox(new Vector3(center).sub(halfExtents), new Vector3(center).add(halfExtents))));
+    }
+
+    /**
+     * Creates a new occluder proxy from the provided boxes.
+     *
+     * @param boxes The inner boxes in the shape's local space (not copied).
+     */
+    public OccluderProxy(Array<BoundingBox> boxes) {
+        this.BOXES = boxes;
+        this.BOUNDS = new BoundingBox().inf();
+        for (BoundingBox box : boxes) {
+            BOUNDS.ext(box);
+        }
+    }
+
+    /**
+     * Computes the inner box of a convex hull, using the inner box Bullet computes for its polyhedral features. The features are
+     * initialized on a copy, so the contact generation of the provided shape is left unchanged.
+     *
+     * @param shape The convex hull.
+     * @return The inner box, null if the hull has no volume.
+     */
+    public static OccluderProxy of(btConvexHullShape shape) {
+        btConvexHullShape copy = new btConvexHullShape();
+        try {
+            int numPoints = shape.getNumPoints();
+            for (int i = 0; i < numPoints; i++) {
+                copy.addPoint(shape.getScaledPoint(i), i == numPoints - 1);
+            }
+            if (numPoints < 4 || !copy.initializePolyhedralFeatures()) {
+                return null;
+            }
+
+            btConvexPolyhedron polyhedron = copy.getConvexPolyhedron();
+            btVector3 center = polyhedron.getLocalCenter(), extents = polyhedron.getExtents();
+            if (extents.getX() <= 0f || extents.getY() <= 0f || extents.getZ() <= 0f) {
+                return null;
+            }
+            return new OccluderProxy(new Vector3(center.getX(), center.getY(), center.getZ()),
+                    new Vector3(extents.getX(), extents.getY(), extents.getZ()));
+        } finally {
+            copy.dispose();
+        }
+    }
+
+    /**
+     * Computes the inner boxes of a model's triangle meshes, in the same space {@link Physics3D#collisionShape} builds static mesh
+     * shapes in (node transforms applied). Solid space is where a ray cast up (+Y) crosses the surface an odd number of times,
+     * which covers closed meshes as well as the ground under an open terrain mesh.
+     *
+     * @param model The model to gather triangles from.
+     * @return The inner boxes, null if no box fits inside the meshes.
+     */
+    public static OccluderProxy of(Model model) {
+        FloatArray triangles = new FloatArray();
+        for (Node node : model.nodes) {
+            gatherTriangles(node, triangles);
+        }
+        return of(triangles.toArray());
+    }
+
+    /**
+     * Computes the inner boxes of a triangle soup, see {@link #of(Model)}. Boxes are grown around the center of the bounds and
+     * around a grid of columns just under the top surface, then the largest boxes not (almost) inside a larger one are kept.
+     *
+     * @param triangles Triangle vertex positions, 9 floats (3 vertices) per triangle.
+     * @return The inner boxes, null if no box fits inside the triangles.
+     */
+    public static OccluderProxy of(float[] triangles) {
+        if (triangles.length < 9) {
+            return null;
+        }
+
+        Vector3 min = new Vector3(Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY, Float.POSITIVE_INFINITY);
+        Vector3 max = new Vector3(Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NEGATIVE_INFINITY);
+        for (int i = 0; i < triangles.length; i += 3) {
+            min.set(Math.min(min.x, triangles[i]), Math.min(min.y, triangles[i + 1]), Math.min(min.z, triangles[i + 2]));
+            max.set(Math.max(max.x, triangles[i]), Math.max(max.y, triangles[i + 1]), Math.max(max.z, triangles[i + 2]));
+        }
+
+        // Seeds slightly (and unevenly) off the grid, so the parity ray does not run along shared edges of regular meshes
+        float offset = 1e-4f * max.dst(min), offsetZ = offset * 0.618f;
+        Vector3 center = new Vector3(min).add(max).scl(0.5f).add(offset, 0f, offsetZ);
+
+        // An open bottom (terrain) is solid below the bounds as well
+        if (isInside(triangles, new Vector3(center.x, min.y - offset, center.z))) {
+            min.y -= Math.max(max.x - min.x, max.z - min.z);
+        }
+
+        Array<Vector3> seeds = new Array<>();
+        seeds.add(center);
+        seeds.add(new Vector3(center.x, min.y + (max.y - min.y) * 0.25f, center.z));
+        FloatArray crossings = new FloatArray();
+        for (int column = 0; column < COLUMNS * COLUMNS; column++) {
+            float x = min.x + (max.x - min.x) * (column % COLUMNS + 0.5f) / COLUMNS + offset;
+            float z = min.z + (max.z - min.z) * (column / COLUMNS + 0.5f) / COLUMNS + offsetZ;
+            getCrossings(triangles, x, z, crossings);
+            if (crossings.size > 0) {
+                // Middle of the solid span under the highest crossing
+                float top = crossings.get(crossings.size - 1);
+                float bottom = crossings.size > 1 ? crossings.get(crossings.size - 2) : min.y;
+                seeds.add(new Vector3(x, (top + bottom) * 0.5f, z));
+            }
+        }
+
+        // Slivers are not worth drawing
+        float minExtent = MIN_EXTENT * Math.max(max.x - min.x, Math.max(max.y - min.y, max.z - min.z));
+        Array<BoundingBox> candidates = new Array<>();
+        for (Vector3 seed : seeds) {
+            if (!isInside(triangles, seed)) {
+                continue;
+            }
+            BoundingBox candidate = new BoundingBox();
+            growBox(triangles, seed, min, max, candidate);
+            if (Math.min(candidate.getWidth(), Math.min(candidate.getHeight(), candidate.getDepth())) > minExtent) {
+                candidates.add(candidate);
+            }
+        }
+        candidates.sort((a, b) -> Float.compare(volume(b), volume(a)));
+
+        Array<BoundingBox> boxes = new Array<>();
+        BoundingBox intersection = new BoundingBox();
+        for (BoundingBox candidate : candidates) {
+            boolean redundant = false;
+            for (BoundingBox box : boxes) {
+                if (intersect(candidate, box, intersection) && volume(intersection) > REDUNDANT_OVERLAP * volume(candidate)) {
+                    redundant = true;
+                    break;
+                }
+            }
+            if (!redundant) {
+                boxes.add(candidate);
+                if (boxes.size == MAX_BOXES) {
+                    break;
+                }
+            }
+        }
+        return boxes.size > 0 ? new OccluderProxy(boxes) : null;
+    }
+
+    /**
+     * @return The volume of the box.
+     */
+    private static float volume(BoundingBox box) {
+        return box.getWidth() * box.getHeight() * box.getDepth();
+    }
+
+    /**
+     * @return True if the boxes overlap, with the overlap written to the output box.
+     */
+    private static boolean intersect(BoundingBox a, BoundingBox b, BoundingBox out) {
+        float minX = Math.max(a.min.x, b.min.x), minY = Math.max(a.min.y, b.min.y), minZ = Math.max(a.min.z, b.min.z);
+        float maxX = Math.min(a.max.x, b.max.x), maxY = Math.min(a.max.y, b.max.y), maxZ = Math.min(a.max.z, b.max.z);
+        if (minX >= maxX || minY >= maxY || minZ >= maxZ) {
+            return false;
+        }
+        out.min.set(minX, minY, minZ);
+        out.max.set(maxX, maxY, maxZ);
+        out.update();
+        return true;
+    }
+
+    /**
+     * Adds the triangles of a node and its children to the provided array.
+     *
+     * @param node      The node to gather triangles from.
+     * @param triangles Triangle vertex positions output.
+     */
+    private static void gatherTriangles(Node node, FloatArray triangles) {
+        Vector3 vertex = new Vector3();
+        for (NodePart nodePart : node.parts) {
+            MeshPart meshPart = nodePart.meshPart;
+            if (meshPart.primitiveType != GL20.GL_TRIANGLES) {
+                continue;
+            }
+
+            Mesh mesh = meshPart.mesh;
+            int stride = mesh.getVertexSize() / 4;
+            int position = mesh.getVertexAttribute(VertexAttributes.Usage.Position).offset / 4;
+            float[] vertices = mesh.getVertices(new float[mesh.getNumVertices() * stride]);
+            short[] indices = null;
+            if (mesh.getNumIndices() > 0) {
+                indices = new short[mesh.getNumIndices()];
+                mesh.getIndices(indices);
+            }
+
+            for (int i = meshPart.offset, end = meshPart.offset + meshPart.size; i < end; i++) {
+                int index = (indices != null ? indices[i] & 0xFFFF : i) * stride + position;
+                vertex.set(vertices[index], vertices[index + 1], vertices[index + 2]).mul(node.globalTransform);
+                triangles.add(vertex.x, vertex.y, vertex.z);
+            }
+        }
+
+        for (Node child : node.getChildren()) {
+            gatherTriangles(child, triangles);
+        }
+    }
+
+    /**
+     * Finds a large box around the seed that no triangle crosses, first scaling the bounds uniformly, then pushing out each face.
+     *
+     * @param triangles Triangle vertex positions.
+     * @param seed      Point inside the triangles to grow from.
+     * @param min       Minimum of the search bounds.
+     * @param max       Maximum of the search bounds.
+     * @param box       Box output, empty (min = max) if nothing fits.
+     */
+    private static void growBox(float[] triangles, Vector3 seed, Vector3 min, Vector3 max, BoundingBox box) {
+        float limitX = Math.min(seed.x - min.x, max.x - seed.x);
+        float limitY = Math.min(seed.y - min.y, max.y - seed.y);
+        float limitZ = Math.min(seed.z - min.z, max.z - seed.z);
+
+        float low = 0f, high = 1f;
+        for (int i = 0; i < SCALE_STEPS; i++) {
+            float scale = (low + high) * 0.5f;
+            if (isEmpty(triangles, seed.x - limitX * scale, seed.y - limitY * scale, seed.z - limitZ * scale,
+                    seed.x + limitX * scale, seed.y + limitY * scale, seed.z + limitZ * scale)) {
+                low = scale;
+            } else {
+                high = scale;
+            }
+        }
+        float[] bounds = {
+                seed.x - limitX * low, seed.y - limitY * low, seed.z - limitZ * low,
+                seed.x + limitX * low, seed.y + limitY * low, seed.z + limitZ * low
+        };
+        if (low > 0f) {
+            // Faces in the order of the bounds array, each pushed toward the search bounds
+            float[] targets = {min.x, min.y, min.z, max.x, max.y, max.z};
+            for (int face = 0; face < 6; face++) {
+                float from = bounds[face], to = targets[face];
+                for (int i = 0; i < AXIS_STEPS; i++) {
+                    bounds[face] = (from + to) * 0.5f;
+                    if (isEmpty(triangles, bounds[0], bounds[1], bounds[2], bounds[3], bounds[4], bounds[5])) {
+                        from = bounds[face];
+                    } else {
+                        to = bounds[face];
+                    }
+                }
+                bounds[face] = from;
+            }
+        }
+        box.min.set(bounds[0], bounds[1], bounds[2]);
+        box.max.set(bounds[3], bounds[4], bounds[5]);
+        box.update();
+    }
+
+    /**
+     * @return True if no triangle touches the box.
+     */
+    private static boolean isEmpty(float[] triangles, float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        float centerX = (minX + maxX) * 0.5f, centerY = (minY + maxY) * 0.5f, centerZ = (minZ + maxZ) * 0.5f;
+        float hx = (maxX - minX) * 0.5f, hy = (maxY - minY) * 0.5f, hz = (maxZ - minZ) * 0.5f;
+        for (int i = 0; i < triangles.length; i += 9) {
+            if (overlaps(triangles, i, centerX, centerY, centerZ, hx, hy, hz)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Separating axis test of a triangle against a box (bounds axes, triangle normal and the nine edge cross products).
+     *
+     * @return True if the triangle touches the box.
+     */
+    private static boolean overlaps(float[] triangles, int i, float centerX, float centerY, float centerZ,
+                                    float hx, float hy, float hz) {
+        float ax = triangles[i] - centerX, ay = triangles[i + 1] - centerY, az = triangles[i + 2] - centerZ;
+        float bx = triangles[i + 3] - centerX, by = triangles[i + 4] - centerY, bz = triangles[i + 5] - centerZ;
+        float cx = triangles[i + 6] - centerX, cy = triangles[i + 7] - centerY, cz = triangles[i + 8] - centerZ;
+
+        if (Math.min(ax, Math.min(bx, cx)) > hx || Math.max(ax, Math.max(bx, cx)) < -hx
+                || Math.min(ay, Math.min(by, cy)) > hy || Math.max(ay, Math.max(by, cy)) < -hy
+                || Math.min(az, Math.min(bz, cz)) > hz || Math.max(az, Math.max(bz, cz)) < -hz) {
+            return false;
+        }
+
+        float e0x = bx - ax, e0y = by - ay, e0z = bz - az;
+        float e1x = cx - bx, e1y = cy - by, e1z = cz - bz;
+        if (separates(e0y * e1z - e0z * e1y, e0z * e1x - e0x * e1z, e0x * e1y - e0y * e1x,
+                ax, ay, az, bx, by, bz, cx, cy, cz, hx, hy, hz)) {
+            return false;
+        }
+        return !separatesEdge(e0x, e0y, e0z, ax, ay, az, bx, by, bz, cx, cy, cz, hx, hy, hz)
+                && !separatesEdge(e1x, e1y, e1z, ax, ay, az, bx, by, bz, cx, cy, cz, hx, hy, hz)
+                && !separatesEdge(ax - cx, ay - cy, az - cz, ax, ay, az, bx, by, bz, cx, cy, cz, hx, hy, hz);
+    }
+
+    /**
+     * @return True if a cross product of the box axes (x, y, z) with the triangle edge separates the triangle from the box.
+     */
+    private static boolean separatesEdge(float ex, float ey, float ez, float ax, float ay, float az, float bx, float by,
+                                         float bz, float cx, float cy, float cz, float hx, float hy, float hz) {
+        return separates(0f, -ez, ey, ax, ay, az, bx, by, bz, cx, cy, cz, hx, hy, hz)
+                || separates(ez, 0f, -ex, ax, ay, az, bx, by, bz, cx, cy, cz, hx, hy, hz)
+                || separates(-ey, ex, 0f, ax, ay, az, bx, by, bz, cx, cy, cz, hx, hy, hz);
+    }
+
+    /**
+     * @return True if the axis separates the triangle (relative to the box center) from the box.
+     */
+    private static boolean separates(float nx, float ny, float nz, float ax, float ay, float az, float bx, float by, float bz,
+                                     float cx, float cy, float cz, float hx, float hy, float hz) {
+        float pa = nx * ax + ny * ay + nz * az;
+        float pb = nx * bx + ny * by + nz * bz;
+        float pc = nx * cx + ny * cy + nz * cz;
+        float radius = hx * Math.abs(nx) + hy * Math.abs(ny) + hz * Math.abs(nz);
+        return Math.min(pa, Math.min(pb, pc)) > radius || Math.max(pa, Math.max(pb, pc)) < -radius;
+    }
+
+    /**
+     * @return True if a ray cast up (+Y) from the point crosses the triangles an odd number of times.
+     */
+    private static boolean isInside(float[] triangles, Vector3 point) {
+        FloatArray crossings = new FloatArray();
+        getCrossings(triangles, point.x, point.z, crossings);
+        int above = 0;
+        for (int i = 0; i < crossings.size; i++) {
+            if (crossings.get(i) > point.y) {
+                above++;
+            }
+        }
+        return (above & 1) == 1;
+    }
+
+    /**
+     * Finds the heights at which a vertical line crosses the triangles.
+     *
+     * @param triangles Triangle vertex positions.
+     * @param x         X position of the line.
+     * @param z         Z position of the line.
+     * @param crossings Sorted crossing heights output.
+     */
+    private static void getCrossings(float[] triangles, float x, float z, FloatArray crossings) {
+        crossings.clear();
+        for (int i = 0; i < triangles.length; i += 9) {
+            float ax = triangles[i], az = triangles[i + 2];
+            float bx = triangles[i + 3], bz = triangles[i + 5];
+            float cx = triangles[i + 6], cz = triangles[i + 8];
+
+            // Barycentric coordinates of the line in the triangle projected onto the XZ plane
+            float area = (bx - ax) * (cz - az) - (cx - ax) * (bz - az);
+            if (area == 0f) {
+                continue;
+            }
+            float u = ((bx - x) * (cz - z) - (cx - x) * (bz - z)) / area;
+            float v = ((cx - x) * (az - z) - (ax - x) * (cz - z)) / area;
+            float w = 1f - u - v;
+            if (u >= 0f && v >= 0f && w >= 0f) {
+                crossings.add(u * triangles[i + 1] + v * triangles[i + 4] + w * triangles[i + 7]);
+            }
+        }
+        crossings.sort();
+    }
+}
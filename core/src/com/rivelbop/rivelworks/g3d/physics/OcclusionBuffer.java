@@ -25,8 +25,12 @@ import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.utils.BufferUtils;
 import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.IntArray;
 
 import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * Software rasterizer used for depth rendering and testing of bounding box triangles. Stores depth values inside a
@@ -34,16 +38,14 @@ import java.nio.FloatBuffer;
  * hardware rendering were to be used for occlusion culling queries.
  * <p>
  * Based on the algorithm from the Bullet CDTestFramework, BulletSAPCompleteBoxPruningTest.cpp, written by Erwin Coumans.
+ * <p>
+ * When created with a tile size, the buffer is binned: drawn triangles are only set up and sorted into screen tiles, and
+ * the tiles are rasterized in parallel on a {@link ForkJoinPool} by {@link #flush()}. Queries and debug drawing flush
+ * automatically, so callers should draw all occluders before the first query (see {@link OcclusionCuller}).
  *
  * @author jsjolund
  */
 public class OcclusionBuffer implements Disposable {
-    static class GridPoint3 extends com.badlogic.gdx.math.GridPoint3 {
-        public GridPoint3 add(GridPoint3 other) {
-            return (GridPoint3) set(x + other.x, y + other.y, z + other.z);
-        }
-    }
-
     /**
      * Determines actions and return values for triangle rasterization policies.
      */
@@ -195,11 +197,30 @@ public class OcclusionBuffer implements Disposable {
     private final Quaternion tmpQ2 = new Quaternion();
     private final Vector3 tmpV1 = new Vector3();
     private final Vector3 tmpV2 = new Vector3();
-    private final GridPoint3 triX = new GridPoint3();
-    private final GridPoint3 triY = new GridPoint3();
-    private final GridPoint3 triDX = new GridPoint3();
-    private final GridPoint3 triDY = new GridPoint3();
-    private final GridPoint3 cursor = new GridPoint3();
+    private final float[] clipDistances = new float[4];
+
+    /**
+     * Set up triangles, {@link #TRIANGLE_INTS} screen coordinates and {@link #TRIANGLE_FLOATS} depth terms each. Only the
+     * first triangle is used when rasterizing immediately.
+     */
+    private int[] triangleInts = new int[TRIANGLE_INTS];
+    private float[] triangleFloats = new float[TRIANGLE_FLOATS];
+
+    // Binning (null/0 when rasterizing immediately)
+    private final ForkJoinPool pool;
+    private final int tileSize, tilesX, tilesY;
+    private final IntArray[] bins;
+    private int binnedTriangles;
+
+    /**
+     * Hierarchical depth, level i stores the min and max depth of 2^(i+1) x 2^(i+1) pixel cells (the depth buffer itself is
+     * level 0 and is not copied).
+     */
+    private final int[] levelWidths, levelHeights;
+    private final float[][] minDepths, maxDepths;
+
+    // Pixel rectangle drawn since the pyramid was last updated (empty when xMax <= xMin)
+    private int dirtyXMin, dirtyYMin, dirtyXMax, dirtyYMax;
 
     // Debug drawing
     private final Matrix4 projectionMatrix = new Matrix4();
@@ -207,19 +228,72 @@ public class OcclusionBuffer implements Disposable {
     private Texture debugTexture;
     private TextureRegion debugTextureRegion;
 
+    private static final int TRIANGLE_INTS = 6;
+    private static final int TRIANGLE_FLOATS = 4;
+
+    // Results of a hierarchical depth query
+    private static final int HIZ_OCCLUDED = 0;
+    private static final int HIZ_VISIBLE = 1;
+    private static final int HIZ_AMBIGUOUS = 2;
+
     /**
-     * Creates a new {@link OcclusionBuffer}.
+     * Creates a new {@link OcclusionBuffer} which rasterizes every triangle immediately on the calling thread.
      *
      * @param width  Width of the buffer image.
      * @param height Height of the buffer image.
      */
     public OcclusionBuffer(int width, int height) {
+        this(width, height, 0, null);
+    }
+
+    /**
+     * Creates a new binned {@link OcclusionBuffer}, which defers drawn triangles into square screen tiles and rasterizes the
+     * tiles in parallel when flushed.
+     *
+     * @param width    Width of the buffer image.
+     * @param height   Height of the buffer image.
+     * @param tileSize Width and height of a tile in pixels, 0 to rasterize immediately instead.
+     * @param pool     Pool to rasterize the tiles on, null for {@link ForkJoinPool#commonPool()}.
+     */
+    public OcclusionBuffer(int width, int height, int tileSize, ForkJoinPool pool) {
+        this.tileSize = Math.max(tileSize, 0);
+        if (this.tileSize > 0) {
+            this.pool = pool != null ? pool : ForkJoinPool.commonPool();
+            tilesX = (width + this.tileSize - 1) / this.tileSize;
+            tilesY = (height + this.tileSize - 1) / this.tileSize;
+            bins = new IntArray[tilesX * tilesY];
+            for (int i = 0; i < bins.length; i++) {
+                bins[i] = new IntArray();
+            }
+        } else {
+            this.pool = null;
+            tilesX = tilesY = 0;
+            bins = null;
+        }
+
         bufferWidth = width;
         bufferHeight = height;
         bufferHalfExt = new Vector2(width * 0.5f, height * 0.5f);
         bufferOffset = new Vector2(bufferHalfExt.x + 0.5f, bufferHalfExt.y + 0.5f);
         buffer = BufferUtils.newFloatBuffer(width * height);
 
+        int levels = 0;
+        for (int w = width, h = height; w > 1 || h > 1; w = (w + 1) >> 1, h = (h + 1) >> 1) {
+            levels++;
+        }
+        levelWidths = new int[levels];
+        levelHeights = new int[levels];
+        minDepths = new float[levels][];
+        maxDepths = new float[levels][];
+        for (int i = 0, w = width, h = height; i < levels; i++) {
+            w = (w + 1) >> 1;
+            h = (h + 1) >> 1;
+            levelWidths[i] = w;
+            levelHeights[i] = h;
+            minDepths[i] = new float[w * h];
+            maxDepths[i] = new float[w * h];
+        }
+
         for (int i = 0; i < 8; i++) {
             box[i] = new Vector3();
             tmpVertices[i] = new Quaternion();
@@ -235,10 +309,48 @@ public class OcclusionBuffer implements Disposable {
      * Clears the depth buffer by setting the depth to -1.
      */
     public void clear() {
+        discardBins();
         buffer.clear();
         while (buffer.position() < buffer.capacity()) {
             buffer.put(-1);
         }
+        for (int i = 0; i < minDepths.length; i++) {
+            Arrays.fill(minDepths[i], -1);
+            Arrays.fill(maxDepths[i], -1);
+        }
+        dirtyXMin = dirtyYMin = dirtyXMax = dirtyYMax = 0;
+    }
+
+    /**
+     * @return True if drawn triangles are binned and rasterized in parallel by {@link #flush()}.
+     */
+    public boolean isBinned() {
+        return bins != null;
+    }
+
+    /**
+     * Rasterizes every binned triangle into the depth buffer, splitting the tiles across the pool. Does nothing if the buffer
+     * is not binned or nothing was drawn since the last flush.
+     */
+    public void flush() {
+        if (binnedTriangles == 0) {
+            return;
+        }
+        pool.invoke(new TileTask(0, bins.length));
+        discardBins();
+    }
+
+    /**
+     * Empties the tile bins without rasterizing them.
+     */
+    private void discardBins() {
+        if (bins == null) {
+            return;
+        }
+        for (IntArray bin : bins) {
+            bin.clear();
+        }
+        binnedTriangles = 0;
     }
 
     /**
@@ -251,7 +363,7 @@ public class OcclusionBuffer implements Disposable {
     private int clipQuad(Quaternion[] verticesIn, Quaternion[] verticesOut) {
         int numVerts = verticesIn.length;
         int numVertsBehind = 0;
-        float[] s = new float[4];
+        float[] s = clipDistances;
 
         for (int i = 0; i < numVerts; i++) {
             s[i] = verticesIn[i].z + verticesIn[i].w;
@@ -345,6 +457,14 @@ public class OcclusionBuffer implements Disposable {
             return true;
         }
 
+        // Try to resolve the query from the depth pyramid before rasterizing it.
+        if (policy == Policy.QUERY) {
+            int result = queryPyramid(tmpVertices);
+            if (result != HIZ_AMBIGUOUS) {
+                return result == HIZ_VISIBLE;
+            }
+        }
+
         // Loop over each box quad in the predefined winding order.
         for (int i = 0; i < WINDING.length; ) {
             quad[0].set(tmpVertices[WINDING[i++]]);
@@ -380,6 +500,7 @@ public class OcclusionBuffer implements Disposable {
      * @return Region of debug texture.
      */
     public TextureRegion drawDebugTexture() {
+        flush();
         if (debugPixmap == null) {
             debugPixmap = new Pixmap(bufferWidth, bufferHeight, Pixmap.Format.RGBA8888);
             debugTexture = new Texture(debugPixmap);
@@ -417,7 +538,8 @@ public class OcclusionBuffer implements Disposable {
     }
 
     /**
-     * Rasterizes a triangle with linearly interpolated depth values.
+     * Sets up a triangle with linearly interpolated depth values and rasterizes it, or bins it if the buffer is binned and
+     * {@link Policy#DRAW} is used.
      * <p>
      * If used with {@link Policy#DRAW} the triangle will be drawn to the depth buffer wherever it passes a depth test.
      * <p>
@@ -436,58 +558,286 @@ public class OcclusionBuffer implements Disposable {
             return false;
         }
 
-        /* Triangle coordinates and size.
-        Note that x, y, z in e.g. triX corresponds to x components of vertices a, b, c,
-        which means triX.x is the x coordinate of a. */
-        triX.set((int) (a.x * bufferHalfExt.x + bufferOffset.x), (int) (b.x * bufferHalfExt.x + bufferOffset.x),
-                (int) (c.x * bufferHalfExt.x + bufferOffset.x));
-        triY.set((int) (a.y * bufferHalfExt.y + bufferOffset.y), (int) (b.y * bufferHalfExt.y + bufferOffset.y),
-                (int) (c.y * bufferHalfExt.y + bufferOffset.y));
+        // Triangle coordinates in pixels
+        int ax = (int) (a.x * bufferHalfExt.x + bufferOffset.x), ay = (int) (a.y * bufferHalfExt.y + bufferOffset.y);
+        int bx = (int) (b.x * bufferHalfExt.x + bufferOffset.x), by = (int) (b.y * bufferHalfExt.y + bufferOffset.y);
+        int cx = (int) (c.x * bufferHalfExt.x + bufferOffset.x), cy = (int) (c.y * bufferHalfExt.y + bufferOffset.y);
 
         // X/Y extents
-        int xMin = Math.max(0, Math.min(triX.x, Math.min(triX.y, triX.z)));
-        int xMax = Math.min(bufferWidth, 1 + Math.max(triX.x, Math.max(triX.y, triX.z)));
-        int yMin = Math.max(0, Math.min(triY.x, Math.min(triY.y, triY.z)));
-        int yMax = Math.min(bufferWidth, 1 + Math.max(triY.x, Math.max(triY.y, triY.z)));
-        int width = xMax - xMin;
-        int height = yMax - yMin;
-
-        if (width * height <= 0) {
+        int xMin = Math.max(0, Math.min(ax, Math.min(bx, cx)));
+        int xMax = Math.min(bufferWidth, 1 + Math.max(ax, Math.max(bx, cx)));
+        int yMin = Math.max(0, Math.min(ay, Math.min(by, cy)));
+        int yMax = Math.min(bufferHeight, 1 + Math.max(ay, Math.max(by, cy)));
+        if (xMax <= xMin || yMax <= yMin) {
             return false;
         }
+        if (policy == Policy.DRAW) {
+            markDirty(xMin, yMin, xMax, yMax);
+        }
+
+        // Depth interpolation, depth = ia * (a.z * edge1 + b.z * edge2 + c.z * edge0)
+        float ia = 1f / (float) (ax * by - bx * ay + cx * ay - ax * cy + bx * cy - cx * by);
+
+        boolean binned = bins != null && policy == Policy.DRAW;
+        int triangle = binned ? binnedTriangles++ : 0;
+        if (binned) {
+            ensureTriangleCapacity(binnedTriangles);
+        }
+
+        int i = triangle * TRIANGLE_INTS, f = triangle * TRIANGLE_FLOATS;
+        triangleInts[i] = ax;
+        triangleInts[i + 1] = ay;
+        triangleInts[i + 2] = bx;
+        triangleInts[i + 3] = by;
+        triangleInts[i + 4] = cx;
+        triangleInts[i + 5] = cy;
+        triangleFloats[f] = a.z;
+        triangleFloats[f + 1] = b.z;
+        triangleFloats[f + 2] = c.z;
+        triangleFloats[f + 3] = ia;
+
+        if (!binned) {
+            return rasterizeTriangle(triangle, xMin, yMin, xMax, yMax, policy);
+        }
+
+        // Add the triangle to every tile its extents overlap
+        for (int tileY = yMin / tileSize, tileYMax = (yMax - 1) / tileSize; tileY <= tileYMax; tileY++) {
+            for (int tileX = xMin / tileSize, tileXMax = (xMax - 1) / tileSize; tileX <= tileXMax; tileX++) {
+                bins[tileY * tilesX + tileX].add(triangle);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Grows the pixel rectangle the depth pyramid has to be updated in.
+     *
+     * @param xMin Left pixel (inclusive).
+     * @param yMin Bottom pixel (inclusive).
+     * @param xMax Right pixel (exclusive).
+     * @param yMax Top pixel (exclusive).
+     */
+    private void markDirty(int xMin, int yMin, int xMax, int yMax) {
+        if (dirtyXMax <= dirtyXMin) {
+            dirtyXMin = xMin;
+            dirtyYMin = yMin;
+            dirtyXMax = xMax;
+            dirtyYMax = yMax;
+        } else {
+            dirtyXMin = Math.min(dirtyXMin, xMin);
+            dirtyYMin = Math.min(dirtyYMin, yMin);
+            dirtyXMax = Math.max(dirtyXMax, xMax);
+            dirtyYMax = Math.max(dirtyYMax, yMax);
+        }
+    }
+
+    /**
+     * Recomputes the depth pyramid cells covering the pixels drawn since the last update.
+     */
+    private void updatePyramid() {
+        if (dirtyXMax <= dirtyXMin) {
+            return;
+        }
+
+        int xMin = dirtyXMin, yMin = dirtyYMin, xMax = dirtyXMax, yMax = dirtyYMax;
+        for (int level = 0; level < minDepths.length; level++) {
+            boolean fromBuffer = level == 0;
+            int childWidth = fromBuffer ? bufferWidth : levelWidths[level - 1];
+            int childHeight = fromBuffer ? bufferHeight : levelHeights[level - 1];
+            float[] childMins = fromBuffer ? null : minDepths[level - 1];
+            float[] childMaxs = fromBuffer ? null : maxDepths[level - 1];
+            float[] mins = minDepths[level], maxs = maxDepths[level];
+            int width = levelWidths[level];
+
+            xMin >>= 1;
+            yMin >>= 1;
+            xMax = (xMax + 1) >> 1;
+            yMax = (yMax + 1) >> 1;
+
+            for (int y = yMin; y < yMax; y++) {
+                int childYMax = Math.min((y << 1) + 2, childHeight);
+                for (int x = xMin; x < xMax; x++) {
+                    int childXMax = Math.min((x << 1) + 2, childWidth);
+                    float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+                    for (int cy = y << 1; cy < childYMax; cy++) {
+                        for (int cx = x << 1; cx < childXMax; cx++) {
+                            int index = cy * childWidth + cx;
+                            float childMin = fromBuffer ? buffer.get(index) : childMins[index];
+                            float childMax = fromBuffer ? childMin : childMaxs[index];
+                            min = Math.min(min, childMin);
+                            max = Math.max(max, childMax);
+                        }
+                    }
+                    mins[y * width + x] = min;
+                    maxs[y * width + x] = max;
+                }
+            }
+        }
+        dirtyXMin = dirtyYMin = dirtyXMax = dirtyYMax = 0;
+    }
+
+    /**
+     * Conservatively tests a box against the coarsest pyramid level whose cells cover its screen rectangle with at most 2x2
+     * cells. The box is occluded if its closest depth is behind every pixel there, and visible if its farthest depth is in front
+     * of every pixel there.
+     *
+     * @param vertices Box vertices in clip space, all in front of the near plane.
+     * @return {@link #HIZ_OCCLUDED}, {@link #HIZ_VISIBLE} or {@link #HIZ_AMBIGUOUS} if the box has to be rasterized.
+     */
+    private int queryPyramid(Quaternion[] vertices) {
+        if (minDepths.length == 0) {
+            return HIZ_AMBIGUOUS;
+        }
+
+        // Screen rectangle (same pixel snapping as drawTriangle) and depth range of the box
+        int xMin = Integer.MAX_VALUE, yMin = Integer.MAX_VALUE, xMax = Integer.MIN_VALUE, yMax = Integer.MIN_VALUE;
+        float zMin = Float.POSITIVE_INFINITY, zMax = Float.NEGATIVE_INFINITY;
+        for (Quaternion v : vertices) {
+            float invW = 1 / v.w;
+            int x = (int) (v.x * invW * bufferHalfExt.x + bufferOffset.x);
+            int y = (int) (v.y * invW * bufferHalfExt.y + bufferOffset.y);
+            xMin = Math.min(xMin, x);
+            yMin = Math.min(yMin, y);
+            xMax = Math.max(xMax, x);
+            yMax = Math.max(yMax, y);
+            zMin = Math.min(zMin, invW);
+            zMax = Math.max(zMax, invW);
+        }
+        xMin = Math.max(0, xMin);
+        yMin = Math.max(0, yMin);
+        xMax = Math.min(bufferWidth, xMax + 1);
+        yMax = Math.min(bufferHeight, yMax + 1);
+        if (xMax <= xMin || yMax <= yMin) {
+            // Entirely off screen, rasterizing would not touch any pixel either
+            return HIZ_OCCLUDED;
+        }
+
+        // Smallest level with cells at least as large as the rectangle
+        int size = Math.max(xMax - xMin, yMax - yMin);
+        int level = Math.min(Math.max(32 - Integer.numberOfLeadingZeros(size - 1), 1), minDepths.length);
+        int width = levelWidths[level - 1];
+        float[] mins = minDepths[level - 1], maxs = maxDepths[level - 1];
+
+        float min = Float.POSITIVE_INFINITY, max = Float.NEGATIVE_INFINITY;
+        for (int y = yMin >> level, cellYMax = (yMax - 1) >> level; y <= cellYMax; y++) {
+            for (int x = xMin >> level, cellXMax = (xMax - 1) >> level; x <= cellXMax; x++) {
+                min = Math.min(min, mins[y * width + x]);
+                max = Math.max(max, maxs[y * width + x]);
+            }
+        }
 
-        // Cursor
-        triDX.set(triY.x - triY.y, triY.y - triY.z, triY.z - triY.x);
-        triDY.set(triX.y - triX.x - triDX.x * width, triX.z - triX.y - triDX.y * width, triX.x - triX.z - triDX.z * width);
-        cursor.set(yMin * (triX.y - triX.x) + xMin * (triY.x - triY.y) + triX.x * triY.y - triX.y * triY.x,
-                yMin * (triX.z - triX.y) + xMin * (triY.y - triY.z) + triX.y * triY.z - triX.z * triY.y,
-                yMin * (triX.x - triX.z) + xMin * (triY.z - triY.x) + triX.z * triY.x - triX.x * triY.z);
+        if (zMax < min) {
+            return HIZ_OCCLUDED;
+        }
+        if (zMin >= max) {
+            return HIZ_VISIBLE;
+        }
+        return HIZ_AMBIGUOUS;
+    }
+
+    /**
+     * Grows the triangle storage to fit the provided number of triangles.
+     *
+     * @param triangles The number of triangles to fit.
+     */
+    private void ensureTriangleCapacity(int triangles) {
+        if (triangleInts.length < triangles * TRIANGLE_INTS) {
+            int capacity = Math.max(triangles, triangleInts.length / TRIANGLE_INTS * 2);
+            triangleInts = Arrays.copyOf(triangleInts, capacity * TRIANGLE_INTS);
+            triangleFloats = Arrays.copyOf(triangleFloats, capacity * TRIANGLE_FLOATS);
+        }
+    }
 
-        // Depth interpolation
-        float ia = 1f / (float) (triX.x * triY.y - triX.y * triY.x + triX.z * triY.x - triX.x * triY.z + triX.y * triY.z - triX.z * triY.y);
-        float dzx = ia * (triY.x * (c.z - b.z) + triY.y * (a.z - c.z) + triY.z * (b.z - a.z));
-        float dzy = ia * (triX.x * (b.z - c.z) + triX.y * (c.z - a.z) + triX.z * (a.z - b.z)) - (dzx * width);
-        float drawDepth = ia * (a.z * cursor.y + b.z * cursor.z + c.z * cursor.x);
-        int bufferRow = (yMin * bufferHeight);
+    /**
+     * Rasterizes a set up triangle within a rectangle of the depth buffer. Only reads the triangle storage and only writes the
+     * pixels inside the rectangle, so disjoint rectangles can be rasterized concurrently.
+     *
+     * @param triangle Index of the triangle in the triangle storage.
+     * @param xMin     Left pixel of the rectangle (inclusive).
+     * @param yMin     Bottom pixel of the rectangle (inclusive).
+     * @param xMax     Right pixel of the rectangle (exclusive).
+     * @param yMax     Top pixel of the rectangle (exclusive).
+     * @param policy   Draw or query policy.
+     * @return With query policy, true if any pixel in the triangle passes a depth test. False otherwise.
+     */
+    private boolean rasterizeTriangle(int triangle, int xMin, int yMin, int xMax, int yMax, Policy policy) {
+        int i = triangle * TRIANGLE_INTS, f = triangle * TRIANGLE_FLOATS;
+        int ax = triangleInts[i], ay = triangleInts[i + 1];
+        int bx = triangleInts[i + 2], by = triangleInts[i + 3];
+        int cx = triangleInts[i + 4], cy = triangleInts[i + 5];
+        float az = triangleFloats[f], bz = triangleFloats[f + 1], cz = triangleFloats[f + 2], ia = triangleFloats[f + 3];
+
+        // Edge functions at the first pixel and their steps along x
+        int rowEdge0 = yMin * (bx - ax) + xMin * (ay - by) + ax * by - bx * ay;
+        int rowEdge1 = yMin * (cx - bx) + xMin * (by - cy) + bx * cy - cx * by;
+        int rowEdge2 = yMin * (ax - cx) + xMin * (cy - ay) + cx * ay - ax * cy;
+        int stepX0 = ay - by, stepX1 = by - cy, stepX2 = cy - ay;
+        int bufferRow = yMin * bufferWidth;
 
         // Loop over pixels and process the triangle pixel depth versus the existing value in buffer.
         for (int iy = yMin; iy < yMax; iy++) {
+            int edge0 = rowEdge0, edge1 = rowEdge1, edge2 = rowEdge2;
             for (int ix = xMin; ix < xMax; ix++) {
-                int bufferIndex = bufferRow + ix;
-                if (cursor.x >= 0 && cursor.y >= 0 && cursor.z >= 0 && policy.process(buffer, bufferIndex, drawDepth)) {
+                if (edge0 >= 0 && edge1 >= 0 && edge2 >= 0
+                        && policy.process(buffer, bufferRow + ix, ia * (az * edge1 + bz * edge2 + cz * edge0))) {
                     return true;
                 }
-                cursor.add(triDX);
-                drawDepth += dzx;
+                edge0 += stepX0;
+                edge1 += stepX1;
+                edge2 += stepX2;
             }
 
-            cursor.add(triDY);
-            drawDepth += dzy;
+            rowEdge0 += bx - ax;
+            rowEdge1 += cx - bx;
+            rowEdge2 += ax - cx;
             bufferRow += bufferWidth;
         }
         return false;
     }
 
+    /**
+     * Rasterizes the binned triangles of a range of tiles, splitting the range until it is a single tile.
+     */
+    private final class TileTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int tileStart, tileEnd;
+
+        TileTask(int tileStart, int tileEnd) {
+            this.tileStart = tileStart;
+            this.tileEnd = tileEnd;
+        }
+
+        @Override
+        protected void compute() {
+            if (tileEnd - tileStart > 1) {
+                int mid = (tileStart + tileEnd) >>> 1;
+                invokeAll(new TileTask(tileStart, mid), new TileTask(mid, tileEnd));
+                return;
+            }
+
+            IntArray bin = bins[tileStart];
+            int xMin = (tileStart % tilesX) * tileSize, yMin = (tileStart / tilesX) * tileSize;
+            int tileXMax = Math.min(xMin + tileSize, bufferWidth), tileYMax = Math.min(yMin + tileSize, bufferHeight);
+            for (int i = 0; i < bin.size; i++) {
+                int triangle = bin.items[i];
+                int t = triangle * TRIANGLE_INTS;
+                int ax = triangleInts[t], ay = triangleInts[t + 1];
+                int bx = triangleInts[t + 2], by = triangleInts[t + 3];
+                int cx = triangleInts[t + 4], cy = triangleInts[t + 5];
+
+                // Clamp the triangle's extents to the tile
+                int x0 = Math.max(xMin, Math.min(ax, Math.min(bx, cx)));
+                int x1 = Math.min(tileXMax, 1 + Math.max(ax, Math.max(bx, cx)));
+                int y0 = Math.max(yMin, Math.min(ay, Math.min(by, cy)));
+                int y1 = Math.min(tileYMax, 1 + Math.max(ay, Math.max(by, cy)));
+                if (x0 < x1 && y0 < y1) {
+                    rasterizeTriangle(triangle, x0, y0, x1, y1, Policy.DRAW);
+                }
+            }
+        }
+    }
+
     /**
      * Queries the depth buffer as to whether an AABB (axis aligned bounding box) is completely occluded by a previously rendered
      * object. If any part of the AABB is visible (not occluded), the method returns true.
@@ -497,6 +847,8 @@ public class OcclusionBuffer implements Disposable {
      * @return True if any part of the AABB is visible, false otherwise.
      */
     public boolean queryAABB(Vector3 center, Vector3 halfExt) {
+        flush();
+        updatePyramid();
         setAABBVertices(center, halfExt, box);
         return drawBox(box, Policy.QUERY);
     }
@@ -17,11 +17,17 @@ package com.rivelbop.rivelworks.g3d.physics;
 
 import com.badlogic.gdx.graphics.Camera;
 import com.badlogic.gdx.math.Frustum;
+import com.badlogic.gdx.math.MathUtils;
+import com.badlogic.gdx.math.Matrix4;
 import com.badlogic.gdx.math.Plane;
 import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.math.collision.BoundingBox;
 import com.badlogic.gdx.physics.bullet.collision.*;
+import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.BufferUtils;
 import com.badlogic.gdx.utils.Disposable;
+import com.badlogic.gdx.utils.FloatArray;
+import com.badlogic.gdx.utils.ObjectSet;
 import com.rivelbop.rivelworks.g3d.physics.dynamic.PhysicsWorld3D;
 
 import java.nio.FloatBuffer;
@@ -34,6 +40,17 @@ import java.nio.FloatBuffer;
  * if an object is visible to the camera, this depth buffer is queried and compared against the depth of the object in question.
  * <p>
  * k-DOP culling determines which objects are inside a camera frustum. The process is accelerated by the dynamic bounding volume tree.
+ * <p>
+ * With a binned {@link OcclusionBuffer} every occluder inside the frustum is drawn in a pre-pass and rasterized in parallel
+ * before the occlusion queries, instead of being drawn one at a time as the traversal reaches it.
+ * <p>
+ * With temporal coherence enabled, the objects visible last frame are drawn as occluders first and re-tested on their own, and
+ * the full traversal (which is what finds objects that were hidden) only runs every few frames or after large camera motion.
+ * Objects that become visible in between are reported late, by at most the retest interval.
+ * <p>
+ * Besides boxes, shapes with an {@link OccluderProxy} (see {@link Physics3D#getOccluderProxy(btCollisionShape)}) are drawn as
+ * occluders. With an occluder budget or a minimum occluder score, every occluder in the frustum is scored by
+ * {@link #occluderScore(btCollisionObject, Camera)} in a pre-pass and only the best ones are drawn.
  *
  * @author jsjolund
  */
@@ -99,7 +116,7 @@ public abstract class OcclusionCuller implements Disposable {
          * node contains an object which can occlude others, it will be added to the depth buffer so that it may be considered in
          * future occlusion checks.
          * <p>
-         * Only box shaped occluder objects are supported.
+         * Only box shaped occluder objects and shapes with an {@link OccluderProxy} are supported.
          *
          * @param leaf  A leaf node which contains a collision object.
          * @param depth The depth of the node along the sorting axis. Objects closer to the camera will have a value closer to zero.
@@ -108,10 +125,42 @@ public abstract class OcclusionCuller implements Disposable {
         public void Process(btDbvtNode leaf, float depth) {
             btCollisionObject object = leaf.getDataAsProxyClientObject();
             onObjectVisible(object);
-            btCollisionShape shape = object.getCollisionShape();
-            if (shape instanceof btBoxShape && isOccluder(object)) {
-                oclBuffer.drawBB(object.getWorldTransform(), ((btBoxShape) shape).getHalfExtentsWithMargin());
+            if (temporalCoherence) {
+                visibleObjects.add(object);
+            }
+            if (!occluderPrePass) {
+                offerOccluder(object);
+            }
+        }
+    }
+
+    /**
+     * Offers every occluder inside the camera frustum for the occluder pre-pass of a binned {@link OcclusionBuffer} or of occluder
+     * selection.
+     */
+    protected class OccluderCollector extends ICollide {
+        /**
+         * Callback method for {@link btDbvt#collideKDOP}. The bounding volume tree node in the parameter is inside the camera
+         * frustum, as are any collision objects it contains.
+         *
+         * @param node A bounding volume tree node, the children of which are all inside the camera frustum.
+         */
+        @Override
+        public boolean AllLeaves(btDbvtNode node) {
+            if (node.isleaf()) {
+                offerOccluder(node.getDataAsProxyClientObject());
+            } else {
+                long nodePointer = node.getCPointer();
+                btDbvtNode child;
+
+                if ((child = btDbvtNode.internalTemp(nodePointer, false).getChild(0)).getCPointer() != 0) {
+                    AllLeaves(child);
+                }
+                if ((child = btDbvtNode.internalTemp(nodePointer, false).getChild(1)).getCPointer() != 0) {
+                    AllLeaves(child);
+                }
             }
+            return true;
         }
     }
 
@@ -121,21 +170,206 @@ public abstract class OcclusionCuller implements Disposable {
             frustumNormals = BufferUtils.newFloatBuffer(NUM_PLANES * 4),
             frustumOffsets = BufferUtils.newFloatBuffer(NUM_PLANES);
     private final Collider collider = new Collider();
+    private final OccluderCollector occluderCollector = new OccluderCollector();
+    private boolean occluderPrePass;
     final Vector3
             tmpV1 = new Vector3(),
-            tmpV2 = new Vector3();
+            tmpV2 = new Vector3(),
+            tmpV3 = new Vector3(),
+            tmpV4 = new Vector3();
+    private final Matrix4
+            tmpM = new Matrix4(),
+            tmpM2 = new Matrix4();
+    private Camera cullingCamera;
+
+    // Occluder selection
+    private int occluderBudget = Integer.MAX_VALUE;
+    private float minOccluderScore;
+    private final Array<btCollisionObject> occluderCandidates = new Array<>(false, 64);
+    private final FloatArray occluderScores = new FloatArray(false, 64);
+    private int occludersDrawn;
+
+    // Temporal coherence
+    private boolean temporalCoherence;
+    private int hiddenRetestInterval = 8;
+    private float retestDistance = 1f, retestAngle = 5f;
+    private Array<btCollisionObject> visibleObjects = new Array<>(false, 64), lastVisibleObjects = new Array<>(false, 64);
+    private final ObjectSet<btCollisionObject> offeredOccluders = new ObjectSet<>();
+    private final Vector3 traversalPosition = new Vector3(), traversalDirection = new Vector3();
+    private int framesSinceTraversal;
+    private boolean hasHistory;
+    private int fullTraversals, coherentFrames, retestedObjects, predrawnOccluderCount;
     OcclusionBuffer oclBuffer = new OcclusionBuffer(OCL_BUFFER_EXTENTS[0], OCL_BUFFER_EXTENTS[0]);
 
     @Override
     public void dispose() {
         collider.dispose();
+        occluderCollector.dispose();
+        resetTemporalCoherence();
         oclBuffer = null;
     }
 
+    /**
+     * Sets the maximum number of occluders drawn per occlusion cull. With a budget, occluders are drawn in the order of
+     * {@link #occluderScore(btCollisionObject, Camera)}.
+     *
+     * @param budget Maximum number of occluders, {@link Integer#MAX_VALUE} for no limit.
+     */
+    public void setOccluderBudget(int budget) {
+        occluderBudget = Math.max(budget, 0);
+    }
+
+    /**
+     * @return The maximum number of occluders drawn per occlusion cull.
+     */
+    public int getOccluderBudget() {
+        return occluderBudget;
+    }
+
+    /**
+     * Sets the score below which occluders are not drawn, see {@link #occluderScore(btCollisionObject, Camera)}.
+     *
+     * @param score The minimum score, 0 to draw all occluders.
+     */
+    public void setMinOccluderScore(float score) {
+        minOccluderScore = score;
+    }
+
+    /**
+     * @return The score below which occluders are not drawn.
+     */
+    public float getMinOccluderScore() {
+        return minOccluderScore;
+    }
+
+    /**
+     * @return Number of occluders drawn by the last occlusion cull.
+     */
+    public int getOccludersDrawn() {
+        return occludersDrawn;
+    }
+
+    /**
+     * Scores how much of the screen an occluder is likely to cover, used to choose occluders when there is a budget or a minimum
+     * score. The default is the squared radius of the occluder's box over its squared distance to the camera, which is
+     * proportional to its projected area.
+     *
+     * @param object An occluder in the camera frustum.
+     * @param camera Camera for which occlusion culling is performed.
+     * @return The score, higher is better.
+     */
+    protected float occluderScore(btCollisionObject object, Camera camera) {
+        btCollisionShape shape = object.getCollisionShape();
+        object.getWorldTransform(tmpM);
+        float radius2;
+        if (shape instanceof btBoxShape) {
+            tmpM.getTranslation(tmpV3);
+            radius2 = ((btBoxShape) shape).getHalfExtentsWithMargin().len2();
+        } else {
+            BoundingBox bounds = Physics3D.getOccluderProxy(shape).BOUNDS;
+            bounds.getCenter(tmpV3).mul(tmpM);
+            radius2 = bounds.getDimensions(tmpV4).len2() * 0.25f;
+        }
+        return radius2 / Math.max(camera.position.dst2(tmpV3), MathUtils.FLOAT_ROUNDING_ERROR);
+    }
+
+    /**
+     * Enables or disables temporal coherence for occlusion culling, see {@link OcclusionCuller}. Either way the visibility
+     * history is reset.
+     *
+     * @param enabled True to reuse the previous frame's visibility.
+     */
+    public void setTemporalCoherence(boolean enabled) {
+        temporalCoherence = enabled;
+        resetTemporalCoherence();
+    }
+
+    /**
+     * @return True if occlusion culling reuses the previous frame's visibility.
+     */
+    public boolean isTemporalCoherence() {
+        return temporalCoherence;
+    }
+
+    /**
+     * Sets how often hidden objects are re-tested with a full traversal when temporal coherence is enabled.
+     *
+     * @param frames Number of frames between full traversals, 1 to traverse every frame.
+     */
+    public void setHiddenRetestInterval(int frames) {
+        hiddenRetestInterval = Math.max(frames, 1);
+    }
+
+    /**
+     * @return The number of frames between full traversals when temporal coherence is enabled.
+     */
+    public int getHiddenRetestInterval() {
+        return hiddenRetestInterval;
+    }
+
+    /**
+     * Sets how far the camera may move or turn from where the last full traversal was done before another full traversal is
+     * forced, when temporal coherence is enabled.
+     *
+     * @param distance Camera movement in world units.
+     * @param degrees  Camera rotation in degrees.
+     */
+    public void setRetestMotion(float distance, float degrees) {
+        retestDistance = distance;
+        retestAngle = degrees;
+    }
+
+    /**
+     * Forgets which objects were visible, so the next occlusion culling does a full traversal. Must be called after removing
+     * collision objects from the world while temporal coherence is enabled.
+     */
+    public void resetTemporalCoherence() {
+        visibleObjects.clear();
+        lastVisibleObjects.clear();
+        offeredOccluders.clear();
+        hasHistory = false;
+    }
+
+    /**
+     * @return Number of occlusion culls that did a full traversal since the counters were reset.
+     */
+    public int getFullTraversals() {
+        return fullTraversals;
+    }
+
+    /**
+     * @return Number of occlusion culls that only re-tested the previously visible objects since the counters were reset.
+     */
+    public int getCoherentFrames() {
+        return coherentFrames;
+    }
+
+    /**
+     * @return Number of previously visible objects re-tested without a traversal since the counters were reset.
+     */
+    public int getRetestedObjects() {
+        return retestedObjects;
+    }
+
+    /**
+     * @return Number of previously visible occluders drawn before culling since the counters were reset.
+     */
+    public int getPredrawnOccluders() {
+        return predrawnOccluderCount;
+    }
+
+    /**
+     * Resets the temporal coherence counters.
+     */
+    public void resetCounters() {
+        fullTraversals = coherentFrames = retestedObjects = predrawnOccluderCount = 0;
+    }
+
     /**
      * True if this collision object can block vision of other collision objects. If true, its collision shape will be drawn to
-     * the depth buffer and considered in future occlusion checks. Only btBoxShape collision shapes can be occluders, other types
-     * of shapes will be ignored. However, box occluders can block vision of any type of collision shape.
+     * the depth buffer and considered in future occlusion checks. Only btBoxShape collision shapes and shapes with an
+     * {@link OccluderProxy} can be occluders, other types of shapes will be ignored. However, occluders can block vision of any
+     * type of collision shape.
      *
      * @param object Object to check.
      * @return True if the collision object can occlude other objects.
@@ -181,10 +415,7 @@ public abstract class OcclusionCuller implements Disposable {
      */
     public void performOcclusionCulling(btDbvtBroadphase broadphase, OcclusionBuffer oclBuffer, Camera camera) {
         this.oclBuffer = oclBuffer;
-        oclBuffer.setProjectionMatrix(camera.combined);
-        setFrustumPlanes(camera.frustum);
-        btDbvt.collideOCL(broadphase.getSet1().getRoot(), frustumNormals, frustumOffsets, camera.direction, NUM_PLANES, collider);
-        btDbvt.collideOCL(broadphase.getSet0().getRoot(), frustumNormals, frustumOffsets, camera.direction, NUM_PLANES, collider);
+        cull(broadphase, camera);
     }
 
     /**
@@ -199,10 +430,7 @@ public abstract class OcclusionCuller implements Disposable {
      */
     public void performOcclusionCulling(btDbvtBroadphase broadphase, Camera camera) {
         oclBuffer.clear();
-        oclBuffer.setProjectionMatrix(camera.combined);
-        setFrustumPlanes(camera.frustum);
-        btDbvt.collideOCL(broadphase.getSet1().getRoot(), frustumNormals, frustumOffsets, camera.direction, NUM_PLANES, collider);
-        btDbvt.collideOCL(broadphase.getSet0().getRoot(), frustumNormals, frustumOffsets, camera.direction, NUM_PLANES, collider);
+        cull(broadphase, camera);
     }
 
     /**
@@ -230,6 +458,195 @@ public abstract class OcclusionCuller implements Disposable {
         performOcclusionCulling(broadphase, camera);
     }
 
+    /**
+     * Performs occlusion culling on {@link #oclBuffer}, reusing the previous frame's visibility if temporal coherence is enabled.
+     *
+     * @param broadphase The dynamics world broad phase.
+     * @param camera     Camera for which to perform occlusion culling.
+     */
+    private void cull(btDbvtBroadphase broadphase, Camera camera) {
+        oclBuffer.setProjectionMatrix(camera.combined);
+        setFrustumPlanes(camera.frustum);
+        cullingCamera = camera;
+        occludersDrawn = 0;
+        if (!temporalCoherence) {
+            traverse(broadphase, camera);
+            return;
+        }
+
+        Array<btCollisionObject> previous = visibleObjects;
+        visibleObjects = lastVisibleObjects;
+        lastVisibleObjects = previous;
+        visibleObjects.clear();
+
+        // Last frame's visible occluders are likely to still be in front, so draw them before anything is queried.
+        offeredOccluders.clear();
+        for (btCollisionObject object : previous) {
+            if (!object.isDisposed()) {
+                offerOccluder(object);
+            }
+        }
+        predrawnOccluderCount += offeredOccluders.size;
+
+        if (!hasHistory || ++framesSinceTraversal >= hiddenRetestInterval
+                || camera.position.dst2(traversalPosition) > retestDistance * retestDistance
+                || camera.direction.dot(traversalDirection) < MathUtils.cosDeg(retestAngle)) {
+            traverse(broadphase, camera);
+            traversalPosition.set(camera.position);
+            traversalDirection.set(camera.direction);
+            framesSinceTraversal = 0;
+            hasHistory = true;
+            fullTraversals++;
+        } else {
+            drawSelectedOccluders();
+            oclBuffer.flush();
+            for (btCollisionObject object : previous) {
+                if (!object.isDisposed()) {
+                    retest(object, camera);
+                }
+            }
+            retestedObjects += previous.size;
+            coherentFrames++;
+        }
+        offeredOccluders.clear();
+    }
+
+    /**
+     * Queries a previously visible object on its own, without traversing the bounding volume tree.
+     *
+     * @param object The object to query.
+     * @param camera Camera for which to perform occlusion culling.
+     */
+    private void retest(btCollisionObject object, Camera camera) {
+        object.getWorldTransform(tmpM);
+        object.getCollisionShape().getAabb(tmpM, tmpV3, tmpV4);
+        Vector3 halfExt = tmpV4.sub(tmpV3).scl(0.5f);
+        Vector3 center = tmpV3.add(halfExt);
+        if (camera.frustum.boundsInFrustum(center, halfExt) && oclBuffer.queryAABB(center, halfExt)) {
+            onObjectVisible(object);
+            visibleObjects.add(object);
+        }
+    }
+
+    /**
+     * Runs the occlusion culling traversal on {@link #oclBuffer}, preceded by the occluder pre-pass if the buffer is binned or
+     * occluders are selected.
+     *
+     * @param broadphase The dynamics world broad phase.
+     * @param camera     Camera for which to perform occlusion culling.
+     */
+    private void traverse(btDbvtBroadphase broadphase, Camera camera) {
+        occluderPrePass = oclBuffer.isBinned() || isSelectingOccluders();
+        if (occluderPrePass) {
+            btDbvt.collideKDOP(broadphase.getSet1().getRoot(), frustumNormals, frustumOffsets, NUM_PLANES, occluderCollector);
+            btDbvt.collideKDOP(broadphase.getSet0().getRoot(), frustumNormals, frustumOffsets, NUM_PLANES, occluderCollector);
+        }
+        drawSelectedOccluders();
+        oclBuffer.flush();
+
+        btDbvt.collideOCL(broadphase.getSet1().getRoot(), frustumNormals, frustumOffsets, camera.direction, NUM_PLANES, collider);
+        btDbvt.collideOCL(broadphase.getSet0().getRoot(), frustumNormals, frustumOffsets, camera.direction, NUM_PLANES, collider);
+    }
+
+    /**
+     * @return True if occluders are scored and only the best are drawn.
+     */
+    private boolean isSelectingOccluders() {
+        return occluderBudget != Integer.MAX_VALUE || minOccluderScore > 0f;
+    }
+
+    /**
+     * Draws the object to the occlusion buffer if it is an occluder that was not already offered this frame, or adds it to the
+     * candidates if occluders are selected.
+     *
+     * @param object The object to offer.
+     */
+    private void offerOccluder(btCollisionObject object) {
+        btCollisionShape shape = object.getCollisionShape();
+        // Checked first, so proxies are only computed for shapes of occluders
+        if (!isOccluder(object) || !(shape instanceof btBoxShape) && Physics3D.getOccluderProxy(shape) == null
+                || temporalCoherence && !offeredOccluders.add(object)) {
+            return;
+        }
+
+        if (!isSelectingOccluders()) {
+            drawOccluder(object);
+            return;
+        }
+        float score = occluderScore(object, cullingCamera);
+        if (score >= minOccluderScore) {
+            occluderCandidates.add(object);
+            occluderScores.add(score);
+        }
+    }
+
+    /**
+     * Draws the best scoring occluder candidates within the budget, then clears the candidates.
+     */
+    private void drawSelectedOccluders() {
+        int count = Math.min(occluderCandidates.size, occluderBudget - occludersDrawn);
+        if (count > 0 && count < occluderCandidates.size) {
+            selectOccluders(count);
+        }
+        for (int i = 0; i < count; i++) {
+            drawOccluder(occluderCandidates.get(i));
+        }
+        occluderCandidates.clear();
+        occluderScores.clear();
+    }
+
+    /**
+     * Partially sorts the occluder candidates (quickselect), so the first ones are the highest scoring.
+     *
+     * @param count The number of highest scoring candidates to move to the front.
+     */
+    private void selectOccluders(int count) {
+        float[] scores = occluderScores.items;
+        int left = 0, right = occluderCandidates.size - 1;
+        while (left < right) {
+            float pivot = scores[(left + right) >>> 1];
+            int i = left, j = right;
+            while (i <= j) {
+                while (scores[i] > pivot) {
+                    i++;
+                }
+                while (scores[j] < pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    occluderCandidates.swap(i, j);
+                    occluderScores.swap(i++, j--);
+                }
+            }
+            if (count - 1 <= j) {
+                right = j;
+            } else if (count - 1 >= i) {
+                left = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Draws the object's box, or the boxes of its shape's {@link OccluderProxy}, to the occlusion buffer.
+     *
+     * @param object The occluder to draw.
+     */
+    private void drawOccluder(btCollisionObject object) {
+        btCollisionShape shape = object.getCollisionShape();
+        if (shape instanceof btBoxShape) {
+            oclBuffer.drawBB(object.getWorldTransform(), ((btBoxShape) shape).getHalfExtentsWithMargin());
+        } else {
+            object.getWorldTransform(tmpM);
+            for (BoundingBox box : Physics3D.getOccluderProxy(shape).BOXES) {
+                tmpM2.set(tmpM).translate(box.getCenter(tmpV3));
+                oclBuffer.drawBB(tmpM2, box.getDimensions(tmpV4).scl(0.5f));
+            }
+        }
+        occludersDrawn++;
+    }
+
     /**
      * @param frustum Set the frustum plane buffers to this frustum.
      */
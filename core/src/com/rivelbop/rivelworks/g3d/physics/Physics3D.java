@@ -1,9 +1,12 @@
 package com.rivelbop.rivelworks.g3d.physics;
 
+import com.badlogic.gdx.graphics.g3d.Model;
 import com.badlogic.gdx.math.Matrix4;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.physics.bullet.Bullet;
 import com.badlogic.gdx.physics.bullet.collision.*;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectMap;
 import com.rivelbop.rivelworks.g3d.graphics.shape.*;
 import com.rivelbop.rivelworks.g3d.physics.dynamic.PhysicsBody3D;
 
@@ -13,11 +16,29 @@ import com.rivelbop.rivelworks.g3d.physics.dynamic.PhysicsBody3D;
  * @author David Jerzak (RivelBop)
  */
 public final class Physics3D {
+    /**
+     * Occluder proxies of collision shapes that are not boxes, see {@link #getOccluderProxy(btCollisionShape)}.
+     */
+    private static final ObjectMap<btCollisionShape, OccluderProxy> OCCLUDER_PROXIES = new ObjectMap<>();
+
+    /**
+     * Models of shared static mesh shapes whose occluder proxy has not been computed yet, guarded by {@link #OCCLUDER_PROXIES}.
+     */
+    private static final ObjectMap<btCollisionShape, Model> OCCLUDER_MODELS = new ObjectMap<>();
+
+    /**
+     * Shared collision shapes by their key, and the same entries by shape for releasing them.
+     */
+    private static final ObjectMap<ShapeKey, SharedShape> SHARED_SHAPES = new ObjectMap<>();
+    private static final ObjectMap<btCollisionShape, SharedShape> SHARED_SHAPE_ENTRIES = new ObjectMap<>();
+
     private Physics3D() {
     }
 
     /**
-     * Converts a {@link Shape3D} into a {@link btCollisionShape}, useful when creating {@link btCollisionObject}s.
+     * Converts a {@link Shape3D} into a {@link btCollisionShape}, useful when creating {@link btCollisionObject}s. Static mesh
+     * shapes created here have no occluder proxy, unless one is set with {@link #setOccluderProxy(btCollisionShape, OccluderProxy)}
+     * (and removed again when disposing the shape).
      *
      * @param shape The shape model used to create the collision shape.
      * @return The collision shape with the provided shape's model.
@@ -53,6 +74,231 @@ public final class Physics3D {
         return collisionShape;
     }
 
+    /**
+     * Returns a collision shape for the {@link Shape3D} that is shared with every other shape of the same type and dimensions
+     * (or, for mesh shapes, the same {@link Model}). Each call must be matched by {@link #releaseCollisionShape(btCollisionShape)}
+     * instead of disposing the shape, which is disposed once nothing uses it anymore.
+     * <p>
+     * Static mesh shapes get an occluder proxy, computed by {@link #computeOccluderProxies()} or else the first time it is
+     * requested.
+     *
+     * @param shape The shape model used to create the collision shape.
+     * @return The shared collision shape.
+     */
+    public static btCollisionShape obtainCollisionShape(Shape3D shape) {
+        ShapeKey key = new ShapeKey(shape);
+        synchronized (SHARED_SHAPES) {
+            SharedShape shared = SHARED_SHAPES.get(key);
+            if (shared == null) {
+                shared = new SharedShape(key, collisionShape(shape));
+                SHARED_SHAPES.put(key, shared);
+                SHARED_SHAPE_ENTRIES.put(shared.SHAPE, shared);
+                if (key.MODEL != null) {
+                    synchronized (OCCLUDER_PROXIES) {
+                        OCCLUDER_MODELS.put(shared.SHAPE, key.MODEL);
+                    }
+                }
+            }
+            shared.references++;
+            return shared.SHAPE;
+        }
+    }
+
+    /**
+     * Releases a collision shape obtained from {@link #obtainCollisionShape(Shape3D)}, disposing it (and forgetting its occluder
+     * proxy) when it was the last reference. Shapes that were not obtained there are disposed immediately.
+     *
+     * @param shape The collision shape to release.
+     */
+    public static void releaseCollisionShape(btCollisionShape shape) {
+        synchronized (SHARED_SHAPES) {
+            SharedShape shared = SHARED_SHAPE_ENTRIES.get(shape);
+            if (shared != null) {
+                if (--shared.references > 0) {
+                    return;
+                }
+                SHARED_SHAPES.remove(shared.KEY);
+                SHARED_SHAPE_ENTRIES.remove(shape);
+            }
+        }
+        removeOccluderProxy(shape);
+        shape.dispose();
+    }
+
+    /**
+     * @return The number of unique collision shapes obtained from {@link #obtainCollisionShape(Shape3D)} and not yet released.
+     */
+    public static int getSharedShapeCount() {
+        synchronized (SHARED_SHAPES) {
+            return SHARED_SHAPES.size;
+        }
+    }
+
+    /**
+     * Returns the occluder proxy of a collision shape, used by {@link OcclusionCuller} to draw shapes other than boxes. Proxies
+     * of shared static mesh shapes (see {@link #obtainCollisionShape(Shape3D)}) not yet computed by
+     * {@link #computeOccluderProxies()}, and those of {@link btConvexHullShape}s, are computed the first time they are requested.
+     *
+     * @param shape The collision shape.
+     * @return The shape's occluder proxy, null if it has none.
+     */
+    public static OccluderProxy getOccluderProxy(btCollisionShape shape) {
+        Model model;
+        synchronized (OCCLUDER_PROXIES) {
+            OccluderProxy proxy = OCCLUDER_PROXIES.get(shape);
+            if (proxy != null || OCCLUDER_PROXIES.containsKey(shape)) {
+                return proxy;
+            }
+            model = OCCLUDER_MODELS.get(shape);
+            if (model == null) {
+                if (shape instanceof btConvexHullShape) {
+                    proxy = OccluderProxy.of((btConvexHullShape) shape);
+                    OCCLUDER_PROXIES.put(shape, proxy);
+                }
+                return proxy;
+            }
+        }
+
+        // The mesh search is slow, other shapes' proxies stay available meanwhile
+        OccluderProxy proxy = OccluderProxy.of(model);
+        synchronized (OCCLUDER_PROXIES) {
+            if (OCCLUDER_MODELS.remove(shape) != null) {
+                OCCLUDER_PROXIES.put(shape, proxy);
+            } else if (OCCLUDER_PROXIES.containsKey(shape)) {
+                // Computed by another thread meanwhile
+                proxy = OCCLUDER_PROXIES.get(shape);
+            }
+        }
+        return proxy;
+    }
+
+    /**
+     * Computes the occluder proxies of all shared static mesh shapes that do not have one yet, e.g. on a loading screen, so
+     * {@link OcclusionCuller} does not compute them when the shapes first come into view.
+     */
+    public static void computeOccluderProxies() {
+        Array<btCollisionShape> shapes;
+        synchronized (OCCLUDER_PROXIES) {
+            shapes = OCCLUDER_MODELS.keys().toArray();
+        }
+        for (btCollisionShape shape : shapes) {
+            getOccluderProxy(shape);
+        }
+    }
+
+    /**
+     * Sets the occluder proxy of a collision shape.
+     *
+     * @param shape The collision shape.
+     * @param proxy The shape's occluder proxy, null if it should not occlude anything.
+     */
+    public static void setOccluderProxy(btCollisionShape shape, OccluderProxy proxy) {
+        synchronized (OCCLUDER_PROXIES) {
+            OCCLUDER_PROXIES.put(shape, proxy);
+            OCCLUDER_MODELS.remove(shape);
+        }
+    }
+
+    /**
+     * Forgets the occluder proxy of a collision shape, should be called when disposing of the shape.
+     *
+     * @param shape The collision shape.
+     */
+    public static void removeOccluderProxy(btCollisionShape shape) {
+        synchronized (OCCLUDER_PROXIES) {
+            OCCLUDER_PROXIES.remove(shape);
+            OCCLUDER_MODELS.remove(shape);
+        }
+    }
+
+    /**
+     * Identifies collision shapes that can be shared: the primitive type with its dimensions, or the model of mesh shapes.
+     */
+    private static final class ShapeKey {
+        private final Class<?> TYPE;
+        private final float A, B, C;
+        private final Model MODEL;
+        private final int HASH;
+
+        private ShapeKey(Shape3D shape) {
+            Model model = null;
+            float a = 0f, b = 0f, c = 0f;
+            if (shape instanceof Cube) {
+                Cube s = (Cube) shape;
+                TYPE = Cube.class;
+                a = s.getWidth();
+                b = s.getHeight();
+                c = s.getDepth();
+            } else if (shape instanceof Sphere) {
+                TYPE = Sphere.class;
+                a = ((Sphere) shape).getRadius();
+            } else if (shape instanceof Cone) {
+                Cone s = (Cone) shape;
+                TYPE = Cone.class;
+                a = s.getRadius();
+                b = s.getHeight();
+            } else if (shape instanceof Capsule) {
+                Capsule s = (Capsule) shape;
+                TYPE = Capsule.class;
+                a = s.getRadius();
+                b = s.getHeight();
+            } else if (shape instanceof Cylinder) {
+                Cylinder s = (Cylinder) shape;
+                TYPE = Cylinder.class;
+                a = s.getWidth();
+                b = s.getHeight();
+                c = s.getDepth();
+            } else {
+                TYPE = Model.class;
+                model = shape.model;
+            }
+            this.A = a;
+            this.B = b;
+            this.C = c;
+            this.MODEL = model;
+
+            int hash = TYPE.hashCode();
+            hash = 31 * hash + Float.floatToIntBits(A);
+            hash = 31 * hash + Float.floatToIntBits(B);
+            hash = 31 * hash + Float.floatToIntBits(C);
+            this.HASH = 31 * hash + System.identityHashCode(MODEL);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof ShapeKey)) {
+                return false;
+            }
+            ShapeKey key = (ShapeKey) o;
+            return TYPE == key.TYPE && MODEL == key.MODEL
+                    && Float.floatToIntBits(A) == Float.floatToIntBits(key.A)
+                    && Float.floatToIntBits(B) == Float.floatToIntBits(key.B)
+                    && Float.floatToIntBits(C) == Float.floatToIntBits(key.C);
+        }
+
+        @Override
+        public int hashCode() {
+            return HASH;
+        }
+    }
+
+    /**
+     * A shared collision shape and the number of its users.
+     */
+    private static final class SharedShape {
+        private final ShapeKey KEY;
+        private final btCollisionShape SHAPE;
+        private int references;
+
+        private SharedShape(ShapeKey key, btCollisionShape shape) {
+            this.KEY = key;
+            this.SHAPE = shape;
+        }
+    }
+
     /**
      * Used to transform {@link PhysicsBody3D} objects.
      */
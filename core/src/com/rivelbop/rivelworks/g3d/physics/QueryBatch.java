@@ -0,0 +1,353 @@
+package com.rivelbop.rivelworks.g3d.physics;
+
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.math.Vector3;
+import com.badlogic.gdx.physics.bullet.collision.*;
+import com.badlogic.gdx.utils.Disposable;
+
+import java.util.Arrays;
+
+/**
+ * A batch of ray tests and convex sweeps run against a collision world in one pass, reusing a single native callback per query
+ * type. Queries are added by index, and their results are stored in primitive arrays by the same index.
+ * <p>
+ * A batch can be run directly with {@link #run(btCollisionWorld)}, or passed to the query method of a world, which may run it
+ * on its simulation thread in between steps. It must not be altered until {@link #isDone()}.
+ *
+ * @author David Jerzak (RivelBop)
+ */
+public class QueryBatch implements Disposable {
+    private final Vector3 TMP_FROM = new Vector3(), TMP_TO = new Vector3(), TMP_RESULT = new Vector3();
+    private final Matrix4 TMP_FROM_TRANSFORM = new Matrix4(), TMP_TO_TRANSFORM = new Matrix4();
+
+    /**
+     * Start and end positions of each query, 3 floats per query.
+     */
+    private float[] from, to;
+
+    /**
+     * The shape swept by each query, null for rays.
+     */
+    private btConvexShape[] shapes;
+
+    /**
+     * Results of each query: hit fraction along the query (1 if nothing was hit), hit point and normal (3 floats per query), and
+     * the hit object.
+     */
+    private float[] hitFractions, hitPoints, hitNormals;
+    private btCollisionObject[] hitObjects;
+
+    private int size;
+
+    /**
+     * Collision filter of all queries.
+     */
+    private int filterGroup = btBroadphaseProxy.CollisionFilterGroups.DefaultFilter;
+    private int filterMask = btBroadphaseProxy.CollisionFilterGroups.AllFilter;
+
+    /**
+     * Reused native callbacks, created by the first query of their type.
+     */
+    private ClosestRayResultCallback rayCallback;
+    private ClosestConvexResultCallback sweepCallback;
+
+    private volatile boolean done;
+
+    /**
+     * @param capacity The initial number of queries, grows when more are added.
+     */
+    public QueryBatch(int capacity) {
+        capacity = Math.max(1, capacity);
+        this.from = new float[capacity * 3];
+        this.to = new float[capacity * 3];
+        this.shapes = new btConvexShape[capacity];
+        this.hitFractions = new float[capacity];
+        this.hitPoints = new float[capacity * 3];
+        this.hitNormals = new float[capacity * 3];
+        this.hitObjects = new btCollisionObject[capacity];
+    }
+
+    /**
+     * Creates a batch for 16 queries.
+     */
+    public QueryBatch() {
+        this(16);
+    }
+
+    /**
+     * Adds a ray test, finding the closest object hit by the ray.
+     *
+     * @param from The start of the ray.
+     * @param to   The end of the ray.
+     * @return The index of the query.
+     */
+    public int addRay(Vector3 from, Vector3 to) {
+        return add(null, from.x, from.y, from.z, to.x, to.y, to.z);
+    }
+
+    /**
+     * Adds a ray test, finding the closest object hit by the ray.
+     *
+     * @param fromX The x-position of the start of the ray.
+     * @param fromY The y-position of the start of the ray.
+     * @param fromZ The z-position of the start of the ray.
+     * @param toX   The x-position of the end of the ray.
+     * @param toY   The y-position of the end of the ray.
+     * @param toZ   The z-position of the end of the ray.
+     * @return The index of the query.
+     */
+    public int addRay(float fromX, float fromY, float fromZ, float toX, float toY, float toZ) {
+        return add(null, fromX, fromY, fromZ, toX, toY, toZ);
+    }
+
+    /**
+     * Adds a convex sweep, finding the closest object hit by the unrotated shape moving from start to end.
+     *
+     * @param shape The convex shape to sweep.
+     * @param from  The start position of the shape.
+     * @param to    The end position of the shape.
+     * @return The index of the query.
+     */
+    public int addSweep(btConvexShape shape, Vector3 from, Vector3 to) {
+        if (shape == null) {
+            throw new IllegalArgumentException("Sweep shape cannot be null!");
+        }
+        return add(shape, from.x, from.y, from.z, to.x, to.y, to.z);
+    }
+
+    private int add(btConvexShape shape, float fromX, float fromY, float fromZ, float toX, float toY, float toZ) {
+        if (size == shapes.length) {
+            resize(size * 2);
+        }
+        int i = size * 3;
+        from[i] = fromX;
+        from[i + 1] = fromY;
+        from[i + 2] = fromZ;
+        to[i] = toX;
+        to[i + 1] = toY;
+        to[i + 2] = toZ;
+        shapes[size] = shape;
+        done = false;
+        return size++;
+    }
+
+    private void resize(int capacity) {
+        from = Arrays.copyOf(from, capacity * 3);
+        to = Arrays.copyOf(to, capacity * 3);
+        shapes = Arrays.copyOf(shapes, capacity);
+        hitFractions = Arrays.copyOf(hitFractions, capacity);
+        hitPoints = Arrays.copyOf(hitPoints, capacity * 3);
+        hitNormals = Arrays.copyOf(hitNormals, capacity * 3);
+        hitObjects = Arrays.copyOf(hitObjects, capacity);
+    }
+
+    /**
+     * Removes all queries and their results.
+     */
+    public void clear() {
+        Arrays.fill(shapes, 0, size, null);
+        Arrays.fill(hitObjects, 0, size, null);
+        size = 0;
+        done = false;
+    }
+
+    /**
+     * Sets the collision filter of all queries.
+     *
+     * @param group The collision filter group of the queries.
+     * @param mask  The collision filter mask, only objects of these groups are hit.
+     */
+    public void setFilter(int group, int mask) {
+        this.filterGroup = group;
+        this.filterMask = mask;
+    }
+
+    /**
+     * Marks the results as outdated, called by a world the batch is passed to before running it.
+     */
+    public void markPending() {
+        done = false;
+    }
+
+    /**
+     * Runs all queries against the world, on the thread simulating it.
+     *
+     * @param world The world to query.
+     */
+    public void run(btCollisionWorld world) {
+        for (int q = 0; q < size; q++) {
+            int i = q * 3;
+            TMP_FROM.set(from[i], from[i + 1], from[i + 2]);
+            TMP_TO.set(to[i], to[i + 1], to[i + 2]);
+
+            btCollisionObject object;
+            if (shapes[q] == null) {
+                ClosestRayResultCallback callback = rayCallback();
+                callback.setCollisionObject(null);
+                callback.setClosestHitFraction(1f);
+                callback.setRayFromWorld(TMP_FROM);
+                callback.setRayToWorld(TMP_TO);
+                world.rayTest(TMP_FROM, TMP_TO, callback);
+
+                object = callback.hasHit() ? callback.getCollisionObject() : null;
+                hitFractions[q] = callback.getClosestHitFraction();
+                if (object != null) {
+                    callback.getHitPointWorld(TMP_RESULT);
+                    setResult(hitPoints, i, TMP_RESULT);
+                    callback.getHitNormalWorld(TMP_RESULT);
+                    setResult(hitNormals, i, TMP_RESULT);
+                }
+            } else {
+                ClosestConvexResultCallback callback = sweepCallback();
+                callback.setHitCollisionObject(null);
+                callback.setClosestHitFraction(1f);
+                callback.setRayFromWorld(TMP_FROM);
+                callback.setConvexToWorld(TMP_TO);
+                world.convexSweepTest(shapes[q], TMP_FROM_TRANSFORM.setToTranslation(TMP_FROM),
+                        TMP_TO_TRANSFORM.setToTranslation(TMP_TO), callback);
+
+                object = callback.hasHit() ? callback.getHitCollisionObject() : null;
+                hitFractions[q] = callback.getClosestHitFraction();
+                if (object != null) {
+                    callback.getHitPointWorld(TMP_RESULT);
+                    setResult(hitPoints, i, TMP_RESULT);
+                    callback.getHitNormalWorld(TMP_RESULT);
+                    setResult(hitNormals, i, TMP_RESULT);
+                }
+            }
+
+            hitObjects[q] = object;
+            if (object == null) {
+                hitFractions[q] = 1f;
+                setResult(hitPoints, i, TMP_TO);
+                Arrays.fill(hitNormals, i, i + 3, 0f);
+            }
+        }
+        done = true;
+    }
+
+    private static void setResult(float[] results, int i, Vector3 result) {
+        results[i] = result.x;
+        results[i + 1] = result.y;
+        results[i + 2] = result.z;
+    }
+
+    private ClosestRayResultCallback rayCallback() {
+        if (rayCallback == null) {
+            rayCallback = new ClosestRayResultCallback(Vector3.Zero, Vector3.Zero);
+        }
+        rayCallback.setCollisionFilterGroup(filterGroup);
+        rayCallback.setCollisionFilterMask(filterMask);
+        return rayCallback;
+    }
+
+    private ClosestConvexResultCallback sweepCallback() {
+        if (sweepCallback == null) {
+            sweepCallback = new ClosestConvexResultCallback(Vector3.Zero, Vector3.Zero);
+        }
+        sweepCallback.setCollisionFilterGroup(filterGroup);
+        sweepCallback.setCollisionFilterMask(filterMask);
+        return sweepCallback;
+    }
+
+    /**
+     * @return Whether the results are up-to-date with the queries.
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * @return The number of queries.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index The index of the query.
+     * @return Whether the query hit an object.
+     */
+    public boolean hasHit(int index) {
+        return hitObjects[index] != null;
+    }
+
+    /**
+     * @param index The index of the query.
+     * @return The object hit by the query, null if nothing was hit.
+     */
+    public btCollisionObject getHitObject(int index) {
+        return hitObjects[index];
+    }
+
+    /**
+     * @param index The index of the query.
+     * @return The fraction of the query's distance at which it hit, 1 if nothing was hit.
+     */
+    public float getHitFraction(int index) {
+        return hitFractions[index];
+    }
+
+    /**
+     * @param index The index of the query.
+     * @param out   Set to the world position of the hit, the end of the query if nothing was hit.
+     * @return The out vector.
+     */
+    public Vector3 getHitPoint(int index, Vector3 out) {
+        int i = index * 3;
+        return out.set(hitPoints[i], hitPoints[i + 1], hitPoints[i + 2]);
+    }
+
+    /**
+     * @param index The index of the query.
+     * @param out   Set to the world normal of the hit surface, zero if nothing was hit.
+     * @return The out vector.
+     */
+    public Vector3 getHitNormal(int index, Vector3 out) {
+        int i = index * 3;
+        return out.set(hitNormals[i], hitNormals[i + 1], hitNormals[i + 2]);
+    }
+
+    /**
+     * @return The hit fractions of all queries by index, see {@link #getHitFraction(int)}.
+     */
+    public float[] getHitFractions() {
+        return hitFractions;
+    }
+
+    /**
+     * @return The hit points of all queries, 3 floats per index, see {@link #getHitPoint(int, Vector3)}.
+     */
+    public float[] getHitPoints() {
+        return hitPoints;
+    }
+
+    /**
+     * @return The hit normals of all queries, 3 floats per index, see {@link #getHitNormal(int, Vector3)}.
+     */
+    public float[] getHitNormals() {
+        return hitNormals;
+    }
+
+    /**
+     * @return The hit objects of all queries by index, null where nothing was hit.
+     */
+    public btCollisionObject[] getHitObjects() {
+        return hitObjects;
+    }
+
+    /**
+     * Disposes of the native callbacks.
+     */
+    @Override
+    public void dispose() {
+        if (rayCallback != null) {
+            rayCallback.dispose();
+            rayCallback = null;
+        }
+        if (sweepCallback != null) {
+            sweepCallback.dispose();
+            sweepCallback = null;
+        }
+    }
+}
@@ -5,6 +5,7 @@ import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.physics.bullet.collision.*;
 import com.badlogic.gdx.utils.Disposable;
 import com.rivelbop.rivelworks.g3d.graphics.shape.Shape3D;
+import com.rivelbop.rivelworks.g3d.physics.ContactCache;
 import com.rivelbop.rivelworks.g3d.physics.Physics3D;
 import com.rivelbop.rivelworks.g3d.physics.dynamic.PhysicsBody3D;
 
@@ -30,14 +31,24 @@ public class CollisionBody3D implements Disposable {
     private final btCollisionObject BODY;
 
     /**
-     * The collision configuration of the dispatcher, set to default.
+     * Contacts of the world the body was added to, null if it is not in a world.
      */
-    private final btDefaultCollisionConfiguration CONFIG;
+    private ContactCache contacts;
 
     /**
-     * The collision dispatcher, takes in the configuration.
+     * Pushes the transformations of the world's bodies, null if it is not in a world.
      */
-    private final btCollisionDispatcher DISPATCHER;
+    CollisionBodySync sync;
+
+    /**
+     * Whether the {@link #SHAPE}'s transformation changed since it was last pushed to the {@link #BODY} by the world.
+     */
+    boolean dirty;
+
+    /**
+     * Steps since the body was last moved, -1 if it is asleep or not simulated, see {@link CollisionBodySync}.
+     */
+    int idleSteps = -1;
 
     /**
      * Creates a new collision body from the provided shape model.
@@ -46,24 +57,36 @@ public class CollisionBody3D implements Disposable {
      */
     public CollisionBody3D(Shape3D shape) {
         this.SHAPE = shape;
-        this.COLLISION_SHAPE = Physics3D.collisionShape(SHAPE);
+        this.COLLISION_SHAPE = Physics3D.obtainCollisionShape(SHAPE);
 
         this.BODY = new btCollisionObject();
         BODY.setCollisionShape(COLLISION_SHAPE);
         BODY.setCollisionFlags(BODY.getCollisionFlags() | btCollisionObject.CollisionFlags.CF_CUSTOM_MATERIAL_CALLBACK);
         BODY.setWorldTransform(SHAPE.transform);
-
-        this.CONFIG = new btDefaultCollisionConfiguration();
-        this.DISPATCHER = new btCollisionDispatcher(CONFIG);
     }
 
     /**
-     * Updates the shape's transformation according to the {@link #BODY}.
+     * Updates the {@link #BODY}'s transformation according to the shape. Bodies in a world are updated by the world's step, see
+     * {@link #markDirty()}.
      */
     public void update() {
         BODY.setWorldTransform(SHAPE.transform);
     }
 
+    /**
+     * Marks the shape's transformation as changed, so the world pushes it to the {@link #BODY} before its next step. Done by all
+     * transformation methods, must be called after altering the shape's transformation directly. Outside a world, the body is
+     * updated immediately.
+     */
+    public void markDirty() {
+        if (sync == null) {
+            update();
+        } else if (!dirty) {
+            dirty = true;
+            sync.DIRTY.add(this);
+        }
+    }
+
     /**
      * Checks to see if the provided collision body collides with the {@link #BODY}.
      *
@@ -85,41 +108,24 @@ public class CollisionBody3D implements Disposable {
     }
 
     /**
-     * Checks to see if the provided body collides with the {@link #BODY}.
+     * Checks to see if the provided body collides with the {@link #BODY}. In a world this reads the world's
+     * {@link ContactCache} (as of its last step), otherwise it runs a one-off narrow phase.
      *
      * @param otherBody The body to check with.
      * @return True if the number of contacts between the bodies is greater than 0.
      */
     public boolean isColliding(btCollisionObject otherBody) {
-        CollisionObjectWrapper col1 = new CollisionObjectWrapper(BODY);
-        CollisionObjectWrapper col2 = new CollisionObjectWrapper(otherBody);
-
-        btCollisionAlgorithm algorithm = DISPATCHER.findAlgorithm(col1.wrapper, col2.wrapper, null, 0);
-
-        btDispatcherInfo dispatcherInfo = new btDispatcherInfo();
-        btManifoldResult result = new btManifoldResult(col1.wrapper, col2.wrapper);
-
-        algorithm.processCollision(col1.wrapper, col2.wrapper, dispatcherInfo, result);
-
-        boolean r = result.getPersistentManifold().getNumContacts() > 0;
-
-        DISPATCHER.freeCollisionAlgorithm(algorithm.getCPointer());
-        col1.dispose();
-        col2.dispose();
-        algorithm.dispose();
-        dispatcherInfo.dispose();
-        result.dispose();
-        return r;
+        return contacts != null ? contacts.isTouching(BODY, otherBody) : ContactCache.testContact(BODY, otherBody);
     }
 
     /**
-     * Alters the {@link #SHAPE}'s transformation, then updates the {@link #BODY}.
+     * Alters the {@link #SHAPE}'s transformation, then marks it dirty for the {@link #BODY}, see {@link #markDirty()}.
      *
      * @param config The transform configuration to apply to the transformation.
      */
     public void transform(Physics3D.TransformConfig config) {
         config.transform(SHAPE.transform);
-        update();
+        markDirty();
     }
 
     /**
@@ -223,17 +229,19 @@ public class CollisionBody3D implements Disposable {
     }
 
     /**
-     * @return The collision configuration
+     * Sets the contacts {@link #isColliding(btCollisionObject)} reads from, done by the world when the body is added or removed.
+     *
+     * @param contacts The contacts of the body's world, null if it is not in a world.
      */
-    public btDefaultCollisionConfiguration getConfig() {
-        return CONFIG;
+    public void setContactCache(ContactCache contacts) {
+        this.contacts = contacts;
     }
 
     /**
-     * @return The collision dispatcher
+     * @return The contacts of the body's world, null if it is not in a world.
      */
-    public btCollisionDispatcher getDispatcher() {
-        return DISPATCHER;
+    public ContactCache getContactCache() {
+        return contacts;
     }
 
     /**
@@ -268,10 +276,8 @@ public class CollisionBody3D implements Disposable {
      * @param shapeInstance Whether the shape instance should be disposed.
      */
     public void dispose(boolean shapeInstance) {
-        COLLISION_SHAPE.dispose();
+        Physics3D.releaseCollisionShape(COLLISION_SHAPE);
         BODY.dispose();
-        CONFIG.dispose();
-        DISPATCHER.dispose();
 
         if (shapeInstance) {
             SHAPE.dispose();
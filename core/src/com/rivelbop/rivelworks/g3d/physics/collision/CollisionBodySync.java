@@ -0,0 +1,228 @@
+package com.rivelbop.rivelworks.g3d.physics.collision;
+
+import com.badlogic.gdx.math.Matrix4;
+import com.badlogic.gdx.physics.bullet.collision.Collision;
+import com.badlogic.gdx.physics.bullet.collision.btCollisionWorld;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.ObjectSet;
+
+/**
+ * Pushes the transformations of a world's {@link CollisionBody3D}s to Bullet, only for bodies marked dirty by
+ * {@link CollisionBody3D#markDirty()} instead of every body each step.
+ * <p>
+ * Optionally, bodies that have not moved for a number of steps are put to sleep, see {@link #setSleeping(boolean)}. Their
+ * bounding boxes are then no longer updated by Bullet each step, and moving them wakes them up again.
+ * <p>
+ * Bodies are added, removed and marked dirty by the thread owning the world's bodies, the other methods are called by the
+ * thread simulating the world.
+ *
+ * @author David Jerzak (RivelBop)
+ */
+public class CollisionBodySync {
+    /**
+     * The world the bodies are simulated in.
+     */
+    private final btCollisionWorld WORLD;
+
+    /**
+     * Bodies whose transformation changed since the last {@link #clearDirty()}.
+     */
+    final Array<CollisionBody3D> DIRTY;
+
+    /**
+     * Bodies that are simulated, and those of them that are awake.
+     */
+    private final ObjectSet<CollisionBody3D> SIMULATED;
+    private final Array<CollisionBody3D> AWAKE;
+
+    /**
+     * Whether idle bodies are put to sleep.
+     */
+    private boolean sleeping;
+
+    /**
+     * The number of steps a body must not move for to be put to sleep.
+     */
+    private int sleepSteps = 60;
+
+    /**
+     * @param world The world the bodies are simulated in.
+     */
+    public CollisionBodySync(btCollisionWorld world) {
+        this.WORLD = world;
+        this.DIRTY = new Array<>(false, 16);
+        this.SIMULATED = new ObjectSet<>();
+        this.AWAKE = new Array<>(false, 16);
+    }
+
+    /**
+     * Tracks the transformation changes of a body added to the world.
+     *
+     * @param body The collision body.
+     */
+    public void add(CollisionBody3D body) {
+        body.sync = this;
+    }
+
+    /**
+     * Stops tracking the transformation changes of a body removed from the world.
+     *
+     * @param body The collision body.
+     */
+    public void remove(CollisionBody3D body) {
+        body.sync = null;
+        if (body.dirty) {
+            body.dirty = false;
+            DIRTY.removeValue(body, true);
+        }
+    }
+
+    /**
+     * Pushes the transformations of all dirty bodies, for worlds simulated by the thread owning their bodies.
+     */
+    public void flush() {
+        for (int i = 0; i < DIRTY.size; i++) {
+            CollisionBody3D body = DIRTY.get(i);
+            apply(body, body.getShape().transform);
+        }
+        clearDirty();
+    }
+
+    /**
+     * @return The bodies whose transformation changed since the last {@link #clearDirty()}.
+     */
+    public Array<CollisionBody3D> getDirtyBodies() {
+        return DIRTY;
+    }
+
+    /**
+     * Marks all dirty bodies as pushed.
+     */
+    public void clearDirty() {
+        for (int i = 0; i < DIRTY.size; i++) {
+            DIRTY.get(i).dirty = false;
+        }
+        DIRTY.clear();
+    }
+
+    /**
+     * Starts simulating a body that was added to the world, it starts awake.
+     *
+     * @param body The collision body.
+     */
+    public void insert(CollisionBody3D body) {
+        SIMULATED.add(body);
+        wake(body);
+    }
+
+    /**
+     * Stops simulating a body that was removed from the world.
+     *
+     * @param body The collision body.
+     */
+    public void forget(CollisionBody3D body) {
+        if (!SIMULATED.remove(body)) {
+            return;
+        }
+        if (body.idleSteps >= 0) {
+            AWAKE.removeValue(body, true);
+        }
+        body.idleSteps = -1;
+    }
+
+    /**
+     * @param body The collision body.
+     * @return Whether the body is simulated.
+     */
+    public boolean contains(CollisionBody3D body) {
+        return SIMULATED.contains(body);
+    }
+
+    /**
+     * Sets the transformation of a simulated body and wakes it up.
+     *
+     * @param body      The collision body.
+     * @param transform Its new transformation.
+     */
+    public void apply(CollisionBody3D body, Matrix4 transform) {
+        body.getBody().setWorldTransform(transform);
+        wake(body);
+    }
+
+    /**
+     * Resets the idle steps of a body, waking it up if it is asleep.
+     *
+     * @param body The collision body.
+     */
+    private void wake(CollisionBody3D body) {
+        if (body.idleSteps < 0) {
+            AWAKE.add(body);
+            if (sleeping) {
+                body.getBody().setActivationState(Collision.ACTIVE_TAG);
+            }
+        }
+        body.idleSteps = 0;
+    }
+
+    /**
+     * Counts the idle steps of the awake bodies, putting those to sleep that have been idle for long enough. Must be called after
+     * each simulation step.
+     */
+    public void update() {
+        if (!sleeping) {
+            return;
+        }
+        for (int i = AWAKE.size - 1; i >= 0; i--) {
+            CollisionBody3D body = AWAKE.get(i);
+            if (++body.idleSteps >= sleepSteps) {
+                body.getBody().setActivationState(Collision.ISLAND_SLEEPING);
+                body.idleSteps = -1;
+                AWAKE.removeIndex(i);
+            }
+        }
+    }
+
+    /**
+     * Sets whether bodies that have not moved for {@link #getSleepSteps()} steps are put to sleep. Bullet then only updates the
+     * bounding boxes of awake objects each step. Note that two sleeping bodies no longer collide with each other, only with awake
+     * ones.
+     *
+     * @param sleeping Whether idle bodies are put to sleep.
+     */
+    public void setSleeping(boolean sleeping) {
+        if (this.sleeping == sleeping) {
+            return;
+        }
+        this.sleeping = sleeping;
+        WORLD.setForceUpdateAllAabbs(!sleeping);
+
+        for (CollisionBody3D body : SIMULATED) {
+            if (body.idleSteps < 0) {
+                AWAKE.add(body);
+            }
+            body.idleSteps = 0;
+            body.getBody().setActivationState(Collision.ACTIVE_TAG);
+        }
+    }
+
+    /**
+     * @return Whether idle bodies are put to sleep.
+     */
+    public boolean isSleeping() {
+        return sleeping;
+    }
+
+    /**
+     * @param sleepSteps The number of steps a body must not move for to be put to sleep.
+     */
+    public void setSleepSteps(int sleepSteps) {
+        this.sleepSteps = Math.max(1, sleepSteps);
+    }
+
+    /**
+     * @return The number of steps a body must not move for to be put to sleep.
+     */
+    public int getSleepSteps() {
+        return sleepSteps;
+    }
+}
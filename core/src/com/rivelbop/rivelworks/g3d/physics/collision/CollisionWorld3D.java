@@ -5,6 +5,8 @@ import com.badlogic.gdx.graphics.g3d.ModelBatch;
 import com.badlogic.gdx.physics.bullet.collision.*;
 import com.badlogic.gdx.utils.Disposable;
 import com.badlogic.gdx.utils.ObjectSet;
+import com.rivelbop.rivelworks.g3d.physics.ContactCache;
+import com.rivelbop.rivelworks.g3d.physics.QueryBatch;
 
 /**
  * Stores and handles collision bodies.
@@ -30,6 +32,16 @@ public class CollisionWorld3D implements Disposable {
      */
     private final btCollisionWorld WORLD;
 
+    /**
+     * Touching bodies after the last step.
+     */
+    private final ContactCache CONTACTS;
+
+    /**
+     * Pushes the transformations of moved bodies.
+     */
+    private final CollisionBodySync SYNC;
+
     /**
      * Initializes a collision world with default properties.
      */
@@ -39,16 +51,18 @@ public class CollisionWorld3D implements Disposable {
         this.DISPATCHER = new btCollisionDispatcher(CONFIG);
         this.BROADPHASE = new btDbvtBroadphase();
         this.WORLD = new btCollisionWorld(DISPATCHER, BROADPHASE, CONFIG);
+        this.CONTACTS = new ContactCache(DISPATCHER);
+        this.SYNC = new CollisionBodySync(WORLD);
     }
 
     /**
-     * Performs collision detection and updates each body according to its shape model.
+     * Updates each moved body according to its shape model, then performs collision detection.
      */
     public void step() {
+        SYNC.flush();
         WORLD.performDiscreteCollisionDetection();
-        for (CollisionBody3D b : BODIES) {
-            b.update();
-        }
+        CONTACTS.update();
+        SYNC.update();
     }
 
     /**
@@ -64,6 +78,9 @@ public class CollisionWorld3D implements Disposable {
     public void addBody(CollisionBody3D collisionBody) {
         addBody(collisionBody.getBody());
         BODIES.add(collisionBody);
+        collisionBody.setContactCache(CONTACTS);
+        SYNC.add(collisionBody);
+        SYNC.insert(collisionBody);
     }
 
     /**
@@ -79,6 +96,9 @@ public class CollisionWorld3D implements Disposable {
     public void removeBody(CollisionBody3D collisionBody) {
         removeBody(collisionBody.getBody());
         BODIES.remove(collisionBody);
+        collisionBody.setContactCache(null);
+        SYNC.remove(collisionBody);
+        SYNC.forget(collisionBody);
     }
 
     /**
@@ -104,6 +124,36 @@ public class CollisionWorld3D implements Disposable {
         }
     }
 
+    /**
+     * Runs a batch of ray tests and sweeps against the world, after pushing moved bodies and updating the bounding boxes the
+     * queries cull by.
+     *
+     * @param batch The queries to run.
+     */
+    public void query(QueryBatch batch) {
+        batch.markPending();
+        SYNC.flush();
+        WORLD.updateAabbs();
+        batch.run(WORLD);
+    }
+
+    /**
+     * Sets whether bodies that have not moved for a number of steps are put to sleep, see
+     * {@link CollisionBodySync#setSleeping(boolean)}.
+     *
+     * @param sleeping Whether idle bodies are put to sleep.
+     */
+    public void setSleeping(boolean sleeping) {
+        SYNC.setSleeping(sleeping);
+    }
+
+    /**
+     * @return The synchronization of the bodies' transformations.
+     */
+    public CollisionBodySync getSync() {
+        return SYNC;
+    }
+
     /**
      * @return All {@link btCollisionObject} objects in the world.
      */
@@ -139,6 +189,13 @@ public class CollisionWorld3D implements Disposable {
         return BROADPHASE;
     }
 
+    /**
+     * @return The touching bodies after the last step, with contact events.
+     */
+    public ContactCache getContacts() {
+        return CONTACTS;
+    }
+
     /**
      * @return The collision world itself.
      */
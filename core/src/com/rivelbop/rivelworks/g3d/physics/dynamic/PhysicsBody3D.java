@@ -8,6 +8,7 @@ import com.badlogic.gdx.physics.bullet.dynamics.btRigidBody;
 import com.badlogic.gdx.physics.bullet.linearmath.btMotionState;
 import com.badlogic.gdx.utils.Disposable;
 import com.rivelbop.rivelworks.g3d.graphics.shape.Shape3D;
+import com.rivelbop.rivelworks.g3d.physics.ContactCache;
 import com.rivelbop.rivelworks.g3d.physics.Physics3D;
 import com.rivelbop.rivelworks.g3d.physics.collision.CollisionBody3D;
 
@@ -48,29 +49,123 @@ public class PhysicsBody3D implements Disposable {
     private final MotionState STATE;
 
     /**
-     * The collision configuration of the dispatcher, set to default.
+     * Contacts of the world the body was added to, null if it is not in a world.
      */
-    private final btDefaultCollisionConfiguration CONFIG;
+    private ContactCache contacts;
 
     /**
-     * The collision dispatcher, takes in the configuration.
-     */
-    private final btCollisionDispatcher DISPATCHER;
-
-    /**
-     * Handles transformation data between the shape model and body.
+     * Handles transformation data between the shape model and body. The transforms of the last two simulation steps are kept so
+     * that a fixed time step world can render the body in between them, see {@link #interpolate(float)}.
      */
     public static class MotionState extends btMotionState {
+        // Used for interpolating, only from the rendering thread
+        private static final Vector3 TMP_POSITION = new Vector3(), TMP_CURRENT_POSITION = new Vector3();
+        private static final Quaternion TMP_ROTATION = new Quaternion(), TMP_CURRENT_ROTATION = new Quaternion();
+
+        /**
+         * The rendered transform, the shape model's transform.
+         */
         public Matrix4 transform;
 
+        /**
+         * The body's transform before and after the last simulation step.
+         */
+        private final Matrix4 PREVIOUS = new Matrix4(), CURRENT = new Matrix4();
+
+        /**
+         * Whether simulation steps write the rendered {@link #transform}, false while the world simulates on its own thread.
+         */
+        boolean renderTransform = true;
+
+        /**
+         * Whether the body is kinematic, moved by its rendered {@link #transform} instead of the simulation.
+         */
+        boolean kinematic;
+
+        /**
+         * The rendered transform as last submitted by the world, read by simulation steps instead of the {@link #transform}
+         * while the world simulates on its own thread.
+         */
+        private final Matrix4 SUBMITTED = new Matrix4();
+
         @Override
         public void getWorldTransform(Matrix4 worldTrans) {
-            worldTrans.set(transform);
+            worldTrans.set(renderTransform ? transform : SUBMITTED);
+        }
+
+        /**
+         * Sets the transform read by simulation steps while the world simulates on its own thread, on the simulating thread.
+         *
+         * @param worldTrans A copy of the rendered transform.
+         */
+        void submit(Matrix4 worldTrans) {
+            SUBMITTED.set(worldTrans);
         }
 
         @Override
         public void setWorldTransform(Matrix4 worldTrans) {
-            transform.set(worldTrans);
+            CURRENT.set(worldTrans);
+            if (renderTransform) {
+                transform.set(worldTrans);
+            }
+        }
+
+        /**
+         * Keeps the current transform as the previous one, called by the world before each simulation step. Bodies that are not
+         * moved by the step (e.g. sleeping ones) then have equal transforms and are not interpolated.
+         */
+        public void storePrevious() {
+            PREVIOUS.set(CURRENT);
+        }
+
+        /**
+         * Sets both the previous and current transform, so the body is not interpolated from where it was before a teleport.
+         *
+         * @param worldTrans The body's new transform.
+         */
+        public void reset(Matrix4 worldTrans) {
+            PREVIOUS.set(worldTrans);
+            CURRENT.set(worldTrans);
+        }
+
+        /**
+         * Sets the rendered {@link #transform} in between the previous and current simulation step, interpolating the position
+         * linearly and the rotation spherically.
+         *
+         * @param alpha The progress from the previous to the current step, from 0 to 1.
+         */
+        public void interpolate(float alpha) {
+            interpolate(PREVIOUS, CURRENT, alpha, transform);
+        }
+
+        /**
+         * Interpolates in between two rigid transforms, the position linearly and the rotation spherically.
+         *
+         * @param previous The transform at alpha 0.
+         * @param current  The transform at alpha 1.
+         * @param alpha    The progress from the previous to the current transform, from 0 to 1.
+         * @param out      The matrix to set.
+         */
+        public static void interpolate(Matrix4 previous, Matrix4 current, float alpha, Matrix4 out) {
+            previous.getTranslation(TMP_POSITION);
+            previous.getRotation(TMP_ROTATION, true);
+            current.getTranslation(TMP_CURRENT_POSITION);
+            current.getRotation(TMP_CURRENT_ROTATION, true);
+            out.set(TMP_POSITION.lerp(TMP_CURRENT_POSITION, alpha), TMP_ROTATION.slerp(TMP_CURRENT_ROTATION, alpha));
+        }
+
+        /**
+         * @return The body's transform before the last simulation step.
+         */
+        public Matrix4 getPrevious() {
+            return PREVIOUS;
+        }
+
+        /**
+         * @return The body's transform after the last simulation step.
+         */
+        public Matrix4 getCurrent() {
+            return CURRENT;
         }
     }
 
@@ -83,7 +178,7 @@ public class PhysicsBody3D implements Disposable {
     public PhysicsBody3D(Shape3D shape, float mass, MotionState motionState, int collisionFlag) {
         this.SHAPE = shape;
 
-        this.COLLISION_SHAPE = Physics3D.collisionShape(SHAPE);
+        this.COLLISION_SHAPE = Physics3D.obtainCollisionShape(SHAPE);
         if (mass > 0f) {
             COLLISION_SHAPE.calculateLocalInertia(mass, LOCAL_INERTIA);
         } else {
@@ -93,14 +188,13 @@ public class PhysicsBody3D implements Disposable {
         this.STATE = motionState;
         if (STATE != null) {
             STATE.transform = SHAPE.transform;
+            STATE.kinematic = (collisionFlag & btCollisionObject.CollisionFlags.CF_KINEMATIC_OBJECT) != 0;
+            STATE.reset(SHAPE.transform);
         }
 
         this.INFO = new btRigidBody.btRigidBodyConstructionInfo(mass, STATE, COLLISION_SHAPE, LOCAL_INERTIA);
         this.BODY = new btRigidBody(INFO);
         BODY.setCollisionFlags(BODY.getCollisionFlags() | collisionFlag);
-
-        this.CONFIG = new btDefaultCollisionConfiguration();
-        this.DISPATCHER = new btCollisionDispatcher(CONFIG);
     }
 
     /**
@@ -124,31 +218,14 @@ public class PhysicsBody3D implements Disposable {
     }
 
     /**
-     * Checks to see if the provided body collides with the {@link #BODY}.
+     * Checks to see if the provided body collides with the {@link #BODY}. In a world this reads the world's
+     * {@link ContactCache} (as of its last step), otherwise it runs a one-off narrow phase.
      *
      * @param otherBody The body to check with.
      * @return True if the number of contacts between the bodies is greater than 0.
      */
     public boolean isColliding(btCollisionObject otherBody) {
-        CollisionObjectWrapper col1 = new CollisionObjectWrapper(BODY);
-        CollisionObjectWrapper col2 = new CollisionObjectWrapper(otherBody);
-
-        btCollisionAlgorithm algorithm = DISPATCHER.findAlgorithm(col1.wrapper, col2.wrapper, null, 0);
-
-        btDispatcherInfo dispatcherInfo = new btDispatcherInfo();
-        btManifoldResult result = new btManifoldResult(col1.wrapper, col2.wrapper);
-
-        algorithm.processCollision(col1.wrapper, col2.wrapper, dispatcherInfo, result);
-
-        boolean r = result.getPersistentManifold().getNumContacts() > 0;
-
-        DISPATCHER.freeCollisionAlgorithm(algorithm.getCPointer());
-        col1.dispose();
-        col2.dispose();
-        algorithm.dispose();
-        dispatcherInfo.dispose();
-        result.dispose();
-        return r;
+        return contacts != null ? contacts.isTouching(BODY, otherBody) : ContactCache.testContact(BODY, otherBody);
     }
 
     /**
@@ -159,6 +236,9 @@ public class PhysicsBody3D implements Disposable {
     public void transform(Physics3D.TransformConfig config) {
         config.transform(SHAPE.transform);
         BODY.proceedToTransform(SHAPE.transform);
+        if (STATE != null) {
+            STATE.reset(SHAPE.transform);
+        }
     }
 
     /**
@@ -349,17 +429,19 @@ public class PhysicsBody3D implements Disposable {
     }
 
     /**
-     * @return The default collision configuration.
+     * Sets the contacts {@link #isColliding(btCollisionObject)} reads from, done by the world when the body is added or removed.
+     *
+     * @param contacts The contacts of the body's world, null if it is not in a world.
      */
-    public btDefaultCollisionConfiguration getConfig() {
-        return CONFIG;
+    public void setContactCache(ContactCache contacts) {
+        this.contacts = contacts;
     }
 
     /**
-     * @return The collision dispatcher.
+     * @return The contacts of the body's world, null if it is not in a world.
      */
-    public btCollisionDispatcher getDispatcher() {
-        return DISPATCHER;
+    public ContactCache getContactCache() {
+        return contacts;
     }
 
     /**
@@ -376,13 +458,11 @@ public class PhysicsBody3D implements Disposable {
      * @param shapeInstance Whether the shape instance should be disposed.
      */
     public void dispose(boolean shapeInstance) {
-        COLLISION_SHAPE.dispose();
+        Physics3D.releaseCollisionShape(COLLISION_SHAPE);
         BODY.dispose();
         if (STATE != null) {
             STATE.dispose();
         }
-        CONFIG.dispose();
-        DISPATCHER.dispose();
         INFO.dispose();
 
         if (shapeInstance) {
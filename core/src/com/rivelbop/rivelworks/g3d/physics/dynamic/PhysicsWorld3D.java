@@ -3,32 +3,50 @@ package com.rivelbop.rivelworks.g3d.physics.dynamic;
 import com.badlogic.gdx.Gdx;
 import com.badlogic.gdx.graphics.g3d.Environment;
 import com.badlogic.gdx.graphics.g3d.ModelBatch;
+import com.badlogic.gdx.math.Matrix4;
 import com.badlogic.gdx.math.Vector3;
 import com.badlogic.gdx.physics.bullet.collision.*;
 import com.badlogic.gdx.physics.bullet.dynamics.btDiscreteDynamicsWorld;
 import com.badlogic.gdx.physics.bullet.dynamics.btDynamicsWorld;
 import com.badlogic.gdx.physics.bullet.dynamics.btRigidBody;
 import com.badlogic.gdx.physics.bullet.dynamics.btSequentialImpulseConstraintSolver;
+import com.badlogic.gdx.utils.Array;
 import com.badlogic.gdx.utils.Disposable;
 import com.badlogic.gdx.utils.ObjectSet;
+import com.esotericsoftware.minlog.Log;
+import com.rivelbop.rivelworks.g3d.physics.ContactCache;
+import com.rivelbop.rivelworks.g3d.physics.Physics3D;
+import com.rivelbop.rivelworks.g3d.physics.QueryBatch;
 import com.rivelbop.rivelworks.g3d.physics.collision.CollisionBody3D;
+import com.rivelbop.rivelworks.g3d.physics.collision.CollisionBodySync;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 
 /**
- * Stores and handles physics bodies.
+ * Stores and handles physics bodies. The world can be simulated on its own thread, see {@link #setThreaded(boolean)}.
  *
  * @author David Jerzak (RivelBop)
  */
 public class PhysicsWorld3D implements Disposable {
+    private static final String LOG_TAG = PhysicsWorld3D.class.getSimpleName();
     /**
-     * Set of added physics bodies.
+     * Set of added physics bodies, owned by the thread adding them.
      */
     private final ObjectSet<PhysicsBody3D> PHYSICS_BODIES;
 
     /**
-     * Set of added collision bodies.
+     * Set of added collision bodies, owned by the thread adding them.
      */
     private final ObjectSet<CollisionBody3D> COLLISION_BODIES;
 
+    /**
+     * The physics bodies in the {@link #WORLD}, owned by the thread simulating it.
+     */
+    private final Array<PhysicsBody3D> SIMULATED_BODIES;
+
     /**
      * Collision configuration set as default.
      */
@@ -43,6 +61,72 @@ public class PhysicsWorld3D implements Disposable {
      */
     private final btDynamicsWorld WORLD;
 
+    /**
+     * Touching bodies after the last step.
+     */
+    private final ContactCache CONTACTS;
+
+    /**
+     * Pushes the transformations of moved collision bodies.
+     */
+    private final CollisionBodySync SYNC;
+
+    /**
+     * Whether the world is stepped at a fixed rate with interpolated rendering, see {@link #setFixedTimeStep(boolean)}.
+     */
+    private boolean fixedTimeStep;
+
+    /**
+     * The length of a fixed step in seconds.
+     */
+    private float timeStep = 1f / 60f;
+
+    /**
+     * The maximum number of fixed steps taken for one frame, more time is dropped to not fall behind further.
+     */
+    private int maxSteps = 5;
+
+    /**
+     * Frame time that has not been simulated yet, and its progress into the next fixed step.
+     */
+    private float accumulator, alpha;
+
+    /**
+     * Commands to run on the simulation thread before its next step, see {@link #submit(Runnable)}.
+     */
+    private final ConcurrentLinkedQueue<Runnable> COMMANDS;
+
+    /**
+     * Frame time passed to {@link #step(float)} that the simulation thread has not taken yet.
+     */
+    private final AtomicLong PENDING_NANOS;
+
+    /**
+     * Transforms of the physics bodies, published by the simulation thread and read by the rendering thread. The third
+     * snapshot is held by the {@link #READY_TRANSFORMS} exchange.
+     */
+    private final AtomicReference<TransformSnapshot<PhysicsBody3D>> READY_TRANSFORMS;
+    private TransformSnapshot<PhysicsBody3D> simulatedTransforms, renderedTransforms;
+
+    /**
+     * Transforms of moved collision bodies, queued by the rendering thread and applied by the simulation thread, and the applied
+     * ones to reuse.
+     */
+    private final ConcurrentLinkedQueue<TransformSnapshot<CollisionBody3D>> COLLISION_UPDATES, FREE_COLLISION_UPDATES;
+
+    /**
+     * The kinematic physics bodies, moved by their rendered transforms, and their transforms queued by the rendering thread for
+     * the simulation thread to read, and the applied ones to reuse.
+     */
+    private final Array<PhysicsBody3D> KINEMATIC_BODIES;
+    private final ConcurrentLinkedQueue<TransformSnapshot<PhysicsBody3D>> KINEMATIC_UPDATES, FREE_KINEMATIC_UPDATES;
+
+    /**
+     * The simulation thread, null if the world is stepped on the calling thread.
+     */
+    private Thread simulationThread;
+    private volatile boolean simulating;
+
     /**
      * Creates a physics world with the provided gravity vector.
      *
@@ -51,6 +135,7 @@ public class PhysicsWorld3D implements Disposable {
     public PhysicsWorld3D(Vector3 gravity) {
         this.PHYSICS_BODIES = new ObjectSet<>();
         this.COLLISION_BODIES = new ObjectSet<>();
+        this.SIMULATED_BODIES = new Array<>();
 
         this.CONFIG = new btDefaultCollisionConfiguration();
         this.DISPATCHER = new btCollisionDispatcher(CONFIG);
@@ -58,6 +143,19 @@ public class PhysicsWorld3D implements Disposable {
         this.SOLVER = new btSequentialImpulseConstraintSolver();
         this.WORLD = new btDiscreteDynamicsWorld(DISPATCHER, BROADPHASE, SOLVER, CONFIG);
         WORLD.setGravity(gravity);
+        this.CONTACTS = new ContactCache(DISPATCHER);
+        this.SYNC = new CollisionBodySync(WORLD);
+
+        this.COMMANDS = new ConcurrentLinkedQueue<>();
+        this.PENDING_NANOS = new AtomicLong();
+        this.READY_TRANSFORMS = new AtomicReference<>(new TransformSnapshot<>());
+        this.simulatedTransforms = new TransformSnapshot<>();
+        this.renderedTransforms = new TransformSnapshot<>();
+        this.COLLISION_UPDATES = new ConcurrentLinkedQueue<>();
+        this.FREE_COLLISION_UPDATES = new ConcurrentLinkedQueue<>();
+        this.KINEMATIC_BODIES = new Array<>();
+        this.KINEMATIC_UPDATES = new ConcurrentLinkedQueue<>();
+        this.FREE_KINEMATIC_UPDATES = new ConcurrentLinkedQueue<>();
     }
 
     /**
@@ -79,53 +177,545 @@ public class PhysicsWorld3D implements Disposable {
     }
 
     /**
-     * Simulates the physics world according to the provided delta time.
+     * Simulates the physics world according to the provided delta time. On its own thread, the time is handed to the simulation
+     * thread and the bodies are set to the latest transforms it published, without waiting for it.
      *
      * @param deltaTime The delta time.
      */
     public void step(float deltaTime) {
-        float delta = Math.min(1f / 30f, deltaTime);
-        WORLD.stepSimulation(delta, 5, 1f / 60f);
+        if (simulationThread != null) {
+            pushCollisionUpdates();
+            pushKinematicUpdates();
+            PENDING_NANOS.addAndGet((long) (deltaTime * 1_000_000_000d));
+            LockSupport.unpark(simulationThread);
+            applyTransforms();
+            CONTACTS.consume();
+            return;
+        }
 
-        for (CollisionBody3D b : COLLISION_BODIES) {
-            b.update();
+        SYNC.flush();
+        if (fixedTimeStep) {
+            advance(deltaTime);
+            interpolate(alpha);
+        } else {
+            float delta = Math.min(1f / 30f, deltaTime);
+            WORLD.stepSimulation(delta, 5, 1f / 60f);
+            CONTACTS.update();
+            SYNC.update();
+        }
+    }
+
+    /**
+     * Accumulates the delta time and takes as many fixed steps as it covers.
+     *
+     * @param deltaTime The delta time.
+     */
+    private void advance(float deltaTime) {
+        accumulator += Math.min(deltaTime, maxSteps * timeStep);
+        while (accumulator >= timeStep) {
+            for (int i = 0; i < SIMULATED_BODIES.size; i++) {
+                PhysicsBody3D.MotionState state = SIMULATED_BODIES.get(i).getState();
+                if (state != null) {
+                    state.storePrevious();
+                }
+            }
+            WORLD.stepSimulation(timeStep, 0, timeStep);
+            CONTACTS.update();
+            SYNC.update();
+            accumulator -= timeStep;
+        }
+        alpha = accumulator / timeStep;
+    }
+
+    /**
+     * Runs the queued commands, on the thread simulating the world. A failing command is logged and skipped, so the commands
+     * after it still run.
+     */
+    private void runCommands() {
+        Runnable command;
+        while ((command = COMMANDS.poll()) != null) {
+            try {
+                command.run();
+            } catch (Throwable t) {
+                Log.error(LOG_TAG, "Submitted command failed!", t);
+            }
+        }
+    }
+
+    /**
+     * The simulation thread's loop, waiting for frame time from {@link #step(float)}. A failing iteration (e.g. a throwing
+     * {@link ContactCache} listener) is logged and the loop goes on, rather than silently ending the thread.
+     */
+    private void simulate() {
+        while (simulating) {
+            long nanos = PENDING_NANOS.getAndSet(0L);
+            if (nanos == 0L && COMMANDS.isEmpty()) {
+                LockSupport.park(this);
+                continue;
+            }
+
+            try {
+                runCommands();
+                applyCollisionUpdates();
+                applyKinematicUpdates();
+
+                advance(nanos / 1_000_000_000f);
+
+                TransformSnapshot<PhysicsBody3D> transforms = simulatedTransforms;
+                transforms.clear();
+                for (int i = 0; i < SIMULATED_BODIES.size; i++) {
+                    PhysicsBody3D body = SIMULATED_BODIES.get(i);
+                    PhysicsBody3D.MotionState state = body.getState();
+                    if (state != null && !state.kinematic) {
+                        transforms.add(body, state.getPrevious(), state.getCurrent());
+                    }
+                }
+                transforms.alpha = alpha;
+                simulatedTransforms = publish(READY_TRANSFORMS, transforms);
+                CONTACTS.publish();
+            } catch (Throwable t) {
+                Log.error(LOG_TAG, "Simulation step failed!", t);
+            }
+        }
+    }
+
+    /**
+     * Copies the shape transforms of moved collision bodies for the simulation thread to apply.
+     */
+    private void pushCollisionUpdates() {
+        Array<CollisionBody3D> dirty = SYNC.getDirtyBodies();
+        if (dirty.isEmpty()) {
+            return;
+        }
+        TransformSnapshot<CollisionBody3D> transforms = FREE_COLLISION_UPDATES.poll();
+        if (transforms == null) {
+            transforms = new TransformSnapshot<>();
+        }
+        for (int i = 0; i < dirty.size; i++) {
+            CollisionBody3D b = dirty.get(i);
+            transforms.add(b, null, b.getShape().transform);
+        }
+        SYNC.clearDirty();
+        COLLISION_UPDATES.add(transforms);
+    }
+
+    /**
+     * Applies the queued collision body transforms in order, on the thread simulating the world.
+     */
+    private void applyCollisionUpdates() {
+        TransformSnapshot<CollisionBody3D> transforms;
+        while ((transforms = COLLISION_UPDATES.poll()) != null) {
+            for (int i = 0; i < transforms.size; i++) {
+                CollisionBody3D body = transforms.BODIES.get(i);
+                if (SYNC.contains(body)) {
+                    SYNC.apply(body, transforms.CURRENT.get(i));
+                }
+            }
+            transforms.clear();
+            FREE_COLLISION_UPDATES.add(transforms);
+        }
+    }
+
+    /**
+     * Copies the shape transforms of the kinematic physics bodies for the simulation thread to read.
+     */
+    private void pushKinematicUpdates() {
+        if (KINEMATIC_BODIES.isEmpty()) {
+            return;
+        }
+        TransformSnapshot<PhysicsBody3D> transforms = FREE_KINEMATIC_UPDATES.poll();
+        if (transforms == null) {
+            transforms = new TransformSnapshot<>();
+        }
+        for (int i = 0; i < KINEMATIC_BODIES.size; i++) {
+            PhysicsBody3D b = KINEMATIC_BODIES.get(i);
+            transforms.add(b, null, b.getState().transform);
+        }
+        KINEMATIC_UPDATES.add(transforms);
+    }
+
+    /**
+     * Submits the queued kinematic body transforms in order, on the thread simulating the world.
+     */
+    private void applyKinematicUpdates() {
+        TransformSnapshot<PhysicsBody3D> transforms;
+        while ((transforms = KINEMATIC_UPDATES.poll()) != null) {
+            for (int i = 0; i < transforms.size; i++) {
+                transforms.BODIES.get(i).getState().submit(transforms.CURRENT.get(i));
+            }
+            transforms.clear();
+            FREE_KINEMATIC_UPDATES.add(transforms);
         }
     }
 
+    /**
+     * Sets the physics bodies' shape transforms in between the last two steps of the latest published snapshot.
+     */
+    private void applyTransforms() {
+        renderedTransforms = consume(READY_TRANSFORMS, renderedTransforms);
+        TransformSnapshot<PhysicsBody3D> transforms = renderedTransforms;
+        for (int i = 0; i < transforms.size; i++) {
+            PhysicsBody3D body = transforms.BODIES.get(i);
+            if (PHYSICS_BODIES.contains(body)) {
+                PhysicsBody3D.MotionState.interpolate(transforms.PREVIOUS.get(i), transforms.CURRENT.get(i),
+                        transforms.alpha, body.getShape().transform);
+            }
+        }
+    }
+
+    /**
+     * Makes a written snapshot the latest one.
+     *
+     * @param ready   The exchange of the snapshots.
+     * @param written The written snapshot.
+     * @return The snapshot to write next.
+     */
+    private static <T> TransformSnapshot<T> publish(AtomicReference<TransformSnapshot<T>> ready, TransformSnapshot<T> written) {
+        written.fresh = true;
+        return ready.getAndSet(written);
+    }
+
+    /**
+     * Takes the latest snapshot if one was published since the last call.
+     *
+     * @param ready The exchange of the snapshots.
+     * @param read  The snapshot read last.
+     * @return The snapshot to read.
+     */
+    private static <T> TransformSnapshot<T> consume(AtomicReference<TransformSnapshot<T>> ready, TransformSnapshot<T> read) {
+        if (!ready.get().fresh) {
+            return read;
+        }
+        TransformSnapshot<T> latest = ready.getAndSet(read);
+        latest.fresh = false;
+        return latest;
+    }
+
+    /**
+     * Sets the rendered transform of all physics bodies in between their previous and current fixed step, done by
+     * {@link #step(float)} when using a fixed time step.
+     *
+     * @param alpha The progress from the previous to the current step, from 0 to 1.
+     */
+    public void interpolate(float alpha) {
+        for (PhysicsBody3D b : PHYSICS_BODIES) {
+            if (b.getState() != null) {
+                b.getState().interpolate(alpha);
+            }
+        }
+    }
+
+    /**
+     * Sets whether the world is stepped at a fixed rate. Frame time is then accumulated and simulated in steps of exactly
+     * {@link #getTimeStep()}, and bodies are rendered interpolated between their last two steps, keeping the simulation
+     * deterministic and its motion smooth at any frame rate. Otherwise, Bullet sub-steps the frame time itself.
+     *
+     * @param fixedTimeStep Whether the world is stepped at a fixed rate.
+     */
+    public void setFixedTimeStep(boolean fixedTimeStep) {
+        this.fixedTimeStep = fixedTimeStep;
+        accumulator = 0f;
+        alpha = 0f;
+    }
+
+    /**
+     * @return Whether the world is stepped at a fixed rate.
+     */
+    public boolean isFixedTimeStep() {
+        return fixedTimeStep;
+    }
+
+    /**
+     * @param tickRate The number of fixed steps per second.
+     */
+    public void setTickRate(float tickRate) {
+        if (tickRate <= 0f) {
+            throw new IllegalArgumentException("Tick rate must be positive!");
+        }
+        this.timeStep = 1f / tickRate;
+    }
+
+    /**
+     * @return The number of fixed steps per second.
+     */
+    public float getTickRate() {
+        return 1f / timeStep;
+    }
+
+    /**
+     * @return The length of a fixed step in seconds.
+     */
+    public float getTimeStep() {
+        return timeStep;
+    }
+
+    /**
+     * @param maxSteps The maximum number of fixed steps taken for one frame, more time is dropped.
+     */
+    public void setMaxSteps(int maxSteps) {
+        this.maxSteps = Math.max(1, maxSteps);
+    }
+
+    /**
+     * @return The maximum number of fixed steps taken for one frame.
+     */
+    public int getMaxSteps() {
+        return maxSteps;
+    }
+
+    /**
+     * @return The progress from the previous to the current fixed step bodies were last rendered at, from 0 to 1.
+     */
+    public float getAlpha() {
+        return simulationThread != null ? renderedTransforms.alpha : alpha;
+    }
+
+    /**
+     * Sets whether the world is simulated on its own thread, overlapping the simulation with rendering. The world is then always
+     * stepped at a fixed rate, {@link #step(float)} only hands the frame time to the simulation thread and sets the bodies to
+     * the latest transforms it published, interpolated as in {@link #setFixedTimeStep(boolean)}.
+     * <p>
+     * While threaded, Bullet objects must only be accessed from commands run by {@link #submit(Runnable)}, which is what
+     * adding and removing bodies, {@link #applyImpulse(PhysicsBody3D, Vector3)} and
+     * {@link #setVelocity(PhysicsBody3D, Vector3)} do. Moved collision bodies and kinematic bodies are pushed by
+     * {@link #step(float)}. {@link ContactCache} listeners are notified on the simulation thread, while its queries read the
+     * contacts published with the latest transforms.
+     *
+     * @param threaded Whether the world is simulated on its own thread.
+     */
+    public void setThreaded(boolean threaded) {
+        if (threaded == (simulationThread != null)) {
+            return;
+        }
+
+        if (threaded) {
+            setRenderTransforms(false);
+            CONTACTS.setPublished(true);
+            simulating = true;
+            simulationThread = new Thread(this::simulate, LOG_TAG + "-Simulation");
+            simulationThread.setDaemon(true);
+            simulationThread.start();
+            return;
+        }
+
+        simulating = false;
+        LockSupport.unpark(simulationThread);
+        try {
+            simulationThread.join();
+        } catch (InterruptedException e) {
+            Log.error(LOG_TAG, "Interrupted while stopping the simulation thread!", e);
+            Thread.currentThread().interrupt();
+        }
+        simulationThread = null;
+        runCommands();
+        applyCollisionUpdates();
+        KINEMATIC_UPDATES.clear();
+        CONTACTS.setPublished(false);
+        setRenderTransforms(true);
+    }
+
+    /**
+     * @return Whether the world is simulated on its own thread.
+     */
+    public boolean isThreaded() {
+        return simulationThread != null;
+    }
+
+    /**
+     * Sets whether simulation steps write the shape transforms of the physics bodies.
+     *
+     * @param render Whether the simulating thread also renders.
+     */
+    private void setRenderTransforms(boolean render) {
+        for (PhysicsBody3D b : PHYSICS_BODIES) {
+            PhysicsBody3D.MotionState state = b.getState();
+            if (state != null) {
+                state.renderTransform = render;
+                if (state.kinematic) {
+                    state.submit(state.transform);
+                } else if (render) {
+                    state.transform.set(state.getCurrent());
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs a command on the thread simulating the world, before its next step. Without a simulation thread, the command is run
+     * immediately.
+     *
+     * @param command The command accessing the world or its bodies.
+     */
+    public void submit(Runnable command) {
+        if (simulationThread == null) {
+            command.run();
+            return;
+        }
+        COMMANDS.add(command);
+        LockSupport.unpark(simulationThread);
+    }
+
+    /**
+     * Applies an impulse to the center of a physics body, waking it up.
+     *
+     * @param body    The physics body.
+     * @param impulse The impulse, copied.
+     */
+    public void applyImpulse(PhysicsBody3D body, Vector3 impulse) {
+        Vector3 copy = new Vector3(impulse);
+        submit(() -> {
+            body.getBody().activate();
+            body.getBody().applyCentralImpulse(copy);
+        });
+    }
+
+    /**
+     * Sets the linear velocity of a physics body, waking it up.
+     *
+     * @param body     The physics body.
+     * @param velocity The linear velocity, copied.
+     */
+    public void setVelocity(PhysicsBody3D body, Vector3 velocity) {
+        Vector3 copy = new Vector3(velocity);
+        submit(() -> {
+            body.getBody().activate();
+            body.setVelocity(copy);
+        });
+    }
+
+    /**
+     * Transforms a physics body, see {@link PhysicsBody3D#transform(Physics3D.TransformConfig)}.
+     *
+     * @param body   The physics body.
+     * @param config Alters the body's transformation.
+     */
+    public void transform(PhysicsBody3D body, Physics3D.TransformConfig config) {
+        config.transform(body.getShape().transform);
+        Matrix4 transform = new Matrix4(body.getShape().transform);
+        submit(() -> {
+            body.getBody().proceedToTransform(transform);
+            if (body.getState() != null) {
+                body.getState().reset(transform);
+            }
+        });
+    }
+
+    /**
+     * Runs a batch of ray tests and sweeps against the world. While threaded, the batch runs on the simulation thread in between
+     * steps against the bodies as of the last step, poll {@link QueryBatch#isDone()} for its results. Otherwise, it runs
+     * immediately, after pushing moved collision bodies and updating the bounding boxes the queries cull by.
+     *
+     * @param batch The queries to run.
+     */
+    public void query(QueryBatch batch) {
+        batch.markPending();
+        if (simulationThread == null) {
+            SYNC.flush();
+            WORLD.updateAabbs();
+            batch.run(WORLD);
+            return;
+        }
+        submit(() -> batch.run(WORLD));
+    }
+
+    /**
+     * Sets whether collision bodies that have not moved for a number of steps are put to sleep, see
+     * {@link CollisionBodySync#setSleeping(boolean)}.
+     *
+     * @param sleeping Whether idle collision bodies are put to sleep.
+     */
+    public void setSleeping(boolean sleeping) {
+        submit(() -> SYNC.setSleeping(sleeping));
+    }
+
+    /**
+     * @return The synchronization of the collision bodies' transformations, accessed by the thread simulating the world.
+     */
+    public CollisionBodySync getSync() {
+        return SYNC;
+    }
+
     public void addBody(btRigidBody body) {
-        WORLD.addRigidBody(body);
+        submit(() -> WORLD.addRigidBody(body));
     }
 
     public void addBody(btCollisionObject body) {
-        WORLD.addCollisionObject(body);
+        submit(() -> WORLD.addCollisionObject(body));
     }
 
     public void addBody(PhysicsBody3D body) {
-        addBody(body.getBody());
         PHYSICS_BODIES.add(body);
+        body.setContactCache(CONTACTS);
+        PhysicsBody3D.MotionState state = body.getState();
+        boolean kinematic = state != null && state.kinematic;
+        if (state != null) {
+            state.renderTransform = simulationThread == null;
+        }
+        if (kinematic) {
+            KINEMATIC_BODIES.add(body);
+        }
+        // Read by the simulation thread from the body's first step, until pushed by step(float)
+        Matrix4 submitted = kinematic ? new Matrix4(state.transform) : null;
+        submit(() -> {
+            if (submitted != null) {
+                state.submit(submitted);
+            }
+            WORLD.addRigidBody(body.getBody());
+            SIMULATED_BODIES.add(body);
+        });
     }
 
     public void addBody(CollisionBody3D body) {
-        addBody(body.getBody());
         COLLISION_BODIES.add(body);
+        body.setContactCache(CONTACTS);
+        SYNC.add(body);
+        submit(() -> {
+            WORLD.addCollisionObject(body.getBody());
+            SYNC.insert(body);
+        });
     }
 
     public void removeBody(btRigidBody body) {
-        WORLD.removeRigidBody(body);
+        submit(() -> WORLD.removeRigidBody(body));
     }
 
     public void removeBody(btCollisionObject body) {
-        WORLD.removeCollisionObject(body);
+        submit(() -> WORLD.removeCollisionObject(body));
     }
 
+    /**
+     * Removes a physics body from the world. While threaded, the body must only be disposed by a command run after its removal,
+     * see {@link #submit(Runnable)}.
+     *
+     * @param body The physics body.
+     */
     public void removeBody(PhysicsBody3D body) {
-        removeBody(body.getBody());
         PHYSICS_BODIES.remove(body);
+        body.setContactCache(null);
+        if (body.getState() != null) {
+            body.getState().renderTransform = true;
+        }
+        KINEMATIC_BODIES.removeValue(body, true);
+        submit(() -> {
+            WORLD.removeRigidBody(body.getBody());
+            SIMULATED_BODIES.removeValue(body, true);
+        });
     }
 
+    /**
+     * Removes a collision body from the world. While threaded, the body must only be disposed by a command run after its
+     * removal, see {@link #submit(Runnable)}.
+     *
+     * @param body The collision body.
+     */
     public void removeBody(CollisionBody3D body) {
-        removeBody(body.getBody());
         COLLISION_BODIES.remove(body);
+        body.setContactCache(null);
+        SYNC.remove(body);
+        submit(() -> {
+            WORLD.removeCollisionObject(body.getBody());
+            SYNC.forget(body);
+        });
     }
 
     /**
@@ -208,6 +798,13 @@ public class PhysicsWorld3D implements Disposable {
         return SOLVER;
     }
 
+    /**
+     * @return The touching bodies after the last step, with contact events.
+     */
+    public ContactCache getContacts() {
+        return CONTACTS;
+    }
+
     /**
      * @return The physics world itself.
      */
@@ -230,6 +827,7 @@ public class PhysicsWorld3D implements Disposable {
      * @param shapeInstance Whether the shape instances should be disposed.
      */
     public void dispose(boolean bodies, boolean shapeInstance) {
+        setThreaded(false);
         if (bodies) {
             for (PhysicsBody3D b : PHYSICS_BODIES) {
                 b.dispose(shapeInstance);
@@ -245,4 +843,33 @@ public class PhysicsWorld3D implements Disposable {
         DISPATCHER.dispose();
         CONFIG.dispose();
     }
-}
\ No newline at end of file
+
+    /**
+     * Transforms of bodies at one point in time, exchanged between the simulation and rendering thread. Its matrices are reused.
+     */
+    private static final class TransformSnapshot<T> {
+        private final Array<T> BODIES = new Array<>();
+        private final Array<Matrix4> PREVIOUS = new Array<>(), CURRENT = new Array<>();
+        private int size;
+        private float alpha;
+        private boolean fresh;
+
+        void add(T body, Matrix4 previous, Matrix4 current) {
+            if (size == CURRENT.size) {
+                PREVIOUS.add(new Matrix4());
+                CURRENT.add(new Matrix4());
+            }
+            BODIES.add(body);
+            if (previous != null) {
+                PREVIOUS.get(size).set(previous);
+            }
+            CURRENT.get(size).set(current);
+            size++;
+        }
+
+        void clear() {
+            BODIES.clear();
+            size = 0;
+        }
+    }
+}
@@ -44,6 +44,31 @@ public class Assets implements Disposable {
         return ASSET_MANAGER.update();
     }
 
+    /**
+     * Loads for at most the provided time, spreading large files (such as 'tmx' maps) over several frames.
+     *
+     * @param millis The maximum time to block the current frame (in milliseconds).
+     * @return Whether all files have loaded.
+     */
+    public boolean update(int millis) {
+        return ASSET_MANAGER.update(millis);
+    }
+
+    /**
+     * @return The loading progress from 0 to 1, counting the dependencies of each file (such as the tilesets of a map).
+     */
+    public float getProgress() {
+        return ASSET_MANAGER.getProgress();
+    }
+
+    /**
+     * @param fileName The name of the file.
+     * @return Whether the file has loaded.
+     */
+    public boolean isLoaded(String fileName) {
+        return ASSET_MANAGER.isLoaded(fileName);
+    }
+
     /**
      * Loads the provided file and type into the {@link #ASSET_MANAGER}.
      *
@@ -1,6 +1,8 @@
 package com.rivelbop.rivelworks.math;
 
 import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.math.Vector2;
+import com.badlogic.gdx.utils.Array;
 
 /**
  * A basic directional 2D collision bound system.
@@ -8,6 +10,16 @@ import com.badlogic.gdx.math.Rectangle;
  * @author David Jerzak (RivelBop)
  */
 public class AABB extends Rectangle {
+    /**
+     * Boxes overlapping by no more than this on an axis are touching, not colliding, when sweeping. Lets boxes slide along the
+     * surfaces they were stopped at.
+     */
+    public static final float SWEEP_EPSILON = 1e-4f;
+
+    /**
+     * Used by {@link #slide(float, float, Array)}.
+     */
+    private static final Vector2 TMP_NORMAL = new Vector2(), TMP_HIT_NORMAL = new Vector2();
     /**
      * Stores the direction possibilities.
      */
@@ -183,6 +195,149 @@ public class AABB extends Rectangle {
         resolveCollision(other, false);
     }
 
+    /**
+     * Sweeps the current AABB along a movement against another, finding the time of impact. Unlike
+     * {@link #resolveCollision(AABB, boolean)}, fast movements cannot pass through thin boxes.
+     *
+     * @param other  The other AABB body, not moving.
+     * @param moveX  The movement on the x-axis.
+     * @param moveY  The movement on the y-axis.
+     * @param normal Set to the normal of the surface hit, pointing away from the other body, zero if nothing was hit.
+     * @return The fraction of the movement at which the bodies start colliding: 0 if they already collide, 1 if they do not
+     * collide during the movement.
+     */
+    public float sweep(AABB other, float moveX, float moveY, Vector2 normal) {
+        normal.setZero();
+
+        // The other body shrunk by the epsilon, so that touching bodies do not collide
+        float otherLeft = other.x + SWEEP_EPSILON, otherRight = other.x + other.width - SWEEP_EPSILON;
+        if (otherLeft > otherRight) {
+            otherLeft = otherRight = other.centerX();
+        }
+        float otherBottom = other.y + SWEEP_EPSILON, otherTop = other.y + other.height - SWEEP_EPSILON;
+        if (otherBottom > otherTop) {
+            otherBottom = otherTop = other.centerY();
+        }
+
+        float overlapX = Math.min(x + width, otherRight) - Math.max(x, otherLeft);
+        float overlapY = Math.min(y + height, otherTop) - Math.max(y, otherBottom);
+        if (overlapX > 0f && overlapY > 0f) {
+            // Already colliding, push out along the shallower axis
+            if (overlapX < overlapY) {
+                normal.x = centerX() < other.centerX() ? -1f : 1f;
+            } else {
+                normal.y = centerY() < other.centerY() ? -1f : 1f;
+            }
+            return 0f;
+        }
+
+        float entryX, exitX;
+        if (moveX == 0f) {
+            if (overlapX <= 0f) {
+                return 1f;
+            }
+            entryX = Float.NEGATIVE_INFINITY;
+            exitX = Float.POSITIVE_INFINITY;
+        } else if (moveX > 0f) {
+            entryX = (otherLeft - (x + width)) / moveX;
+            exitX = (otherRight - x) / moveX;
+        } else {
+            entryX = (otherRight - x) / moveX;
+            exitX = (otherLeft - (x + width)) / moveX;
+        }
+
+        float entryY, exitY;
+        if (moveY == 0f) {
+            if (overlapY <= 0f) {
+                return 1f;
+            }
+            entryY = Float.NEGATIVE_INFINITY;
+            exitY = Float.POSITIVE_INFINITY;
+        } else if (moveY > 0f) {
+            entryY = (otherBottom - (y + height)) / moveY;
+            exitY = (otherTop - y) / moveY;
+        } else {
+            entryY = (otherTop - y) / moveY;
+            exitY = (otherBottom - (y + height)) / moveY;
+        }
+
+        float entry = Math.max(entryX, entryY), exit = Math.min(exitX, exitY);
+        if (entry >= exit || entry < 0f || entry >= 1f) {
+            return 1f;
+        }
+
+        if (entryX > entryY) {
+            normal.x = moveX > 0f ? -1f : 1f;
+        } else {
+            normal.y = moveY > 0f ? -1f : 1f;
+        }
+        return entry;
+    }
+
+    /**
+     * Moves the current AABB, stopping at the first body it hits and sliding along its surface for the rest of the movement.
+     *
+     * @param moveX  The movement on the x-axis.
+     * @param moveY  The movement on the y-axis.
+     * @param others The other AABB bodies, not moving.
+     * @return The directions the movement was blocked from, combining a side and the top or bottom into a corner.
+     */
+    public CollisionDir slide(float moveX, float moveY, Array<AABB> others) {
+        boolean left = false, right = false, bottom = false, top = false;
+
+        // Each hit blocks an axis, so at most two hits stop the movement
+        for (int iteration = 0; iteration < 3 && (moveX != 0f || moveY != 0f); iteration++) {
+            float time = 1f;
+            AABB hit = null;
+            for (int i = 0; i < others.size; i++) {
+                AABB other = others.get(i);
+                if (other == this) {
+                    continue;
+                }
+                float t = sweep(other, moveX, moveY, TMP_NORMAL);
+                if (t < time && !TMP_NORMAL.isZero()) {
+                    time = t;
+                    hit = other;
+                    TMP_HIT_NORMAL.set(TMP_NORMAL);
+                }
+            }
+
+            x += moveX * time;
+            y += moveY * time;
+            if (hit == null) {
+                break;
+            }
+
+            // Snap to the surface, then keep the movement along it
+            moveX *= 1f - time;
+            moveY *= 1f - time;
+            if (TMP_HIT_NORMAL.x < 0f) {
+                x = hit.x - width;
+                right = true;
+                moveX = 0f;
+            } else if (TMP_HIT_NORMAL.x > 0f) {
+                x = hit.x + hit.width;
+                left = true;
+                moveX = 0f;
+            } else if (TMP_HIT_NORMAL.y < 0f) {
+                y = hit.y - height;
+                top = true;
+                moveY = 0f;
+            } else {
+                y = hit.y + hit.height;
+                bottom = true;
+                moveY = 0f;
+            }
+        }
+
+        if (top) {
+            return right ? CollisionDir.TOP_RIGHT : left ? CollisionDir.TOP_LEFT : CollisionDir.TOP;
+        } else if (bottom) {
+            return right ? CollisionDir.BOTTOM_RIGHT : left ? CollisionDir.BOTTOM_LEFT : CollisionDir.BOTTOM;
+        }
+        return right ? CollisionDir.RIGHT : left ? CollisionDir.LEFT : CollisionDir.NONE;
+    }
+
     /**
      * Sets the center x-position.
      *
@@ -0,0 +1,402 @@
+package com.rivelbop.rivelworks.math;
+
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+
+import java.util.Arrays;
+
+/**
+ * Packs many axis-aligned boxes into parallel arrays (structure of arrays), each with an int id. Its bulk kernels check or resolve
+ * every box against another box in one flat loop without allocating, using the same rules as {@link AABB}.
+ * <p>
+ * Boxes are addressed by index, which changes when a box before the last is removed. The arrays are exposed for custom kernels
+ * and are only valid up to {@link #size()}.
+ *
+ * @author David Jerzak (RivelBop)
+ */
+public class AABBStore {
+    private float[] x, y, width, height;
+    private int[] ids;
+    private int size;
+
+    /**
+     * Reused overlap flags of {@link #overlaps(float, float, float, float, IntArray)}.
+     */
+    private boolean[] overlapping;
+
+    /**
+     * @param capacity The initial number of boxes, grows when more are added.
+     */
+    public AABBStore(int capacity) {
+        capacity = Math.max(1, capacity);
+        this.x = new float[capacity];
+        this.y = new float[capacity];
+        this.width = new float[capacity];
+        this.height = new float[capacity];
+        this.ids = new int[capacity];
+        this.overlapping = new boolean[capacity];
+    }
+
+    /**
+     * Creates a store for 64 boxes.
+     */
+    public AABBStore() {
+        this(64);
+    }
+
+    /**
+     * Adds a box.
+     *
+     * @param x      The x-position (based on left).
+     * @param y      The y-position (based on bottom).
+     * @param width  The width of the box.
+     * @param height The height of the box.
+     * @param id     The id of the box.
+     * @return The index of the box.
+     */
+    public int add(float x, float y, float width, float height, int id) {
+        if (size == ids.length) {
+            resize(size * 2);
+        }
+        this.x[size] = x;
+        this.y[size] = y;
+        this.width[size] = width;
+        this.height[size] = height;
+        this.ids[size] = id;
+        return size++;
+    }
+
+    /**
+     * Adds a copy of an {@link AABB}.
+     *
+     * @param box The box to copy.
+     * @param id  The id of the box.
+     * @return The index of the box.
+     */
+    public int add(AABB box, int id) {
+        return add(box.x, box.y, box.width, box.height, id);
+    }
+
+    /**
+     * Adds copies of {@link AABB}s, with their array index as id. The store must be empty, so the ids match the indices
+     * {@link #copyTo(Array)} writes back to.
+     *
+     * @param boxes The boxes to copy.
+     * @throws IllegalStateException If the store already holds boxes.
+     */
+    public void addAll(Array<AABB> boxes) {
+        if (size != 0) {
+            throw new IllegalStateException("Store must be empty to add all boxes, clear it first!");
+        }
+        ensureCapacity(boxes.size);
+        for (int i = 0; i < boxes.size; i++) {
+            add(boxes.get(i), i);
+        }
+    }
+
+    /**
+     * Removes a box by moving the last box into its index.
+     *
+     * @param index The index of the box.
+     */
+    public void remove(int index) {
+        checkIndex(index);
+        int last = --size;
+        x[index] = x[last];
+        y[index] = y[last];
+        width[index] = width[last];
+        height[index] = height[last];
+        ids[index] = ids[last];
+    }
+
+    /**
+     * Removes all boxes.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * @param capacity The number of boxes to hold without growing.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > ids.length) {
+            resize(Math.max(capacity, ids.length * 2));
+        }
+    }
+
+    private void resize(int capacity) {
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        width = Arrays.copyOf(width, capacity);
+        height = Arrays.copyOf(height, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+        overlapping = new boolean[capacity];
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size + "!");
+        }
+    }
+
+    /**
+     * Sets a box from an {@link AABB}.
+     *
+     * @param index The index of the box.
+     * @param box   The box to copy.
+     */
+    public void set(int index, AABB box) {
+        checkIndex(index);
+        x[index] = box.x;
+        y[index] = box.y;
+        width[index] = box.width;
+        height[index] = box.height;
+    }
+
+    /**
+     * Copies a box into an {@link AABB}.
+     *
+     * @param index The index of the box.
+     * @param out   The box to set.
+     * @return The out box.
+     */
+    public AABB get(int index, AABB out) {
+        checkIndex(index);
+        out.set(x[index], y[index], width[index], height[index]);
+        return out;
+    }
+
+    /**
+     * Copies the boxes back into {@link AABB}s by id, for a store filled by {@link #addAll(Array)} with the same array. Removing
+     * boxes is fine, adding others is not.
+     *
+     * @param boxes The boxes to set, indexed by id.
+     * @throws IllegalStateException If the store holds more boxes than the array.
+     */
+    public void copyTo(Array<AABB> boxes) {
+        if (size > boxes.size) {
+            throw new IllegalStateException("Store holds boxes that were not added by addAll!");
+        }
+        for (int i = 0; i < size; i++) {
+            boxes.get(ids[i]).set(x[i], y[i], width[i], height[i]);
+        }
+    }
+
+    /**
+     * Finds the boxes overlapping a region.
+     *
+     * @param otherX      The x-position of the region (based on left).
+     * @param otherY      The y-position of the region (based on bottom).
+     * @param otherWidth  The width of the region.
+     * @param otherHeight The height of the region.
+     * @param out         Cleared and filled with the indices of the overlapping boxes.
+     * @return The number of overlapping boxes.
+     */
+    public int overlaps(float otherX, float otherY, float otherWidth, float otherHeight, IntArray out) {
+        float otherRight = otherX + otherWidth, otherTop = otherY + otherHeight;
+        boolean[] overlapping = this.overlapping;
+        // Branch-free pass the JIT can vectorize, then compact
+        for (int i = 0; i < size; i++) {
+            overlapping[i] = x[i] < otherRight & x[i] + width[i] > otherX & y[i] < otherTop & y[i] + height[i] > otherY;
+        }
+
+        out.clear();
+        for (int i = 0; i < size; i++) {
+            if (overlapping[i]) {
+                out.add(i);
+            }
+        }
+        return out.size;
+    }
+
+    /**
+     * Finds the boxes overlapping an {@link AABB}.
+     *
+     * @param other The box to check.
+     * @param out   Cleared and filled with the indices of the overlapping boxes.
+     * @return The number of overlapping boxes.
+     */
+    public int overlaps(AABB other, IntArray out) {
+        return overlaps(other.x, other.y, other.width, other.height, out);
+    }
+
+    /**
+     * Checks the direction from which another box collides each box, see {@link AABB#collides(AABB, boolean)}.
+     *
+     * @param other   The other box.
+     * @param precise If false, will simplify corner collisions into the dominant axis.
+     * @param out     Set to the direction of each box by index, must hold {@link #size()} directions.
+     * @return The number of colliding boxes.
+     */
+    public int collides(AABB other, boolean precise, AABB.CollisionDir[] out) {
+        float otherHalfWidth = other.width / 2, otherHalfHeight = other.height / 2;
+        float otherCenterX = other.x + other.width / 2f, otherCenterY = other.y + other.height / 2f;
+
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            float dx = otherCenterX - (x[i] + width[i] / 2f), dy = otherCenterY - (y[i] + height[i] / 2f);
+            float combinedHalfWidths = width[i] / 2 + otherHalfWidth, combinedHalfHeights = height[i] / 2 + otherHalfHeight;
+
+            AABB.CollisionDir dir = AABB.CollisionDir.NONE;
+            if (Math.abs(dx) < combinedHalfWidths && Math.abs(dy) < combinedHalfHeights) {
+                float overlapX = combinedHalfWidths - Math.abs(dx);
+                float overlapY = combinedHalfHeights - Math.abs(dy);
+
+                if (dx == 0 && dy == 0) {
+                    dir = AABB.CollisionDir.ALL;
+                } else if (overlapX < overlapY) {
+                    dir = dx > 0 ? AABB.CollisionDir.RIGHT : AABB.CollisionDir.LEFT;
+                } else if (!precise || overlapY < overlapX) {
+                    dir = dy > 0 ? AABB.CollisionDir.TOP : AABB.CollisionDir.BOTTOM;
+                } else if (dy > 0) {
+                    dir = dx > 0 ? AABB.CollisionDir.TOP_RIGHT : AABB.CollisionDir.TOP_LEFT;
+                } else if (dy < 0) {
+                    dir = dx > 0 ? AABB.CollisionDir.BOTTOM_RIGHT : AABB.CollisionDir.BOTTOM_LEFT;
+                }
+            }
+            out[i] = dir;
+            if (dir != AABB.CollisionDir.NONE) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Pushes each box out of another box if they collide, see {@link AABB#resolveCollision(AABB, boolean)}.
+     *
+     * @param other   The other box, not moved.
+     * @param precise If false, will simplify corner collisions into the dominant axis.
+     * @return The number of boxes that were pushed.
+     */
+    public int resolveCollision(AABB other, boolean precise) {
+        return resolveCollision(other.x, other.y, other.width, other.height, precise);
+    }
+
+    /**
+     * Pushes each box out of another box if they collide, see {@link AABB#resolveCollision(AABB, boolean)}.
+     *
+     * @param otherX      The x-position of the other box (based on left).
+     * @param otherY      The y-position of the other box (based on bottom).
+     * @param otherWidth  The width of the other box.
+     * @param otherHeight The height of the other box.
+     * @param precise     If false, will simplify corner collisions into the dominant axis.
+     * @return The number of boxes that were pushed.
+     */
+    public int resolveCollision(float otherX, float otherY, float otherWidth, float otherHeight, boolean precise) {
+        float otherHalfWidth = otherWidth / 2, otherHalfHeight = otherHeight / 2;
+        float otherCenterX = otherX + otherWidth / 2f, otherCenterY = otherY + otherHeight / 2f;
+        float otherRight = otherX + otherWidth, otherTop = otherY + otherHeight;
+
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            float dx = otherCenterX - (x[i] + width[i] / 2f), dy = otherCenterY - (y[i] + height[i] / 2f);
+            float combinedHalfWidths = width[i] / 2 + otherHalfWidth, combinedHalfHeights = height[i] / 2 + otherHalfHeight;
+
+            // Not overlapping, or exactly in the center of the other box (do nothing)
+            if (!(Math.abs(dx) < combinedHalfWidths && Math.abs(dy) < combinedHalfHeights) || dx == 0 && dy == 0) {
+                continue;
+            }
+            float overlapX = combinedHalfWidths - Math.abs(dx);
+            float overlapY = combinedHalfHeights - Math.abs(dy);
+
+            // Positions pushing to the left/bottom and right/top of the other box
+            float left = otherCenterX - combinedHalfWidths - width[i] / 2f;
+            float bottom = otherCenterY - combinedHalfHeights - height[i] / 2f;
+
+            if (overlapX < overlapY) {
+                x[i] = dx > 0 ? left : otherRight;
+            } else if (!precise || overlapY < overlapX) {
+                y[i] = dy > 0 ? bottom : otherTop;
+            } else if (dy != 0) {
+                x[i] = dx > 0 ? left : otherRight;
+                y[i] = dy > 0 ? bottom : otherTop;
+            } else {
+                continue;
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Pushes each box out of every box of another store, in the other store's order.
+     *
+     * @param others  The boxes to push out of, not moved.
+     * @param precise If false, will simplify corner collisions into the dominant axis.
+     * @return The number of pushes.
+     */
+    public int resolveCollisions(AABBStore others, boolean precise) {
+        int count = 0;
+        for (int o = 0; o < others.size; o++) {
+            count += resolveCollision(others.x[o], others.y[o], others.width[o], others.height[o], precise);
+        }
+        return count;
+    }
+
+    /**
+     * Moves every box.
+     *
+     * @param velocityX The x-velocity of each box by index.
+     * @param velocityY The y-velocity of each box by index.
+     * @param delta     The time to move for.
+     */
+    public void move(float[] velocityX, float[] velocityY, float delta) {
+        for (int i = 0; i < size; i++) {
+            x[i] += velocityX[i] * delta;
+            y[i] += velocityY[i] * delta;
+        }
+    }
+
+    /**
+     * @return The number of boxes.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param index The index of the box.
+     * @return The id of the box.
+     */
+    public int getId(int index) {
+        checkIndex(index);
+        return ids[index];
+    }
+
+    /**
+     * @return The x-positions of the boxes by index.
+     */
+    public float[] getX() {
+        return x;
+    }
+
+    /**
+     * @return The y-positions of the boxes by index.
+     */
+    public float[] getY() {
+        return y;
+    }
+
+    /**
+     * @return The widths of the boxes by index.
+     */
+    public float[] getWidth() {
+        return width;
+    }
+
+    /**
+     * @return The heights of the boxes by index.
+     */
+    public float[] getHeight() {
+        return height;
+    }
+
+    /**
+     * @return The ids of the boxes by index.
+     */
+    public int[] getIds() {
+        return ids;
+    }
+}
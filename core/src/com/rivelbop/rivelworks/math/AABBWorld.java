@@ -0,0 +1,407 @@
+package com.rivelbop.rivelworks.math;
+
+import com.badlogic.gdx.math.Rectangle;
+import com.badlogic.gdx.utils.Array;
+import com.badlogic.gdx.utils.IntArray;
+
+import java.util.Arrays;
+
+/**
+ * Keeps {@link AABB}s in a uniform spatial hash, so collisions and queries only check boxes sharing a cell instead of every pair.
+ * <p>
+ * Dynamic bodies are rehashed by every {@link #update()}, static bodies only when they were added, removed or marked moved by
+ * {@link #markStaticMoved()}. Static bodies are never checked against each other. Queries use the positions of the last
+ * {@link #update()}.
+ *
+ * @author David Jerzak (RivelBop)
+ */
+public class AABBWorld {
+    /**
+     * Receives colliding bodies.
+     */
+    @FunctionalInterface
+    public interface CollisionListener {
+        /**
+         * @param body  The dynamic body.
+         * @param other The dynamic or static body it collides with.
+         * @param dir   The direction the other body collides the body from, see {@link AABB#collides(AABB, boolean)}.
+         */
+        void onCollision(AABB body, AABB other, AABB.CollisionDir dir);
+    }
+
+    private final float CELL_SIZE;
+
+    /**
+     * Hashes of the dynamic and static bodies.
+     */
+    private final SpatialHash DYNAMIC, STATIC;
+
+    /**
+     * Reused candidate indices of a query.
+     */
+    private final IntArray CANDIDATES;
+
+    /**
+     * Reused static bodies along a movement of {@link #slide(AABB, float, float)}.
+     */
+    private final Array<AABB> OBSTACLES;
+
+    /**
+     * Whether the static bodies must be rehashed by the next {@link #update()}.
+     */
+    private boolean staticDirty;
+
+    /**
+     * @param cellSize The width and height of a cell, about the size of the common bodies works best.
+     */
+    public AABBWorld(float cellSize) {
+        if (cellSize <= 0f) {
+            throw new IllegalArgumentException("Cell size must be positive!");
+        }
+        this.CELL_SIZE = cellSize;
+        this.DYNAMIC = new SpatialHash(1f / cellSize);
+        this.STATIC = new SpatialHash(1f / cellSize);
+        this.CANDIDATES = new IntArray();
+        this.OBSTACLES = new Array<>();
+    }
+
+    /**
+     * @param body The body to add, moved by collision resolution.
+     */
+    public void add(AABB body) {
+        DYNAMIC.BODIES.add(body);
+        DYNAMIC.built = false;
+    }
+
+    /**
+     * @param body The body to add, never moved by collision resolution.
+     */
+    public void addStatic(AABB body) {
+        STATIC.BODIES.add(body);
+        STATIC.built = false;
+    }
+
+    /**
+     * @param body The dynamic or static body to remove.
+     * @return Whether the body was in the world.
+     */
+    public boolean remove(AABB body) {
+        if (DYNAMIC.BODIES.removeValue(body, true)) {
+            DYNAMIC.built = false;
+            return true;
+        }
+        if (STATIC.BODIES.removeValue(body, true)) {
+            STATIC.built = false;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Removes all bodies.
+     */
+    public void clear() {
+        DYNAMIC.BODIES.clear();
+        STATIC.BODIES.clear();
+        DYNAMIC.built = false;
+        STATIC.built = false;
+        staticDirty = false;
+    }
+
+    /**
+     * Marks the static bodies as moved, so they are rehashed by the next {@link #update()}.
+     */
+    public void markStaticMoved() {
+        staticDirty = true;
+    }
+
+    /**
+     * Rehashes the bodies at their current positions.
+     */
+    public void update() {
+        DYNAMIC.build();
+        if (staticDirty || !STATIC.built) {
+            STATIC.build();
+            staticDirty = false;
+        }
+    }
+
+    /**
+     * Reports each overlapping pair of a dynamic body with another dynamic or a static body once.
+     *
+     * @param precise  If false, will simplify corner collisions into the dominant axis.
+     * @param listener Receives the colliding bodies.
+     */
+    public void findCollisions(boolean precise, CollisionListener listener) {
+        checkBuilt();
+        Array<AABB> bodies = DYNAMIC.BODIES;
+        for (int i = 0; i < bodies.size; i++) {
+            AABB body = bodies.get(i);
+
+            DYNAMIC.candidates(body.x, body.y, body.x + body.width, body.y + body.height, CANDIDATES);
+            for (int c = 0; c < CANDIDATES.size; c++) {
+                int j = CANDIDATES.items[c];
+                if (j > i) {
+                    report(body, bodies.get(j), precise, listener);
+                }
+            }
+
+            STATIC.candidates(body.x, body.y, body.x + body.width, body.y + body.height, CANDIDATES);
+            for (int c = 0; c < CANDIDATES.size; c++) {
+                report(body, STATIC.BODIES.get(CANDIDATES.items[c]), precise, listener);
+            }
+        }
+    }
+
+    private static void report(AABB body, AABB other, boolean precise, CollisionListener listener) {
+        if (!body.overlaps(other)) {
+            return;
+        }
+        AABB.CollisionDir dir = body.collides(other, precise);
+        if (dir != AABB.CollisionDir.NONE) {
+            listener.onCollision(body, other, dir);
+        }
+    }
+
+    /**
+     * Pushes every dynamic body out of the static bodies it collides with, see {@link AABB#resolveCollision(AABB, boolean)}.
+     * Bodies keep their cells until the next {@link #update()}.
+     *
+     * @param precise  If false, will simplify corner collisions into the dominant axis.
+     * @param listener Receives each collision before it is resolved, may be null.
+     */
+    public void resolveCollisions(boolean precise, CollisionListener listener) {
+        checkBuilt();
+        Array<AABB> bodies = DYNAMIC.BODIES;
+        for (int i = 0; i < bodies.size; i++) {
+            AABB body = bodies.get(i);
+            STATIC.candidates(body.x, body.y, body.x + body.width, body.y + body.height, CANDIDATES);
+            for (int c = 0; c < CANDIDATES.size; c++) {
+                AABB other = STATIC.BODIES.get(CANDIDATES.items[c]);
+                if (!body.overlaps(other)) {
+                    continue;
+                }
+                if (listener != null) {
+                    AABB.CollisionDir dir = body.collides(other, precise);
+                    if (dir != AABB.CollisionDir.NONE) {
+                        listener.onCollision(body, other, dir);
+                    }
+                }
+                body.resolveCollision(other, precise);
+            }
+        }
+    }
+
+    /**
+     * Pushes every dynamic body out of the static bodies it collides with, using the less precise collision check.
+     */
+    public void resolveCollisions() {
+        resolveCollisions(false, null);
+    }
+
+    /**
+     * Moves a body against the static bodies without passing through them, see {@link AABB#slide(float, float, Array)}. Only the
+     * static bodies in the cells along the movement are swept.
+     *
+     * @param body  The body to move.
+     * @param moveX The movement on the x-axis.
+     * @param moveY The movement on the y-axis.
+     * @return The directions the movement was blocked from.
+     */
+    public AABB.CollisionDir slide(AABB body, float moveX, float moveY) {
+        checkBuilt();
+        float minX = Math.min(body.x, body.x + moveX), minY = Math.min(body.y, body.y + moveY);
+        float maxX = Math.max(body.x, body.x + moveX) + body.width, maxY = Math.max(body.y, body.y + moveY) + body.height;
+        STATIC.candidates(minX, minY, maxX, maxY, CANDIDATES);
+
+        OBSTACLES.clear();
+        for (int c = 0; c < CANDIDATES.size; c++) {
+            OBSTACLES.add(STATIC.BODIES.get(CANDIDATES.items[c]));
+        }
+        AABB.CollisionDir dir = body.slide(moveX, moveY, OBSTACLES);
+        OBSTACLES.clear();
+        return dir;
+    }
+
+    /**
+     * Finds all bodies overlapping a region.
+     *
+     * @param region The region to query.
+     * @param out    The array to add the bodies to.
+     * @return The out array.
+     */
+    public Array<AABB> query(Rectangle region, Array<AABB> out) {
+        checkBuilt();
+        query(DYNAMIC, region, out);
+        query(STATIC, region, out);
+        return out;
+    }
+
+    private void query(SpatialHash hash, Rectangle region, Array<AABB> out) {
+        hash.candidates(region.x, region.y, region.x + region.width, region.y + region.height, CANDIDATES);
+        for (int c = 0; c < CANDIDATES.size; c++) {
+            AABB body = hash.BODIES.get(CANDIDATES.items[c]);
+            if (body.overlaps(region)) {
+                out.add(body);
+            }
+        }
+    }
+
+    /**
+     * Finds all bodies containing a point.
+     *
+     * @param x   The x-position of the point.
+     * @param y   The y-position of the point.
+     * @param out The array to add the bodies to.
+     * @return The out array.
+     */
+    public Array<AABB> query(float x, float y, Array<AABB> out) {
+        checkBuilt();
+        query(DYNAMIC, x, y, out);
+        query(STATIC, x, y, out);
+        return out;
+    }
+
+    private void query(SpatialHash hash, float x, float y, Array<AABB> out) {
+        hash.candidates(x, y, x, y, CANDIDATES);
+        for (int c = 0; c < CANDIDATES.size; c++) {
+            AABB body = hash.BODIES.get(CANDIDATES.items[c]);
+            if (body.contains(x, y)) {
+                out.add(body);
+            }
+        }
+    }
+
+    private void checkBuilt() {
+        if (!DYNAMIC.built || !STATIC.built) {
+            update();
+        }
+    }
+
+    /**
+     * @return The dynamic bodies.
+     */
+    public Array<AABB> getBodies() {
+        return DYNAMIC.BODIES;
+    }
+
+    /**
+     * @return The static bodies.
+     */
+    public Array<AABB> getStaticBodies() {
+        return STATIC.BODIES;
+    }
+
+    /**
+     * @return The width and height of a cell.
+     */
+    public float getCellSize() {
+        return CELL_SIZE;
+    }
+
+    /**
+     * Buckets of body indices by hashed cell, rebuilt from scratch. Bodies are entered in every cell they overlap, and cells that
+     * hash to the same bucket share it.
+     */
+    private static final class SpatialHash {
+        private final Array<AABB> BODIES = new Array<>(false, 64);
+        private final float INVERSE_CELL_SIZE;
+
+        // First entry of each bucket, and the body and next entry of each entry
+        private int[] heads = new int[0];
+        private int mask;
+        private int[] entryBodies = new int[64], entryNext = new int[64];
+        private int entries;
+
+        // The last query each body was found by, to report it once
+        private int[] stamps = new int[64];
+        private int stamp;
+
+        private boolean built;
+
+        private SpatialHash(float inverseCellSize) {
+            this.INVERSE_CELL_SIZE = inverseCellSize;
+        }
+
+        void build() {
+            int count = 0;
+            for (int i = 0; i < BODIES.size; i++) {
+                AABB body = BODIES.get(i);
+                count += (cell(body.x + body.width) - cell(body.x) + 1) * (cell(body.y + body.height) - cell(body.y) + 1);
+            }
+
+            int buckets = 16;
+            while (buckets < count * 2) {
+                buckets <<= 1;
+            }
+            if (heads.length != buckets) {
+                heads = new int[buckets];
+                mask = buckets - 1;
+            }
+            Arrays.fill(heads, -1);
+            if (entryBodies.length < count) {
+                entryBodies = new int[count];
+                entryNext = new int[count];
+            }
+            if (stamps.length < BODIES.size) {
+                stamps = new int[BODIES.size];
+                stamp = 0;
+            }
+
+            entries = 0;
+            for (int i = 0; i < BODIES.size; i++) {
+                AABB body = BODIES.get(i);
+                int minX = cell(body.x), maxX = cell(body.x + body.width);
+                int minY = cell(body.y), maxY = cell(body.y + body.height);
+                for (int cy = minY; cy <= maxY; cy++) {
+                    for (int cx = minX; cx <= maxX; cx++) {
+                        int bucket = bucket(cx, cy);
+                        entryBodies[entries] = i;
+                        entryNext[entries] = heads[bucket];
+                        heads[bucket] = entries++;
+                    }
+                }
+            }
+            built = true;
+        }
+
+        /**
+         * Finds the indices of all bodies sharing a bucket with a region, each once.
+         */
+        void candidates(float minX, float minY, float maxX, float maxY, IntArray out) {
+            out.clear();
+            if (BODIES.size == 0) {
+                return;
+            }
+            if (++stamp == 0) {
+                Arrays.fill(stamps, 0);
+                stamp = 1;
+            }
+
+            int minCellX = cell(minX), maxCellX = cell(maxX);
+            int minCellY = cell(minY), maxCellY = cell(maxY);
+            for (int cy = minCellY; cy <= maxCellY; cy++) {
+                for (int cx = minCellX; cx <= maxCellX; cx++) {
+                    for (int e = heads[bucket(cx, cy)]; e != -1; e = entryNext[e]) {
+                        int body = entryBodies[e];
+                        if (stamps[body] != stamp) {
+                            stamps[body] = stamp;
+                            out.add(body);
+                        }
+                    }
+                }
+            }
+        }
+
+        private int cell(float position) {
+            float cell = position * INVERSE_CELL_SIZE;
+            int floor = (int) cell;
+            return cell < floor ? floor - 1 : floor;
+        }
+
+        private int bucket(int cellX, int cellY) {
+            int hash = cellX * 0x8DA6B343 ^ cellY * 0xD8163841;
+            return (hash ^ hash >>> 16) & mask;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.rivelbop.rivelworks.math;
+
+import com.rivelbop.rivelworks.math.NoiseGenerator.CellularDistanceFunction;
+import com.rivelbop.rivelworks.math.NoiseGenerator.CellularReturnType;
+import com.rivelbop.rivelworks.math.NoiseGenerator.NoiseType;
+
+/**
+ * Row kernels that {@link NoiseGenerator}'s grid-fill path hands whole rows of transformed coordinates to.
+ * An implementation fills a leading run of samples and returns its length, the generator computes the remaining samples
+ * (the tail of the row, or the whole row for unsupported noise types) with its scalar kernels.
+ * <p>
+ * Implementations must produce output identical to the scalar kernels, no fused multiply-add and the same operation
+ * order per sample.
+ *
+ * @author David Jerzak (RivelBop)
+ */
+interface NoiseBackend {
+    /**
+     * Generates a row of single-octave 2D noise.
+     *
+     * @param noiseType        The noise algorithm.
+     * @param distanceFunction The cellular distance function.
+     * @param returnType       The cellular return type.
+     * @param jitterModifier   The cellular jitter.
+     * @param seed             The seed of the octave.
+     * @param xs               The transformed x-coordinates.
+     * @param ys               The transformed y-coordinates.
+     * @param out              The array to write the samples to.
+     * @param offset           The index of the first sample in the output array.
+     * @param n                The number of samples in the row.
+     * @return The number of leading samples written (0 if the noise type is unsupported).
+     */
+    int genNoiseRow(NoiseType noiseType, CellularDistanceFunction distanceFunction, CellularReturnType returnType,
+                    float jitterModifier, int seed, float[] xs, float[] ys, float[] out, int offset, int n);
+
+    /**
+     * Generates a row of single-octave 3D noise.
+     *
+     * @param noiseType        The noise algorithm.
+     * @param distanceFunction The cellular distance function.
+     * @param returnType       The cellular return type.
+     * @param jitterModifier   The cellular jitter.
+     * @param seed             The seed of the octave.
+     * @param xs               The transformed x-coordinates.
+     * @param ys               The transformed y-coordinates.
+     * @param zs               The transformed z-coordinates.
+     * @param out              The array to write the samples to.
+     * @param offset           The index of the first sample in the output array.
+     * @param n                The number of samples in the row.
+     * @return The number of leading samples written (0 if the noise type is unsupported).
+     */
+    int genNoiseRow(NoiseType noiseType, CellularDistanceFunction distanceFunction, CellularReturnType returnType,
+                    float jitterModifier, int seed, float[] xs, float[] ys, float[] zs, float[] out, int offset, int n);
+}
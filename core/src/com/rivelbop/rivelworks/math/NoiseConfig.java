@@ -0,0 +1,506 @@
+package com.rivelbop.rivelworks.math;
+
+import com.rivelbop.rivelworks.math.NoiseGenerator.CellularDistanceFunction;
+import com.rivelbop.rivelworks.math.NoiseGenerator.CellularReturnType;
+import com.rivelbop.rivelworks.math.NoiseGenerator.DomainWarpType;
+import com.rivelbop.rivelworks.math.NoiseGenerator.FractalType;
+import com.rivelbop.rivelworks.math.NoiseGenerator.NoiseType;
+import com.rivelbop.rivelworks.math.NoiseGenerator.RotationType3D;
+import com.rivelbop.rivelworks.math.NoiseGenerator.TransformType3D;
+
+/**
+ * An immutable snapshot of every {@link NoiseGenerator} setting, including the state derived from them (fractal
+ * bounding and 3D transforms).
+ * A NoiseGenerator evaluates every call against a single snapshot, so one generator (or one config shared by several
+ * generators) can be sampled from any number of threads without locking, even while another thread changes settings.
+ *
+ * @author David Jerzak (RivelBop)
+ */
+public final class NoiseConfig {
+    /**
+     * The FastNoiseLite defaults (seed 1337, frequency 0.01, OpenSimplex2, no fractal).
+     */
+    public static final NoiseConfig DEFAULT = new NoiseConfigBuilder().build();
+
+    final int SEED;
+    final float FREQUENCY;
+    final NoiseType NOISE_TYPE;
+    final RotationType3D ROTATION_TYPE_3D;
+
+    final FractalType FRACTAL_TYPE;
+    final int OCTAVES;
+    final float LACUNARITY;
+    final float GAIN;
+    final float WEIGHTED_STRENGTH;
+    final float PING_PONG_STRENGTH;
+
+    final CellularDistanceFunction CELLULAR_DISTANCE_FUNCTION;
+    final CellularReturnType CELLULAR_RETURN_TYPE;
+    final float CELLULAR_JITTER_MODIFIER;
+
+    final DomainWarpType DOMAIN_WARP_TYPE;
+    final float DOMAIN_WARP_AMP;
+
+    // Derived from the settings above
+    final float FRACTAL_BOUNDING;
+    final TransformType3D TRANSFORM_TYPE_3D;
+    final TransformType3D WARP_TRANSFORM_TYPE_3D;
+
+    /**
+     * Cached {@link #hashCode()}, configs are used as cache keys by {@link NoiseField}.
+     */
+    private final int HASH;
+
+    /**
+     * Copies the builder's settings and computes the derived state.
+     *
+     * @param builder The builder to copy the settings from.
+     */
+    private NoiseConfig(NoiseConfigBuilder builder) {
+        SEED = builder.seed;
+        FREQUENCY = builder.frequency;
+        NOISE_TYPE = builder.noiseType;
+        ROTATION_TYPE_3D = builder.rotationType3D;
+
+        FRACTAL_TYPE = builder.fractalType;
+        OCTAVES = builder.octaves;
+        LACUNARITY = builder.lacunarity;
+        GAIN = builder.gain;
+        WEIGHTED_STRENGTH = builder.weightedStrength;
+        PING_PONG_STRENGTH = builder.pingPongStrength;
+
+        CELLULAR_DISTANCE_FUNCTION = builder.cellularDistanceFunction;
+        CELLULAR_RETURN_TYPE = builder.cellularReturnType;
+        CELLULAR_JITTER_MODIFIER = builder.cellularJitter;
+
+        DOMAIN_WARP_TYPE = builder.domainWarpType;
+        DOMAIN_WARP_AMP = builder.domainWarpAmp;
+
+        FRACTAL_BOUNDING = calculateFractalBounding(GAIN, OCTAVES);
+        TRANSFORM_TYPE_3D = transformType3D(ROTATION_TYPE_3D,
+                NOISE_TYPE == NoiseType.OpenSimplex2 || NOISE_TYPE == NoiseType.OpenSimplex2S);
+        WARP_TRANSFORM_TYPE_3D = transformType3D(ROTATION_TYPE_3D,
+                DOMAIN_WARP_TYPE == DomainWarpType.OpenSimplex2 || DOMAIN_WARP_TYPE == DomainWarpType.OpenSimplex2Reduced);
+
+        int hash = SEED;
+        hash = 31 * hash + Float.floatToIntBits(FREQUENCY);
+        hash = 31 * hash + NOISE_TYPE.ordinal();
+        hash = 31 * hash + ROTATION_TYPE_3D.ordinal();
+        hash = 31 * hash + FRACTAL_TYPE.ordinal();
+        hash = 31 * hash + OCTAVES;
+        hash = 31 * hash + Float.floatToIntBits(LACUNARITY);
+        hash = 31 * hash + Float.floatToIntBits(GAIN);
+        hash = 31 * hash + Float.floatToIntBits(WEIGHTED_STRENGTH);
+        hash = 31 * hash + Float.floatToIntBits(PING_PONG_STRENGTH);
+        hash = 31 * hash + CELLULAR_DISTANCE_FUNCTION.ordinal();
+        hash = 31 * hash + CELLULAR_RETURN_TYPE.ordinal();
+        hash = 31 * hash + Float.floatToIntBits(CELLULAR_JITTER_MODIFIER);
+        hash = 31 * hash + DOMAIN_WARP_TYPE.ordinal();
+        hash = 31 * hash + Float.floatToIntBits(DOMAIN_WARP_AMP);
+        HASH = hash;
+    }
+
+    /**
+     * @param gain    The fractal gain.
+     * @param octaves The fractal octave count.
+     * @return The scale that bounds the summed octaves between -1 and 1.
+     */
+    private static float calculateFractalBounding(float gain, int octaves) {
+        gain = gain < 0 ? -gain : gain;
+        float amp = gain;
+        float ampFractal = 1.0f;
+        for (int i = 1; i < octaves; i++) {
+            ampFractal += amp;
+            amp *= gain;
+        }
+        return 1 / ampFractal;
+    }
+
+    /**
+     * @param rotationType3D The requested 3D rotation.
+     * @param simplex        Whether the algorithm expects the OpenSimplex2 lattice by default.
+     * @return The transform applied to 3D coordinates before sampling.
+     */
+    private static TransformType3D transformType3D(RotationType3D rotationType3D, boolean simplex) {
+        switch (rotationType3D) {
+            case ImproveXYPlanes:
+                return TransformType3D.ImproveXYPlanes;
+            case ImproveXZPlanes:
+                return TransformType3D.ImproveXZPlanes;
+            default:
+                return simplex ? TransformType3D.DefaultOpenSimplex2 : TransformType3D.None;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof NoiseConfig)) {
+            return false;
+        }
+
+        NoiseConfig config = (NoiseConfig) o;
+        return HASH == config.HASH && SEED == config.SEED && OCTAVES == config.OCTAVES
+                && Float.floatToIntBits(FREQUENCY) == Float.floatToIntBits(config.FREQUENCY)
+                && Float.floatToIntBits(LACUNARITY) == Float.floatToIntBits(config.LACUNARITY)
+                && Float.floatToIntBits(GAIN) == Float.floatToIntBits(config.GAIN)
+                && Float.floatToIntBits(WEIGHTED_STRENGTH) == Float.floatToIntBits(config.WEIGHTED_STRENGTH)
+                && Float.floatToIntBits(PING_PONG_STRENGTH) == Float.floatToIntBits(config.PING_PONG_STRENGTH)
+                && Float.floatToIntBits(CELLULAR_JITTER_MODIFIER) == Float.floatToIntBits(config.CELLULAR_JITTER_MODIFIER)
+                && Float.floatToIntBits(DOMAIN_WARP_AMP) == Float.floatToIntBits(config.DOMAIN_WARP_AMP)
+                && NOISE_TYPE == config.NOISE_TYPE && ROTATION_TYPE_3D == config.ROTATION_TYPE_3D
+                && FRACTAL_TYPE == config.FRACTAL_TYPE && CELLULAR_DISTANCE_FUNCTION == config.CELLULAR_DISTANCE_FUNCTION
+                && CELLULAR_RETURN_TYPE == config.CELLULAR_RETURN_TYPE && DOMAIN_WARP_TYPE == config.DOMAIN_WARP_TYPE;
+    }
+
+    @Override
+    public int hashCode() {
+        return HASH;
+    }
+
+    /**
+     * @return A builder initialized with this config's settings, used to derive a modified copy.
+     */
+    public NoiseConfigBuilder toBuilder() {
+        return new NoiseConfigBuilder(this);
+    }
+
+    /**
+     * @return The seed used for all noise types.
+     */
+    public int getSeed() {
+        return SEED;
+    }
+
+    /**
+     * @return The frequency used for all noise types.
+     */
+    public float getFrequency() {
+        return FREQUENCY;
+    }
+
+    /**
+     * @return The noise algorithm.
+     */
+    public NoiseType getNoiseType() {
+        return NOISE_TYPE;
+    }
+
+    /**
+     * @return The domain rotation type for 3D noise and 3D domain warp.
+     */
+    public RotationType3D getRotationType3D() {
+        return ROTATION_TYPE_3D;
+    }
+
+    /**
+     * @return The fractal method used to combine octaves.
+     */
+    public FractalType getFractalType() {
+        return FRACTAL_TYPE;
+    }
+
+    /**
+     * @return The number of fractal octaves.
+     */
+    public int getFractalOctaves() {
+        return OCTAVES;
+    }
+
+    /**
+     * @return The frequency multiplier between octaves.
+     */
+    public float getFractalLacunarity() {
+        return LACUNARITY;
+    }
+
+    /**
+     * @return The amplitude multiplier between octaves.
+     */
+    public float getFractalGain() {
+        return GAIN;
+    }
+
+    /**
+     * @return The octave weighting of the fractal (0 to 1).
+     */
+    public float getFractalWeightedStrength() {
+        return WEIGHTED_STRENGTH;
+    }
+
+    /**
+     * @return The strength of the ping-pong fractal effect.
+     */
+    public float getFractalPingPongStrength() {
+        return PING_PONG_STRENGTH;
+    }
+
+    /**
+     * @return The distance function used in cellular noise.
+     */
+    public CellularDistanceFunction getCellularDistanceFunction() {
+        return CELLULAR_DISTANCE_FUNCTION;
+    }
+
+    /**
+     * @return The return type of cellular noise.
+     */
+    public CellularReturnType getCellularReturnType() {
+        return CELLULAR_RETURN_TYPE;
+    }
+
+    /**
+     * @return The maximum distance a cellular point can move from its grid position.
+     */
+    public float getCellularJitter() {
+        return CELLULAR_JITTER_MODIFIER;
+    }
+
+    /**
+     * @return The warp algorithm used by {@link NoiseGenerator#DomainWarp(NoiseGenerator.Vector2)}.
+     */
+    public DomainWarpType getDomainWarpType() {
+        return DOMAIN_WARP_TYPE;
+    }
+
+    /**
+     * @return The maximum warp distance from the original position.
+     */
+    public float getDomainWarpAmp() {
+        return DOMAIN_WARP_AMP;
+    }
+
+    /**
+     * Used to create a NoiseConfig object, every setting starts at its FastNoiseLite default.
+     */
+    public final static class NoiseConfigBuilder {
+        private int seed = 1337;
+        private float frequency = 0.01f;
+        private NoiseType noiseType = NoiseType.OpenSimplex2;
+        private RotationType3D rotationType3D = RotationType3D.None;
+
+        private FractalType fractalType = FractalType.None;
+        private int octaves = 3;
+        private float lacunarity = 2.0f;
+        private float gain = 0.5f;
+        private float weightedStrength = 0.0f;
+        private float pingPongStrength = 2.0f;
+
+        private CellularDistanceFunction cellularDistanceFunction = CellularDistanceFunction.EuclideanSq;
+        private CellularReturnType cellularReturnType = CellularReturnType.Distance;
+        private float cellularJitter = 1.0f;
+
+        private DomainWarpType domainWarpType = DomainWarpType.OpenSimplex2;
+        private float domainWarpAmp = 1.0f;
+
+        /**
+         * Creates a builder with the default settings.
+         */
+        public NoiseConfigBuilder() {
+        }
+
+        /**
+         * Creates a builder with the provided config's settings.
+         *
+         * @param config The config to copy the settings from.
+         */
+        public NoiseConfigBuilder(NoiseConfig config) {
+            seed = config.SEED;
+            frequency = config.FREQUENCY;
+            noiseType = config.NOISE_TYPE;
+            rotationType3D = config.ROTATION_TYPE_3D;
+
+            fractalType = config.FRACTAL_TYPE;
+            octaves = config.OCTAVES;
+            lacunarity = config.LACUNARITY;
+            gain = config.GAIN;
+            weightedStrength = config.WEIGHTED_STRENGTH;
+            pingPongStrength = config.PING_PONG_STRENGTH;
+
+            cellularDistanceFunction = config.CELLULAR_DISTANCE_FUNCTION;
+            cellularReturnType = config.CELLULAR_RETURN_TYPE;
+            cellularJitter = config.CELLULAR_JITTER_MODIFIER;
+
+            domainWarpType = config.DOMAIN_WARP_TYPE;
+            domainWarpAmp = config.DOMAIN_WARP_AMP;
+        }
+
+        /**
+         * Sets the seed used for all noise types (default: 1337).
+         *
+         * @param seed The seed.
+         * @return The NoiseConfigBuilder, used to set more properties before building.
+         */
+        public NoiseConfigBuilder setSeed(int seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * Sets the frequency used for all noise types (default: 0.01).
+         *
+         * @param frequency The frequency.
+         * @return The NoiseConfigBuilder, used to set more properties before building.
+         */
+        public NoiseConfigBuilder setFrequency(float frequency) {
+            this.frequency = frequency;
+            return this;
+        }
+
+        /**
+         * Sets the noise algorithm (default: OpenSimplex2).
+         *
+         * @param noiseType The noise algorithm.
+         * @return The NoiseConfigBuilder, used to set more properties before building.
+         */
+        public NoiseConfigBuilder setNoiseType(NoiseType noiseType) {
+            this.noiseType = noiseType;
+            return this;
+        }
+
+        /**
+         * Sets the domain rotation type for 3D noise and 3D domain warp (default: None).
+         * Can aid in reducing directional artifacts when sampling a 2D plane in 3D.
+         *
+         * @param rotationType3D The rotation type.
+         * @return The NoiseConfigBuilder, used to set more properties before building.
+         */
+        public NoiseConfigBuilder setRotationType3D(RotationType3D rotationType3D) {
+            this.rotationType3D = rotationType3D;
+            return this;
+        }
+
+        /**
+         * Sets the method for combining octaves in all fractal noise types (default: None).
+         * The DomainWarp types only affect domain warping.
+         *
+         * @param fractalType The fractal type.
+         * @return The NoiseConfigBuilder, used to set more properties before building.
+         */
+        public NoiseConfigBuilder setFractalType(FractalType fractalType) {
+            this.fractalType = fractalType;
+            return this;
+        }
+
+        /**
+         * Sets the octave count for all fractal noise types (default: 3).
+         *
+         * @param octaves The number of octaves.
+         * @return The NoiseConfigBuilder, used to set more properties before building.
+         */
+        public NoiseConfigBuilder setFractalOctaves(int octaves) {
+            this.octaves = octaves;
+            return this;
+        }
+
+        /**
+         * Sets the octave lacunarity for all fractal noise types (default: 2.0).
+         *
+         * @param lacunarity The frequency multiplier between octaves.
+         * @return The NoiseConfigBuilder, used to set more properties before building.
+         */
+        public NoiseConfigBuilder setFractalLacunarity(float lacunarity) {
+            this.lacunarity = lacunarity;
+            return this;
+        }
+
+        /**
+         * Sets the octave gain for all fractal noise types (default: 0.5).
+         *
+         * @param gain The amplitude multiplier between octaves.
+         * @return The NoiseConfigBuilder, used to set more properties before building.
+         */
+        public NoiseConfigBuilder setFractalGain(float gain) {
+            this.gain = gain;
+            return this;
+        }
+
+        /**
+         * Sets the octave weighting for all non-DomainWarp fractal types (default: 0.0).
+         * Keep between 0 and 1 to maintain the -1 to 1 output bounding.
+         *
+         * @param weightedStrength The weighted strength.
+         * @return The NoiseConfigBuilder, used to set more properties before building.
+         */
+        public NoiseConfigBuilder setFractalWeightedStrength(float weightedStrength) {
+            this.weightedStrength = weightedStrength;
+            return this;
+        }
+
+        /**
+         * Sets the strength of the fractal ping-pong effect (default: 2.0).
+         *
+         * @param pingPongStrength The ping-pong strength.
+         * @return The NoiseConfigBuilder, used to set more properties before building.
+         */
+        public NoiseConfigBuilder setFractalPingPongStrength(float pingPongStrength) {
+            this.pingPongStrength = pingPongStrength;
+            return this;
+        }
+
+        /**
+         * Sets the distance function used in cellular noise calculations (default: EuclideanSq).
+         *
+         * @param cellularDistanceFunction The distance function.
+         * @return The NoiseConfigBuilder, used to set more properties before building.
+         */
+        public NoiseConfigBuilder setCellularDistanceFunction(CellularDistanceFunction cellularDistanceFunction) {
+            this.cellularDistanceFunction = cellularDistanceFunction;
+            return this;
+        }
+
+        /**
+         * Sets the return type from cellular noise calculations (default: Distance).
+         *
+         * @param cellularReturnType The return type.
+         * @return The NoiseConfigBuilder, used to set more properties before building.
+         */
+        public NoiseConfigBuilder setCellularReturnType(CellularReturnType cellularReturnType) {
+            this.cellularReturnType = cellularReturnType;
+            return this;
+        }
+
+        /**
+         * Sets the maximum distance a cellular point can move from its grid position (default: 1.0).
+         * Setting this higher than 1 will cause artifacts.
+         *
+         * @param cellularJitter The jitter.
+         * @return The NoiseConfigBuilder, used to set more properties before building.
+         */
+        public NoiseConfigBuilder setCellularJitter(float cellularJitter) {
+            this.cellularJitter = cellularJitter;
+            return this;
+        }
+
+        /**
+         * Sets the warp algorithm used by domain warping (default: OpenSimplex2).
+         *
+         * @param domainWarpType The warp algorithm.
+         * @return The NoiseConfigBuilder, used to set more properties before building.
+         */
+        public NoiseConfigBuilder setDomainWarpType(DomainWarpType domainWarpType) {
+            this.domainWarpType = domainWarpType;
+            return this;
+        }
+
+        /**
+         * Sets the maximum warp distance from the original position when domain warping (default: 1.0).
+         *
+         * @param domainWarpAmp The warp amplitude.
+         * @return The NoiseConfigBuilder, used to set more properties before building.
+         */
+        public NoiseConfigBuilder setDomainWarpAmp(float domainWarpAmp) {
+            this.domainWarpAmp = domainWarpAmp;
+            return this;
+        }
+
+        /**
+         * @return An immutable config with the current settings, the builder can keep being used afterward.
+         */
+        public NoiseConfig build() {
+            return new NoiseConfig(this);
+        }
+    }
+}
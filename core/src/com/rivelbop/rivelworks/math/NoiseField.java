@@ -0,0 +1,430 @@
+package com.rivelbop.rivelworks.math;
+
+import com.badlogic.gdx.utils.Disposable;
+import com.esotericsoftware.minlog.Log;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Samples a {@link NoiseGenerator} in fixed-size square (2D) or cubic (3D) tiles and keeps the most recently used tiles
+ * in a bounded cache, so overlapping or repeated queries (e.g. a player walking back and forth over streamed terrain)
+ * reuse previously generated samples.
+ * <p>
+ * Sample (x, y) of the field is sample (i, j) = (x - tileX * TILE_SIZE, y - tileY * TILE_SIZE) of tile
+ * (tileX, tileY) = (floor(x / TILE_SIZE), floor(y / TILE_SIZE)), the generator's noise at
+ * (tileX * TILE_SIZE * spacing + i * spacing, tileY * TILE_SIZE * spacing + j * spacing), and likewise along z for 3D
+ * tiles. Tiles are keyed by their tile coordinates and the generator's {@link NoiseConfig} at the time of the request, changing the generator's settings
+ * simply starts a new set of tiles while the old ones age out of the cache.
+ * <p>
+ * Tiles can be generated on the calling thread ({@link #getTile(int, int)}) or asynchronously on the field's worker
+ * threads ({@link #requestTile(int, int)}, {@link #prefetch(float, float, int)}). The same tile is never generated twice
+ * concurrently. A synchronous request for a tile that is only queued generates it on the calling thread rather than waiting
+ * for the tiles queued before it, one for a tile that is already being generated waits for that generation instead.
+ * Returned tile arrays are shared with the cache and must not be modified.
+ *
+ * @author David Jerzak (RivelBop)
+ */
+public class NoiseField implements Disposable {
+    private static final String LOG_TAG = NoiseField.class.getSimpleName();
+
+    /**
+     * The generator the tiles are sampled from.
+     */
+    public final NoiseGenerator GENERATOR;
+
+    /**
+     * The number of samples along each edge of a tile.
+     */
+    public final int TILE_SIZE;
+
+    /**
+     * The distance (in noise coordinates) between two neighbouring samples.
+     */
+    public final float SPACING;
+
+    /**
+     * The maximum number of tiles kept in the cache.
+     */
+    public final int MAX_TILES;
+
+    /**
+     * The generated tiles, in least to most recently used order.
+     */
+    private final LinkedHashMap<TileKey, float[]> CACHE;
+
+    /**
+     * The tiles currently being generated (on any thread).
+     */
+    private final ConcurrentHashMap<TileKey, PendingTile> PENDING = new ConcurrentHashMap<>();
+
+    /**
+     * The worker threads for asynchronous generation.
+     */
+    private final ExecutorService EXECUTOR;
+
+    /**
+     * Creates a noise field.
+     *
+     * @param generator The generator to sample.
+     * @param tileSize  The number of samples along each edge of a tile.
+     * @param spacing   The distance (in noise coordinates) between two neighbouring samples.
+     * @param maxTiles  The maximum number of tiles kept in the cache.
+     * @param threads   The number of worker threads used for asynchronous generation.
+     */
+    public NoiseField(NoiseGenerator generator, int tileSize, float spacing, int maxTiles, int threads) {
+        if (tileSize <= 0 || maxTiles <= 0 || threads <= 0) {
+            throw new IllegalArgumentException("Tile size, max tiles and thread count must be positive!");
+        }
+
+        this.GENERATOR = generator;
+        this.TILE_SIZE = tileSize;
+        this.SPACING = spacing;
+        this.MAX_TILES = maxTiles;
+        this.CACHE = new LinkedHashMap<TileKey, float[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<TileKey, float[]> eldest) {
+                return size() > MAX_TILES;
+            }
+        };
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.EXECUTOR = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, LOG_TAG + "-" + threadCount.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Creates a noise field with a sample spacing of 1 and as many worker threads as available processors (minus one
+     * for the render thread).
+     *
+     * @param generator The generator to sample.
+     * @param tileSize  The number of samples along each edge of a tile.
+     * @param maxTiles  The maximum number of tiles kept in the cache.
+     */
+    public NoiseField(NoiseGenerator generator, int tileSize, int maxTiles) {
+        this(generator, tileSize, 1f, maxTiles, Math.max(Runtime.getRuntime().availableProcessors() - 1, 1));
+    }
+
+    /**
+     * Returns the 2D tile, generating it on the calling thread if it isn't cached.
+     *
+     * @param tileX The x-coordinate of the tile.
+     * @param tileY The y-coordinate of the tile.
+     * @return The tile's samples, row-major (sample (i, j) at index j * TILE_SIZE + i).
+     */
+    public float[] getTile(int tileX, int tileY) {
+        return load(new TileKey(tileX, tileY, 0, false, GENERATOR.GetConfig()), false).join();
+    }
+
+    /**
+     * Returns the 3D tile, generating it on the calling thread if it isn't cached.
+     *
+     * @param tileX The x-coordinate of the tile.
+     * @param tileY The y-coordinate of the tile.
+     * @param tileZ The z-coordinate of the tile.
+     * @return The tile's samples, row-major (sample (i, j, k) at index (k * TILE_SIZE + j) * TILE_SIZE + i).
+     */
+    public float[] getTile(int tileX, int tileY, int tileZ) {
+        return load(new TileKey(tileX, tileY, tileZ, true, GENERATOR.GetConfig()), false).join();
+    }
+
+    /**
+     * Requests the 2D tile, generating it on a worker thread if it isn't cached.
+     *
+     * @param tileX The x-coordinate of the tile.
+     * @param tileY The y-coordinate of the tile.
+     * @return A future completed with the tile's samples (see {@link #getTile(int, int)}).
+     */
+    public CompletableFuture<float[]> requestTile(int tileX, int tileY) {
+        return load(new TileKey(tileX, tileY, 0, false, GENERATOR.GetConfig()), true);
+    }
+
+    /**
+     * Requests the 3D tile, generating it on a worker thread if it isn't cached.
+     *
+     * @param tileX The x-coordinate of the tile.
+     * @param tileY The y-coordinate of the tile.
+     * @param tileZ The z-coordinate of the tile.
+     * @return A future completed with the tile's samples (see {@link #getTile(int, int, int)}).
+     */
+    public CompletableFuture<float[]> requestTile(int tileX, int tileY, int tileZ) {
+        return load(new TileKey(tileX, tileY, tileZ, true, GENERATOR.GetConfig()), true);
+    }
+
+    /**
+     * @param x The x-coordinate of the sample.
+     * @param y The y-coordinate of the sample.
+     * @return The 2D sample, generating its tile on the calling thread if it isn't cached.
+     */
+    public float getSample(int x, int y) {
+        int tileX = Math.floorDiv(x, TILE_SIZE), tileY = Math.floorDiv(y, TILE_SIZE);
+        return getTile(tileX, tileY)[(y - tileY * TILE_SIZE) * TILE_SIZE + (x - tileX * TILE_SIZE)];
+    }
+
+    /**
+     * Copies a rectangular region of 2D samples, generating any missing tiles on the calling thread.
+     *
+     * @param out    The array to write the samples to, row-major (sample (x + i, y + j) at offset + j * width + i).
+     * @param offset The index of the first sample in the output array.
+     * @param x      The x-coordinate of the region's first sample.
+     * @param y      The y-coordinate of the region's first sample.
+     * @param width  The number of samples along the x-axis.
+     * @param height The number of samples along the y-axis.
+     */
+    public void getRegion(float[] out, int offset, int x, int y, int width, int height) {
+        int tileStartX = Math.floorDiv(x, TILE_SIZE), tileEndX = Math.floorDiv(x + width - 1, TILE_SIZE);
+        int tileStartY = Math.floorDiv(y, TILE_SIZE), tileEndY = Math.floorDiv(y + height - 1, TILE_SIZE);
+
+        for (int tileY = tileStartY; tileY <= tileEndY; tileY++) {
+            int minY = Math.max(y, tileY * TILE_SIZE), maxY = Math.min(y + height, (tileY + 1) * TILE_SIZE);
+            for (int tileX = tileStartX; tileX <= tileEndX; tileX++) {
+                int minX = Math.max(x, tileX * TILE_SIZE), maxX = Math.min(x + width, (tileX + 1) * TILE_SIZE);
+                float[] tile = getTile(tileX, tileY);
+                for (int sy = minY; sy < maxY; sy++) {
+                    System.arraycopy(tile, (sy - tileY * TILE_SIZE) * TILE_SIZE + (minX - tileX * TILE_SIZE),
+                            out, offset + (sy - y) * width + (minX - x), maxX - minX);
+                }
+            }
+        }
+    }
+
+    /**
+     * Queues every missing 2D tile within the radius of the provided position for asynchronous generation, nearest
+     * tiles first. Intended to be called every frame with the camera position, tiles already cached or queued are
+     * skipped. Tiles queued by earlier calls that are now outside the radius (or sampled with old settings) and have not
+     * started generating are cancelled, unless they were also requested.
+     *
+     * @param x      The x-coordinate of the center (in samples).
+     * @param y      The y-coordinate of the center (in samples).
+     * @param radius The radius (in tiles) around the center tile to prefetch.
+     */
+    public void prefetch(float x, float y, int radius) {
+        int centerX = Math.floorDiv((int) Math.floor(x), TILE_SIZE);
+        int centerY = Math.floorDiv((int) Math.floor(y), TILE_SIZE);
+        NoiseConfig config = GENERATOR.GetConfig();
+
+        for (Map.Entry<TileKey, PendingTile> entry : PENDING.entrySet()) {
+            TileKey key = entry.getKey();
+            PendingTile pending = entry.getValue();
+            if (pending.prefetched && !key.IS_3D && (!key.CONFIG.equals(config)
+                    || Math.max(Math.abs(key.X - centerX), Math.abs(key.Y - centerY)) > radius) && pending.claim()) {
+                PENDING.remove(key, pending);
+                pending.cancel(false);
+            }
+        }
+
+        ArrayList<TileKey> missing = new ArrayList<>();
+        synchronized (CACHE) {
+            for (int tileY = centerY - radius; tileY <= centerY + radius; tileY++) {
+                for (int tileX = centerX - radius; tileX <= centerX + radius; tileX++) {
+                    TileKey key = new TileKey(tileX, tileY, 0, false, config);
+                    if (!CACHE.containsKey(key) && !PENDING.containsKey(key)) {
+                        missing.add(key);
+                    }
+                }
+            }
+        }
+
+        missing.sort(Comparator.comparingInt(key -> Math.max(Math.abs(key.X - centerX), Math.abs(key.Y - centerY))));
+        for (TileKey key : missing) {
+            load(key, true, true);
+        }
+    }
+
+    /**
+     * @return The number of cached tiles.
+     */
+    public int size() {
+        synchronized (CACHE) {
+            return CACHE.size();
+        }
+    }
+
+    /**
+     * Removes all cached tiles (tiles currently being generated are still cached once done).
+     */
+    public void clear() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+    /**
+     * Returns the cached tile or starts generating it, see {@link #load(TileKey, boolean, boolean)}.
+     *
+     * @param key   The tile to load.
+     * @param async Whether to generate on a worker thread rather than the calling thread.
+     * @return A future completed with the tile's samples.
+     */
+    private CompletableFuture<float[]> load(TileKey key, boolean async) {
+        return load(key, async, false);
+    }
+
+    /**
+     * Returns the cached tile or starts generating it. A generation already in progress is joined, a queued one is taken over
+     * by a synchronous load.
+     *
+     * @param key        The tile to load.
+     * @param async      Whether to generate on a worker thread rather than the calling thread.
+     * @param prefetched Whether the tile is only prefetched, so it may be cancelled once out of range.
+     * @return A future completed with the tile's samples.
+     */
+    private CompletableFuture<float[]> load(TileKey key, boolean async, boolean prefetched) {
+        synchronized (CACHE) {
+            float[] tile = CACHE.get(key);
+            if (tile != null) {
+                return CompletableFuture.completedFuture(tile);
+            }
+        }
+
+        PendingTile future = new PendingTile(prefetched);
+        PendingTile pending = PENDING.putIfAbsent(key, future);
+        if (pending != null) {
+            if (!prefetched) {
+                pending.prefetched = false;
+            }
+            // Rather than waiting for the worker threads to reach it
+            if (!async && pending.claim()) {
+                generate(key, pending);
+            }
+            return pending;
+        }
+
+        if (async) {
+            try {
+                EXECUTOR.execute(() -> {
+                    if (future.claim()) {
+                        generate(key, future);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                Log.error(LOG_TAG, "Noise field has been disposed, generating tile on the calling thread!");
+                future.claim();
+                generate(key, future);
+            }
+        } else {
+            future.claim();
+            generate(key, future);
+        }
+        return future;
+    }
+
+    /**
+     * Samples the tile, caches it and completes its future.
+     *
+     * @param key    The tile to generate.
+     * @param future The future to complete with the tile's samples.
+     */
+    private void generate(TileKey key, CompletableFuture<float[]> future) {
+        try {
+            // A generator per tile, so the tile is sampled with the config it is keyed by
+            NoiseGenerator generator = new NoiseGenerator(key.CONFIG);
+            float startX = key.X * TILE_SIZE * SPACING, startY = key.Y * TILE_SIZE * SPACING;
+
+            float[] tile;
+            if (key.IS_3D) {
+                tile = new float[TILE_SIZE * TILE_SIZE * TILE_SIZE];
+                generator.GetNoiseGrid(tile, 0, startX, startY, key.Z * TILE_SIZE * SPACING,
+                        SPACING, SPACING, SPACING, TILE_SIZE, TILE_SIZE, TILE_SIZE);
+            } else {
+                tile = new float[TILE_SIZE * TILE_SIZE];
+                generator.GetNoiseGrid(tile, 0, startX, startY, SPACING, SPACING, TILE_SIZE, TILE_SIZE);
+            }
+
+            synchronized (CACHE) {
+                CACHE.put(key, tile);
+            }
+            future.complete(tile);
+        } catch (Throwable t) {
+            Log.error(LOG_TAG, "Unable to generate noise tile!", t);
+            future.completeExceptionally(t);
+        } finally {
+            PENDING.remove(key, future);
+        }
+    }
+
+    /**
+     * Stops the worker threads, queued tiles are discarded and the futures of tiles still being generated are cancelled.
+     */
+    @Override
+    public void dispose() {
+        EXECUTOR.shutdownNow();
+        for (PendingTile future : PENDING.values()) {
+            future.cancel(false);
+        }
+        PENDING.clear();
+        clear();
+    }
+
+    /**
+     * The future of a tile being generated or queued, generated by whichever thread claims it first.
+     */
+    private static final class PendingTile extends CompletableFuture<float[]> {
+        private final AtomicBoolean STARTED = new AtomicBoolean();
+
+        /**
+         * Whether only {@link #prefetch(float, float, int)} asked for the tile.
+         */
+        private volatile boolean prefetched;
+
+        private PendingTile(boolean prefetched) {
+            this.prefetched = prefetched;
+        }
+
+        /**
+         * @return True if the calling thread is the first to claim the tile, and must generate it.
+         */
+        private boolean claim() {
+            return STARTED.compareAndSet(false, true);
+        }
+    }
+
+    /**
+     * Identifies a tile by its coordinates and the settings it is sampled with.
+     */
+    private static final class TileKey {
+        private final int X, Y, Z;
+        private final boolean IS_3D;
+        private final NoiseConfig CONFIG;
+        private final int HASH;
+
+        private TileKey(int x, int y, int z, boolean is3D, NoiseConfig config) {
+            this.X = x;
+            this.Y = y;
+            this.Z = z;
+            this.IS_3D = is3D;
+            this.CONFIG = config;
+            this.HASH = ((((x * 31) + y) * 31 + z) * 31 + (is3D ? 1 : 0)) * 31 + config.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof TileKey)) {
+                return false;
+            }
+
+            TileKey key = (TileKey) o;
+            return X == key.X && Y == key.Y && Z == key.Z && IS_3D == key.IS_3D && CONFIG.equals(key.CONFIG);
+        }
+
+        @Override
+        public int hashCode() {
+            return HASH;
+        }
+    }
+}
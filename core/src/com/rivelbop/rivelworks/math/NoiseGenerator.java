@@ -1,5 +1,9 @@
 package com.rivelbop.rivelworks.math;
 
+import java.nio.FloatBuffer;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 // MIT License
 //
 // Copyright(c) 2023 Jordan Peck (jordan.me2@gmail.com)
@@ -25,6 +29,9 @@ package com.rivelbop.rivelworks.math;
 
 /**
  * A direct copy of FastNoiseLite, <a href="https://github.com/Auburn/FastNoiseLite">Github</a>.
+ * <p>
+ * Settings are held in an immutable {@link NoiseConfig} that the setters replace, so a single generator can be sampled
+ * from multiple threads at once.
  *
  * @author Jordan Peck / FastNoiseLite Community
  */
@@ -76,35 +83,18 @@ public class NoiseGenerator {
         BasicGrid
     }
 
-    private enum TransformType3D {
+    enum TransformType3D {
         None,
         ImproveXYPlanes,
         ImproveXZPlanes,
         DefaultOpenSimplex2
     }
 
-    private int mSeed = 1337;
-    private float mFrequency = 0.01f;
-    private NoiseType mNoiseType = NoiseType.OpenSimplex2;
-    private RotationType3D mRotationType3D = RotationType3D.None;
-    private TransformType3D mTransformType3D = TransformType3D.DefaultOpenSimplex2;
-
-    private FractalType mFractalType = FractalType.None;
-    private int mOctaves = 3;
-    private float mLacunarity = 2.0f;
-    private float mGain = 0.5f;
-    private float mWeightedStrength = 0.0f;
-    private float mPingPongStrength = 2.0f;
-
-    private float mFractalBounding = 1 / 1.75f;
+    // Replaced as a whole by the setters, every call evaluates against the snapshot it read first
+    private volatile NoiseConfig mConfig = NoiseConfig.DEFAULT;
 
-    private CellularDistanceFunction mCellularDistanceFunction = CellularDistanceFunction.EuclideanSq;
-    private CellularReturnType mCellularReturnType = CellularReturnType.Distance;
-    private float mCellularJitterModifier = 1.0f;
-
-    private DomainWarpType mDomainWarpType = DomainWarpType.OpenSimplex2;
-    private TransformType3D mWarpTransformType3D = TransformType3D.DefaultOpenSimplex2;
-    private float mDomainWarpAmp = 1.0f;
+    // Vectorized row kernels for the grid-fill path, null when unavailable (see NoiseBackend)
+    private static final NoiseBackend VectorBackend = LoadVectorBackend();
 
     /// <summary>
     /// Create new FastNoise object with default seed
@@ -119,14 +109,44 @@ public class NoiseGenerator {
         SetSeed(seed);
     }
 
+    /// <summary>
+    /// Create new FastNoise object using the provided settings
+    /// </summary>
+    public NoiseGenerator(NoiseConfig config) {
+        SetConfig(config);
+    }
+
+    /// <summary>
+    /// Returns an immutable snapshot of the current settings
+    /// </summary>
+    /// <remarks>
+    /// The snapshot can be shared with other generators or modified through NoiseConfig.toBuilder()
+    /// </remarks>
+    public NoiseConfig GetConfig() {
+        return mConfig;
+    }
+
+    /// <summary>
+    /// Replaces all settings at once
+    /// </summary>
+    /// <remarks>
+    /// Calls already running on other threads finish with the settings they started with
+    /// </remarks>
+    public synchronized void SetConfig(NoiseConfig config) {
+        if (config == null) {
+            throw new IllegalArgumentException("NoiseConfig cannot be null!");
+        }
+        mConfig = config;
+    }
+
     /// <summary>
     /// Sets seed used for all noise types
     /// </summary>
     /// <remarks>
     /// Default: 1337
     /// </remarks>
-    public void SetSeed(int seed) {
-        mSeed = seed;
+    public synchronized void SetSeed(int seed) {
+        mConfig = mConfig.toBuilder().setSeed(seed).build();
     }
 
     /// <summary>
@@ -135,8 +155,8 @@ public class NoiseGenerator {
     /// <remarks>
     /// Default: 0.01
     /// </remarks>
-    public void SetFrequency(float frequency) {
-        mFrequency = frequency;
+    public synchronized void SetFrequency(float frequency) {
+        mConfig = mConfig.toBuilder().setFrequency(frequency).build();
     }
 
     /// <summary>
@@ -145,9 +165,8 @@ public class NoiseGenerator {
     /// <remarks>
     /// Default: OpenSimplex2
     /// </remarks>
-    public void SetNoiseType(NoiseType noiseType) {
-        mNoiseType = noiseType;
-        UpdateTransformType3D();
+    public synchronized void SetNoiseType(NoiseType noiseType) {
+        mConfig = mConfig.toBuilder().setNoiseType(noiseType).build();
     }
 
     /// <summary>
@@ -157,10 +176,8 @@ public class NoiseGenerator {
     /// <remarks>
     /// Default: None
     /// </remarks>
-    public void SetRotationType3D(RotationType3D rotationType3D) {
-        mRotationType3D = rotationType3D;
-        UpdateTransformType3D();
-        UpdateWarpTransformType3D();
+    public synchronized void SetRotationType3D(RotationType3D rotationType3D) {
+        mConfig = mConfig.toBuilder().setRotationType3D(rotationType3D).build();
     }
 
     /// <summary>
@@ -170,8 +187,8 @@ public class NoiseGenerator {
     /// Default: None
     /// Note: FractalType.DomainWarp... only affects DomainWarp(...)
     /// </remarks>
-    public void SetFractalType(FractalType fractalType) {
-        mFractalType = fractalType;
+    public synchronized void SetFractalType(FractalType fractalType) {
+        mConfig = mConfig.toBuilder().setFractalType(fractalType).build();
     }
 
     /// <summary>
@@ -180,9 +197,8 @@ public class NoiseGenerator {
     /// <remarks>
     /// Default: 3
     /// </remarks>
-    public void SetFractalOctaves(int octaves) {
-        mOctaves = octaves;
-        CalculateFractalBounding();
+    public synchronized void SetFractalOctaves(int octaves) {
+        mConfig = mConfig.toBuilder().setFractalOctaves(octaves).build();
     }
 
     /// <summary>
@@ -191,8 +207,8 @@ public class NoiseGenerator {
     /// <remarks>
     /// Default: 2.0
     /// </remarks>
-    public void SetFractalLacunarity(float lacunarity) {
-        mLacunarity = lacunarity;
+    public synchronized void SetFractalLacunarity(float lacunarity) {
+        mConfig = mConfig.toBuilder().setFractalLacunarity(lacunarity).build();
     }
 
     /// <summary>
@@ -201,9 +217,8 @@ public class NoiseGenerator {
     /// <remarks>
     /// Default: 0.5
     /// </remarks>
-    public void SetFractalGain(float gain) {
-        mGain = gain;
-        CalculateFractalBounding();
+    public synchronized void SetFractalGain(float gain) {
+        mConfig = mConfig.toBuilder().setFractalGain(gain).build();
     }
 
     /// <summary>
@@ -213,8 +228,8 @@ public class NoiseGenerator {
     /// Default: 0.0
     /// Note: Keep between 0...1 to maintain -1...1 output bounding
     /// </remarks>
-    public void SetFractalWeightedStrength(float weightedStrength) {
-        mWeightedStrength = weightedStrength;
+    public synchronized void SetFractalWeightedStrength(float weightedStrength) {
+        mConfig = mConfig.toBuilder().setFractalWeightedStrength(weightedStrength).build();
     }
 
     /// <summary>
@@ -223,8 +238,8 @@ public class NoiseGenerator {
     /// <remarks>
     /// Default: 2.0
     /// </remarks>
-    public void SetFractalPingPongStrength(float pingPongStrength) {
-        mPingPongStrength = pingPongStrength;
+    public synchronized void SetFractalPingPongStrength(float pingPongStrength) {
+        mConfig = mConfig.toBuilder().setFractalPingPongStrength(pingPongStrength).build();
     }
 
 
@@ -234,8 +249,8 @@ public class NoiseGenerator {
     /// <remarks>
     /// Default: Distance
     /// </remarks>
-    public void SetCellularDistanceFunction(CellularDistanceFunction cellularDistanceFunction) {
-        mCellularDistanceFunction = cellularDistanceFunction;
+    public synchronized void SetCellularDistanceFunction(CellularDistanceFunction cellularDistanceFunction) {
+        mConfig = mConfig.toBuilder().setCellularDistanceFunction(cellularDistanceFunction).build();
     }
 
     /// <summary>
@@ -244,8 +259,8 @@ public class NoiseGenerator {
     /// <remarks>
     /// Default: EuclideanSq
     /// </remarks>
-    public void SetCellularReturnType(CellularReturnType cellularReturnType) {
-        mCellularReturnType = cellularReturnType;
+    public synchronized void SetCellularReturnType(CellularReturnType cellularReturnType) {
+        mConfig = mConfig.toBuilder().setCellularReturnType(cellularReturnType).build();
     }
 
     /// <summary>
@@ -255,8 +270,8 @@ public class NoiseGenerator {
     /// Default: 1.0
     /// Note: Setting this higher than 1 will cause artifacts
     /// </remarks>
-    public void SetCellularJitter(float cellularJitter) {
-        mCellularJitterModifier = cellularJitter;
+    public synchronized void SetCellularJitter(float cellularJitter) {
+        mConfig = mConfig.toBuilder().setCellularJitter(cellularJitter).build();
     }
 
 
@@ -266,9 +281,8 @@ public class NoiseGenerator {
     /// <remarks>
     /// Default: OpenSimplex2
     /// </remarks>
-    public void SetDomainWarpType(DomainWarpType domainWarpType) {
-        mDomainWarpType = domainWarpType;
-        UpdateWarpTransformType3D();
+    public synchronized void SetDomainWarpType(DomainWarpType domainWarpType) {
+        mConfig = mConfig.toBuilder().setDomainWarpType(domainWarpType).build();
     }
 
 
@@ -278,8 +292,8 @@ public class NoiseGenerator {
     /// <remarks>
     /// Default: 1.0
     /// </remarks>
-    public void SetDomainWarpAmp(float domainWarpAmp) {
-        mDomainWarpAmp = domainWarpAmp;
+    public synchronized void SetDomainWarpAmp(float domainWarpAmp) {
+        mConfig = mConfig.toBuilder().setDomainWarpAmp(domainWarpAmp).build();
     }
 
 
@@ -290,10 +304,12 @@ public class NoiseGenerator {
     /// Noise output bounded between -1...1
     /// </returns>
     public float GetNoise(/*FNLfloat*/ float x, /*FNLfloat*/ float y) {
-        x *= mFrequency;
-        y *= mFrequency;
+        NoiseConfig config = mConfig;
+
+        x *= config.FREQUENCY;
+        y *= config.FREQUENCY;
 
-        switch (mNoiseType) {
+        switch (config.NOISE_TYPE) {
             case OpenSimplex2:
             case OpenSimplex2S: {
                 final /*FNLfloat*/ float SQRT3 = (/*FNLfloat*/ float) 1.7320508075688772935274463415059;
@@ -308,15 +324,15 @@ public class NoiseGenerator {
                 break;
         }
 
-        switch (mFractalType) {
+        switch (config.FRACTAL_TYPE) {
             default:
-                return GenNoiseSingle(mSeed, x, y);
+                return GenNoiseSingle(config, config.SEED, x, y);
             case FBm:
-                return GenFractalFBm(x, y);
+                return GenFractalFBm(config, x, y);
             case Ridged:
-                return GenFractalRidged(x, y);
+                return GenFractalRidged(config, x, y);
             case PingPong:
-                return GenFractalPingPong(x, y);
+                return GenFractalPingPong(config, x, y);
         }
     }
 
@@ -327,11 +343,13 @@ public class NoiseGenerator {
     /// Noise output bounded between -1...1
     /// </returns>
     public float GetNoise(/*FNLfloat*/ float x, /*FNLfloat*/ float y, /*FNLfloat*/ float z) {
-        x *= mFrequency;
-        y *= mFrequency;
-        z *= mFrequency;
+        NoiseConfig config = mConfig;
 
-        switch (mTransformType3D) {
+        x *= config.FREQUENCY;
+        y *= config.FREQUENCY;
+        z *= config.FREQUENCY;
+
+        switch (config.TRANSFORM_TYPE_3D) {
             case ImproveXYPlanes: {
                 /*FNLfloat*/
                 float xy = x + y;
@@ -367,15 +385,15 @@ public class NoiseGenerator {
                 break;
         }
 
-        switch (mFractalType) {
+        switch (config.FRACTAL_TYPE) {
             default:
-                return GenNoiseSingle(mSeed, x, y, z);
+                return GenNoiseSingle(config, config.SEED, x, y, z);
             case FBm:
-                return GenFractalFBm(x, y, z);
+                return GenFractalFBm(config, x, y, z);
             case Ridged:
-                return GenFractalRidged(x, y, z);
+                return GenFractalRidged(config, x, y, z);
             case PingPong:
-                return GenFractalPingPong(x, y, z);
+                return GenFractalPingPong(config, x, y, z);
         }
     }
 
@@ -389,15 +407,17 @@ public class NoiseGenerator {
     /// noise = GetNoise(x, y)</code>
     /// </example>
     public void DomainWarp(Vector2 coord) {
-        switch (mFractalType) {
+        NoiseConfig config = mConfig;
+
+        switch (config.FRACTAL_TYPE) {
             case DomainWarpProgressive:
-                DomainWarpFractalProgressive(coord);
+                DomainWarpFractalProgressive(config, coord);
                 break;
             case DomainWarpIndependent:
-                DomainWarpFractalIndependent(coord);
+                DomainWarpFractalIndependent(config, coord);
                 break;
             default:
-                DomainWarpSingle(coord);
+                DomainWarpSingle(config, coord);
                 break;
         }
     }
@@ -411,21 +431,134 @@ public class NoiseGenerator {
     /// noise = GetNoise(x, y, z)</code>
     /// </example>
     public void DomainWarp(Vector3 coord) {
-        switch (mFractalType) {
+        NoiseConfig config = mConfig;
+
+        switch (config.FRACTAL_TYPE) {
             case DomainWarpProgressive:
-                DomainWarpFractalProgressive(coord);
+                DomainWarpFractalProgressive(config, coord);
                 break;
             case DomainWarpIndependent:
-                DomainWarpFractalIndependent(coord);
+                DomainWarpFractalIndependent(config, coord);
                 break;
             default:
-                DomainWarpSingle(coord);
+                DomainWarpSingle(config, coord);
                 break;
         }
     }
 
+    /// <summary>
+    /// Fills a row-major 2D grid with noise using current settings
+    /// </summary>
+    /// <remarks>
+    /// Sample (i, j) is taken at (startX + i * stepX, startY + j * stepY) and written to out[offset + j * width + i].
+    /// Each sample is identical to GetNoise(x, y) at the same position
+    /// </remarks>
+    public void GetNoiseGrid(float[] out, int offset, /*FNLfloat*/ float startX, /*FNLfloat*/ float startY,
+                             /*FNLfloat*/ float stepX, /*FNLfloat*/ float stepY, int width, int height) {
+        Grid grid = new Grid(out, null, offset, startX, startY, 0, stepX, stepY, 0, width, height, 1, false);
+        grid.Fill(new GridScratch(width), 0, grid.rows);
+    }
+
+    /// <summary>
+    /// Fills a row-major 2D grid with noise using current settings, starting at the buffer's current position
+    /// </summary>
+    /// <remarks>
+    /// The buffer's position is left unchanged
+    /// </remarks>
+    public void GetNoiseGrid(FloatBuffer out, /*FNLfloat*/ float startX, /*FNLfloat*/ float startY,
+                             /*FNLfloat*/ float stepX, /*FNLfloat*/ float stepY, int width, int height) {
+        Grid grid = new Grid(null, out, out.position(), startX, startY, 0, stepX, stepY, 0, width, height, 1, false);
+        grid.Fill(new GridScratch(width), 0, grid.rows);
+    }
+
+    /// <summary>
+    /// Fills a row-major 3D grid with noise using current settings
+    /// </summary>
+    /// <remarks>
+    /// Sample (i, j, k) is taken at (startX + i * stepX, startY + j * stepY, startZ + k * stepZ) and written to
+    /// out[offset + (k * height + j) * width + i].
+    /// Each sample is identical to GetNoise(x, y, z) at the same position
+    /// </remarks>
+    public void GetNoiseGrid(float[] out, int offset, /*FNLfloat*/ float startX, /*FNLfloat*/ float startY, /*FNLfloat*/ float startZ,
+                             /*FNLfloat*/ float stepX, /*FNLfloat*/ float stepY, /*FNLfloat*/ float stepZ, int width, int height, int depth) {
+        Grid grid = new Grid(out, null, offset, startX, startY, startZ, stepX, stepY, stepZ, width, height, depth, true);
+        grid.Fill(new GridScratch(width), 0, grid.rows);
+    }
 
-    private static final float[] Gradients2D = {
+    /// <summary>
+    /// Fills a row-major 3D grid with noise using current settings, starting at the buffer's current position
+    /// </summary>
+    /// <remarks>
+    /// The buffer's position is left unchanged
+    /// </remarks>
+    public void GetNoiseGrid(FloatBuffer out, /*FNLfloat*/ float startX, /*FNLfloat*/ float startY, /*FNLfloat*/ float startZ,
+                             /*FNLfloat*/ float stepX, /*FNLfloat*/ float stepY, /*FNLfloat*/ float stepZ, int width, int height, int depth) {
+        Grid grid = new Grid(null, out, out.position(), startX, startY, startZ, stepX, stepY, stepZ, width, height, depth, true);
+        grid.Fill(new GridScratch(width), 0, grid.rows);
+    }
+
+    /// <summary>
+    /// Whether GetNoiseGrid(...) runs the supported noise types through the vectorized backend
+    /// </summary>
+    /// <remarks>
+    /// Requires Java 17+ with "--add-modules jdk.incubator.vector", otherwise the scalar kernels are used.
+    /// Can be disabled with "-Drivelworks.noise.vector=false".
+    /// Output is identical to the scalar kernels (0 ulp tolerance), see NoiseBackend
+    /// </remarks>
+    public static boolean IsVectorized() {
+        return VectorBackend != null;
+    }
+
+    /// <summary>
+    /// Same as GetNoiseGrid(float[], ...) with the rows split across the provided pool
+    /// </summary>
+    /// <remarks>
+    /// A null pool uses ForkJoinPool.commonPool().
+    /// Settings changed during the call only apply to later calls
+    /// </remarks>
+    public void GetNoiseGridParallel(ForkJoinPool pool, float[] out, int offset, /*FNLfloat*/ float startX, /*FNLfloat*/ float startY,
+                                     /*FNLfloat*/ float stepX, /*FNLfloat*/ float stepY, int width, int height) {
+        FillParallel(pool, new Grid(out, null, offset, startX, startY, 0, stepX, stepY, 0, width, height, 1, false));
+    }
+
+    /// <summary>
+    /// Same as GetNoiseGrid(FloatBuffer, ...) with the rows split across the provided pool
+    /// </summary>
+    /// <remarks>
+    /// A null pool uses ForkJoinPool.commonPool().
+    /// Settings changed during the call only apply to later calls
+    /// </remarks>
+    public void GetNoiseGridParallel(ForkJoinPool pool, FloatBuffer out, /*FNLfloat*/ float startX, /*FNLfloat*/ float startY,
+                                     /*FNLfloat*/ float stepX, /*FNLfloat*/ float stepY, int width, int height) {
+        FillParallel(pool, new Grid(null, out, out.position(), startX, startY, 0, stepX, stepY, 0, width, height, 1, false));
+    }
+
+    /// <summary>
+    /// Same as GetNoiseGrid(float[], ...) for 3D with the rows split across the provided pool
+    /// </summary>
+    /// <remarks>
+    /// A null pool uses ForkJoinPool.commonPool().
+    /// Settings changed during the call only apply to later calls
+    /// </remarks>
+    public void GetNoiseGridParallel(ForkJoinPool pool, float[] out, int offset, /*FNLfloat*/ float startX, /*FNLfloat*/ float startY, /*FNLfloat*/ float startZ,
+                                     /*FNLfloat*/ float stepX, /*FNLfloat*/ float stepY, /*FNLfloat*/ float stepZ, int width, int height, int depth) {
+        FillParallel(pool, new Grid(out, null, offset, startX, startY, startZ, stepX, stepY, stepZ, width, height, depth, true));
+    }
+
+    /// <summary>
+    /// Same as GetNoiseGrid(FloatBuffer, ...) for 3D with the rows split across the provided pool
+    /// </summary>
+    /// <remarks>
+    /// A null pool uses ForkJoinPool.commonPool().
+    /// Settings changed during the call only apply to later calls
+    /// </remarks>
+    public void GetNoiseGridParallel(ForkJoinPool pool, FloatBuffer out, /*FNLfloat*/ float startX, /*FNLfloat*/ float startY, /*FNLfloat*/ float startZ,
+                                     /*FNLfloat*/ float stepX, /*FNLfloat*/ float stepY, /*FNLfloat*/ float stepZ, int width, int height, int depth) {
+        FillParallel(pool, new Grid(null, out, out.position(), startX, startY, startZ, stepX, stepY, stepZ, width, height, depth, true));
+    }
+
+
+    static final float[] Gradients2D = {
             0.130526192220052f, 0.99144486137381f, 0.38268343236509f, 0.923879532511287f, 0.608761429008721f, 0.793353340291235f, 0.793353340291235f, 0.608761429008721f,
             0.923879532511287f, 0.38268343236509f, 0.99144486137381f, 0.130526192220051f, 0.99144486137381f, -0.130526192220051f, 0.923879532511287f, -0.38268343236509f,
             0.793353340291235f, -0.60876142900872f, 0.608761429008721f, -0.793353340291235f, 0.38268343236509f, -0.923879532511287f, 0.130526192220052f, -0.99144486137381f,
@@ -460,7 +593,7 @@ public class NoiseGenerator {
             -0.38268343236509f, -0.923879532511287f, -0.923879532511287f, -0.38268343236509f, -0.923879532511287f, 0.38268343236509f, -0.38268343236509f, 0.923879532511287f,
     };
 
-    private static final float[] RandVecs2D = {
+    static final float[] RandVecs2D = {
             -0.2700222198f, -0.9628540911f, 0.3863092627f, -0.9223693152f, 0.04444859006f, -0.999011673f, -0.5992523158f, -0.8005602176f, -0.7819280288f, 0.6233687174f, 0.9464672271f, 0.3227999196f, -0.6514146797f, -0.7587218957f, 0.9378472289f, 0.347048376f,
             -0.8497875957f, -0.5271252623f, -0.879042592f, 0.4767432447f, -0.892300288f, -0.4514423508f, -0.379844434f, -0.9250503802f, -0.9951650832f, 0.0982163789f, 0.7724397808f, -0.6350880136f, 0.7573283322f, -0.6530343002f, -0.9928004525f, -0.119780055f,
             -0.0532665713f, 0.9985803285f, 0.9754253726f, -0.2203300762f, -0.7665018163f, 0.6422421394f, 0.991636706f, 0.1290606184f, -0.994696838f, 0.1028503788f, -0.5379205513f, -0.84299554f, 0.5022815471f, -0.8647041387f, 0.4559821461f, -0.8899889226f,
@@ -495,7 +628,7 @@ public class NoiseGenerator {
             0.01426758847f, -0.9998982128f, -0.6734383991f, 0.7392433447f, 0.639412098f, -0.7688642071f, 0.9211571421f, 0.3891908523f, -0.146637214f, -0.9891903394f, -0.782318098f, 0.6228791163f, -0.5039610839f, -0.8637263605f, -0.7743120191f, -0.6328039957f,
     };
 
-    private static final float[] Gradients3D = {
+    static final float[] Gradients3D = {
             0, 1, 1, 0, 0, -1, 1, 0, 0, 1, -1, 0, 0, -1, -1, 0,
             1, 0, 1, 0, -1, 0, 1, 0, 1, 0, -1, 0, -1, 0, -1, 0,
             1, 1, 0, 0, -1, 1, 0, 0, 1, -1, 0, 0, -1, -1, 0, 0,
@@ -596,21 +729,10 @@ public class NoiseGenerator {
         return t < 1 ? t : 2 - t;
     }
 
-    private void CalculateFractalBounding() {
-        float gain = FastAbs(mGain);
-        float amp = gain;
-        float ampFractal = 1.0f;
-        for (int i = 1; i < mOctaves; i++) {
-            ampFractal += amp;
-            amp *= gain;
-        }
-        mFractalBounding = 1 / ampFractal;
-    }
-
     // Hashing
-    private static final int PrimeX = 501125321;
-    private static final int PrimeY = 1136930381;
-    private static final int PrimeZ = 1720413743;
+    static final int PrimeX = 501125321;
+    static final int PrimeY = 1136930381;
+    static final int PrimeZ = 1720413743;
 
     private static int Hash(int seed, int xPrimed, int yPrimed) {
         int hash = seed ^ xPrimed ^ yPrimed;
@@ -668,14 +790,14 @@ public class NoiseGenerator {
 
     // Generic noise gen
 
-    private float GenNoiseSingle(int seed, /*FNLfloat*/ float x, /*FNLfloat*/ float y) {
-        switch (mNoiseType) {
+    private float GenNoiseSingle(NoiseConfig config, int seed, /*FNLfloat*/ float x, /*FNLfloat*/ float y) {
+        switch (config.NOISE_TYPE) {
             case OpenSimplex2:
                 return SingleSimplex(seed, x, y);
             case OpenSimplex2S:
                 return SingleOpenSimplex2S(seed, x, y);
             case Cellular:
-                return SingleCellular(seed, x, y);
+                return SingleCellular(config, seed, x, y);
             case Perlin:
                 return SinglePerlin(seed, x, y);
             case ValueCubic:
@@ -687,14 +809,14 @@ public class NoiseGenerator {
         }
     }
 
-    private float GenNoiseSingle(int seed, /*FNLfloat*/ float x, /*FNLfloat*/ float y, /*FNLfloat*/ float z) {
-        switch (mNoiseType) {
+    private float GenNoiseSingle(NoiseConfig config, int seed, /*FNLfloat*/ float x, /*FNLfloat*/ float y, /*FNLfloat*/ float z) {
+        switch (config.NOISE_TYPE) {
             case OpenSimplex2:
                 return SingleOpenSimplex2(seed, x, y, z);
             case OpenSimplex2S:
                 return SingleOpenSimplex2S(seed, x, y, z);
             case Cellular:
-                return SingleCellular(seed, x, y, z);
+                return SingleCellular(config, seed, x, y, z);
             case Perlin:
                 return SinglePerlin(seed, x, y, z);
             case ValueCubic:
@@ -709,85 +831,41 @@ public class NoiseGenerator {
 
     // Noise Coordinate Transforms (frequency, and possible skew or rotation)
 
-    private void UpdateTransformType3D() {
-        switch (mRotationType3D) {
-            case ImproveXYPlanes:
-                mTransformType3D = TransformType3D.ImproveXYPlanes;
-                break;
-            case ImproveXZPlanes:
-                mTransformType3D = TransformType3D.ImproveXZPlanes;
-                break;
-            default:
-                switch (mNoiseType) {
-                    case OpenSimplex2:
-                    case OpenSimplex2S:
-                        mTransformType3D = TransformType3D.DefaultOpenSimplex2;
-                        break;
-                    default:
-                        mTransformType3D = TransformType3D.None;
-                        break;
-                }
-                break;
-        }
-    }
-
-    private void UpdateWarpTransformType3D() {
-        switch (mRotationType3D) {
-            case ImproveXYPlanes:
-                mWarpTransformType3D = TransformType3D.ImproveXYPlanes;
-                break;
-            case ImproveXZPlanes:
-                mWarpTransformType3D = TransformType3D.ImproveXZPlanes;
-                break;
-            default:
-                switch (mDomainWarpType) {
-                    case OpenSimplex2:
-                    case OpenSimplex2Reduced:
-                        mWarpTransformType3D = TransformType3D.DefaultOpenSimplex2;
-                        break;
-                    default:
-                        mWarpTransformType3D = TransformType3D.None;
-                        break;
-                }
-                break;
-        }
-    }
-
 
     // Fractal FBm
 
-    private float GenFractalFBm(/*FNLfloat*/ float x, /*FNLfloat*/ float y) {
-        int seed = mSeed;
+    private float GenFractalFBm(NoiseConfig config, /*FNLfloat*/ float x, /*FNLfloat*/ float y) {
+        int seed = config.SEED;
         float sum = 0;
-        float amp = mFractalBounding;
+        float amp = config.FRACTAL_BOUNDING;
 
-        for (int i = 0; i < mOctaves; i++) {
-            float noise = GenNoiseSingle(seed++, x, y);
+        for (int i = 0; i < config.OCTAVES; i++) {
+            float noise = GenNoiseSingle(config, seed++, x, y);
             sum += noise * amp;
-            amp *= Lerp(1.0f, FastMin(noise + 1, 2) * 0.5f, mWeightedStrength);
+            amp *= Lerp(1.0f, FastMin(noise + 1, 2) * 0.5f, config.WEIGHTED_STRENGTH);
 
-            x *= mLacunarity;
-            y *= mLacunarity;
-            amp *= mGain;
+            x *= config.LACUNARITY;
+            y *= config.LACUNARITY;
+            amp *= config.GAIN;
         }
 
         return sum;
     }
 
-    private float GenFractalFBm(/*FNLfloat*/ float x, /*FNLfloat*/ float y, /*FNLfloat*/ float z) {
-        int seed = mSeed;
+    private float GenFractalFBm(NoiseConfig config, /*FNLfloat*/ float x, /*FNLfloat*/ float y, /*FNLfloat*/ float z) {
+        int seed = config.SEED;
         float sum = 0;
-        float amp = mFractalBounding;
+        float amp = config.FRACTAL_BOUNDING;
 
-        for (int i = 0; i < mOctaves; i++) {
-            float noise = GenNoiseSingle(seed++, x, y, z);
+        for (int i = 0; i < config.OCTAVES; i++) {
+            float noise = GenNoiseSingle(config, seed++, x, y, z);
             sum += noise * amp;
-            amp *= Lerp(1.0f, (noise + 1) * 0.5f, mWeightedStrength);
+            amp *= Lerp(1.0f, (noise + 1) * 0.5f, config.WEIGHTED_STRENGTH);
 
-            x *= mLacunarity;
-            y *= mLacunarity;
-            z *= mLacunarity;
-            amp *= mGain;
+            x *= config.LACUNARITY;
+            y *= config.LACUNARITY;
+            z *= config.LACUNARITY;
+            amp *= config.GAIN;
         }
 
         return sum;
@@ -796,38 +874,38 @@ public class NoiseGenerator {
 
     // Fractal Ridged
 
-    private float GenFractalRidged(/*FNLfloat*/ float x, /*FNLfloat*/ float y) {
-        int seed = mSeed;
+    private float GenFractalRidged(NoiseConfig config, /*FNLfloat*/ float x, /*FNLfloat*/ float y) {
+        int seed = config.SEED;
         float sum = 0;
-        float amp = mFractalBounding;
+        float amp = config.FRACTAL_BOUNDING;
 
-        for (int i = 0; i < mOctaves; i++) {
-            float noise = FastAbs(GenNoiseSingle(seed++, x, y));
+        for (int i = 0; i < config.OCTAVES; i++) {
+            float noise = FastAbs(GenNoiseSingle(config, seed++, x, y));
             sum += (noise * -2 + 1) * amp;
-            amp *= Lerp(1.0f, 1 - noise, mWeightedStrength);
+            amp *= Lerp(1.0f, 1 - noise, config.WEIGHTED_STRENGTH);
 
-            x *= mLacunarity;
-            y *= mLacunarity;
-            amp *= mGain;
+            x *= config.LACUNARITY;
+            y *= config.LACUNARITY;
+            amp *= config.GAIN;
         }
 
         return sum;
     }
 
-    private float GenFractalRidged(/*FNLfloat*/ float x, /*FNLfloat*/ float y, /*FNLfloat*/ float z) {
-        int seed = mSeed;
+    private float GenFractalRidged(NoiseConfig config, /*FNLfloat*/ float x, /*FNLfloat*/ float y, /*FNLfloat*/ float z) {
+        int seed = config.SEED;
         float sum = 0;
-        float amp = mFractalBounding;
+        float amp = config.FRACTAL_BOUNDING;
 
-        for (int i = 0; i < mOctaves; i++) {
-            float noise = FastAbs(GenNoiseSingle(seed++, x, y, z));
+        for (int i = 0; i < config.OCTAVES; i++) {
+            float noise = FastAbs(GenNoiseSingle(config, seed++, x, y, z));
             sum += (noise * -2 + 1) * amp;
-            amp *= Lerp(1.0f, 1 - noise, mWeightedStrength);
+            amp *= Lerp(1.0f, 1 - noise, config.WEIGHTED_STRENGTH);
 
-            x *= mLacunarity;
-            y *= mLacunarity;
-            z *= mLacunarity;
-            amp *= mGain;
+            x *= config.LACUNARITY;
+            y *= config.LACUNARITY;
+            z *= config.LACUNARITY;
+            amp *= config.GAIN;
         }
 
         return sum;
@@ -836,44 +914,413 @@ public class NoiseGenerator {
 
     // Fractal PingPong
 
-    private float GenFractalPingPong(/*FNLfloat*/ float x, /*FNLfloat*/ float y) {
-        int seed = mSeed;
+    private float GenFractalPingPong(NoiseConfig config, /*FNLfloat*/ float x, /*FNLfloat*/ float y) {
+        int seed = config.SEED;
         float sum = 0;
-        float amp = mFractalBounding;
+        float amp = config.FRACTAL_BOUNDING;
 
-        for (int i = 0; i < mOctaves; i++) {
-            float noise = PingPong((GenNoiseSingle(seed++, x, y) + 1) * mPingPongStrength);
+        for (int i = 0; i < config.OCTAVES; i++) {
+            float noise = PingPong((GenNoiseSingle(config, seed++, x, y) + 1) * config.PING_PONG_STRENGTH);
             sum += (noise - 0.5f) * 2 * amp;
-            amp *= Lerp(1.0f, noise, mWeightedStrength);
+            amp *= Lerp(1.0f, noise, config.WEIGHTED_STRENGTH);
 
-            x *= mLacunarity;
-            y *= mLacunarity;
-            amp *= mGain;
+            x *= config.LACUNARITY;
+            y *= config.LACUNARITY;
+            amp *= config.GAIN;
         }
 
         return sum;
     }
 
-    private float GenFractalPingPong(/*FNLfloat*/ float x, /*FNLfloat*/ float y, /*FNLfloat*/ float z) {
-        int seed = mSeed;
+    private float GenFractalPingPong(NoiseConfig config, /*FNLfloat*/ float x, /*FNLfloat*/ float y, /*FNLfloat*/ float z) {
+        int seed = config.SEED;
         float sum = 0;
-        float amp = mFractalBounding;
+        float amp = config.FRACTAL_BOUNDING;
 
-        for (int i = 0; i < mOctaves; i++) {
-            float noise = PingPong((GenNoiseSingle(seed++, x, y, z) + 1) * mPingPongStrength);
+        for (int i = 0; i < config.OCTAVES; i++) {
+            float noise = PingPong((GenNoiseSingle(config, seed++, x, y, z) + 1) * config.PING_PONG_STRENGTH);
             sum += (noise - 0.5f) * 2 * amp;
-            amp *= Lerp(1.0f, noise, mWeightedStrength);
+            amp *= Lerp(1.0f, noise, config.WEIGHTED_STRENGTH);
 
-            x *= mLacunarity;
-            y *= mLacunarity;
-            z *= mLacunarity;
-            amp *= mGain;
+            x *= config.LACUNARITY;
+            y *= config.LACUNARITY;
+            z *= config.LACUNARITY;
+            amp *= config.GAIN;
         }
 
         return sum;
     }
 
 
+    // Grid Fill (row kernels with the setting dispatch hoisted out of the per-sample loop)
+
+    private static NoiseBackend LoadVectorBackend() {
+        if ("false".equalsIgnoreCase(System.getProperty("rivelworks.noise.vector"))) {
+            return null;
+        }
+
+        try {
+            // Only present in the Java 17+ part of the multi-release jar
+            return (NoiseBackend) Class.forName("com.rivelbop.rivelworks.math.VectorNoiseBackend")
+                    .getDeclaredConstructor().newInstance();
+        } catch (Throwable t) { // Java 8, missing incubator module or unsupported hardware
+            return null;
+        }
+    }
+
+    private void FillParallel(ForkJoinPool pool, Grid grid) {
+        if (grid.rows == 0) {
+            return;
+        }
+        (pool != null ? pool : ForkJoinPool.commonPool()).invoke(new GridTask(grid, 0, grid.rows));
+    }
+
+    private void GenRow(NoiseConfig config, GridScratch scratch, float[] out, int offset, /*FNLfloat*/ float startX, /*FNLfloat*/ float stepX,
+                        /*FNLfloat*/ float y, int width) {
+        float[] xs = scratch.x;
+        float[] ys = scratch.y;
+        y *= config.FREQUENCY;
+
+        switch (config.NOISE_TYPE) {
+            case OpenSimplex2:
+            case OpenSimplex2S: {
+                final /*FNLfloat*/ float SQRT3 = (/*FNLfloat*/ float) 1.7320508075688772935274463415059;
+                final /*FNLfloat*/ float F2 = 0.5f * (SQRT3 - 1);
+                for (int i = 0; i < width; i++) {
+                    /*FNLfloat*/
+                    float x = (startX + i * stepX) * config.FREQUENCY;
+                    /*FNLfloat*/
+                    float t = (x + y) * F2;
+                    xs[i] = x + t;
+                    ys[i] = y + t;
+                }
+            }
+            break;
+            default:
+                for (int i = 0; i < width; i++) {
+                    xs[i] = (startX + i * stepX) * config.FREQUENCY;
+                    ys[i] = y;
+                }
+                break;
+        }
+
+        switch (config.FRACTAL_TYPE) {
+            default:
+                GenNoiseRow(config, config.SEED, xs, ys, out, offset, width);
+                break;
+            case FBm:
+                GenFractalFBmRow(config, scratch, out, offset, width);
+                break;
+            case Ridged:
+                GenFractalRidgedRow(config, scratch, out, offset, width);
+                break;
+            case PingPong:
+                GenFractalPingPongRow(config, scratch, out, offset, width);
+                break;
+        }
+    }
+
+    private void GenRow(NoiseConfig config, GridScratch scratch, float[] out, int offset, /*FNLfloat*/ float startX, /*FNLfloat*/ float stepX,
+                        /*FNLfloat*/ float y, /*FNLfloat*/ float z, int width) {
+        float[] xs = scratch.x;
+        float[] ys = scratch.y;
+        float[] zs = scratch.z;
+        y *= config.FREQUENCY;
+        z *= config.FREQUENCY;
+
+        switch (config.TRANSFORM_TYPE_3D) {
+            case ImproveXYPlanes: {
+                /*FNLfloat*/
+                float zr = z * (/*FNLfloat*/ float) 0.577350269189626;
+                for (int i = 0; i < width; i++) {
+                    /*FNLfloat*/
+                    float x = (startX + i * stepX) * config.FREQUENCY;
+                    /*FNLfloat*/
+                    float xy = x + y;
+                    /*FNLfloat*/
+                    float s2 = xy * -(/*FNLfloat*/ float) 0.211324865405187;
+                    xs[i] = x + (s2 - zr);
+                    ys[i] = y + s2 - zr;
+                    zs[i] = zr + xy * (/*FNLfloat*/ float) 0.577350269189626;
+                }
+            }
+            break;
+            case ImproveXZPlanes: {
+                /*FNLfloat*/
+                float yr = y * (/*FNLfloat*/ float) 0.577350269189626;
+                for (int i = 0; i < width; i++) {
+                    /*FNLfloat*/
+                    float x = (startX + i * stepX) * config.FREQUENCY;
+                    /*FNLfloat*/
+                    float xz = x + z;
+                    /*FNLfloat*/
+                    float s2 = xz * -(/*FNLfloat*/ float) 0.211324865405187;
+                    xs[i] = x + (s2 - yr);
+                    zs[i] = z + (s2 - yr);
+                    ys[i] = yr + xz * (/*FNLfloat*/ float) 0.577350269189626;
+                }
+            }
+            break;
+            case DefaultOpenSimplex2: {
+                final /*FNLfloat*/ float R3 = (/*FNLfloat*/ float) (2.0 / 3.0);
+                for (int i = 0; i < width; i++) {
+                    /*FNLfloat*/
+                    float x = (startX + i * stepX) * config.FREQUENCY;
+                    /*FNLfloat*/
+                    float r = (x + y + z) * R3; // Rotation, not skew
+                    xs[i] = r - x;
+                    ys[i] = r - y;
+                    zs[i] = r - z;
+                }
+            }
+            break;
+            default:
+                for (int i = 0; i < width; i++) {
+                    xs[i] = (startX + i * stepX) * config.FREQUENCY;
+                    ys[i] = y;
+                    zs[i] = z;
+                }
+                break;
+        }
+
+        switch (config.FRACTAL_TYPE) {
+            default:
+                GenNoiseRow(config, config.SEED, xs, ys, zs, out, offset, width);
+                break;
+            case FBm:
+                GenFractalFBmRow3D(config, scratch, out, offset, width);
+                break;
+            case Ridged:
+                GenFractalRidgedRow3D(config, scratch, out, offset, width);
+                break;
+            case PingPong:
+                GenFractalPingPongRow3D(config, scratch, out, offset, width);
+                break;
+        }
+    }
+
+    private void GenNoiseRow(NoiseConfig config, int seed, float[] xs, float[] ys, float[] out, int offset, int n) {
+        int start = VectorBackend == null ? 0 : VectorBackend.genNoiseRow(config.NOISE_TYPE, config.CELLULAR_DISTANCE_FUNCTION,
+                config.CELLULAR_RETURN_TYPE, config.CELLULAR_JITTER_MODIFIER, seed, xs, ys, out, offset, n);
+
+        switch (config.NOISE_TYPE) {
+            case OpenSimplex2:
+                for (int i = start; i < n; i++) {
+                    out[offset + i] = SingleSimplex(seed, xs[i], ys[i]);
+                }
+                break;
+            case OpenSimplex2S:
+                for (int i = start; i < n; i++) {
+                    out[offset + i] = SingleOpenSimplex2S(seed, xs[i], ys[i]);
+                }
+                break;
+            case Cellular:
+                for (int i = start; i < n; i++) {
+                    out[offset + i] = SingleCellular(config, seed, xs[i], ys[i]);
+                }
+                break;
+            case Perlin:
+                for (int i = start; i < n; i++) {
+                    out[offset + i] = SinglePerlin(seed, xs[i], ys[i]);
+                }
+                break;
+            case ValueCubic:
+                for (int i = start; i < n; i++) {
+                    out[offset + i] = SingleValueCubic(seed, xs[i], ys[i]);
+                }
+                break;
+            case Value:
+                for (int i = start; i < n; i++) {
+                    out[offset + i] = SingleValue(seed, xs[i], ys[i]);
+                }
+                break;
+            default:
+                for (int i = start; i < n; i++) {
+                    out[offset + i] = 0;
+                }
+                break;
+        }
+    }
+
+    private void GenNoiseRow(NoiseConfig config, int seed, float[] xs, float[] ys, float[] zs, float[] out, int offset, int n) {
+        int start = VectorBackend == null ? 0 : VectorBackend.genNoiseRow(config.NOISE_TYPE, config.CELLULAR_DISTANCE_FUNCTION,
+                config.CELLULAR_RETURN_TYPE, config.CELLULAR_JITTER_MODIFIER, seed, xs, ys, zs, out, offset, n);
+
+        switch (config.NOISE_TYPE) {
+            case OpenSimplex2:
+                for (int i = start; i < n; i++) {
+                    out[offset + i] = SingleOpenSimplex2(seed, xs[i], ys[i], zs[i]);
+                }
+                break;
+            case OpenSimplex2S:
+                for (int i = start; i < n; i++) {
+                    out[offset + i] = SingleOpenSimplex2S(seed, xs[i], ys[i], zs[i]);
+                }
+                break;
+            case Cellular:
+                for (int i = start; i < n; i++) {
+                    out[offset + i] = SingleCellular(config, seed, xs[i], ys[i], zs[i]);
+                }
+                break;
+            case Perlin:
+                for (int i = start; i < n; i++) {
+                    out[offset + i] = SinglePerlin(seed, xs[i], ys[i], zs[i]);
+                }
+                break;
+            case ValueCubic:
+                for (int i = start; i < n; i++) {
+                    out[offset + i] = SingleValueCubic(seed, xs[i], ys[i], zs[i]);
+                }
+                break;
+            case Value:
+                for (int i = start; i < n; i++) {
+                    out[offset + i] = SingleValue(seed, xs[i], ys[i], zs[i]);
+                }
+                break;
+            default:
+                for (int i = start; i < n; i++) {
+                    out[offset + i] = 0;
+                }
+                break;
+        }
+    }
+
+    private void GenFractalFBmRow(NoiseConfig config, GridScratch scratch, float[] out, int offset, int n) {
+        float[] xs = scratch.x, ys = scratch.y, noise = scratch.noise, amp = scratch.amp;
+        int seed = config.SEED;
+        for (int i = 0; i < n; i++) {
+            out[offset + i] = 0;
+            amp[i] = config.FRACTAL_BOUNDING;
+        }
+
+        for (int o = 0; o < config.OCTAVES; o++) {
+            GenNoiseRow(config, seed++, xs, ys, noise, 0, n);
+            for (int i = 0; i < n; i++) {
+                float value = noise[i];
+                out[offset + i] += value * amp[i];
+                amp[i] *= Lerp(1.0f, FastMin(value + 1, 2) * 0.5f, config.WEIGHTED_STRENGTH);
+
+                xs[i] *= config.LACUNARITY;
+                ys[i] *= config.LACUNARITY;
+                amp[i] *= config.GAIN;
+            }
+        }
+    }
+
+    private void GenFractalFBmRow3D(NoiseConfig config, GridScratch scratch, float[] out, int offset, int n) {
+        float[] xs = scratch.x, ys = scratch.y, zs = scratch.z, noise = scratch.noise, amp = scratch.amp;
+        int seed = config.SEED;
+        for (int i = 0; i < n; i++) {
+            out[offset + i] = 0;
+            amp[i] = config.FRACTAL_BOUNDING;
+        }
+
+        for (int o = 0; o < config.OCTAVES; o++) {
+            GenNoiseRow(config, seed++, xs, ys, zs, noise, 0, n);
+            for (int i = 0; i < n; i++) {
+                float value = noise[i];
+                out[offset + i] += value * amp[i];
+                amp[i] *= Lerp(1.0f, (value + 1) * 0.5f, config.WEIGHTED_STRENGTH);
+
+                xs[i] *= config.LACUNARITY;
+                ys[i] *= config.LACUNARITY;
+                zs[i] *= config.LACUNARITY;
+                amp[i] *= config.GAIN;
+            }
+        }
+    }
+
+    private void GenFractalRidgedRow(NoiseConfig config, GridScratch scratch, float[] out, int offset, int n) {
+        float[] xs = scratch.x, ys = scratch.y, noise = scratch.noise, amp = scratch.amp;
+        int seed = config.SEED;
+        for (int i = 0; i < n; i++) {
+            out[offset + i] = 0;
+            amp[i] = config.FRACTAL_BOUNDING;
+        }
+
+        for (int o = 0; o < config.OCTAVES; o++) {
+            GenNoiseRow(config, seed++, xs, ys, noise, 0, n);
+            for (int i = 0; i < n; i++) {
+                float value = FastAbs(noise[i]);
+                out[offset + i] += (value * -2 + 1) * amp[i];
+                amp[i] *= Lerp(1.0f, 1 - value, config.WEIGHTED_STRENGTH);
+
+                xs[i] *= config.LACUNARITY;
+                ys[i] *= config.LACUNARITY;
+                amp[i] *= config.GAIN;
+            }
+        }
+    }
+
+    private void GenFractalRidgedRow3D(NoiseConfig config, GridScratch scratch, float[] out, int offset, int n) {
+        float[] xs = scratch.x, ys = scratch.y, zs = scratch.z, noise = scratch.noise, amp = scratch.amp;
+        int seed = config.SEED;
+        for (int i = 0; i < n; i++) {
+            out[offset + i] = 0;
+            amp[i] = config.FRACTAL_BOUNDING;
+        }
+
+        for (int o = 0; o < config.OCTAVES; o++) {
+            GenNoiseRow(config, seed++, xs, ys, zs, noise, 0, n);
+            for (int i = 0; i < n; i++) {
+                float value = FastAbs(noise[i]);
+                out[offset + i] += (value * -2 + 1) * amp[i];
+                amp[i] *= Lerp(1.0f, 1 - value, config.WEIGHTED_STRENGTH);
+
+                xs[i] *= config.LACUNARITY;
+                ys[i] *= config.LACUNARITY;
+                zs[i] *= config.LACUNARITY;
+                amp[i] *= config.GAIN;
+            }
+        }
+    }
+
+    private void GenFractalPingPongRow(NoiseConfig config, GridScratch scratch, float[] out, int offset, int n) {
+        float[] xs = scratch.x, ys = scratch.y, noise = scratch.noise, amp = scratch.amp;
+        int seed = config.SEED;
+        for (int i = 0; i < n; i++) {
+            out[offset + i] = 0;
+            amp[i] = config.FRACTAL_BOUNDING;
+        }
+
+        for (int o = 0; o < config.OCTAVES; o++) {
+            GenNoiseRow(config, seed++, xs, ys, noise, 0, n);
+            for (int i = 0; i < n; i++) {
+                float value = PingPong((noise[i] + 1) * config.PING_PONG_STRENGTH);
+                out[offset + i] += (value - 0.5f) * 2 * amp[i];
+                amp[i] *= Lerp(1.0f, value, config.WEIGHTED_STRENGTH);
+
+                xs[i] *= config.LACUNARITY;
+                ys[i] *= config.LACUNARITY;
+                amp[i] *= config.GAIN;
+            }
+        }
+    }
+
+    private void GenFractalPingPongRow3D(NoiseConfig config, GridScratch scratch, float[] out, int offset, int n) {
+        float[] xs = scratch.x, ys = scratch.y, zs = scratch.z, noise = scratch.noise, amp = scratch.amp;
+        int seed = config.SEED;
+        for (int i = 0; i < n; i++) {
+            out[offset + i] = 0;
+            amp[i] = config.FRACTAL_BOUNDING;
+        }
+
+        for (int o = 0; o < config.OCTAVES; o++) {
+            GenNoiseRow(config, seed++, xs, ys, zs, noise, 0, n);
+            for (int i = 0; i < n; i++) {
+                float value = PingPong((noise[i] + 1) * config.PING_PONG_STRENGTH);
+                out[offset + i] += (value - 0.5f) * 2 * amp[i];
+                amp[i] *= Lerp(1.0f, value, config.WEIGHTED_STRENGTH);
+
+                xs[i] *= config.LACUNARITY;
+                ys[i] *= config.LACUNARITY;
+                zs[i] *= config.LACUNARITY;
+                amp[i] *= config.GAIN;
+            }
+        }
+    }
+
+
     // Simplex/OpenSimplex2 Noise
 
     private float SingleSimplex(int seed, /*FNLfloat*/ float x, /*FNLfloat*/ float y) {
@@ -1291,7 +1738,7 @@ public class NoiseGenerator {
 
     // Cellular Noise
 
-    private float SingleCellular(int seed, /*FNLfloat*/ float x, /*FNLfloat*/ float y) {
+    private float SingleCellular(NoiseConfig config, int seed, /*FNLfloat*/ float x, /*FNLfloat*/ float y) {
         int xr = FastRound(x);
         int yr = FastRound(y);
 
@@ -1299,12 +1746,12 @@ public class NoiseGenerator {
         float distance1 = Float.MAX_VALUE;
         int closestHash = 0;
 
-        float cellularJitter = 0.43701595f * mCellularJitterModifier;
+        float cellularJitter = 0.43701595f * config.CELLULAR_JITTER_MODIFIER;
 
         int xPrimed = (xr - 1) * PrimeX;
         int yPrimedBase = (yr - 1) * PrimeY;
 
-        switch (mCellularDistanceFunction) {
+        switch (config.CELLULAR_DISTANCE_FUNCTION) {
             default:
             case Euclidean:
             case EuclideanSq:
@@ -1378,15 +1825,15 @@ public class NoiseGenerator {
                 break;
         }
 
-        if (mCellularDistanceFunction == CellularDistanceFunction.Euclidean && mCellularReturnType != CellularReturnType.CellValue) {
+        if (config.CELLULAR_DISTANCE_FUNCTION == CellularDistanceFunction.Euclidean && config.CELLULAR_RETURN_TYPE != CellularReturnType.CellValue) {
             distance0 = FastSqrt(distance0);
 
-            if (mCellularReturnType != CellularReturnType.Distance) {
+            if (config.CELLULAR_RETURN_TYPE != CellularReturnType.Distance) {
                 distance1 = FastSqrt(distance1);
             }
         }
 
-        switch (mCellularReturnType) {
+        switch (config.CELLULAR_RETURN_TYPE) {
             case CellValue:
                 return closestHash * (1 / 2147483648.0f);
             case Distance:
@@ -1406,7 +1853,7 @@ public class NoiseGenerator {
         }
     }
 
-    private float SingleCellular(int seed, /*FNLfloat*/ float x, /*FNLfloat*/ float y, /*FNLfloat*/ float z) {
+    private float SingleCellular(NoiseConfig config, int seed, /*FNLfloat*/ float x, /*FNLfloat*/ float y, /*FNLfloat*/ float z) {
         int xr = FastRound(x);
         int yr = FastRound(y);
         int zr = FastRound(z);
@@ -1415,13 +1862,13 @@ public class NoiseGenerator {
         float distance1 = Float.MAX_VALUE;
         int closestHash = 0;
 
-        float cellularJitter = 0.39614353f * mCellularJitterModifier;
+        float cellularJitter = 0.39614353f * config.CELLULAR_JITTER_MODIFIER;
 
         int xPrimed = (xr - 1) * PrimeX;
         int yPrimedBase = (yr - 1) * PrimeY;
         int zPrimedBase = (zr - 1) * PrimeZ;
 
-        switch (mCellularDistanceFunction) {
+        switch (config.CELLULAR_DISTANCE_FUNCTION) {
             case Euclidean:
             case EuclideanSq:
                 for (int xi = xr - 1; xi <= xr + 1; xi++) {
@@ -1514,15 +1961,15 @@ public class NoiseGenerator {
                 break;
         }
 
-        if (mCellularDistanceFunction == CellularDistanceFunction.Euclidean && mCellularReturnType != CellularReturnType.CellValue) {
+        if (config.CELLULAR_DISTANCE_FUNCTION == CellularDistanceFunction.Euclidean && config.CELLULAR_RETURN_TYPE != CellularReturnType.CellValue) {
             distance0 = FastSqrt(distance0);
 
-            if (mCellularReturnType != CellularReturnType.Distance) {
+            if (config.CELLULAR_RETURN_TYPE != CellularReturnType.Distance) {
                 distance1 = FastSqrt(distance1);
             }
         }
 
-        switch (mCellularReturnType) {
+        switch (config.CELLULAR_RETURN_TYPE) {
             case CellValue:
                 return closestHash * (1 / 2147483648.0f);
             case Distance:
@@ -1736,8 +2183,8 @@ public class NoiseGenerator {
 
     // Domain Warp
 
-    private void DoSingleDomainWarp(int seed, float amp, float freq, /*FNLfloat*/ float x, /*FNLfloat*/ float y, Vector2 coord) {
-        switch (mDomainWarpType) {
+    private void DoSingleDomainWarp(NoiseConfig config, int seed, float amp, float freq, /*FNLfloat*/ float x, /*FNLfloat*/ float y, Vector2 coord) {
+        switch (config.DOMAIN_WARP_TYPE) {
             case OpenSimplex2:
                 SingleDomainWarpSimplexGradient(seed, amp * 38.283687591552734375f, freq, x, y, coord, false);
                 break;
@@ -1750,8 +2197,8 @@ public class NoiseGenerator {
         }
     }
 
-    private void DoSingleDomainWarp(int seed, float amp, float freq, /*FNLfloat*/ float x, /*FNLfloat*/ float y, /*FNLfloat*/ float z, Vector3 coord) {
-        switch (mDomainWarpType) {
+    private void DoSingleDomainWarp(NoiseConfig config, int seed, float amp, float freq, /*FNLfloat*/ float x, /*FNLfloat*/ float y, /*FNLfloat*/ float z, Vector3 coord) {
+        switch (config.DOMAIN_WARP_TYPE) {
             case OpenSimplex2:
                 SingleDomainWarpOpenSimplex2Gradient(seed, amp * 32.69428253173828125f, freq, x, y, z, coord, false);
                 break;
@@ -1767,16 +2214,16 @@ public class NoiseGenerator {
 
     // Domain Warp Single Wrapper
 
-    private void DomainWarpSingle(Vector2 coord) {
-        int seed = mSeed;
-        float amp = mDomainWarpAmp * mFractalBounding;
-        float freq = mFrequency;
+    private void DomainWarpSingle(NoiseConfig config, Vector2 coord) {
+        int seed = config.SEED;
+        float amp = config.DOMAIN_WARP_AMP * config.FRACTAL_BOUNDING;
+        float freq = config.FREQUENCY;
 
         /*FNLfloat*/
         float xs = coord.x;
         /*FNLfloat*/
         float ys = coord.y;
-        switch (mDomainWarpType) {
+        switch (config.DOMAIN_WARP_TYPE) {
             case OpenSimplex2:
             case OpenSimplex2Reduced: {
                 final /*FNLfloat*/ float SQRT3 = (/*FNLfloat*/ float) 1.7320508075688772935274463415059;
@@ -1791,13 +2238,13 @@ public class NoiseGenerator {
                 break;
         }
 
-        DoSingleDomainWarp(seed, amp, freq, xs, ys, coord);
+        DoSingleDomainWarp(config, seed, amp, freq, xs, ys, coord);
     }
 
-    private void DomainWarpSingle(Vector3 coord) {
-        int seed = mSeed;
-        float amp = mDomainWarpAmp * mFractalBounding;
-        float freq = mFrequency;
+    private void DomainWarpSingle(NoiseConfig config, Vector3 coord) {
+        int seed = config.SEED;
+        float amp = config.DOMAIN_WARP_AMP * config.FRACTAL_BOUNDING;
+        float freq = config.FREQUENCY;
 
         /*FNLfloat*/
         float xs = coord.x;
@@ -1805,7 +2252,7 @@ public class NoiseGenerator {
         float ys = coord.y;
         /*FNLfloat*/
         float zs = coord.z;
-        switch (mWarpTransformType3D) {
+        switch (config.WARP_TRANSFORM_TYPE_3D) {
             case ImproveXYPlanes: {
                 /*FNLfloat*/
                 float xy = xs + ys;
@@ -1841,23 +2288,23 @@ public class NoiseGenerator {
                 break;
         }
 
-        DoSingleDomainWarp(seed, amp, freq, xs, ys, zs, coord);
+        DoSingleDomainWarp(config, seed, amp, freq, xs, ys, zs, coord);
     }
 
 
     // Domain Warp Fractal Progressive
 
-    private void DomainWarpFractalProgressive(Vector2 coord) {
-        int seed = mSeed;
-        float amp = mDomainWarpAmp * mFractalBounding;
-        float freq = mFrequency;
+    private void DomainWarpFractalProgressive(NoiseConfig config, Vector2 coord) {
+        int seed = config.SEED;
+        float amp = config.DOMAIN_WARP_AMP * config.FRACTAL_BOUNDING;
+        float freq = config.FREQUENCY;
 
-        for (int i = 0; i < mOctaves; i++) {
+        for (int i = 0; i < config.OCTAVES; i++) {
             /*FNLfloat*/
             float xs = coord.x;
             /*FNLfloat*/
             float ys = coord.y;
-            switch (mDomainWarpType) {
+            switch (config.DOMAIN_WARP_TYPE) {
                 case OpenSimplex2:
                 case OpenSimplex2Reduced: {
                     final /*FNLfloat*/ float SQRT3 = (/*FNLfloat*/ float) 1.7320508075688772935274463415059;
@@ -1872,27 +2319,27 @@ public class NoiseGenerator {
                     break;
             }
 
-            DoSingleDomainWarp(seed, amp, freq, xs, ys, coord);
+            DoSingleDomainWarp(config, seed, amp, freq, xs, ys, coord);
 
             seed++;
-            amp *= mGain;
-            freq *= mLacunarity;
+            amp *= config.GAIN;
+            freq *= config.LACUNARITY;
         }
     }
 
-    private void DomainWarpFractalProgressive(Vector3 coord) {
-        int seed = mSeed;
-        float amp = mDomainWarpAmp * mFractalBounding;
-        float freq = mFrequency;
+    private void DomainWarpFractalProgressive(NoiseConfig config, Vector3 coord) {
+        int seed = config.SEED;
+        float amp = config.DOMAIN_WARP_AMP * config.FRACTAL_BOUNDING;
+        float freq = config.FREQUENCY;
 
-        for (int i = 0; i < mOctaves; i++) {
+        for (int i = 0; i < config.OCTAVES; i++) {
             /*FNLfloat*/
             float xs = coord.x;
             /*FNLfloat*/
             float ys = coord.y;
             /*FNLfloat*/
             float zs = coord.z;
-            switch (mWarpTransformType3D) {
+            switch (config.WARP_TRANSFORM_TYPE_3D) {
                 case ImproveXYPlanes: {
                     /*FNLfloat*/
                     float xy = xs + ys;
@@ -1928,22 +2375,22 @@ public class NoiseGenerator {
                     break;
             }
 
-            DoSingleDomainWarp(seed, amp, freq, xs, ys, zs, coord);
+            DoSingleDomainWarp(config, seed, amp, freq, xs, ys, zs, coord);
 
             seed++;
-            amp *= mGain;
-            freq *= mLacunarity;
+            amp *= config.GAIN;
+            freq *= config.LACUNARITY;
         }
     }
 
 
     // Domain Warp Fractal Independant
-    private void DomainWarpFractalIndependent(Vector2 coord) {
+    private void DomainWarpFractalIndependent(NoiseConfig config, Vector2 coord) {
         /*FNLfloat*/
         float xs = coord.x;
         /*FNLfloat*/
         float ys = coord.y;
-        switch (mDomainWarpType) {
+        switch (config.DOMAIN_WARP_TYPE) {
             case OpenSimplex2:
             case OpenSimplex2Reduced: {
                 final /*FNLfloat*/ float SQRT3 = (/*FNLfloat*/ float) 1.7320508075688772935274463415059;
@@ -1958,27 +2405,27 @@ public class NoiseGenerator {
                 break;
         }
 
-        int seed = mSeed;
-        float amp = mDomainWarpAmp * mFractalBounding;
-        float freq = mFrequency;
+        int seed = config.SEED;
+        float amp = config.DOMAIN_WARP_AMP * config.FRACTAL_BOUNDING;
+        float freq = config.FREQUENCY;
 
-        for (int i = 0; i < mOctaves; i++) {
-            DoSingleDomainWarp(seed, amp, freq, xs, ys, coord);
+        for (int i = 0; i < config.OCTAVES; i++) {
+            DoSingleDomainWarp(config, seed, amp, freq, xs, ys, coord);
 
             seed++;
-            amp *= mGain;
-            freq *= mLacunarity;
+            amp *= config.GAIN;
+            freq *= config.LACUNARITY;
         }
     }
 
-    private void DomainWarpFractalIndependent(Vector3 coord) {
+    private void DomainWarpFractalIndependent(NoiseConfig config, Vector3 coord) {
         /*FNLfloat*/
         float xs = coord.x;
         /*FNLfloat*/
         float ys = coord.y;
         /*FNLfloat*/
         float zs = coord.z;
-        switch (mWarpTransformType3D) {
+        switch (config.WARP_TRANSFORM_TYPE_3D) {
             case ImproveXYPlanes: {
                 /*FNLfloat*/
                 float xy = xs + ys;
@@ -2014,16 +2461,16 @@ public class NoiseGenerator {
                 break;
         }
 
-        int seed = mSeed;
-        float amp = mDomainWarpAmp * mFractalBounding;
-        float freq = mFrequency;
+        int seed = config.SEED;
+        float amp = config.DOMAIN_WARP_AMP * config.FRACTAL_BOUNDING;
+        float freq = config.FREQUENCY;
 
-        for (int i = 0; i < mOctaves; i++) {
-            DoSingleDomainWarp(seed, amp, freq, xs, ys, zs, coord);
+        for (int i = 0; i < config.OCTAVES; i++) {
+            DoSingleDomainWarp(config, seed, amp, freq, xs, ys, zs, coord);
 
             seed++;
-            amp *= mGain;
-            freq *= mLacunarity;
+            amp *= config.GAIN;
+            freq *= config.LACUNARITY;
         }
     }
 
@@ -2407,6 +2854,98 @@ public class NoiseGenerator {
         coord.z += vz * warpAmp;
     }
 
+    // Minimum number of samples a parallel grid task fills before it stops splitting
+    private static final int GridTaskSamples = 4096;
+
+    private static final class GridScratch {
+        final float[] x, y, z, noise, amp, row;
+
+        GridScratch(int width) {
+            x = new float[width];
+            y = new float[width];
+            z = new float[width];
+            noise = new float[width];
+            amp = new float[width];
+            row = new float[width];
+        }
+    }
+
+    private final class Grid {
+        final float[] out;
+        final FloatBuffer buffer;
+        final int offset;
+        final /*FNLfloat*/ float startX, startY, startZ, stepX, stepY, stepZ;
+        final int width, height, rows;
+        final boolean is3D;
+        final NoiseConfig config = mConfig;
+
+        Grid(float[] out, FloatBuffer buffer, int offset, /*FNLfloat*/ float startX, /*FNLfloat*/ float startY, /*FNLfloat*/ float startZ,
+             /*FNLfloat*/ float stepX, /*FNLfloat*/ float stepY, /*FNLfloat*/ float stepZ, int width, int height, int depth, boolean is3D) {
+            this.out = out;
+            this.buffer = buffer;
+            this.offset = offset;
+            this.startX = startX;
+            this.startY = startY;
+            this.startZ = startZ;
+            this.stepX = stepX;
+            this.stepY = stepY;
+            this.stepZ = stepZ;
+            this.width = Math.max(width, 0);
+            this.height = Math.max(height, 0);
+            this.rows = width > 0 ? this.height * Math.max(depth, 0) : 0;
+            this.is3D = is3D;
+        }
+
+        void Fill(GridScratch scratch, int rowStart, int rowEnd) {
+            for (int row = rowStart; row < rowEnd; row++) {
+                int index = offset + row * width;
+                float[] dst = buffer != null ? scratch.row : out;
+                int dstOffset = buffer != null ? 0 : index;
+
+                /*FNLfloat*/
+                float y = startY + (row % height) * stepY;
+                if (is3D) {
+                    /*FNLfloat*/
+                    float z = startZ + (row / height) * stepZ;
+                    GenRow(config, scratch, dst, dstOffset, startX, stepX, y, z, width);
+                } else {
+                    GenRow(config, scratch, dst, dstOffset, startX, stepX, y, width);
+                }
+
+                if (buffer != null) {
+                    for (int i = 0; i < width; i++) {
+                        buffer.put(index + i, dst[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class GridTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Grid grid;
+        private final int rowStart, rowEnd;
+
+        GridTask(Grid grid, int rowStart, int rowEnd) {
+            this.grid = grid;
+            this.rowStart = rowStart;
+            this.rowEnd = rowEnd;
+        }
+
+        @Override
+        protected void compute() {
+            int rows = rowEnd - rowStart;
+            if (rows <= 1 || rows * grid.width <= GridTaskSamples) {
+                grid.Fill(new GridScratch(grid.width), rowStart, rowEnd);
+                return;
+            }
+
+            int mid = rowStart + rows / 2;
+            invokeAll(new GridTask(grid, rowStart, mid), new GridTask(grid, mid, rowEnd));
+        }
+    }
+
     public static class Vector2 {
         public /*FNLfloat*/ float x;
         public /*FNLfloat*/ float y;
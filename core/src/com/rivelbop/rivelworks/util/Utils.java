@@ -350,7 +350,7 @@ public final class Utils {
      * @param indicesToRemove The indices to remove.
      * @return The new altered array of indices.
      */
-    private static short[] removeIndices(short[] indices, short[] indicesToRemove) {
+    public static short[] removeIndices(short[] indices, short[] indicesToRemove) {
         ShortArray newIndices = new ShortArray();
         for (int i = 0; i < indices.length; i += 3) {
             boolean removeFace = false;
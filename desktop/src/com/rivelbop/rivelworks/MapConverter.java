@@ -0,0 +1,173 @@
+package com.rivelbop.rivelworks;
+
+import com.badlogic.gdx.files.FileHandle;
+import com.badlogic.gdx.graphics.GL20;
+import com.badlogic.gdx.graphics.Texture;
+import com.badlogic.gdx.graphics.TextureData;
+import com.badlogic.gdx.graphics.g2d.TextureRegion;
+import com.badlogic.gdx.graphics.glutils.FileTextureData;
+import com.badlogic.gdx.maps.tiled.TiledMap;
+import com.badlogic.gdx.maps.tiled.TmxMapLoader;
+import com.badlogic.gdx.utils.GdxRuntimeException;
+import com.badlogic.gdx.utils.ObjectMap;
+import com.esotericsoftware.minlog.Log;
+import com.rivelbop.rivelworks.g2d.map.BinaryMap;
+import com.rivelbop.rivelworks.g2d.map.MapCollision;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * Compiles 'tmx' maps into {@link BinaryMap}s next to them, skipping maps whose binary is already up to date. Runs without a GL
+ * context, only the headers of the tileset images are read.
+ * <p>
+ * Run with "gradlew desktop:convertMaps" to convert the assets folder, or pass 'tmx' files and directories (searched
+ * recursively) as arguments. "-f" converts all maps again, e.g. after only external tilesets changed.
+ *
+ * @author David Jerzak (RivelBop)
+ */
+public class MapConverter {
+    private static final String LOG_TAG = MapConverter.class.getSimpleName();
+
+    /**
+     * Whether any map failed to convert.
+     */
+    private static boolean failed;
+
+    public static void main(String[] args) {
+        boolean force = false;
+        int converted = 0;
+        for (String arg : args) {
+            if (arg.equals("-f")) {
+                force = true;
+            } else {
+                converted += convert(new File(arg), force);
+            }
+        }
+        Log.info(LOG_TAG, "CONVERTED: " + converted);
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Converts a 'tmx' file, or all 'tmx' files in a directory.
+     *
+     * @param file  The file or directory.
+     * @param force Whether to convert maps whose binary is up to date.
+     * @return The number of converted maps.
+     */
+    private static int convert(File file, boolean force) {
+        if (file.isDirectory()) {
+            int converted = 0;
+            File[] files = file.listFiles();
+            for (File f : files == null ? new File[0] : files) {
+                converted += convert(f, force);
+            }
+            return converted;
+        }
+        if (!file.getName().endsWith(".tmx")) {
+            return 0;
+        }
+
+        FileHandle tmx = new FileHandle(file);
+        FileHandle binary = tmx.sibling(tmx.nameWithoutExtension() + BinaryMap.EXTENSION);
+        long hash = MapCollision.hash(tmx.readBytes(), BinaryMap.EXTENSION);
+        if (!force && BinaryMap.readSourceHash(binary) == hash) {
+            return 0;
+        }
+        try {
+            BinaryMap.write(new Loader().load(tmx), binary, hash);
+            return 1;
+        } catch (GdxRuntimeException e) {
+            Log.error(LOG_TAG, "ERROR CONVERTING: " + tmx.path(), e);
+            failed = true;
+            return 0;
+        }
+    }
+
+    /**
+     * Loads maps with {@link ImageTexture}s instead of textures.
+     */
+    private static final class Loader extends TmxMapLoader {
+        private final ObjectMap<String, ImageTexture> IMAGES = new ObjectMap<>();
+
+        private TiledMap load(FileHandle tmx) {
+            root = xml.parse(tmx);
+            return loadTiledMap(tmx, new Parameters(), name -> {
+                ImageTexture image = IMAGES.get(name);
+                if (image == null) {
+                    IMAGES.put(name, image = ImageTexture.read(new FileHandle(name)));
+                }
+                return new TextureRegion(image);
+            });
+        }
+    }
+
+    /**
+     * Stands in for the texture of an image, only holding its file and size (never uploaded or disposed).
+     */
+    private static final class ImageTexture extends Texture {
+        private final TextureData DATA;
+        private final int WIDTH, HEIGHT;
+
+        private ImageTexture(TextureData data, int width, int height) {
+            super(GL20.GL_TEXTURE_2D, 0, data);
+            this.DATA = data;
+            this.WIDTH = width;
+            this.HEIGHT = height;
+        }
+
+        /**
+         * @param file The image file.
+         * @return The image's stand-in, sized by reading the image header.
+         */
+        private static ImageTexture read(FileHandle file) {
+            try (ImageInputStream in = ImageIO.createImageInputStream(file.file())) {
+                Iterator<ImageReader> readers = in == null ? null : ImageIO.getImageReaders(in);
+                if (readers == null || !readers.hasNext()) {
+                    throw new GdxRuntimeException("Unsupported image: " + file.path());
+                }
+                ImageReader reader = readers.next();
+                try {
+                    reader.setInput(in);
+                    TextureData data = new FileTextureData(file, null, null, false) {
+                        @Override
+                        public boolean isManaged() {
+                            return false;
+                        }
+                    };
+                    return new ImageTexture(data, reader.getWidth(0), reader.getHeight(0));
+                } finally {
+                    reader.dispose();
+                }
+            } catch (IOException e) {
+                throw new GdxRuntimeException("Unable to read image: " + file.path(), e);
+            }
+        }
+
+        @Override
+        public void load(TextureData data) {
+            // Never uploaded
+        }
+
+        @Override
+        public TextureData getTextureData() {
+            return DATA;
+        }
+
+        @Override
+        public int getWidth() {
+            return WIDTH;
+        }
+
+        @Override
+        public int getHeight() {
+            return HEIGHT;
+        }
+    }
+}